@@ -116,12 +116,22 @@ public interface AnalyticsDataAPI {
      * If the record already exists, it updates the record store with the given records, matches by its record id,
      * this will be a full replace of the record, where the older record is effectively deleted and the new one is
      * added, there will not be a merge of older record's field's with the new one.
+     * The records of indexed tables are indexed asynchronously, after this method returns.
      *
      * @param records The list of records to be inserted
      * @throws AnalyticsException
      */
     void put(List<Record> records) throws AnalyticsException;
 
+    /**
+     * Returns how far the asynchronous indexing of the given table is behind the record store, that is,
+     * the age of the oldest record batch of the table which is written but not yet indexed.
+     *
+     * @param tableName The name of the table
+     * @return The indexing lag in milliseconds, 0 if there are no pending records
+     */
+    long getIndexingLag(String tableName);
+
     /**
      * Retrieves data from a table, with a given range.
      *
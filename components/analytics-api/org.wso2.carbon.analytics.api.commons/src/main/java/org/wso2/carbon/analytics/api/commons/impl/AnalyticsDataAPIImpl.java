@@ -1,5 +1,7 @@
 package org.wso2.carbon.analytics.api.commons.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.api.commons.AnalyticsDataAPI;
@@ -16,6 +18,7 @@ import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 import org.wso2.carbon.analytics.indexerservice.CarbonIndexDocument;
 import org.wso2.carbon.analytics.indexerservice.CarbonIndexerService;
 import org.wso2.carbon.analytics.indexerservice.IndexSchema;
+import org.wso2.carbon.analytics.indexerservice.config.IndexerConfiguration;
 import org.wso2.carbon.analytics.indexerservice.exceptions.IndexSchemaNotFoundException;
 import org.wso2.carbon.analytics.indexerservice.exceptions.IndexerException;
 import org.wso2.carbon.analytics.indexerservice.impl.CarbonIndexerClient;
@@ -23,36 +26,58 @@ import org.wso2.carbon.analytics.indexerservice.impl.CarbonIndexerClient;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation class of AnalyticsDataAPI - Implements the DAL level APIs with indexing.
+ * <p>
+ * Records are indexed asynchronously: put() writes them to the record store, and the index documents of the batches
+ * of indexed tables to the index staging area, before it returns. The index worker drains the staging area, so the
+ * batches which are not indexed yet when a node stops or crashes are indexed by the next index worker which runs.
  */
 public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
 
     private static Log log = LogFactory.getLog(AnalyticsDataAPIImpl.class);
 
-    private static final String TEMP_INDEX_DATA_STORE = "_TEMP_INDEX_DATA_STORE_";
+    static final String TEMP_INDEX_DATA_STORE = "_TEMP_INDEX_DATA_STORE_";
     private static final String FIELD_INDEX_DATA = "_FIELD_INDEX_DATA_";
     private static final String FIELD_INDEX_DATA_TABLE_NAME = "_FIELD_INDEX_DATA_TABLE_NAME_";
     private static final String TEMP_INDEX_SCHEMA_STORE = "_TEMP_INDEX_SCHEMA_STORE_";
     private static final String FIELD_INDEX_SCHEMA = "_FIELD_INDEX_SCHEMA_";
     private static final String FIELD_INDEX_SCHEMA_MERGE = "_FIELD_INDEX_SCHEMA_MERGE_";
 
-    private static final int NO_STAGING_INDEX_WORKERS = 2;
+    private static final int NO_STAGING_INDEX_WORKERS = 1;
     private static final int STAGING_INDEX_WORKER_EXECUTOR_TIMEOUT_MILLI_SEC = 60000;
     private static final int RETRY_INDEX_DOC_BATCH_SIZE = 100;
+    private static final int DEFAULT_INDEX_QUEUE_SIZE = 1024;
+    private static final int DEFAULT_INDEX_BATCH_SIZE = 5000;
+    private static final long INDEX_SCHEMA_CACHE_TIMEOUT_MILLI_SEC = 30000;
+    private static final IndexSchema NO_INDEX_SCHEMA = new IndexSchema();
 
     private CarbonIndexerService indexerService;
     private AnalyticsDataService analyticsDataService;
     private ExecutorService stagingIndexWorkerExecutor;
-    private StagingIndexWorker stagingIndexWorker;
     private StagingIndexSchemaWorker stagingIndexSchemaWorker;
+    private ExecutorService indexWorkerExecutor;
+    private IndexWorker indexWorker;
+    private Semaphore stagedIndexBatches = new Semaphore(0);
+    private volatile boolean indexStagingTableCreated;
+    private int indexQueueSize;
+    private int indexBatchSize;
+    private Cache<String, IndexSchema> indexSchemaCache;
+    private Map<String, Queue<IndexBatch>> pendingIndexBatches = new ConcurrentHashMap<>();
 
     public AnalyticsDataAPIImpl() throws AnalyticsException {
         ServiceLoader<CarbonIndexerService> indexerServiceServiceLoader = ServiceLoader.load(CarbonIndexerService.class);
@@ -69,14 +94,44 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
         if (indexerService == null) {
             throw new AnalyticsException("Cannot load CarbonIndexerService..");
         }
+        init(INDEX_SCHEMA_CACHE_TIMEOUT_MILLI_SEC);
+    }
+
+    AnalyticsDataAPIImpl(AnalyticsDataService analyticsDataService, CarbonIndexerService indexerService,
+                         long indexSchemaCacheTimeout) {
+        this.analyticsDataService = analyticsDataService;
+        this.indexerService = indexerService;
+        init(indexSchemaCacheTimeout);
+    }
+
+    private void init(long indexSchemaCacheTimeout) {
+        /* the index schemas are cached for a limited time only, as they may be updated by other nodes */
+        indexSchemaCache = CacheBuilder.newBuilder().expireAfterWrite(indexSchemaCacheTimeout,
+                TimeUnit.MILLISECONDS).build();
+        scheduleIndexWorker();
         scheduleStagingIndexWorkers();
     }
 
+    private void scheduleIndexWorker() {
+        IndexerConfiguration indexerConfig = indexerService.getIndexerConfiguration();
+        indexQueueSize = DEFAULT_INDEX_QUEUE_SIZE;
+        indexBatchSize = DEFAULT_INDEX_BATCH_SIZE;
+        if (indexerConfig != null) {
+            if (indexerConfig.getIndexQueueSize() > 0) {
+                indexQueueSize = indexerConfig.getIndexQueueSize();
+            }
+            if (indexerConfig.getIndexBatchSize() > 0) {
+                indexBatchSize = indexerConfig.getIndexBatchSize();
+            }
+        }
+        indexWorkerExecutor = Executors.newSingleThreadExecutor();
+        indexWorker = new IndexWorker();
+        indexWorkerExecutor.execute(indexWorker);
+    }
+
     private void scheduleStagingIndexWorkers() {
         stagingIndexWorkerExecutor = Executors.newFixedThreadPool(NO_STAGING_INDEX_WORKERS);
-        stagingIndexWorker = new StagingIndexWorker();
         stagingIndexSchemaWorker = new StagingIndexSchemaWorker();
-        stagingIndexWorkerExecutor.execute(stagingIndexWorker);
         stagingIndexWorkerExecutor.execute(stagingIndexSchemaWorker);
     }
 
@@ -120,6 +175,8 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
             log.info("Inserting index Schema details to staging area, as the index schema update failed..");
             AddIndexSchemaToStagingArea(tableName, indexSchema, merge);
             throw new AnalyticsException("Error while updating the index schema for table : " + tableName, e);
+        } finally {
+            invalidateIndexSchema(tableName);
         }
     }
 
@@ -169,6 +226,8 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
     @Override
     public void deleteTable(String tableName) throws AnalyticsException {
         analyticsDataService.deleteTable(tableName);
+        invalidateIndexSchema(tableName);
+        purgeIndexBatches(tableName);
         try {
             indexerService.deleteIndexForTable(tableName);
         } catch (IndexerException e) {
@@ -187,51 +246,139 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
         analyticsDataService.put(records);
         Collection<List<Record>> recordBatches = AnalyticsCommonUtils.generateRecordBatches(records, true);
         AnalyticsCommonUtils.preProcessRecords(recordBatches, analyticsDataService);
-        List<CarbonIndexDocument> indexDocuments = null;
-        String table = null;
         try {
             for (List<Record> recordBatch : recordBatches) {
-                table = recordBatch.get(0).getTableName();
-                if (isIndexedTable(table)) {
-                    IndexSchema indexSchema = indexerService.getIndexSchema(table);
-                    indexDocuments = DataAPIUtils.getIndexDocuments(recordBatch, indexSchema);
-                    indexerService.indexDocuments(table, indexDocuments);
+                String table = recordBatch.get(0).getTableName();
+                IndexSchema indexSchema = getCachedIndexSchema(table);
+                if (isIndexedSchema(indexSchema)) {
+                    stageIndexBatch(table, DataAPIUtils.getIndexDocuments(recordBatch, indexSchema));
                 }
             }
-        } catch (IndexSchemaNotFoundException e) {
-            log.error("Error while inserting records: " + e.getMessage(), e);
-            throw new AnalyticsException("Error while inserting records: " + e.getMessage(), e);
         } catch (IndexerException e) {
             log.error("Error while inserting records: " + e.getMessage(), e);
-            log.info("Inserting Index data of records to staging area as indexing failed..");
-            AddIndexDocumentsToStagingArea(indexDocuments, table);
             throw new AnalyticsException("Error while inserting records: " + e.getMessage(), e);
         }
     }
 
-    private void AddIndexDocumentsToStagingArea(List<CarbonIndexDocument> indexDocuments,
-                                                String table) throws AnalyticsException {
-        if (!analyticsDataService.tableExists(TEMP_INDEX_DATA_STORE)) {
-            analyticsDataService.createTable(TEMP_INDEX_DATA_STORE);
+    /**
+     * Writes the index documents of a record batch to the staging area and wakes up the index worker, so the batch
+     * is indexed even if this node goes down before the index worker gets to it. The writers are never blocked by
+     * the indexing server.
+     */
+    private void stageIndexBatch(String table, List<CarbonIndexDocument> indexDocuments) throws AnalyticsException {
+        if (indexDocuments == null || indexDocuments.isEmpty()) {
+            return;
+        }
+        IndexBatch batch = new IndexBatch(table, AnalyticsCommonUtils.generateRecordID());
+        Queue<IndexBatch> pending = pendingIndexBatches.get(table);
+        if (pending == null) {
+            pendingIndexBatches.putIfAbsent(table, new ConcurrentLinkedQueue<IndexBatch>());
+            pending = pendingIndexBatches.get(table);
         }
-        if (indexDocuments != null && !indexDocuments.isEmpty()) {
-            List<Record> stagingIndexRecords = new ArrayList<>(1);
-            Map<String, Object> values = new HashMap<>(2);
-            values.put(FIELD_INDEX_DATA, AnalyticsCommonUtils.serializeObject(indexDocuments));
-            values.put(FIELD_INDEX_DATA_TABLE_NAME, table);
-            Record record = new Record(TEMP_INDEX_DATA_STORE, values);
-            stagingIndexRecords.add(record);
-            analyticsDataService.put(stagingIndexRecords);
+        pending.add(batch);
+        try {
+            AddIndexDocumentsToStagingArea(batch.stagedId, indexDocuments, table);
+        } catch (AnalyticsException e) {
+            pending.remove(batch);
+            throw e;
         }
+        stagedIndexBatches.release();
     }
 
-    private boolean isIndexedTable(String tableName) throws IndexerException {
+    /**
+     * Drops the staged batches of a table which no longer exists, the index of the table is deleted with it.
+     */
+    private void purgeIndexBatches(String tableName) {
+        String table = AnalyticsCommonUtils.normalizeTableName(tableName);
+        pendingIndexBatches.remove(table);
         try {
-            IndexSchema indexSchema = indexerService.getIndexSchema(tableName);
-            return indexSchema.getFields() != null && !indexSchema.getFields().isEmpty();
-        } catch (IndexSchemaNotFoundException e) {
-            return false;
+            if (!analyticsDataService.tableExists(TEMP_INDEX_DATA_STORE)) {
+                return;
+            }
+            List<String> ids = new ArrayList<>();
+            for (Record record : getRecordsListFromTable(TEMP_INDEX_DATA_STORE, 0, -1)) {
+                String stagedTable = (String) record.getValue(FIELD_INDEX_DATA_TABLE_NAME);
+                if (stagedTable != null && table.equals(AnalyticsCommonUtils.normalizeTableName(stagedTable))) {
+                    ids.add(record.getId());
+                }
+            }
+            if (!ids.isEmpty()) {
+                analyticsDataService.delete(TEMP_INDEX_DATA_STORE, ids);
+            }
+        } catch (AnalyticsException e) {
+            log.warn("Error while purging the staged index data of table '" + tableName + "': " + e.getMessage(), e);
+        }
+    }
+
+    private void removePendingIndexBatches(String table, Set<String> stagedIds) {
+        Queue<IndexBatch> pending = pendingIndexBatches.get(table);
+        if (pending != null) {
+            pending.removeIf(batch -> stagedIds.contains(batch.stagedId));
+        }
+    }
+
+    @Override
+    public long getIndexingLag(String tableName) {
+        Queue<IndexBatch> pending = pendingIndexBatches.get(AnalyticsCommonUtils.normalizeTableName(tableName));
+        if (pending == null) {
+            return 0;
+        }
+        IndexBatch oldest = pending.peek();
+        if (oldest == null) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - oldest.enqueuedTime);
+    }
+
+    private void AddIndexDocumentsToStagingArea(String stagedId, List<CarbonIndexDocument> indexDocuments,
+                                                String table) throws AnalyticsException {
+        if (!indexStagingTableCreated) {
+            if (!analyticsDataService.tableExists(TEMP_INDEX_DATA_STORE)) {
+                analyticsDataService.createTable(TEMP_INDEX_DATA_STORE);
+            }
+            indexStagingTableCreated = true;
+        }
+        List<Record> stagingIndexRecords = new ArrayList<>(1);
+        Map<String, Object> values = new HashMap<>(2);
+        values.put(FIELD_INDEX_DATA, AnalyticsCommonUtils.serializeObject(indexDocuments));
+        values.put(FIELD_INDEX_DATA_TABLE_NAME, table);
+        Record record = new Record(stagedId, TEMP_INDEX_DATA_STORE, values);
+        stagingIndexRecords.add(record);
+        analyticsDataService.put(stagingIndexRecords);
+    }
+
+    private boolean isIndexedTable(String tableName) throws IndexerException {
+        return isIndexedSchema(getCachedIndexSchema(tableName));
+    }
+
+    private boolean isIndexedSchema(IndexSchema indexSchema) {
+        return indexSchema.getFields() != null && !indexSchema.getFields().isEmpty();
+    }
+
+    /**
+     * Returns the index schema of the table from the local cache. Tables without an index schema are cached as well,
+     * so writing to them does not look up the indexer on every batch, an index schema set on another node applies
+     * once the cache entry expires or the table is invalidated.
+     */
+    private IndexSchema getCachedIndexSchema(String tableName) throws IndexerException {
+        String table = AnalyticsCommonUtils.normalizeTableName(tableName);
+        IndexSchema indexSchema = indexSchemaCache.getIfPresent(table);
+        if (indexSchema == null) {
+            try {
+                indexSchema = indexerService.getIndexSchema(tableName);
+            } catch (IndexSchemaNotFoundException e) {
+                indexSchema = null;
+            }
+            if (indexSchema == null) {
+                indexSchema = NO_INDEX_SCHEMA;
+            }
+            indexSchemaCache.put(table, indexSchema);
         }
+        return indexSchema;
+    }
+
+    private void invalidateIndexSchema(String tableName) {
+        indexSchemaCache.invalidate(AnalyticsCommonUtils.normalizeTableName(tableName));
     }
 
     @Override
@@ -387,6 +534,7 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
 
     @Override
     public void destroy() throws AnalyticsException {
+        stopIndexWorker();
         stopRetryIndexerWorkers();
         if (analyticsDataService != null) {
             analyticsDataService.destroy();
@@ -401,9 +549,24 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
         }
     }
 
+    private void stopIndexWorker() {
+        if (indexWorkerExecutor != null && !indexWorkerExecutor.isShutdown()) {
+            indexWorker.stop();
+            indexWorkerExecutor.shutdown();
+            try {
+                indexWorkerExecutor.awaitTermination(STAGING_INDEX_WORKER_EXECUTOR_TIMEOUT_MILLI_SEC,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                log.warn("Failed to stop the index worker, Interrupted.");
+            } finally {
+                indexWorkerExecutor = null;
+                indexWorker = null;
+            }
+        }
+    }
+
     private void stopRetryIndexerWorkers() {
         if (stagingIndexWorkerExecutor != null && !stagingIndexWorkerExecutor.isShutdown()) {
-            stagingIndexWorker.stop();
             stagingIndexSchemaWorker.stop();
             stagingIndexWorkerExecutor.shutdownNow();
             try {
@@ -414,7 +577,6 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
             } finally {
                 stagingIndexWorkerExecutor = null;
                 stagingIndexSchemaWorker = null;
-                stagingIndexWorker = null;
             }
         }
     }
@@ -422,6 +584,16 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
     @Override
     public void invalidateTable(String tableName) {
         analyticsDataService.invalidateTable(tableName);
+        invalidateIndexSchema(tableName);
+        try {
+            /* the table may have been deleted by another node */
+            if (!analyticsDataService.tableExists(tableName)) {
+                purgeIndexBatches(tableName);
+            }
+        } catch (AnalyticsException e) {
+            log.warn("Error while checking the existence of the invalidated table '" + tableName + "': " +
+                     e.getMessage(), e);
+        }
     }
 
     @Override
@@ -435,46 +607,115 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
     }
 
     /**
-     * Worker class which tries to reindex data from the staging area.
-     * (If inserting data to Solr failed those data goes to the staging area)
+     * A batch of index documents of a single table, which is written to the staging area and waiting to be indexed.
      */
-    private class StagingIndexWorker implements Runnable {
+    private static class IndexBatch {
 
-        private static final int RETRY_INTERVAL = 1000;
-        private boolean stop;
+        private final String table;
+        private final String stagedId;
+        private final long enqueuedTime;
 
-        public StagingIndexWorker() {
-            stop = false;
+        public IndexBatch(String table, String stagedId) {
+            this.table = table;
+            this.stagedId = stagedId;
+            this.enqueuedTime = System.currentTimeMillis();
         }
+    }
+
+    /**
+     * Worker class which indexes the batches in the staging area. The staged batches available at a time are
+     * coalesced per table into update requests of up to the configured index batch size, and removed from the
+     * staging area once they are indexed. The batches of a failed request stay in the staging area and are retried
+     * after a while.
+     */
+    private class IndexWorker implements Runnable {
+
+        private static final int POLL_TIMEOUT = 1000;
+        private static final int RETRY_INTERVAL = 1000;
+        private volatile boolean stop;
 
         @Override
         public void run() {
+            /* the batches staged before the last shutdown are indexed first */
+            boolean drain = true;
             while (!stop) {
                 try {
-                    if (analyticsDataService.tableExists(TEMP_INDEX_DATA_STORE)) {
-                        List<Record> records = getRecordsListFromTable(TEMP_INDEX_DATA_STORE, 0, RETRY_INDEX_DOC_BATCH_SIZE);
-                        List<String> ids = new ArrayList<>();
-                        for (Record record : records) {
-                            try {
-                                String table = (String) record.getValue(FIELD_INDEX_DATA_TABLE_NAME);
-                                byte[] indexData = (byte[]) record.getValue(FIELD_INDEX_DATA);
-                                List<CarbonIndexDocument> documents =
-                                        (List<CarbonIndexDocument>) AnalyticsCommonUtils.deserializeObject(indexData);
-                                indexerService.indexDocuments(table, documents);
-                                ids.add(record.getId());
-                            } catch (IndexerException e) {
-                                log.error("Staging data Indexing failed, " + e.getMessage(), e);
-                            }
-                        }
-                        analyticsDataService.delete(TEMP_INDEX_DATA_STORE, ids);
-                        Thread.sleep(RETRY_INTERVAL);
+                    if (drain || stagedIndexBatches.tryAcquire(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        stagedIndexBatches.drainPermits();
+                        drain = processStagedBatches();
                     }
+                } catch (InterruptedException e) {
+                    break;
                 } catch (Throwable e) {
-                    log.error("Staging data Indexing failed, " + e.getMessage(), e);
+                    log.error("Indexing staged records failed, " + e.getMessage(), e);
+                    drain = true;
+                    try {
+                        Thread.sleep(RETRY_INTERVAL);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
                 }
             }
         }
 
+        /**
+         * Indexes a page of the staging area, and returns whether there may be more staged batches to index.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean processStagedBatches() throws AnalyticsException, InterruptedException {
+            if (!analyticsDataService.tableExists(TEMP_INDEX_DATA_STORE)) {
+                return false;
+            }
+            List<Record> records = getRecordsListFromTable(TEMP_INDEX_DATA_STORE, 0, indexQueueSize);
+            Map<String, List<Record>> tableRecords = new LinkedHashMap<>();
+            for (Record record : records) {
+                String table = (String) record.getValue(FIELD_INDEX_DATA_TABLE_NAME);
+                List<Record> current = tableRecords.get(table);
+                if (current == null) {
+                    current = new ArrayList<>();
+                    tableRecords.put(table, current);
+                }
+                current.add(record);
+            }
+            boolean failed = false;
+            for (Map.Entry<String, List<Record>> entry : tableRecords.entrySet()) {
+                List<CarbonIndexDocument> documents = new ArrayList<>();
+                Set<String> stagedIds = new HashSet<>();
+                for (Record record : entry.getValue()) {
+                    byte[] indexData = (byte[]) record.getValue(FIELD_INDEX_DATA);
+                    documents.addAll((List<CarbonIndexDocument>) AnalyticsCommonUtils.deserializeObject(indexData));
+                    stagedIds.add(record.getId());
+                    if (documents.size() >= indexBatchSize) {
+                        failed |= !indexDocuments(entry.getKey(), documents, stagedIds);
+                        documents = new ArrayList<>();
+                        stagedIds = new HashSet<>();
+                    }
+                }
+                if (!documents.isEmpty()) {
+                    failed |= !indexDocuments(entry.getKey(), documents, stagedIds);
+                }
+            }
+            if (failed) {
+                Thread.sleep(RETRY_INTERVAL);
+                return true;
+            }
+            return records.size() >= indexQueueSize;
+        }
+
+        private boolean indexDocuments(String table, List<CarbonIndexDocument> documents, Set<String> stagedIds)
+                throws AnalyticsException {
+            try {
+                indexerService.indexDocuments(table, documents);
+            } catch (IndexerException e) {
+                log.error("Error while indexing records of table '" + table + "', " + stagedIds.size() +
+                          " staged batches are retried: " + e.getMessage(), e);
+                return false;
+            }
+            analyticsDataService.delete(TEMP_INDEX_DATA_STORE, new ArrayList<>(stagedIds));
+            removePendingIndexBatches(table, stagedIds);
+            return true;
+        }
+
         public void stop() {
             stop = true;
         }
@@ -483,7 +724,7 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
     private class StagingIndexSchemaWorker implements Runnable {
 
         private static final int RETRY_INTERVAL = 1000;
-        private boolean stop;
+        private volatile boolean stop;
 
         public StagingIndexSchemaWorker() {
             stop = false;
@@ -505,6 +746,7 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
                                 IndexSchema indexSchema =
                                         (IndexSchema) AnalyticsCommonUtils.deserializeObject(indexSchemaData);
                                 indexerService.updateIndexSchema(table, indexSchema, merge);
+                                invalidateIndexSchema(table);
                                 ids.add(record.getId());
 
                             } catch (IndexerException e) {
@@ -512,8 +754,10 @@ public class AnalyticsDataAPIImpl implements AnalyticsDataAPI {
                             }
                         }
                         analyticsDataService.delete(TEMP_INDEX_SCHEMA_STORE, ids);
-                        Thread.sleep(RETRY_INTERVAL);
                     }
+                    Thread.sleep(RETRY_INTERVAL);
+                } catch (InterruptedException e) {
+                    break;
                 } catch (Throwable e) {
                     log.error("Inserting staged index schema failed, " + e.getMessage(), e);
                 }
@@ -0,0 +1,402 @@
+package org.wso2.carbon.analytics.api.commons.impl;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.data.commons.AnalyticsDataService;
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataResponse;
+import org.wso2.carbon.analytics.data.commons.service.AnalyticsSchema;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
+import org.wso2.carbon.analytics.data.commons.sources.Record;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
+import org.wso2.carbon.analytics.indexerservice.CarbonIndexDocument;
+import org.wso2.carbon.analytics.indexerservice.CarbonIndexerService;
+import org.wso2.carbon.analytics.indexerservice.IndexSchema;
+import org.wso2.carbon.analytics.indexerservice.IndexSchemaField;
+import org.wso2.carbon.analytics.indexerservice.exceptions.IndexSchemaNotFoundException;
+import org.wso2.carbon.analytics.indexerservice.exceptions.IndexerException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test class for the index staging area and the index schema cache of AnalyticsDataAPIImpl, against stubbed
+ * data and indexer services.
+ */
+public class AnalyticsDataAPIImplTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private StubDataService data;
+    private StubIndexerService indexer;
+    private AnalyticsDataAPIImpl service;
+
+    @AfterMethod
+    public void destroy() throws AnalyticsException {
+        if (this.service != null) {
+            this.indexer.release();
+            this.service.destroy();
+            this.service = null;
+        }
+    }
+
+    @Test
+    public void testNoIndexSchemaIsCached() throws Exception {
+        this.createService(60000);
+        this.service.put(generateRecords("T1", 10));
+        this.service.put(generateRecords("T1", 10));
+        Assert.assertEquals(this.indexer.schemaLookups.get(), 1);
+        Assert.assertEquals(this.service.getIndexingLag("T1"), 0);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 0);
+
+        /* an index schema set on another node applies once the table is invalidated */
+        this.indexer.schema = createIndexSchema();
+        this.service.invalidateTable("t1");
+        this.service.put(generateRecords("T1", 10));
+        this.service.put(generateRecords("t1", 10));
+        Assert.assertEquals(this.indexer.schemaLookups.get(), 2);
+        this.awaitIndexed("T1", 20);
+    }
+
+    @Test
+    public void testIndexSchemaCacheExpiry() throws Exception {
+        this.createService(200);
+        this.indexer.schema = createIndexSchema();
+        this.service.put(generateRecords("T1", 10));
+        this.service.put(generateRecords("T1", 10));
+        Assert.assertEquals(this.indexer.schemaLookups.get(), 1);
+        Thread.sleep(400);
+        this.service.put(generateRecords("T1", 10));
+        Assert.assertEquals(this.indexer.schemaLookups.get(), 2);
+        this.awaitIndexed("T1", 30);
+    }
+
+    @Test
+    public void testIndexSchemaInvalidatedOnDelete() throws Exception {
+        this.createService(60000);
+        this.indexer.schema = createIndexSchema();
+        this.service.put(generateRecords("T1", 10));
+        this.service.deleteTable("t1");
+        this.service.put(generateRecords("T1", 10));
+        Assert.assertEquals(this.indexer.schemaLookups.get(), 2);
+    }
+
+    @Test
+    public void testStagedBatchesAreIndexed() throws Exception {
+        this.createService(60000);
+        this.indexer.schema = createIndexSchema();
+        this.indexer.block();
+        this.service.put(generateRecords("T1", 10));
+        this.indexer.awaitBlocked();
+        /* these batches are staged while the index worker is busy, and coalesced into a single request */
+        for (int i = 0; i < 5; i++) {
+            this.service.put(generateRecords("T2", 10));
+        }
+        Assert.assertEquals(this.indexer.countIndexed("T2"), 0);
+        this.indexer.release();
+        this.awaitIndexed("T2", 50);
+        Assert.assertEquals(this.indexer.indexRequests.get(), 2);
+        Assert.assertEquals(this.service.getIndexingLag("T1"), 0);
+        Assert.assertEquals(this.service.getIndexingLag("T2"), 0);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 0);
+    }
+
+    @Test
+    public void testFailedBatchesAreRetried() throws Exception {
+        this.createService(60000);
+        this.indexer.schema = createIndexSchema();
+        this.indexer.fail = true;
+        this.service.put(generateRecords("T1", 10));
+        this.indexer.awaitFailure();
+        Assert.assertEquals(this.indexer.countIndexed("T1"), 0);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 1);
+        Assert.assertTrue(this.service.getIndexingLag("T1") >= 0);
+
+        this.indexer.fail = false;
+        this.awaitIndexed("T1", 10);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 0);
+    }
+
+    @Test
+    public void testStagedBatchesSurviveRestart() throws Exception {
+        this.createService(60000);
+        this.indexer.schema = createIndexSchema();
+        this.indexer.fail = true;
+        this.service.put(generateRecords("T1", 10));
+        this.service.put(generateRecords("T1", 10));
+        this.indexer.awaitFailure();
+        this.service.destroy();
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 2);
+
+        /* the batches staged by the stopped node are indexed by the next one using the same record store */
+        this.startService(60000);
+        this.awaitIndexed("T1", 20);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 0);
+    }
+
+    @Test
+    public void testDeleteTablePurgesStagedBatches() throws Exception {
+        this.createService(60000);
+        this.indexer.schema = createIndexSchema();
+        this.indexer.block();
+        this.service.put(generateRecords("T1", 10));
+        this.indexer.awaitBlocked();
+        this.service.put(generateRecords("T2", 10));
+        this.service.put(generateRecords("T2", 10));
+        this.service.deleteTable("t2");
+        Assert.assertEquals(this.service.getIndexingLag("T2"), 0);
+        Assert.assertEquals(this.data.count(AnalyticsDataAPIImpl.TEMP_INDEX_DATA_STORE), 1);
+        this.indexer.release();
+        this.service.put(generateRecords("T3", 10));
+        this.awaitIndexed("T3", 10);
+        Assert.assertEquals(this.indexer.countIndexed("T1"), 10);
+        Assert.assertEquals(this.indexer.countIndexed("T2"), 0);
+    }
+
+    private void createService(long indexSchemaCacheTimeout) {
+        this.data = new StubDataService();
+        this.startService(indexSchemaCacheTimeout);
+    }
+
+    private void startService(long indexSchemaCacheTimeout) {
+        this.indexer = new StubIndexerService();
+        this.service = new AnalyticsDataAPIImpl(createStub(AnalyticsDataService.class, this.data),
+                createStub(CarbonIndexerService.class, this.indexer), indexSchemaCacheTimeout);
+    }
+
+    private void awaitIndexed(String table, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (this.indexer.countIndexed(table) < count || this.service.getIndexingLag(table) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out waiting for " + count + " documents of table " + table + " to be indexed");
+            }
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(this.indexer.countIndexed(table), count);
+    }
+
+    private static List<Record> generateRecords(String table, int count) {
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> values = new HashMap<>();
+            values.put("value", i);
+            records.add(new Record(table, values));
+        }
+        return records;
+    }
+
+    private static IndexSchema createIndexSchema() {
+        IndexSchema schema = new IndexSchema();
+        schema.addField("value", new IndexSchemaField("value", true, true, IndexSchema.TYPE_INT, null));
+        return schema;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T createStub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * An in-memory record store, which keeps the records of each table in the insertion order.
+     */
+    private static class StubDataService implements InvocationHandler {
+
+        private final Map<String, Map<String, Record>> tables = new HashMap<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getTableSchema":
+                    return new AnalyticsSchema();
+                case "tableExists":
+                    return this.tables.containsKey(normalize((String) args[0]));
+                case "createTable":
+                    this.table((String) args[args.length - 1]);
+                    return null;
+                case "deleteTable":
+                    this.tables.remove(normalize((String) args[0]));
+                    return null;
+                case "put":
+                    for (Record record : (List<Record>) args[0]) {
+                        String id = record.getId() == null ? AnalyticsCommonUtils.generateRecordID() : record.getId();
+                        this.table(record.getTableName()).put(id, record);
+                    }
+                    return null;
+                case "get":
+                    List<Record> records = new ArrayList<>(this.table((String) args[0]).values());
+                    int count = (Integer) args[args.length - 1];
+                    if (count >= 0 && count < records.size()) {
+                        records = records.subList(0, count);
+                    }
+                    return new AnalyticsDataResponse(Collections.singletonList(new AnalyticsDataResponse.Entry(
+                            "STUB", new StubRecordGroup(new ArrayList<>(records)))));
+                case "readRecords":
+                    return new StubRecordIterator(((StubRecordGroup) args[1]).records.iterator());
+                case "delete":
+                    Map<String, Record> table = this.tables.get(normalize((String) args[0]));
+                    if (table != null && args[1] instanceof List) {
+                        table.keySet().removeAll((List<String>) args[1]);
+                    }
+                    return null;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private Map<String, Record> table(String tableName) {
+            Map<String, Record> table = this.tables.get(normalize(tableName));
+            if (table == null) {
+                table = new LinkedHashMap<>();
+                this.tables.put(normalize(tableName), table);
+            }
+            return table;
+        }
+
+        private synchronized int count(String tableName) {
+            Map<String, Record> table = this.tables.get(normalize(tableName));
+            return table == null ? 0 : table.size();
+        }
+
+        private static String normalize(String tableName) {
+            return AnalyticsCommonUtils.normalizeTableName(tableName);
+        }
+    }
+
+    private static class StubRecordGroup implements RecordGroup {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Record> records;
+
+        private StubRecordGroup(List<Record> records) {
+            this.records = records;
+        }
+
+        @Override
+        public String[] getLocations() {
+            return new String[] { "localhost" };
+        }
+    }
+
+    private static class StubRecordIterator implements AnalyticsIterator<Record> {
+
+        private final Iterator<Record> records;
+
+        private StubRecordIterator(Iterator<Record> records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.records.hasNext();
+        }
+
+        @Override
+        public Record next() {
+            return this.records.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * An indexer which records the indexed documents per table, and whose index requests can be held back or fail.
+     */
+    private static class StubIndexerService implements InvocationHandler {
+
+        private volatile IndexSchema schema;
+        private volatile boolean fail;
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger schemaLookups = new AtomicInteger();
+        private final AtomicInteger indexRequests = new AtomicInteger();
+        private final List<String> indexedTables = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+            switch (method.getName()) {
+                case "getIndexSchema":
+                    this.schemaLookups.incrementAndGet();
+                    if (this.schema == null) {
+                        throw new IndexSchemaNotFoundException("No index schema for table: " + args[0]);
+                    }
+                    return this.schema;
+                case "indexDocuments":
+                    this.blocked.countDown();
+                    this.released.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (this.fail) {
+                        this.failures.incrementAndGet();
+                        throw new IndexerException("Indexing server is not available");
+                    }
+                    this.indexRequests.incrementAndGet();
+                    for (CarbonIndexDocument ignored : (List<CarbonIndexDocument>) args[1]) {
+                        this.indexedTables.add((String) args[0]);
+                    }
+                    return null;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private void block() {
+            this.blocked = new CountDownLatch(1);
+            this.released = new CountDownLatch(1);
+        }
+
+        private void awaitBlocked() throws InterruptedException {
+            Assert.assertTrue(this.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        private void awaitFailure() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (this.failures.get() == 0) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for an index failure");
+                Thread.sleep(10);
+            }
+        }
+
+        private void release() {
+            this.released.countDown();
+        }
+
+        private int countIndexed(String table) {
+            int count = 0;
+            for (String indexedTable : this.indexedTables) {
+                if (indexedTable.equals(table)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataResponse;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsSchema;
 
@@ -192,6 +193,17 @@ public interface AnalyticsDataService {
      */
     AnalyticsIterator<Record> readRecords(String recordStoreName, RecordGroup recordGroup) throws AnalyticsException;
 
+    /**
+     * Returns the approximate statistics of a given record group at a given record store.
+     *
+     * @param recordStoreName The record store name
+     * @param recordGroup     The record group which represents the local data set
+     * @return The statistics of the record group, or null if the record store does not provide them
+     * @throws AnalyticsException
+     */
+    RecordGroupStatistics getRecordGroupStatistics(String recordStoreName, RecordGroup recordGroup)
+            throws AnalyticsException;
+
     /**
      * Deletes a set of records in the table.
      *
@@ -33,6 +33,13 @@ public interface AnalyticsEngine {
      */
     AnalyticsEngineQueryResult executeQuery(String query) throws AnalyticsException;
 
+    /**
+     * This executes the given query and returns a cursor, which fetches the results as they are read.
+     *
+     * @param query spark sql query to be executed
+     */
+    AnalyticsEngineQueryCursor executeQueryWithCursor(String query) throws AnalyticsException;
+
     /**
      * Returns the versioning details of the Analytics Engine.
      *
@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.data.commons;
+
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This interface represents a query result which is fetched from the analytics engine as it is consumed, instead of
+ * being held in memory as a whole. The cursor must be closed when it is no longer needed.
+ */
+public interface AnalyticsEngineQueryCursor extends Iterator<List<Object>>, Closeable {
+
+    /**
+     * Get the columns list.
+     *
+     * @return string array of columns
+     */
+    String[] getColumns();
+
+    /**
+     * Returns the next rows of the result in columnar form, where the i-th list contains the values of the i-th
+     * column. A chunk contains at most the given number of rows, and less if the memory limit of the query is
+     * reached first.
+     *
+     * @param maxRows the maximum number of rows in the chunk
+     * @return the column value lists, which are empty if the cursor is exhausted
+     * @throws AnalyticsException if the rows cannot be fetched, or the cursor is cancelled
+     */
+    List<List<Object>> nextChunk(int maxRows) throws AnalyticsException;
+
+    /**
+     * Cancels the query, stopping any running fetches of it. Further reads from the cursor fail.
+     */
+    void cancel();
+
+}
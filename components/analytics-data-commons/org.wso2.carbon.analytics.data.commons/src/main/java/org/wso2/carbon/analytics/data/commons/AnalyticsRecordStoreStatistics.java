@@ -0,0 +1,43 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.data.commons;
+
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
+
+/**
+ * Optional interface an {@link AnalyticsRecordStore} implementation can implement to expose cheap, approximate
+ * statistics about the record groups it returns. The statistics are used by the analytics engine to decide
+ * how many partitions to split a table scan into.
+ */
+public interface AnalyticsRecordStoreStatistics {
+
+    /**
+     * Returns the approximate statistics of the given record group. This is expected to be cheap compared to
+     * reading the records, so implementations should use metadata, or an aggregate query, rather than
+     * scanning the data.
+     *
+     * @param recordGroup The record group returned earlier by this record store
+     * @return The statistics of the record group, or null if they are not available
+     * @throws AnalyticsException
+     */
+    RecordGroupStatistics getStatistics(RecordGroup recordGroup) throws AnalyticsException;
+
+}
@@ -23,6 +23,7 @@ public class AnalyticsCommonConstants {
     public static final String DEFAULT_CHARSET = "UTF8";
     public static final int RECORDS_BATCH_SIZE = 1000;
     public static final String TIMESTAMP_FIELD = "_timestamp";
+    public static final String ID_FIELD = "_id";
 
     public static final String ANALYTICS_CONF_DIR = "analytics";
 }
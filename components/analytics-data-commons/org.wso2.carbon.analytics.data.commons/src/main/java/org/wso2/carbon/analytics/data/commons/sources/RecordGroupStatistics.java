@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.data.commons.sources;
+
+import java.io.Serializable;
+
+/**
+ * Approximate statistics of the records in a {@link RecordGroup}. The values which are not known
+ * by the record store are set to -1.
+ */
+public class RecordGroupStatistics implements Serializable {
+
+    private static final long serialVersionUID = -3279431874546532716L;
+
+    public static final long UNKNOWN = -1;
+
+    private long rowCount;
+    private long byteSize;
+    private long minTimestamp;
+    private long maxTimestamp;
+
+    public RecordGroupStatistics() {
+        this(UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    public RecordGroupStatistics(long rowCount, long byteSize, long minTimestamp, long maxTimestamp) {
+        this.rowCount = rowCount;
+        this.byteSize = byteSize;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * Returns the approximate number of records in the group, or -1 if it is not known.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the approximate size of the records in the group in bytes, or -1 if it is not known.
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Returns the smallest record timestamp in the group, or -1 if it is not known.
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Returns the largest record timestamp in the group, or -1 if it is not known.
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "[rowCount=" + rowCount + ", byteSize=" + byteSize + ", minTimestamp=" + minTimestamp +
+                ", maxTimestamp=" + maxTimestamp + "]";
+    }
+
+}
@@ -22,11 +22,13 @@ import org.apache.commons.collections.IteratorUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStoreStatistics;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
@@ -307,6 +309,64 @@ public abstract class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
 
+    @Test
+    public void testRecordGroupStatistics() throws AnalyticsException {
+        if (!(this.analyticsRS instanceof AnalyticsRecordStoreStatistics)) {
+            return;
+        }
+        AnalyticsRecordStoreStatistics statsRS = (AnalyticsRecordStoreStatistics) this.analyticsRS;
+        this.cleanupT1();
+        this.analyticsRS.createTable("T1");
+        long time = System.currentTimeMillis();
+        int timeOffset = 10;
+        List<Record> records = generateRecords("T1", 1, 100, time, timeOffset);
+        this.analyticsRS.put(records);
+        long rowCount = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (RecordGroup rg : this.analyticsRS.get("T1", 3, null, time, time + timeOffset * 50, 0, -1)) {
+            RecordGroupStatistics stats = statsRS.getStatistics(rg);
+            Assert.assertNotNull(stats, "Record group statistics not available");
+            Assert.assertTrue(stats.getRowCount() >= 0, "Record group row count not populated");
+            rowCount += stats.getRowCount();
+            if (stats.getRowCount() > 0) {
+                minTimestamp = Math.min(minTimestamp, stats.getMinTimestamp());
+                maxTimestamp = Math.max(maxTimestamp, stats.getMaxTimestamp());
+            }
+        }
+        Assert.assertEquals(rowCount, 50);
+        Assert.assertEquals(minTimestamp, time);
+        Assert.assertEquals(maxTimestamp, time + timeOffset * 49);
+        this.cleanupT1();
+    }
+
+    @Test
+    public void testIdRecordGroupStatistics() throws AnalyticsException {
+        if (!(this.analyticsRS instanceof AnalyticsRecordStoreStatistics)) {
+            return;
+        }
+        AnalyticsRecordStoreStatistics statsRS = (AnalyticsRecordStoreStatistics) this.analyticsRS;
+        this.cleanupT1();
+        this.analyticsRS.createTable("T1");
+        List<Record> records = generateRecords("T1", 1, 20, System.currentTimeMillis(), 10);
+        this.analyticsRS.put(records);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(records.get(i).getId());
+        }
+        long rowCount = 0;
+        RecordGroup[] rgs = this.analyticsRS.get("T1", 3, null, ids);
+        for (RecordGroup rg : rgs) {
+            RecordGroupStatistics stats = statsRS.getStatistics(rg);
+            Assert.assertNotNull(stats, "Record group statistics not available");
+            rowCount += stats.getRowCount();
+        }
+        Assert.assertEquals(rowCount, 5);
+        Assert.assertEquals(new HashSet<>(AnalyticsCommonUtils.listRecords(this.analyticsRS, rgs)),
+                new HashSet<>(records.subList(0, 5)));
+        this.cleanupT1();
+    }
+
     @Test
     public void testRecordRetrievalWithFixedCount() throws AnalyticsException {
         this.cleanupT1();
@@ -508,4 +568,43 @@ public abstract class AnalyticsRecordStoreTest {
                 .println("************** END RECORD PERF TEST [" + this.getImplementationName() + "] **************\n");
         this.cleanupT1();
     }
+
+    @Test
+    public void testDataRecordUpsertPerformance() throws AnalyticsException {
+        System.out.println(
+                "\n************** START RECORD UPSERT PERF TEST [" + this.getImplementationName() + "] **************");
+        this.cleanupT1();
+        this.analyticsRS.createTable("T1");
+        int n = 20, batch = 500;
+        List<Record> existingRecords = new ArrayList<>(n * batch);
+        for (int i = 0; i < n; i++) {
+            List<Record> records = generateRecords("T1", i, batch, -1, -1);
+            this.analyticsRS.put(records);
+            existingRecords.addAll(records);
+        }
+        /* every batch is half updates of existing records and half new records, with one id repeated */
+        List<List<Record>> upsertBatches = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<Record> records = this.generateRecordsForUpdate(existingRecords.subList(i * batch,
+                    i * batch + batch / 2));
+            records.addAll(generateRecords("T1", i, batch / 2, -1, -1));
+            records.add(records.get(records.size() - 1));
+            upsertBatches.add(records);
+        }
+        long start = System.currentTimeMillis();
+        for (List<Record> records : upsertBatches) {
+            this.analyticsRS.put(records);
+        }
+        long end = System.currentTimeMillis();
+        int upsertCount = n * (batch + 1);
+        System.out.println("* Records: " + upsertCount);
+        System.out.println("* Upsert Time: " + (end - start) + " ms.");
+        System.out.println("* Upsert Throughput (TPS): " + upsertCount / (double) (end - start) * 1000.0);
+        List<Record> recordsIn = AnalyticsCommonUtils.listRecords(this.analyticsRS,
+                this.analyticsRS.get("T1", 1, null, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1));
+        Assert.assertEquals(recordsIn.size(), n * batch + n * (batch / 2));
+        System.out.println(
+                "************** END RECORD UPSERT PERF TEST [" + this.getImplementationName() + "] **************\n");
+        this.cleanupT1();
+    }
 }
@@ -19,6 +19,7 @@
 package org.wso2.carbon.analytics.dataservice.config;
 
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonConstants;
+import org.wso2.carbon.analytics.dataservice.utils.AnalyticsDataServiceConstants;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -35,6 +36,10 @@ public class AnalyticsDataServiceConfiguration {
 
     private int recordsBatchSize = AnalyticsCommonConstants.RECORDS_BATCH_SIZE;
 
+    private int tableInfoCacheSize = AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_SIZE;
+
+    private int tableInfoCacheTimeout = AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_TIMEOUT_SECONDS;
+
     @XmlElement(name = "analytics-record-store", nillable = false)
     public AnalyticsRecordStoreConfiguration[] getAnalyticsRecordStoreConfigurations() {
         return analyticsRecordStoreConfigurations;
@@ -58,4 +63,27 @@ public class AnalyticsDataServiceConfiguration {
         this.primaryRecordStore = primaryRecordStore;
     }
 
+    @XmlElement (name = "tableInfoCacheSize",
+            defaultValue = "" + AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_SIZE)
+    public int getTableInfoCacheSize() {
+        return tableInfoCacheSize;
+    }
+
+    public void setTableInfoCacheSize(int tableInfoCacheSize) {
+        this.tableInfoCacheSize = tableInfoCacheSize;
+    }
+
+    /**
+     * The number of seconds a cached table info entry is used before it is read again from the meta table.
+     */
+    @XmlElement (name = "tableInfoCacheTimeout",
+            defaultValue = "" + AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_TIMEOUT_SECONDS)
+    public int getTableInfoCacheTimeout() {
+        return tableInfoCacheTimeout;
+    }
+
+    public void setTableInfoCacheTimeout(int tableInfoCacheTimeout) {
+        this.tableInfoCacheTimeout = tableInfoCacheTimeout;
+    }
+
 }
@@ -18,10 +18,15 @@
  */
 package org.wso2.carbon.analytics.dataservice.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.data.commons.AnalyticsDataService;
 import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStoreStatistics;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataHolder;
@@ -31,6 +36,7 @@ import org.wso2.carbon.analytics.data.commons.service.AnalyticsSchema;
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 import org.wso2.carbon.analytics.dataservice.config.AnalyticsDataServiceConfigProperty;
 import org.wso2.carbon.analytics.dataservice.config.AnalyticsDataServiceConfiguration;
@@ -43,10 +49,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonConstants.ANALYTICS_CONF_DIR;
 import static org.wso2.carbon.analytics.dataservice.utils.AnalyticsDataServiceConstants.ANALYTICS_CONFIG_FILE;
+import static org.wso2.carbon.analytics.dataservice.utils.AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_SIZE;
+import static org.wso2.carbon.analytics.dataservice.utils.AnalyticsDataServiceConstants.DEFAULT_TABLE_INFO_CACHE_TIMEOUT_SECONDS;
 
 public class AnalyticsDataServiceImpl implements AnalyticsDataService {
 
@@ -57,7 +68,9 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     private int recordsBatchSize;
     private String primaryARSName;
     private Map<String, AnalyticsRecordStore> analyticsRecordStores;
-    private Map<String, AnalyticsTableInfo> tableInfoMap = new HashMap<>();
+    private Cache<String, AnalyticsTableInfo> tableInfoCache = this.createTableInfoCache(
+            DEFAULT_TABLE_INFO_CACHE_SIZE, DEFAULT_TABLE_INFO_CACHE_TIMEOUT_SECONDS);
+    private List<AnalyticsTableInfoChangeListener> tableInfoChangeListeners = new CopyOnWriteArrayList<>();
 
     private static final Log LOGGER = LogFactory.getLog(AnalyticsDataServiceImpl.class);
 
@@ -111,6 +124,20 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
             throw new AnalyticsException("The primary record store with name '" + this.primaryARSName + "' cannot be found.");
         }
         this.recordsBatchSize = config.getRecordsBatchSize();
+        this.tableInfoCache = this.createTableInfoCache(config.getTableInfoCacheSize(),
+                config.getTableInfoCacheTimeout());
+    }
+
+    private Cache<String, AnalyticsTableInfo> createTableInfoCache(int maxSize, int timeoutSeconds) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (maxSize > 0) {
+            builder.maximumSize(maxSize);
+        }
+        if (timeoutSeconds > 0) {
+            /* bounds the staleness of the entries changed by other nodes, when no invalidation is broadcast */
+            builder.expireAfterWrite(timeoutSeconds, TimeUnit.SECONDS);
+        }
+        return builder.build();
     }
 
     private Map<String, String> convertToMap(AnalyticsDataServiceConfigProperty[] props) {
@@ -153,16 +180,20 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
             tableInfo = new AnalyticsTableInfo(tableName, recordStoreName, new AnalyticsSchema());
         }
         this.writeTableInfo(tableName, tableInfo);
-        this.invalidateTable(tableName);
+        this.checkAndInvalidateTableInfo(tableName);
     }
 
     private AnalyticsTableInfo lookupTableInfo(String tableName) throws AnalyticsException {
-        AnalyticsTableInfo tableInfo = this.tableInfoMap.get(tableName);
-        if (tableInfo == null) {
-            tableInfo = this.readTableInfo(tableName);
-            this.tableInfoMap.put(tableName, tableInfo);
+        try {
+            /* concurrent lookups of the same table share a single meta table read */
+            return this.tableInfoCache.get(tableName, () -> this.readTableInfo(tableName));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof AnalyticsException) {
+                throw (AnalyticsException) e.getCause();
+            }
+            throw new AnalyticsException("Error in looking up table info for table '" + tableName + "': " +
+                    e.getCause().getMessage(), e.getCause());
         }
-        return tableInfo;
     }
 
     private void writeTableInfo(String tableName, AnalyticsTableInfo tableInfo) throws AnalyticsException {
@@ -228,8 +259,9 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     @Override
     public void setTableSchema(String tableName, AnalyticsSchema schema) throws AnalyticsException {
         tableName = AnalyticsCommonUtils.normalizeTableName(tableName);
-        AnalyticsTableInfo tableInfo = this.lookupTableInfo(tableName);
-        tableInfo.setSchema(schema);
+        AnalyticsTableInfo currentTableInfo = this.lookupTableInfo(tableName);
+        /* the cached instance is shared with the readers, so it is not modified in place */
+        AnalyticsTableInfo tableInfo = new AnalyticsTableInfo(tableName, currentTableInfo.getRecordStoreName(), schema);
         this.writeTableInfo(tableName, tableInfo);
         this.checkAndInvalidateTableInfo(tableName);
     }
@@ -278,14 +310,36 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     }
 
     private void checkAndInvalidateTableInfo(String tableName) throws AnalyticsException {
-        //todo: add clustered table removal here
-        /*AnalyticsClusterManager acm = AnalyticsServiceHolder.getAnalyticsClusterManager();
-        if (acm.isClusteringEnabled()) {
-            *//* send cluster message to invalidate *//*
-            acm.executeAll(ANALYTICS_DATASERVICE_GROUP, new AnalyticsTableInfoChangeMessage(tenantId, tableName));
-        } else {
-        }*/
         this.invalidateTable(tableName);
+        for (AnalyticsTableInfoChangeListener listener : this.tableInfoChangeListeners) {
+            try {
+                listener.tableInfoChanged(tableName);
+            } catch (Exception e) {
+                LOGGER.error("Error in notifying table info change of table '" + tableName + "': " +
+                        e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener to be notified when the table information of a table is changed on this node, which
+     * can be used to broadcast the invalidation of the table information to the other nodes in a cluster.
+     *
+     * @param listener The listener to be registered
+     */
+    public void addTableInfoChangeListener(AnalyticsTableInfoChangeListener listener) {
+        this.tableInfoChangeListeners.add(listener);
+    }
+
+    public void removeTableInfoChangeListener(AnalyticsTableInfoChangeListener listener) {
+        this.tableInfoChangeListeners.remove(listener);
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the table information cache.
+     */
+    public CacheStats getTableInfoCacheStats() {
+        return this.tableInfoCache.stats();
     }
 
     @Override
@@ -413,6 +467,16 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         return this.getAnalyticsRecordStore(recordStoreName).readRecords(recordGroup);
     }
 
+    @Override
+    public RecordGroupStatistics getRecordGroupStatistics(String recordStoreName, RecordGroup recordGroup)
+            throws AnalyticsException {
+        AnalyticsRecordStore ars = this.getAnalyticsRecordStore(recordStoreName);
+        if (ars instanceof AnalyticsRecordStoreStatistics) {
+            return ((AnalyticsRecordStoreStatistics) ars).getStatistics(recordGroup);
+        }
+        return null;
+    }
+
     @Override
     public void delete(String tableName, long timeFrom, long timeTo) throws AnalyticsException {
         tableName = AnalyticsCommonUtils.normalizeTableName(tableName);
@@ -444,6 +508,9 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
 
     @Override
     public void destroy() throws AnalyticsException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Table info cache statistics: " + this.tableInfoCache.stats());
+        }
         for (AnalyticsRecordStore ars : this.analyticsRecordStores.values()) {
             ars.destroy();
         }
@@ -452,7 +519,7 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     @Override
     public void invalidateTable(String tableName) {
         tableName = AnalyticsCommonUtils.normalizeTableName(tableName);
-        this.tableInfoMap.remove(tableName);
+        this.tableInfoCache.invalidate(tableName);
     }
     
     /**
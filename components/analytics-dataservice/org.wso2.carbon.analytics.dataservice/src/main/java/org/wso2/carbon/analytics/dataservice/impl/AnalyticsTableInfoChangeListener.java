@@ -0,0 +1,35 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.impl;
+
+/**
+ * Listener which is notified when the meta information of an analytics table is changed on this node. A clustering
+ * implementation can register one to broadcast the change, so the other nodes call
+ * {@link org.wso2.carbon.analytics.data.commons.AnalyticsDataService#invalidateTable(String)} for the table.
+ */
+public interface AnalyticsTableInfoChangeListener {
+
+    /**
+     * Called after the table information of the given table is created, updated or deleted.
+     *
+     * @param tableName The normalized name of the table
+     */
+    void tableInfoChanged(String tableName);
+
+}
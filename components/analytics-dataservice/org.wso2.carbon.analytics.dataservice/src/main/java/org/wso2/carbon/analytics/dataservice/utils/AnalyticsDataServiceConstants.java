@@ -22,6 +22,10 @@ public class AnalyticsDataServiceConstants {
 
     public static final String ANALYTICS_CONFIG_FILE = "analytics-dataservice-config.xml";
 
+    public static final int DEFAULT_TABLE_INFO_CACHE_SIZE = 1000;
+
+    public static final int DEFAULT_TABLE_INFO_CACHE_TIMEOUT_SECONDS = 300;
+
     private AnalyticsDataServiceConstants() {
         /**
          * Avoid initialization.
@@ -30,6 +30,7 @@ import org.wso2.carbon.analytics.data.commons.service.ColumnDefinition;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.test.AnalyticsRecordStoreTest;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
+import org.wso2.carbon.analytics.dataservice.impl.AnalyticsDataServiceImpl;
 
 import java.util.*;
 
@@ -145,6 +146,33 @@ public class AnalyticsDataServiceTest {
         this.service.deleteTable(tableName);
     }
 
+    @Test(dependsOnMethods = "testTableSetGetSchema")
+    public void testTableInfoCache() throws AnalyticsException {
+        String tableName = "T1";
+        AnalyticsDataServiceImpl serviceImpl = (AnalyticsDataServiceImpl) this.service;
+        this.service.deleteTable(tableName);
+        this.service.createTable(tableName);
+        this.service.getTableSchema(tableName);
+        long hitCount = serviceImpl.getTableInfoCacheStats().hitCount();
+        long missCount = serviceImpl.getTableInfoCacheStats().missCount();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(this.service.tableExists(tableName));
+            this.service.getTableSchema(tableName);
+        }
+        Assert.assertEquals(serviceImpl.getTableInfoCacheStats().hitCount(), hitCount + 20);
+        Assert.assertEquals(serviceImpl.getTableInfoCacheStats().missCount(), missCount);
+        List<ColumnDefinition> columns = new ArrayList<>();
+        columns.add(new ColumnDefinition("name", ColumnType.STRING));
+        AnalyticsSchema schema = new AnalyticsSchema(columns, new ArrayList<>());
+        this.service.setTableSchema(tableName, schema);
+        Assert.assertEquals(this.service.getTableSchema(tableName), schema);
+        this.service.invalidateTable(tableName);
+        Assert.assertEquals(this.service.getTableSchema(tableName), schema);
+        Assert.assertEquals(serviceImpl.getTableInfoCacheStats().missCount(), missCount + 2);
+        this.service.deleteTable(tableName);
+        Assert.assertFalse(this.service.tableExists(tableName));
+    }
+
     @Test(expectedExceptions = AnalyticsTableNotAvailableException.class, dependsOnMethods = "testTableSetGetSchema")
     public void testTableGetNoSchema() throws AnalyticsException {
         this.service.deleteTable("T1");
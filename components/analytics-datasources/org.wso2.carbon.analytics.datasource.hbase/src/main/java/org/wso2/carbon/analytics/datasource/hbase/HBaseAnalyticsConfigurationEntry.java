@@ -27,6 +27,20 @@ public class HBaseAnalyticsConfigurationEntry {
 
     private int batchSize = HBaseAnalyticsDSConstants.DEFAULT_QUERY_BATCH_SIZE;
 
+    private int indexSaltBuckets = HBaseAnalyticsDSConstants.DEFAULT_INDEX_SALT_BUCKETS;
+
+    private int indexLayoutCacheTimeout = HBaseAnalyticsDSConstants.DEFAULT_INDEX_LAYOUT_CACHE_TIMEOUT;
+
+    private long writeBufferSize = HBaseAnalyticsDSConstants.DEFAULT_WRITE_BUFFER_SIZE;
+
+    private long writeFlushInterval = HBaseAnalyticsDSConstants.DEFAULT_WRITE_FLUSH_INTERVAL;
+
+    private boolean readPrefetchEnabled = false;
+
+    private int readPrefetchThreads = HBaseAnalyticsDSConstants.DEFAULT_READ_PREFETCH_THREADS;
+
+    private int indexRepairQueueSize = HBaseAnalyticsDSConstants.DEFAULT_INDEX_REPAIR_QUEUE_SIZE;
+
     @XmlElement(name = "query-batch-size")
     public int getBatchSize() {
         return batchSize;
@@ -36,4 +50,90 @@ public class HBaseAnalyticsConfigurationEntry {
         this.batchSize = batchSize;
     }
 
+    /**
+     * The number of buckets the timestamp index of newly created tables is salted into, 0 for an unsalted index.
+     */
+    @XmlElement(name = "index-salt-buckets")
+    public int getIndexSaltBuckets() {
+        return indexSaltBuckets;
+    }
+
+    public void setIndexSaltBuckets(int indexSaltBuckets) {
+        this.indexSaltBuckets = indexSaltBuckets;
+    }
+
+    /**
+     * The number of seconds a node caches the index layout of a table for. An index migration waits this long
+     * before it rebuilds the index, so every node writes the new layout once the rebuilt index is in use.
+     */
+    @XmlElement(name = "index-layout-cache-timeout")
+    public int getIndexLayoutCacheTimeout() {
+        return indexLayoutCacheTimeout;
+    }
+
+    public void setIndexLayoutCacheTimeout(int indexLayoutCacheTimeout) {
+        this.indexLayoutCacheTimeout = indexLayoutCacheTimeout;
+    }
+
+    /**
+     * The size in bytes of the buffered mutations, after which they are sent to the region servers.
+     */
+    @XmlElement(name = "write-buffer-size")
+    public long getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(long writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * The number of milliseconds after which buffered mutations are sent even if the write buffer is not full,
+     * 0 to send them only when the buffer fills.
+     */
+    @XmlElement(name = "write-flush-interval")
+    public long getWriteFlushInterval() {
+        return writeFlushInterval;
+    }
+
+    public void setWriteFlushInterval(long writeFlushInterval) {
+        this.writeFlushInterval = writeFlushInterval;
+    }
+
+    /**
+     * Whether the record iterators read the next batch in the background while the current one is consumed.
+     */
+    @XmlElement(name = "read-prefetch-enabled")
+    public boolean isReadPrefetchEnabled() {
+        return readPrefetchEnabled;
+    }
+
+    public void setReadPrefetchEnabled(boolean readPrefetchEnabled) {
+        this.readPrefetchEnabled = readPrefetchEnabled;
+    }
+
+    /**
+     * The maximum number of threads reading batches in the background, shared by all the record iterators.
+     */
+    @XmlElement(name = "read-prefetch-threads")
+    public int getReadPrefetchThreads() {
+        return readPrefetchThreads;
+    }
+
+    public void setReadPrefetchThreads(int readPrefetchThreads) {
+        this.readPrefetchThreads = readPrefetchThreads;
+    }
+
+    /**
+     * The maximum number of obsolete index entry batches waiting to be deleted in the background.
+     */
+    @XmlElement(name = "index-repair-queue-size")
+    public int getIndexRepairQueueSize() {
+        return indexRepairQueueSize;
+    }
+
+    public void setIndexRepairQueueSize(int indexRepairQueueSize) {
+        this.indexRepairQueueSize = indexRepairQueueSize;
+    }
+
 }
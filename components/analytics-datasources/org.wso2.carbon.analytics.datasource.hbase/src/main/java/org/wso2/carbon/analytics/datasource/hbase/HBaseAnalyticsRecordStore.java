@@ -17,13 +17,17 @@
 */
 package org.wso2.carbon.analytics.datasource.hbase;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseIDRecordGroup;
@@ -32,9 +36,11 @@ import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseTimestampRecordGroup;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
 import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
 import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStoreStatistics;
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
@@ -42,24 +48,54 @@ import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Apache HBase implementation of {@link AnalyticsRecordStore}
  */
-public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
+public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore, AnalyticsRecordStoreStatistics {
 
     private Connection conn;
 
     private HBaseAnalyticsConfigurationEntry queryConfig;
 
+    /* the number of salt buckets of the timestamp index of each table, keyed by the index table name. The entries
+     * expire, so a layout changed by an index migration on another node is read again */
+    private Cache<String, Integer> indexSaltBuckets;
+
+    /* the buffered mutators of the data tables are thread safe, and shared by all the writers of a table, keyed by
+     * the HBase table name */
+    private Map<String, BufferedMutator> mutators = new ConcurrentHashMap<>();
+
+    /* the ids of the records whose buffered puts failed, keyed by the HBase table name, until the next put to the
+     * table reports them */
+    private Map<String, Set<String>> failedRecordIds = new ConcurrentHashMap<>();
+
+    private static final int MAX_REPORTED_FAILED_IDS = 10;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private ExecutorService readPrefetchExecutor;
+
+    private HBaseIndexRepairQueue indexRepairQueue;
+
     private static final Log log = LogFactory.getLog(HBaseAnalyticsRecordStore.class);
 
     public HBaseAnalyticsRecordStore(Connection conn, HBaseAnalyticsConfigurationEntry entry) throws IOException, AnalyticsException {
         this.conn = conn;
         this.queryConfig = entry;
+        this.initResources();
     }
 
     public HBaseAnalyticsRecordStore() {
@@ -93,9 +129,64 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             throw new AnalyticsException("Error establishing connection to HBase instance : HBase Client initialization " +
                     "failed");
         }
+        this.initResources();
         log.debug("Initialized connection to HBase instance successfully.");
     }
 
+    private void initResources() {
+        this.indexSaltBuckets = CacheBuilder.newBuilder().expireAfterWrite(
+                this.queryConfig.getIndexLayoutCacheTimeout(), TimeUnit.SECONDS).build();
+        long flushInterval = this.queryConfig.getWriteFlushInterval();
+        if (flushInterval > 0) {
+            /* the buffered puts of a table which does not fill its write buffer are sent at this interval */
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("HBaseAnalyticsRecordStore-flush-%d").setDaemon(true).build());
+            this.flushExecutor.scheduleWithFixedDelay(this::flushDataMutators, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (this.queryConfig.isReadPrefetchEnabled()) {
+            /* once all the prefetch threads are busy, an iterator reads its next batch itself */
+            this.readPrefetchExecutor = new ThreadPoolExecutor(0, this.queryConfig.getReadPrefetchThreads(),
+                    60L, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactoryBuilder()
+                    .setNameFormat("HBaseAnalyticsRecordStore-prefetch-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        this.indexRepairQueue = new HBaseIndexRepairQueue(this.conn, this.queryConfig.getIndexRepairQueueSize());
+    }
+
+    private BufferedMutator getDataMutator(String tableName) throws IOException {
+        String hbaseTableName = HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.DATA);
+        BufferedMutator mutator = this.mutators.get(hbaseTableName);
+        if (mutator == null) {
+            synchronized (this.mutators) {
+                mutator = this.mutators.get(hbaseTableName);
+                if (mutator == null) {
+                    Set<String> failedIds = ConcurrentHashMap.newKeySet();
+                    this.failedRecordIds.put(hbaseTableName, failedIds);
+                    /* the puts are sent in the background, after the writer has returned, so the failures are
+                     * recorded here and reported to the next writer of the table */
+                    mutator = this.conn.getBufferedMutator(new BufferedMutatorParams(TableName.valueOf(hbaseTableName))
+                            .writeBufferSize(this.queryConfig.getWriteBufferSize())
+                            .listener((e, failedMutator) -> {
+                                for (int i = 0; i < e.getNumExceptions(); i++) {
+                                    failedIds.add(Bytes.toString(e.getRow(i).getRow()));
+                                }
+                                log.error("Failed to write " + e.getNumExceptions() + " records to [" +
+                                        hbaseTableName + "]: " + e.getMessage(), e);
+                            }));
+                    this.mutators.put(hbaseTableName, mutator);
+                }
+            }
+        }
+        return mutator;
+    }
+
+    private void closeDataMutator(String tableName) {
+        String hbaseTableName = HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.DATA);
+        AnalyticsCommonUtils.closeQuietly(this.mutators.remove(hbaseTableName));
+        this.failedRecordIds.remove(hbaseTableName);
+    }
+
     @Override
     public void createTable(String tableName) throws AnalyticsException {
         /* If the table we're proposing to create already exists, return in silence */
@@ -111,22 +202,165 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         dataDescriptor.addFamily(new HColumnDescriptor(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME)
                 .setMaxVersions(1));
 
+        int saltBuckets = this.checkIndexSaltBuckets(this.queryConfig.getIndexSaltBuckets());
+        HTableDescriptor indexDescriptor = this.createIndexDescriptor(tableName, saltBuckets);
+
+        /* Table creation should fail if index cannot be created, so attempting to create index table first. */
+        Admin admin = null;
+        try {
+            admin = this.conn.getAdmin();
+            this.createIndexTable(admin, indexDescriptor, saltBuckets);
+            admin.createTable(dataDescriptor);
+            log.debug("Table [" + tableName + "] created");
+        } catch (IOException e) {
+            throw new AnalyticsException("Error creating table [" + tableName + "] : " + e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(admin);
+        }
+    }
+
+    private HTableDescriptor createIndexDescriptor(String tableName, int saltBuckets) {
         HTableDescriptor indexDescriptor = new HTableDescriptor(TableName.valueOf(
                 HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.INDEX)));
         /* creating table with standard column family "carbon-analytics-index" for storing timestamp -> ID index*/
         indexDescriptor.addFamily(new HColumnDescriptor(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME)
                 .setMaxVersions(1));
+        if (saltBuckets > 0) {
+            indexDescriptor.setValue(HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_ATTRIBUTE, String.valueOf(saltBuckets));
+        }
+        return indexDescriptor;
+    }
 
-        /* Table creation should fail if index cannot be created, so attempting to create index table first. */
+    private void createIndexTable(Admin admin, HTableDescriptor indexDescriptor, int saltBuckets) throws IOException {
+        if (saltBuckets > 1) {
+            /* pre-splitting on the bucket boundaries, so the buckets are written to in parallel from the start */
+            admin.createTable(indexDescriptor, HBaseUtils.generateIndexSplitKeys(saltBuckets));
+        } else {
+            admin.createTable(indexDescriptor);
+        }
+        this.indexSaltBuckets.put(indexDescriptor.getTableName().getNameAsString(), saltBuckets);
+    }
+
+    private void invalidateIndexSaltBuckets(String tableName) {
+        this.indexSaltBuckets.invalidate(HBaseUtils.generateTableName(tableName,
+                HBaseAnalyticsDSConstants.TableType.INDEX));
+    }
+
+    private int checkIndexSaltBuckets(int saltBuckets) throws AnalyticsException {
+        if (saltBuckets < 0 || saltBuckets > HBaseAnalyticsDSConstants.MAX_INDEX_SALT_BUCKETS) {
+            throw new AnalyticsException("The number of index salt buckets must be between 0 and " +
+                    HBaseAnalyticsDSConstants.MAX_INDEX_SALT_BUCKETS + ": " + saltBuckets);
+        }
+        return saltBuckets;
+    }
+
+    /**
+     * Returns the number of buckets the timestamp index of the given table is salted into, 0 if the table uses
+     * the unsalted index layout. The layout is read from the index table descriptor, so tables created before
+     * salting was enabled keep working with their original layout. It is cached for the configured index layout
+     * cache timeout.
+     */
+    private int lookupIndexSaltBuckets(String tableName) throws AnalyticsException {
+        String indexTableName = HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.INDEX);
+        Integer saltBuckets = this.indexSaltBuckets.getIfPresent(indexTableName);
+        if (saltBuckets != null) {
+            return saltBuckets;
+        }
         Admin admin = null;
         try {
             admin = this.conn.getAdmin();
-            admin.createTable(indexDescriptor);
-            admin.createTable(dataDescriptor);
-            log.debug("Table [" + tableName + "] created");
+            String value = admin.getTableDescriptor(TableName.valueOf(indexTableName)).getValue(
+                    HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_ATTRIBUTE);
+            saltBuckets = value == null ? 0 : Integer.parseInt(value);
+        } catch (TableNotFoundException e) {
+            throw new AnalyticsTableNotAvailableException(tableName);
         } catch (IOException e) {
-            throw new AnalyticsException("Error creating table [" + tableName + "] : " + e.getMessage(), e);
+            throw new AnalyticsException("Error reading the index layout of table [" + tableName + "] : " +
+                    e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(admin);
+        }
+        this.indexSaltBuckets.put(indexTableName, saltBuckets);
+        return saltBuckets;
+    }
+
+    /**
+     * Rebuilds the timestamp index of the given table from its data table, using the given number of salt buckets,
+     * 0 for the unsalted layout. This is the migration path for tables created before the index was salted, and is
+     * run through {@link HBaseIndexMigrationTool}.
+     * <p>
+     * The new index table is created disabled, and stays so for the index layout cache timeout. The writes of every
+     * node fail meanwhile, and each node has read the new layout by the time the table is enabled, so no entry of
+     * the old layout lands in the new index. The records put while the index is rebuilt are indexed by their
+     * writers, and the rebuild only adds the entries of the records already in the data table. The time range
+     * reads of the table are incomplete until the rebuild finishes.
+     *
+     * @param tableName   The name of the table whose index is to be rebuilt
+     * @param saltBuckets The number of salt buckets of the rebuilt index
+     * @throws AnalyticsException
+     */
+    public void migrateIndex(String tableName, int saltBuckets) throws AnalyticsException {
+        this.checkIndexSaltBuckets(saltBuckets);
+        if (!this.tableExists(tableName)) {
+            throw new AnalyticsTableNotAvailableException(tableName);
+        }
+        HTableDescriptor indexDescriptor = this.createIndexDescriptor(tableName, saltBuckets);
+        TableName indexTableName = indexDescriptor.getTableName();
+        Admin admin = null;
+        Table dataTable = null;
+        Table indexTable = null;
+        ResultScanner resultScanner = null;
+        try {
+            admin = this.conn.getAdmin();
+            admin.disableTable(indexTableName);
+            admin.deleteTable(indexTableName);
+            this.createIndexTable(admin, indexDescriptor, saltBuckets);
+            admin.disableTable(indexTableName);
+            this.invalidateIndexSaltBuckets(tableName);
+            int cacheTimeout = this.queryConfig.getIndexLayoutCacheTimeout();
+            if (cacheTimeout > 0) {
+                log.info("Waiting " + cacheTimeout + " seconds for all the nodes to read the new index layout of " +
+                        "table [" + tableName + "]");
+                Thread.sleep(TimeUnit.SECONDS.toMillis(cacheTimeout));
+            }
+            admin.enableTable(indexTableName);
+            dataTable = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tableName,
+                    HBaseAnalyticsDSConstants.TableType.DATA)));
+            indexTable = this.conn.getTable(indexTableName);
+            Scan dataScan = new Scan();
+            dataScan.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
+                    HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME);
+            resultScanner = dataTable.getScanner(dataScan);
+            List<Put> indexPuts = new ArrayList<>();
+            long count = 0;
+            for (Result result : resultScanner) {
+                Cell tsCell = result.getColumnLatestCell(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
+                        HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME);
+                if (tsCell == null || tsCell.getValueLength() == 0) {
+                    continue;
+                }
+                String recordId = Bytes.toString(result.getRow());
+                indexPuts.add(this.putIndexData(recordId, Bytes.toLong(CellUtil.cloneValue(tsCell)), saltBuckets));
+                if (indexPuts.size() >= this.queryConfig.getBatchSize()) {
+                    indexTable.put(indexPuts);
+                    count += indexPuts.size();
+                    indexPuts.clear();
+                }
+            }
+            indexTable.put(indexPuts);
+            count += indexPuts.size();
+            log.info("Rebuilt the index of table [" + tableName + "] with " + count + " entries in " + saltBuckets +
+                    " salt buckets.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyticsException("Interrupted while migrating the index of table [" + tableName + "]", e);
+        } catch (IOException e) {
+            throw new AnalyticsException("Error migrating the index of table [" + tableName + "] : " +
+                    e.getMessage(), e);
         } finally {
+            AnalyticsCommonUtils.closeQuietly(resultScanner);
+            AnalyticsCommonUtils.closeQuietly(indexTable);
+            AnalyticsCommonUtils.closeQuietly(dataTable);
             AnalyticsCommonUtils.closeQuietly(admin);
         }
     }
@@ -161,6 +395,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         TableName indexTable = TableName.valueOf(HBaseUtils.generateTableName(tableName,
                 HBaseAnalyticsDSConstants.TableType.INDEX));
         try {
+            this.closeDataMutator(tableName);
             admin = this.conn.getAdmin();
             /* delete the data table first */
             admin.disableTable(dataTable);
@@ -168,6 +403,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             /* finally, delete the index table */
             admin.disableTable(indexTable);
             admin.deleteTable(indexTable);
+            this.indexSaltBuckets.invalidate(indexTable.getNameAsString());
             log.debug("Table [" + tableName + "] deleted");
         } catch (IOException e) {
             throw new AnalyticsException("Error deleting table [" + tableName + "] : " + e.getMessage(), e);
@@ -182,27 +418,29 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         if (records.isEmpty()) {
             return;
         }
-        Table table, indexTable;
         Map<String, List<Record>> recordBatches = this.generateRecordBatches(records);
         try {
-            /* iterating over record batches */
+            /* iterating over record batches, the index entries of a batch are written before its data is handed to
+             * the shared mutator, which sends it out in the background once its buffer fills or the flush interval
+             * passes, so that a record is never readable without its index entry */
             for (Map.Entry<String, List<Record>> entry : recordBatches.entrySet()) {
                 tableName = entry.getKey();
-                table = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tableName,
-                        HBaseAnalyticsDSConstants.TableType.DATA)));
-                indexTable = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tableName,
-                        HBaseAnalyticsDSConstants.TableType.INDEX)));
+                this.checkFailedPuts(tableName);
                 /* Populating batched Put instances from records in a single batch */
-                List<List<Put>> allPuts = this.populatePuts(recordBatches.get(entry.getKey()));
-                /* Using Table.put(List<Put>) method to minimise network calls per table */
+                List<List<Put>> allPuts = this.populatePuts(entry.getValue(), this.lookupIndexSaltBuckets(tableName));
+                Table indexTable = this.conn.getTable(TableName.valueOf(
+                        HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.INDEX)));
                 try {
                     indexTable.put(allPuts.get(0));
-                    table.put(allPuts.get(1));
-                    log.debug("Processed " + records.size() + " PUT operations for [" + tableName + "]");
+                } catch (IOException e) {
+                    /* the index may have been migrated by another node, so its layout is read again by the next put */
+                    this.invalidateIndexSaltBuckets(tableName);
+                    throw e;
                 } finally {
-                    AnalyticsCommonUtils.closeQuietly(table);
                     AnalyticsCommonUtils.closeQuietly(indexTable);
                 }
+                this.getDataMutator(tableName).mutate(allPuts.get(1));
+                log.debug("Processed " + entry.getValue().size() + " PUT operations for [" + tableName + "]");
             }
         } catch (TableNotFoundException | RetriesExhaustedException e) {
             throw new AnalyticsTableNotAvailableException(tableName);
@@ -211,7 +449,55 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
-    private List<List<Put>> populatePuts(List<Record> records) throws AnalyticsException {
+    /**
+     * Reports the records of the table whose buffered puts failed since the last put to it. The shared mutator
+     * sends the puts in the background, so its exception listener records and logs the failures, and the next
+     * writer of the table fails with them.
+     */
+    private void checkFailedPuts(String tableName) throws AnalyticsException {
+        Set<String> failedIds = this.failedRecordIds.get(HBaseUtils.generateTableName(tableName,
+                HBaseAnalyticsDSConstants.TableType.DATA));
+        if (failedIds == null || failedIds.isEmpty()) {
+            return;
+        }
+        List<String> reportedIds = new ArrayList<>();
+        for (Iterator<String> itr = failedIds.iterator(); itr.hasNext(); ) {
+            reportedIds.add(itr.next());
+            itr.remove();
+        }
+        throw new AnalyticsException("Error adding new records to table [" + tableName + "]: " +
+                reportedIds.size() + " previously put records could not be written: " +
+                reportedIds.subList(0, Math.min(reportedIds.size(), MAX_REPORTED_FAILED_IDS)));
+    }
+
+    /**
+     * Sends the buffered puts of the given table, so that a read or delete which follows sees them.
+     */
+    private void flushDataMutator(String tableName) throws AnalyticsException {
+        BufferedMutator mutator = this.mutators.get(HBaseUtils.generateTableName(tableName,
+                HBaseAnalyticsDSConstants.TableType.DATA));
+        if (mutator == null) {
+            return;
+        }
+        try {
+            mutator.flush();
+        } catch (IOException e) {
+            throw new AnalyticsException("Error writing the buffered records of table [" + tableName + "]: " +
+                    e.getMessage(), e);
+        }
+    }
+
+    private void flushDataMutators() {
+        for (Map.Entry<String, BufferedMutator> entry : this.mutators.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (Exception e) {
+                log.error("Error writing the buffered records of [" + entry.getKey() + "]: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private List<List<Put>> populatePuts(List<Record> records, int saltBuckets) throws AnalyticsException {
         byte[] data;
         List<Put> puts = new ArrayList<>();
         List<Put> indexPuts = new ArrayList<>();
@@ -232,7 +518,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                     HBaseAnalyticsDSConstants.ANALYTICS_ROWDATA_QUALIFIER_NAME, data);
             put.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_DATA_COLUMN_FAMILY_NAME,
                     HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME, Bytes.toBytes(timestamp));
-            indexPuts.add(this.putIndexData(record));
+            indexPuts.add(this.putIndexData(recordId, timestamp, saltBuckets));
             puts.add(put);
         }
         List<List<Put>> output = new ArrayList<>();
@@ -241,12 +527,12 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         return output;
     }
 
-    private Put putIndexData(Record record) {
-        Put indexPut = new Put(HBaseUtils.encodeLong(record.getTimestamp()));
+    private Put putIndexData(String recordId, long timestamp, int saltBuckets) {
+        Put indexPut = new Put(HBaseUtils.generateIndexKey(recordId, timestamp, saltBuckets));
         /* Setting the column qualifier the same as the column value to enable multiple columns per row with
         * unique qualifiers, since we will anyway not use the qualifier during index read */
-        indexPut.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, Bytes.toBytes(record.getId()),
-                Bytes.toBytes(record.getId()));
+        indexPut.addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, Bytes.toBytes(recordId),
+                Bytes.toBytes(recordId));
         return indexPut;
     }
 
@@ -274,12 +560,39 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             return this.computeRegionSplits(tableName, columns, recordsCount);
         } else {
             log.debug("Performing GET through timestamp slices for table [" + tableName + "]");
+            int saltBuckets = this.lookupIndexSaltBuckets(tableName);
+            /* a count limited read has to merge the buckets in timestamp order to honour the limit */
+            if (saltBuckets > 1 && numPartitionsHint > 1 && (recordsCount < 0 || recordsCount == Integer.MAX_VALUE)) {
+                return this.computeIndexBucketSplits(tableName, columns, timeFrom, timeTo, recordsCount, saltBuckets);
+            }
             return new HBaseTimestampRecordGroup[]{
-                    new HBaseTimestampRecordGroup(tableName, columns, timeFrom, timeTo, recordsCount)
+                    new HBaseTimestampRecordGroup(tableName, columns, timeFrom, timeTo, recordsCount, saltBuckets, -1,
+                            "localhost")
             };
         }
     }
 
+    private RecordGroup[] computeIndexBucketSplits(String tableName, List<String> columns, long timeFrom, long timeTo,
+                                                   int recordsCount, int saltBuckets) throws AnalyticsException {
+        RecordGroup[] result = new RecordGroup[saltBuckets];
+        String formattedTableName = HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.INDEX);
+        RegionLocator locator = null;
+        try {
+            locator = this.conn.getRegionLocator(TableName.valueOf(formattedTableName));
+            for (int i = 0; i < saltBuckets; i++) {
+                String location = locator.getRegionLocation(new byte[]{(byte) i}).getHostname();
+                result[i] = new HBaseTimestampRecordGroup(tableName, columns, timeFrom, timeTo, recordsCount,
+                        saltBuckets, i, location);
+            }
+        } catch (IOException e) {
+            throw new AnalyticsException("Error computing index bucket splits for table [" + tableName + "] : " +
+                    e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(locator);
+        }
+        return result;
+    }
+
     @Override
     public RecordGroup[] get(String tableName, int numPartitionsHint, List<String> columns,
                              List<String> ids) throws AnalyticsException {
@@ -287,26 +600,39 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             throw new AnalyticsTableNotAvailableException(tableName);
         }
         log.debug("Performing GET by direct Record ID lookup for table [" + tableName + "]");
-        return new HBaseIDRecordGroup[]{
-                new HBaseIDRecordGroup(tableName, columns, ids)
-        };
+        if (numPartitionsHint <= 1 || ids.size() <= 1) {
+            return new HBaseIDRecordGroup[]{
+                    new HBaseIDRecordGroup(tableName, columns, ids)
+            };
+        }
+        List<Integer[]> idRanges = AnalyticsCommonUtils.splitNumberRange(ids.size(), numPartitionsHint);
+        HBaseIDRecordGroup[] result = new HBaseIDRecordGroup[idRanges.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer[] idRange = idRanges.get(i);
+            result[i] = new HBaseIDRecordGroup(tableName, columns,
+                    new ArrayList<>(ids.subList(idRange[0], idRange[0] + idRange[1])));
+        }
+        return result;
     }
 
     @Override
     public AnalyticsIterator<Record> readRecords(RecordGroup recordGroup) throws AnalyticsException {
         if (recordGroup instanceof HBaseIDRecordGroup) {
             HBaseIDRecordGroup idRecordGroup = (HBaseIDRecordGroup) recordGroup;
+            this.flushDataMutator(idRecordGroup.getTableName());
             return this.getRecords(idRecordGroup.getTableName(),
                     idRecordGroup.getColumns(), idRecordGroup.getIds());
 
         } else if (recordGroup instanceof HBaseTimestampRecordGroup) {
             HBaseTimestampRecordGroup tsRecordGroup = (HBaseTimestampRecordGroup) recordGroup;
+            this.flushDataMutator(tsRecordGroup.getTableName());
             return this.getRecords(tsRecordGroup.getTableName(),
                     tsRecordGroup.getColumns(), tsRecordGroup.getStartTime(), tsRecordGroup.getEndTime(),
-                    tsRecordGroup.getRecordsCount());
+                    tsRecordGroup.getRecordsCount(), tsRecordGroup.getSaltBuckets(), tsRecordGroup.getBucket());
 
         } else if (recordGroup instanceof HBaseRegionSplitRecordGroup) {
             HBaseRegionSplitRecordGroup rsRecordGroup = (HBaseRegionSplitRecordGroup) recordGroup;
+            this.flushDataMutator(rsRecordGroup.getTableName());
             return this.getRecords(rsRecordGroup.getTableName(),
                     rsRecordGroup.getColumns(), rsRecordGroup.getRecordsCount(), rsRecordGroup.getStartRow(), rsRecordGroup.getEndRow());
         } else {
@@ -317,14 +643,15 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
     private AnalyticsIterator<Record> getRecords(String tableName, List<String> columns, List<String> ids)
             throws AnalyticsException {
         int batchSize = this.queryConfig.getBatchSize();
-        return new HBaseRecordIterator(tableName, columns, ids, this.conn, batchSize);
+        return new HBaseRecordIterator(tableName, columns, ids, this.conn, batchSize, this.readPrefetchExecutor);
     }
 
     private AnalyticsIterator<Record> getRecords(String tableName, List<String> columns, long startTime,
-                                                 long endTime, int recordsCount)
+                                                 long endTime, int recordsCount, int saltBuckets, int bucket)
             throws AnalyticsException {
         int batchSize = this.queryConfig.getBatchSize();
-        return new HBaseTimestampIterator(tableName, columns, startTime, endTime, recordsCount, this.conn, batchSize);
+        return new HBaseTimestampIterator(tableName, columns, startTime, endTime, recordsCount, this.conn, batchSize,
+                saltBuckets, bucket, this.readPrefetchExecutor, this.indexRepairQueue);
     }
 
     private AnalyticsIterator<Record> getRecords(String tableName, List<String> columns, int recordsCount, byte[] startRow, byte[] endRow)
@@ -340,9 +667,12 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
             final Pair<byte[][], byte[][]> startEndKeys = locator.getStartEndKeys();
             byte[][] startKeys = startEndKeys.getFirst();
             byte[][] endKeys = startEndKeys.getSecond();
+            Map<String, Long> regionSizes = this.lookupRegionSizes();
             for (int i = 0; i < startKeys.length && i < endKeys.length; i++) {
+                HRegionLocation location = locator.getRegionLocation(startKeys[i]);
+                Long regionSize = regionSizes.get(location.getRegionInfo().getRegionNameAsString());
                 RecordGroup regionalGroup = new HBaseRegionSplitRecordGroup(tableName, columns, recordsCount,
-                        startKeys[i], endKeys[i], locator.getRegionLocation(startKeys[i]).getHostname());
+                        startKeys[i], endKeys[i], location.getHostname(), regionSize == null ? -1 : regionSize);
                 regionalGroups.add(regionalGroup);
             }
         } catch (IOException e) {
@@ -351,8 +681,119 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         return regionalGroups.toArray(new RecordGroup[regionalGroups.size()]);
     }
 
+    /**
+     * Looks up the on-disk and in-memory size of every online region from the region server load reports,
+     * keyed by the region name. This is best effort, and an empty map is returned if the cluster status
+     * cannot be read.
+     */
+    private Map<String, Long> lookupRegionSizes() {
+        Map<String, Long> result = new HashMap<>();
+        Admin admin = null;
+        try {
+            admin = this.conn.getAdmin();
+            ClusterStatus status = admin.getClusterStatus();
+            for (ServerName server : status.getServers()) {
+                for (RegionLoad regionLoad : status.getLoad(server).getRegionsLoad().values()) {
+                    long size = (regionLoad.getStorefileSizeMB() + regionLoad.getMemStoreSizeMB()) * 1024L * 1024L;
+                    result.put(regionLoad.getNameAsString(), size);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to look up HBase region sizes: " + e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(admin);
+        }
+        return result;
+    }
+
+    @Override
+    public RecordGroupStatistics getStatistics(RecordGroup recordGroup) throws AnalyticsException {
+        if (recordGroup instanceof HBaseIDRecordGroup) {
+            return new RecordGroupStatistics(((HBaseIDRecordGroup) recordGroup).getIds().size(),
+                    RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN);
+        } else if (recordGroup instanceof HBaseRegionSplitRecordGroup) {
+            long regionSize = ((HBaseRegionSplitRecordGroup) recordGroup).getRegionSize();
+            if (regionSize < 0) {
+                return null;
+            }
+            return new RecordGroupStatistics(RecordGroupStatistics.UNKNOWN, regionSize,
+                    RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN);
+        } else if (recordGroup instanceof HBaseTimestampRecordGroup) {
+            return this.lookupTimestampStatistics((HBaseTimestampRecordGroup) recordGroup);
+        } else {
+            throw new AnalyticsException("Invalid HBase RecordGroup implementation: " + recordGroup.getClass());
+        }
+    }
+
+    /**
+     * Counts the index entries of a timestamp slice with a key only scan, so the data rows are not read. The
+     * index may still hold entries of deleted records until those are repaired, so the count is approximate.
+     */
+    private RecordGroupStatistics lookupTimestampStatistics(HBaseTimestampRecordGroup recordGroup)
+            throws AnalyticsException {
+        String formattedTableName = HBaseUtils.generateTableName(recordGroup.getTableName(),
+                HBaseAnalyticsDSConstants.TableType.INDEX);
+        long count = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        Table indexTable = null;
+        try {
+            indexTable = this.conn.getTable(TableName.valueOf(formattedTableName));
+            for (byte[] prefix : HBaseUtils.generateIndexPrefixes(recordGroup.getSaltBuckets(),
+                    recordGroup.getBucket())) {
+                Scan indexScan = new Scan();
+                if (recordGroup.getStartTime() >= 0L) {
+                    indexScan.setStartRow(Bytes.add(prefix, HBaseUtils.encodeLong(recordGroup.getStartTime())));
+                } else {
+                    indexScan.setStartRow(prefix);
+                }
+                if (!(recordGroup.getEndTime() >= Long.MAX_VALUE - 1)) {
+                    indexScan.setStopRow(Bytes.add(prefix, HBaseUtils.encodeLong(recordGroup.getEndTime())));
+                } else {
+                    indexScan.setStopRow(HBaseUtils.generateIndexPrefixStopRow(prefix));
+                }
+                indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
+                indexScan.setFilter(new KeyOnlyFilter());
+                indexScan.setCaching(this.queryConfig.getBatchSize());
+                indexScan.setCacheBlocks(false);
+                try (ResultScanner scanner = indexTable.getScanner(indexScan)) {
+                    for (Result rowResult : scanner) {
+                        /* an index row holds one column per record with the same timestamp */
+                        count += rowResult.size();
+                        long timestamp = HBaseUtils.decodeIndexTimestamp(rowResult.getRow());
+                        minTimestamp = Math.min(minTimestamp, timestamp);
+                        maxTimestamp = Math.max(maxTimestamp, timestamp);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new AnalyticsException("Error in looking up the statistics of table '" +
+                    recordGroup.getTableName() + "': " + e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(indexTable);
+        }
+        if (count == 0) {
+            return new RecordGroupStatistics(0, 0, RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN);
+        }
+        int recordsCount = recordGroup.getRecordsCount();
+        if (recordsCount >= 0 && recordsCount != Integer.MAX_VALUE) {
+            count = Math.min(count, recordsCount);
+        }
+        return new RecordGroupStatistics(count, RecordGroupStatistics.UNKNOWN, minTimestamp, maxTimestamp);
+    }
+
     @Override
     public void delete(String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        /* buffered puts sent after the delete would bring the records back */
+        this.flushDataMutator(tableName);
+        int saltBuckets = this.lookupIndexSaltBuckets(tableName);
+        /* the range has to be deleted from every bucket of a salted index */
+        for (byte[] prefix : HBaseUtils.generateIndexPrefixes(saltBuckets, -1)) {
+            this.delete(tableName, prefix, timeFrom, timeTo);
+        }
+    }
+
+    private void delete(String tableName, byte[] indexPrefix, long timeFrom, long timeTo) throws AnalyticsException {
         int batchSize = this.queryConfig.getBatchSize();
         int batchCounter = 0;
         ListMultimap<String, Long> recordsWithRef = ArrayListMultimap.create();
@@ -361,10 +802,14 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         Table indexTable = null;
         Scan indexScan = new Scan();
         if (timeFrom >= 0L) {
-            indexScan.setStartRow(HBaseUtils.encodeLong(timeFrom));
+            indexScan.setStartRow(Bytes.add(indexPrefix, HBaseUtils.encodeLong(timeFrom)));
+        } else {
+            indexScan.setStartRow(indexPrefix);
         }
         if (!(timeTo >= Long.MAX_VALUE - 1)) {
-            indexScan.setStopRow(HBaseUtils.encodeLong(timeTo));
+            indexScan.setStopRow(Bytes.add(indexPrefix, HBaseUtils.encodeLong(timeTo)));
+        } else {
+            indexScan.setStopRow(HBaseUtils.generateIndexPrefixStopRow(indexPrefix));
         }
         indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
         ResultScanner resultScanner = null;
@@ -379,7 +824,7 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                         /* recordId -> the record ID which corresponds to the index lookup */
                         String recordId = Bytes.toString(CellUtil.cloneValue(cell));
                         /* timeStampRef -> what actual index entry was used to retrieve this particular record ID */
-                        Long timeStampRef = Bytes.toLong(rowResult.getRow());
+                        Long timeStampRef = HBaseUtils.decodeIndexTimestamp(rowResult.getRow());
                         recordsWithRef.put(recordId, timeStampRef);
                         batchCounter++;
                     }
@@ -408,10 +853,12 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
 
     @Override
     public void delete(String tableName, List<String> ids) throws AnalyticsException {
+        this.flushDataMutator(tableName);
         Table dataTable = null;
         List<Delete> dataDeletes = new ArrayList<>();
         String dataTableName = HBaseUtils.generateTableName(tableName, HBaseAnalyticsDSConstants.TableType.DATA);
-        List<Delete> timestampDeletes = this.lookupIndexDeletes(dataTableName, ids, tableName);
+        List<Delete> timestampDeletes = this.lookupIndexDeletes(dataTableName, ids, tableName,
+                this.lookupIndexSaltBuckets(tableName));
         dataDeletes.addAll(ids.stream().map(recordId -> new Delete(Bytes.toBytes(recordId))).collect(Collectors.toList()));
         try {
             dataTable = this.conn.getTable(TableName.valueOf(dataTableName));
@@ -426,8 +873,8 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
-    private List<Delete> lookupIndexDeletes(String dataTableName, List<String> rowIds, String tableName)
-            throws AnalyticsException {
+    private List<Delete> lookupIndexDeletes(String dataTableName, List<String> rowIds, String tableName,
+                                            int saltBuckets) throws AnalyticsException {
         List<Delete> indexDeletes = new ArrayList<>();
         List<Get> gets = new ArrayList<>();
         Table dataTable = null;
@@ -444,7 +891,8 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
                             HBaseAnalyticsDSConstants.ANALYTICS_TS_QUALIFIER_NAME);
                     byte[] data = CellUtil.cloneValue(dataCell);
                     if (data.length > 0) {
-                        indexDeletes.add(new Delete(data).addColumn(
+                        indexDeletes.add(new Delete(HBaseUtils.generateIndexKey(Bytes.toString(res.getRow()),
+                                Bytes.toLong(data), saltBuckets)).addColumn(
                                 HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, res.getRow()));
                     }
                 }
@@ -529,6 +977,21 @@ public class HBaseAnalyticsRecordStore implements AnalyticsRecordStore {
 
     @Override
     public void destroy() throws AnalyticsException {
+        if (this.flushExecutor != null) {
+            this.flushExecutor.shutdownNow();
+        }
+        /* closing a mutator sends the puts left in its buffer */
+        for (BufferedMutator mutator : this.mutators.values()) {
+            AnalyticsCommonUtils.closeQuietly(mutator);
+        }
+        this.mutators.clear();
+        this.failedRecordIds.clear();
+        if (this.indexRepairQueue != null) {
+            this.indexRepairQueue.shutdown();
+        }
+        if (this.readPrefetchExecutor != null) {
+            this.readPrefetchExecutor.shutdownNow();
+        }
         try {
             this.conn.close();
             log.debug("Closed HBase connection transients successfully.");
@@ -0,0 +1,69 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
+
+import java.io.File;
+
+/**
+ * Command line tool which rebuilds the timestamp index of existing tables with the given number of salt buckets,
+ * see {@link HBaseAnalyticsRecordStore#migrateIndex(String, int)}. The HBase client configuration is read from the
+ * hbase-site.xml on the class path, and the analytics configuration from the hbase-analytics-config.xml the nodes
+ * use, so the migration waits for their index layout cache timeout.
+ */
+public class HBaseIndexMigrationTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            printUsage();
+            System.exit(1);
+        }
+        HBaseAnalyticsConfigurationEntry config = HBaseUtils.loadConfiguration(new File(args[0]));
+        int saltBuckets;
+        try {
+            saltBuckets = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            printUsage();
+            System.exit(1);
+            return;
+        }
+        Connection conn = ConnectionFactory.createConnection(HBaseConfiguration.create());
+        HBaseAnalyticsRecordStore store = new HBaseAnalyticsRecordStore(conn, config);
+        try {
+            for (int i = 2; i < args.length; i++) {
+                System.out.println("Migrating the index of table [" + args[i] + "] to " + saltBuckets +
+                        " salt buckets..");
+                store.migrateIndex(args[i], saltBuckets);
+            }
+        } finally {
+            store.destroy();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: HBaseIndexMigrationTool <hbase-analytics-config.xml> <salt-buckets> <table>...\n"
+                + "  Rebuilds the timestamp index of the given tables with the given number of salt buckets, 0 for\n"
+                + "  the unsalted layout. Writes to a table fail until its new index is enabled, and time range reads\n"
+                + "  are incomplete until the rebuild finishes. Set index-salt-buckets in the configuration as well,\n"
+                + "  for the layout of the tables created later.");
+    }
+}
@@ -0,0 +1,99 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Table;
+import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes obsolete secondary index entries found while reading, in the background, so the readers do not wait
+ * on the deletes. The queue is bounded, and the batches which do not fit are dropped, since an obsolete entry
+ * which is not deleted is found and submitted again by the next read over it.
+ */
+class HBaseIndexRepairQueue {
+
+    private static final Log log = LogFactory.getLog(HBaseIndexRepairQueue.class);
+
+    private Connection conn;
+
+    private ThreadPoolExecutor executor;
+
+    HBaseIndexRepairQueue(Connection conn, int queueSize) {
+        this.conn = conn;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                    Thread thread = new Thread(runnable, "HBaseIndexRepairQueue");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Schedules the given index entry deletes of the given table.
+     */
+    void submit(String tableName, List<Delete> deletes) {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        this.executor.execute(() -> this.delete(tableName, deletes));
+    }
+
+    private void delete(String tableName, List<Delete> deletes) {
+        Table table = null;
+        try {
+            table = this.conn.getTable(TableName.valueOf(HBaseUtils.generateTableName(tableName,
+                    HBaseAnalyticsDSConstants.TableType.INDEX)));
+            table.delete(deletes);
+        } catch (IOException e) {
+            /* not fatal, the entries are found again by the next read */
+            log.warn("Error pruning obsolete entries from the secondary index of table [" + tableName + "] : " +
+                    e.getMessage(), e);
+        } finally {
+            AnalyticsCommonUtils.closeQuietly(table);
+        }
+    }
+
+    /**
+     * Stops the queue, waiting a while for the pending deletes to be done.
+     */
+    void shutdown() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
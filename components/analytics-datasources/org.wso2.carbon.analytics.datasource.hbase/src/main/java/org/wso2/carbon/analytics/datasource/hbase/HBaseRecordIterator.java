@@ -32,6 +32,9 @@ import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Subclass of java.util.Iterator for streaming in records from ID lookup
@@ -48,9 +51,23 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
     private Table table;
     private Iterator<Record> subIterator = Collections.emptyIterator();
 
+    private ExecutorService prefetchExecutor;
+    private Future<List<Record>> prefetchedRecords;
+
     public HBaseRecordIterator(String tableName, List<String> columns, List<String> recordIds,
                                Connection conn, int batchSize) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        this(tableName, columns, recordIds, conn, batchSize, null);
+    }
+
+    /**
+     * Creates an iterator over the records of the given ids. If a prefetch executor is given, the next batch of
+     * records is read in the background while the current one is consumed.
+     */
+    public HBaseRecordIterator(String tableName, List<String> columns, List<String> recordIds, Connection conn,
+                               int batchSize, ExecutorService prefetchExecutor)
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
         this.init(conn, tableName, columns);
+        this.prefetchExecutor = prefetchExecutor;
         if (batchSize <= 0) {
             throw new AnalyticsException("Error batching records: the batch size should be a positive integer");
         } else {
@@ -63,12 +80,14 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
 
     @Override
     public boolean hasNext() {
-        boolean hasMore = this.subIterator.hasNext();
-        if (!hasMore) {
+        /* a batch can come back empty if none of its records exist, so keep going until the ids are exhausted */
+        while (!this.subIterator.hasNext() && (this.prefetchedRecords != null ||
+                (!this.fullyFetched && this.totalBatches > 0))) {
             try {
                 this.fetch();
             } catch (AnalyticsTableNotAvailableException e) {
                 this.subIterator = Collections.emptyIterator();
+                break;
             }
         }
         return this.subIterator.hasNext();
@@ -89,9 +108,40 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
     }
 
     private void fetch() throws AnalyticsTableNotAvailableException {
-        if (fullyFetched || this.totalBatches == 0) {
+        List<Record> records;
+        if (this.prefetchedRecords != null) {
+            records = this.awaitPrefetchedRecords();
+        } else if (fullyFetched || this.totalBatches == 0) {
             return;
+        } else {
+            records = this.loadNextBatch();
         }
+        this.subIterator = records.iterator();
+        if (!this.fullyFetched && this.prefetchExecutor != null) {
+            /* only one batch is in flight at a time, so the batch index is never accessed concurrently */
+            this.prefetchedRecords = this.prefetchExecutor.submit(this::loadNextBatch);
+        }
+    }
+
+    private List<Record> awaitPrefetchedRecords() throws AnalyticsTableNotAvailableException {
+        try {
+            return this.prefetchedRecords.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HBaseRuntimeException("Interrupted while reading data from table [" + this.tableName + "]", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalyticsTableNotAvailableException) {
+                throw (AnalyticsTableNotAvailableException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new HBaseRuntimeException("Error reading data from table [" + this.tableName + "]", e.getCause());
+        } finally {
+            this.prefetchedRecords = null;
+        }
+    }
+
+    private List<Record> loadNextBatch() throws AnalyticsTableNotAvailableException {
         List<String> currentBatch = this.batchedIds.get(this.currentBatchIndex);
         List<Record> fetchedRecords = new ArrayList<>();
         List<Get> gets = new ArrayList<>();
@@ -117,7 +167,6 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
                     }
                 }
             }
-            this.subIterator = fetchedRecords.iterator();
         } catch (Exception e) {
             if (e instanceof RetriesExhaustedException) {
                 throw new AnalyticsTableNotAvailableException(tableName);
@@ -130,6 +179,7 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
             this.cleanup();
             this.fullyFetched = true;
         }
+        return fetchedRecords;
     }
 
     private void init(Connection conn, String tableName, List<String> columns) throws AnalyticsException {
@@ -149,6 +199,17 @@ public class HBaseRecordIterator implements AnalyticsIterator<Record> {
 
     @Override
     public void close() throws IOException {
+        if (this.prefetchedRecords != null) {
+            /* the prefetch reads through the table, so it has to finish before the table is closed */
+            try {
+                this.prefetchedRecords.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+                /* the records are not needed anymore */
+            }
+            this.prefetchedRecords = null;
+        }
         cleanup();
     }
 }
\ No newline at end of file
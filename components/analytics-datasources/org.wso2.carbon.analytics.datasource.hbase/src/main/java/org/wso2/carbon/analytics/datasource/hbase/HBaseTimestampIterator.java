@@ -35,6 +35,9 @@ import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -48,9 +51,13 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
     private int recordsCount;
     private int globalCounter;
 
-    private byte[] latestRow;
-    private byte[] endRow;
-    private static final long POSTFIX = 1L;
+    private long timeFrom;
+    private long timeTo;
+    private int saltBuckets;
+    /* the index row key prefix of every bucket scanned, and the last row read from each of them */
+    private byte[][] indexPrefixes;
+    private byte[][] latestRows;
+    private boolean[] bucketsExhausted;
 
     private boolean fullyFetched;
     private boolean noStartTime = false;
@@ -61,24 +68,43 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
 
     private Connection connection;
 
+    private ExecutorService prefetchExecutor;
+    private Future<List<Record>> prefetchedRecords;
+    private HBaseIndexRepairQueue indexRepairQueue;
+
     HBaseTimestampIterator(String tableName, List<String> columns, long timeFrom, long timeTo, int recordsCount,
                            Connection conn, int batchSize) throws AnalyticsException {
+        this(tableName, columns, timeFrom, timeTo, recordsCount, conn, batchSize, 0, -1, null, null);
+    }
+
+    /**
+     * Creates an iterator over the records of the given time range, read through a timestamp index salted into
+     * the given number of buckets. If a bucket is given only that bucket is read, else the buckets are scanned
+     * together, and their entries merged in timestamp order. If a prefetch executor is given, the next batch is
+     * read in the background while the current one is consumed, and if an index repair queue is given, the
+     * obsolete index entries found are deleted through it, rather than inline.
+     */
+    HBaseTimestampIterator(String tableName, List<String> columns, long timeFrom, long timeTo, int recordsCount,
+                           Connection conn, int batchSize, int saltBuckets, int bucket,
+                           ExecutorService prefetchExecutor, HBaseIndexRepairQueue indexRepairQueue)
+            throws AnalyticsException {
         if ((timeFrom > timeTo) || (batchSize <= 0)) {
             throw new AnalyticsException("Invalid parameters specified for reading data from table [" + tableName + "]");
         } else {
             this.init(conn, tableName, columns, recordsCount, batchSize);
+            this.prefetchExecutor = prefetchExecutor;
+            this.indexRepairQueue = indexRepairQueue;
+            this.saltBuckets = saltBuckets;
+            this.indexPrefixes = HBaseUtils.generateIndexPrefixes(saltBuckets, bucket);
+            this.latestRows = new byte[this.indexPrefixes.length][];
+            this.bucketsExhausted = new boolean[this.indexPrefixes.length];
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
             if (timeFrom < 0) {
                 this.noStartTime = true;
-                /* Setting param to null, to recognize the first ever run. It will never become null after the first run. */
-                this.latestRow = null;
-            } else {
-                /* Setting the initial row to start time -1 because it will soon be incremented by 1L. */
-                this.latestRow = HBaseUtils.encodeLong(timeFrom - POSTFIX);
             }
             if (timeTo >= Long.MAX_VALUE - 1) {
                 this.noStopTime = true;
-            } else {
-                this.endRow = HBaseUtils.encodeLong(timeTo);
             }
             /* pre-fetching from HBase and populating records for the first time */
             this.fetchRecords();
@@ -113,13 +139,58 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
     }
 
     private void fetchRecords() throws AnalyticsTableNotAvailableException {
-        if (this.fullyFetched) {
+        List<Record> records;
+        if (this.prefetchedRecords != null) {
+            records = this.awaitPrefetchedRecords();
+        } else if (this.fullyFetched) {
             return;
+        } else {
+            records = this.loadRecords();
         }
-        ListMultimap<String, Long> batchedResults = this.populateNextRecordBatch();
-        if (batchedResults.size() == 0) {
-            return;
+        this.subIterator = records.iterator();
+        if (!this.fullyFetched && this.prefetchExecutor != null) {
+            /* only one load is in flight at a time, so the scan state is never accessed concurrently */
+            this.prefetchedRecords = this.prefetchExecutor.submit(this::loadRecords);
+        }
+    }
+
+    private List<Record> awaitPrefetchedRecords() throws AnalyticsTableNotAvailableException {
+        try {
+            return this.prefetchedRecords.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HBaseRuntimeException("Interrupted while reading data from table [" + this.tableName + "]", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalyticsTableNotAvailableException) {
+                throw (AnalyticsTableNotAvailableException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new HBaseRuntimeException("Error reading data from table [" + this.tableName + "]", e.getCause());
+        } finally {
+            this.prefetchedRecords = null;
         }
+    }
+
+    /**
+     * Reads the next non-empty batch of records, skipping the batches whose index entries were all obsolete.
+     */
+    private List<Record> loadRecords() throws AnalyticsTableNotAvailableException {
+        List<Record> records = Collections.emptyList();
+        while (records.isEmpty() && !this.fullyFetched) {
+            ListMultimap<String, Long> batchedResults = this.populateNextRecordBatch();
+            if (batchedResults.size() > 0) {
+                records = this.lookupRecords(batchedResults);
+            }
+        }
+        if (this.fullyFetched) {
+            this.cleanup();
+        }
+        return records;
+    }
+
+    private List<Record> lookupRecords(ListMultimap<String, Long> batchedResults)
+            throws AnalyticsTableNotAvailableException {
         Set<String> colSet = null;
         List<Record> fetchedRecords = new ArrayList<>();
         List<Get> gets = new ArrayList<>();
@@ -148,9 +219,15 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                             fetchedRecords.add(record);
                             indexEntries.remove(originalTimestamp);
                         }
-                        List<Delete> obsoleteEntries = indexEntries.stream().map(timestamp -> new Delete(Bytes.toBytes(timestamp)).addColumn(
-                                HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, currentResult.getRow())).collect(Collectors.toList());
-                        this.deleteObsoleteEntries(obsoleteEntries);
+                        List<Delete> obsoleteEntries = indexEntries.stream().map(timestamp -> new Delete(
+                                HBaseUtils.generateIndexKey(Bytes.toString(currentRecordId), timestamp, this.saltBuckets))
+                                .addColumn(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME,
+                                        currentResult.getRow())).collect(Collectors.toList());
+                        if (this.indexRepairQueue != null) {
+                            this.indexRepairQueue.submit(this.tableName, obsoleteEntries);
+                        } else if (!obsoleteEntries.isEmpty()) {
+                            this.deleteObsoleteEntries(obsoleteEntries);
+                        }
                     }
                 } /*else {
                     byte[] currentRecordId = currentResult.getRow();    //this is null :(
@@ -163,7 +240,7 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                     this.deleteObsoleteEntries(obsoleteEntries);
                 }*/
             }
-            this.subIterator = fetchedRecords.iterator();
+            return fetchedRecords;
         } catch (Exception e) {
             if (e instanceof RetriesExhaustedException) {
                 throw new AnalyticsTableNotAvailableException(tableName);
@@ -182,21 +259,22 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
             }
         }
         int counter = 0;
-        Scan indexScan = new Scan();
-        long latestTime;
-        if (!this.noStartTime && (this.latestRow != null)) {
-            latestTime = HBaseUtils.decodeLong(this.latestRow);
-            indexScan.setStartRow(HBaseUtils.encodeLong(latestTime + POSTFIX));
-        }
-        if (!this.noStopTime) {
-            indexScan.setStopRow(this.endRow);
-        }
-        indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
-        ResultScanner resultScanner;
+        List<ResultScanner> scanners = new ArrayList<>(this.indexPrefixes.length);
+        /* the head row of every bucket's scanner, ordered by timestamp, so the buckets are read merged in time order */
+        PriorityQueue<IndexScanHead> heads = new PriorityQueue<>(Math.max(1, this.indexPrefixes.length));
         try {
-            resultScanner = this.indexTable.getScanner(indexScan);
+            for (int i = 0; i < this.indexPrefixes.length; i++) {
+                if (this.bucketsExhausted[i]) {
+                    continue;
+                }
+                ResultScanner scanner = this.indexTable.getScanner(this.createIndexScan(i));
+                scanners.add(scanner);
+                this.advance(new IndexScanHead(i, scanner), heads);
+            }
             outer:
-            for (Result rowResult : resultScanner) {
+            while (!heads.isEmpty()) {
+                IndexScanHead head = heads.poll();
+                Result rowResult = head.row;
                 Cell[] cells = rowResult.rawCells();
                 for (Cell cell : cells) {
                     if ((this.globalCounter == this.recordsCount)) {
@@ -204,22 +282,23 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
                         break outer;
                     }
                     byte[] recordId = CellUtil.cloneValue(cell);
-                    byte[] currentIndexEntry = rowResult.getRow();
-                    currentBatch.put(Bytes.toString(recordId), Bytes.toLong(currentIndexEntry));
+                    currentBatch.put(Bytes.toString(recordId), HBaseUtils.decodeIndexTimestamp(rowResult.getRow()));
                     counter++;
                     this.globalCounter++;
                 }
+                this.latestRows[head.bucket] = rowResult.getRow();
                 if (counter >= this.batchSize) {
                     /* Snap out of further processing, because either the batch end or the client limit has been reached. */
-                    this.latestRow = rowResult.getRow();
                     break;
                 }
-                this.latestRow = rowResult.getRow();
+                this.advance(head, heads);
             }
-            resultScanner.close();
-            indexTable.close();
         } catch (IOException e) {
             throw new HBaseRuntimeException("Error reading index data for table [" + this.tableName + "]", e);
+        } finally {
+            for (ResultScanner scanner : scanners) {
+                AnalyticsCommonUtils.closeQuietly(scanner);
+            }
         }
         if (counter < this.batchSize) {
             /* Checking if processing had been interrupted PRIOR TO:
@@ -229,11 +308,38 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
             *  For both of the above cases, we understand that the end of processing for this particular query is at hand
             *  (i.e. Iterator: I die in peace now, tell my family I love them..) */
             this.fullyFetched = true;
-            this.cleanup();
         }
         return currentBatch;
     }
 
+    private void advance(IndexScanHead head, PriorityQueue<IndexScanHead> heads) throws IOException {
+        if (head.advance()) {
+            heads.add(head);
+        } else {
+            this.bucketsExhausted[head.bucket] = true;
+        }
+    }
+
+    private Scan createIndexScan(int bucket) {
+        Scan indexScan = new Scan();
+        byte[] prefix = this.indexPrefixes[bucket];
+        if (this.latestRows[bucket] != null) {
+            /* resume right after the last row read from this bucket in the previous batch */
+            indexScan.setStartRow(Bytes.add(this.latestRows[bucket], new byte[]{0}));
+        } else if (!this.noStartTime) {
+            indexScan.setStartRow(Bytes.add(prefix, HBaseUtils.encodeLong(this.timeFrom)));
+        } else {
+            indexScan.setStartRow(prefix);
+        }
+        if (!this.noStopTime) {
+            indexScan.setStopRow(Bytes.add(prefix, HBaseUtils.encodeLong(this.timeTo)));
+        } else {
+            indexScan.setStopRow(HBaseUtils.generateIndexPrefixStopRow(prefix));
+        }
+        indexScan.addFamily(HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME);
+        return indexScan;
+    }
+
     private void init(Connection conn, String tableName, List<String> columns, int recordsCount,
                       int batchSize) throws AnalyticsException {
         this.connection = conn;
@@ -273,6 +379,56 @@ class HBaseTimestampIterator implements AnalyticsIterator<Record> {
 
     @Override
     public void close() throws IOException {
+        if (this.prefetchedRecords != null) {
+            /* the prefetch reads through the table, so it has to finish before the table is closed */
+            try {
+                this.prefetchedRecords.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+                /* the records are not needed anymore */
+            }
+            this.prefetchedRecords = null;
+        }
         cleanup();
     }
-}
\ No newline at end of file
+
+    /**
+     * The current row of the index scanner of a bucket. The heads of the buckets order by the timestamp of their
+     * current rows, and by bucket for equal timestamps.
+     */
+    static class IndexScanHead implements Comparable<IndexScanHead> {
+
+        private int bucket;
+        private ResultScanner scanner;
+        private Result row;
+
+        IndexScanHead(int bucket, ResultScanner scanner) {
+            this.bucket = bucket;
+            this.scanner = scanner;
+        }
+
+        /**
+         * Moves to the next row of the scanner, returning false once the scanner is exhausted.
+         */
+        boolean advance() throws IOException {
+            this.row = this.scanner.next();
+            return this.row != null;
+        }
+
+        int getBucket() {
+            return bucket;
+        }
+
+        Result getRow() {
+            return row;
+        }
+
+        @Override
+        public int compareTo(IndexScanHead other) {
+            int result = Long.compare(HBaseUtils.decodeIndexTimestamp(this.row.getRow()),
+                    HBaseUtils.decodeIndexTimestamp(other.row.getRow()));
+            return result != 0 ? result : Integer.compare(this.bucket, other.bucket);
+        }
+    }
+}
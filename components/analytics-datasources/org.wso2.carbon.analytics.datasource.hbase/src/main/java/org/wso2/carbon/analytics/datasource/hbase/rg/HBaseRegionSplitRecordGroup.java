@@ -31,11 +31,17 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
     private String location;
     private int recordsCount;
     private List<String> columns;
+    private long regionSize = -1;
 
     public HBaseRegionSplitRecordGroup() {
     }
 
     public HBaseRegionSplitRecordGroup(String tableName, List<String> columns, int recordsCount, byte[] startRow, byte[] endRow, String location) {
+        this(tableName, columns, recordsCount, startRow, endRow, location, -1);
+    }
+
+    public HBaseRegionSplitRecordGroup(String tableName, List<String> columns, int recordsCount, byte[] startRow,
+                                       byte[] endRow, String location, long regionSize) {
         this.tableName = tableName;
         this.startRow = startRow;
         this.endRow = endRow;
@@ -43,6 +49,7 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
         this.columns = columns;
 
         this.recordsCount = recordsCount;
+        this.regionSize = regionSize;
     }
 
     @Override
@@ -70,4 +77,12 @@ public class HBaseRegionSplitRecordGroup implements RecordGroup {
         return recordsCount;
     }
 
+    /**
+     * Returns the size of the store files and the memstore of the region in bytes at the time the split
+     * was computed, or -1 if it is not known.
+     */
+    public long getRegionSize() {
+        return regionSize;
+    }
+
 }
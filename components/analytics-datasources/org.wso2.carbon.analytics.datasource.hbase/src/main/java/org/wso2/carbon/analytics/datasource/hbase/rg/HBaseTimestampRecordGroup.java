@@ -29,21 +29,37 @@ public class HBaseTimestampRecordGroup implements RecordGroup {
     private String tableName;
     private List<String> columns;
     private long startTime, endTime;
+    private int saltBuckets;
+    private int bucket = -1;
+    private String location = "localhost";
 
     public HBaseTimestampRecordGroup() {
     }
 
     public HBaseTimestampRecordGroup(String tableName, List<String> columns, long timeFrom, long timeTo, int recordsCount) {
+        this(tableName, columns, timeFrom, timeTo, recordsCount, 0, -1, "localhost");
+    }
+
+    /**
+     * Creates a record group reading the given time range through an index salted into the given number of
+     * buckets. If a bucket is given, only the index entries of that bucket are read, else all the buckets are
+     * merged in timestamp order.
+     */
+    public HBaseTimestampRecordGroup(String tableName, List<String> columns, long timeFrom, long timeTo,
+                                     int recordsCount, int saltBuckets, int bucket, String location) {
         this.tableName = tableName;
         this.columns = columns;
         this.startTime = timeFrom;
         this.endTime = timeTo;
         this.recordsCount = recordsCount;
+        this.saltBuckets = saltBuckets;
+        this.bucket = bucket;
+        this.location = location;
     }
 
     @Override
     public String[] getLocations() throws AnalyticsException {
-        return new String[]{"localhost"};
+        return new String[]{this.location};
     }
 
     public String getTableName() {
@@ -66,4 +82,12 @@ public class HBaseTimestampRecordGroup implements RecordGroup {
         return recordsCount;
     }
 
+    public int getSaltBuckets() {
+        return saltBuckets;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
 }
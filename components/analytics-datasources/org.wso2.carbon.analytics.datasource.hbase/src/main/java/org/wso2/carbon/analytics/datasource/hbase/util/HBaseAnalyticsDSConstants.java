@@ -41,6 +41,18 @@ public class HBaseAnalyticsDSConstants {
     public static final byte[] ANALYTICS_TS_QUALIFIER_NAME = Bytes.toBytes("timestamp");
 
     public static final int DEFAULT_QUERY_BATCH_SIZE = 7000;
+    public static final long DEFAULT_WRITE_BUFFER_SIZE = 2 * 1024 * 1024;
+    public static final long DEFAULT_WRITE_FLUSH_INTERVAL = 1000;
+    public static final int DEFAULT_INDEX_REPAIR_QUEUE_SIZE = 1000;
+    public static final int DEFAULT_READ_PREFETCH_THREADS = 8;
+
+    /* 0 keeps the original, unsalted timestamp index layout */
+    public static final int DEFAULT_INDEX_SALT_BUCKETS = 0;
+    public static final int MAX_INDEX_SALT_BUCKETS = 256;
+    /* table descriptor attribute of the index table, which records the number of salt buckets the table uses */
+    public static final String INDEX_SALT_BUCKETS_ATTRIBUTE = "CARBON_ANALYTICS_INDEX_SALT_BUCKETS";
+    /* seconds the index layout of a table is cached for, before it is read from the index table descriptor again */
+    public static final int DEFAULT_INDEX_LAYOUT_CACHE_TIMEOUT = 60;
     public static final String HBASE_ANALYTICS_CONFIG_FILE = "hbase-analytics-config.xml";
 
 }
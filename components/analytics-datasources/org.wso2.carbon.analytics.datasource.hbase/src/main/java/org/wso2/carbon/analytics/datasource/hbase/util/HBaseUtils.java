@@ -19,6 +19,7 @@ package org.wso2.carbon.analytics.datasource.hbase.util;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataHolder;
@@ -70,6 +71,71 @@ public class HBaseUtils {
         return Bytes.toLong(arr);
     }
 
+    /**
+     * Returns the salt bucket of the timestamp index entry of the given record id.
+     */
+    public static int computeIndexSaltBucket(String recordId, int saltBuckets) {
+        return (recordId.hashCode() & Integer.MAX_VALUE) % saltBuckets;
+    }
+
+    /**
+     * Generates the row key of the timestamp index entry of a record. An unsalted index is keyed by the timestamp
+     * alone, a salted index prefixes it with a single byte bucket derived from the record id, so the live ingest
+     * is spread over the bucket regions rather than landing on the last region of the table.
+     */
+    public static byte[] generateIndexKey(String recordId, long timestamp, int saltBuckets) {
+        if (saltBuckets <= 0) {
+            return encodeLong(timestamp);
+        }
+        return Bytes.add(new byte[]{(byte) computeIndexSaltBucket(recordId, saltBuckets)}, encodeLong(timestamp));
+    }
+
+    /**
+     * Returns the timestamp an index row key refers to, for both the salted and unsalted layouts.
+     */
+    public static long decodeIndexTimestamp(byte[] indexKey) {
+        return Bytes.toLong(indexKey, indexKey.length - Bytes.SIZEOF_LONG);
+    }
+
+    /**
+     * Returns the row key prefixes to scan the index with, one per bucket for a salted index, or the single
+     * empty prefix for an unsalted one. If a bucket is given, only its prefix is returned.
+     */
+    public static byte[][] generateIndexPrefixes(int saltBuckets, int bucket) {
+        if (saltBuckets <= 0) {
+            return new byte[][]{HConstants.EMPTY_BYTE_ARRAY};
+        }
+        if (bucket >= 0) {
+            return new byte[][]{{(byte) bucket}};
+        }
+        byte[][] result = new byte[saltBuckets][];
+        for (int i = 0; i < saltBuckets; i++) {
+            result[i] = new byte[]{(byte) i};
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first row key after all the keys starting with the given index prefix.
+     */
+    public static byte[] generateIndexPrefixStopRow(byte[] prefix) {
+        if (prefix.length == 0 || (prefix[0] & 0xFF) == 0xFF) {
+            return HConstants.EMPTY_END_ROW;
+        }
+        return new byte[]{(byte) ((prefix[0] & 0xFF) + 1)};
+    }
+
+    /**
+     * Returns the keys to pre-split a salted index table on, so that each bucket starts in its own region.
+     */
+    public static byte[][] generateIndexSplitKeys(int saltBuckets) {
+        byte[][] result = new byte[Math.max(0, saltBuckets - 1)][];
+        for (int i = 1; i < saltBuckets; i++) {
+            result[i - 1] = new byte[]{(byte) i};
+        }
+        return result;
+    }
+
     public static Record constructRecord(Result currentResult, String tableName, Set<String> colSet)
             throws AnalyticsException {
         byte[] rowId = currentResult.getRow();
@@ -99,14 +165,17 @@ public class HBaseUtils {
     }
 
     public static HBaseAnalyticsConfigurationEntry lookupConfiguration() throws AnalyticsException {
+        return loadConfiguration(new File(AnalyticsDataHolder.getInstance().getAnalyticsConfigsDir() +
+                File.separator + ANALYTICS_CONF_DIR + File.separator +
+                HBaseAnalyticsDSConstants.HBASE_ANALYTICS_CONFIG_FILE));
+    }
+
+    public static HBaseAnalyticsConfigurationEntry loadConfiguration(File confFile) throws AnalyticsException {
+        if (!confFile.exists()) {
+            throw new AnalyticsException("Cannot initialize HBase analytics data source "
+                    + "the configuration file cannot be found at: " + confFile.getPath());
+        }
         try {
-            File confFile = new File(AnalyticsDataHolder.getInstance().getAnalyticsConfigsDir() +
-                    File.separator + ANALYTICS_CONF_DIR + File.separator +
-                    HBaseAnalyticsDSConstants.HBASE_ANALYTICS_CONFIG_FILE);
-            if (!confFile.exists()) {
-                throw new AnalyticsException("Cannot initialize HBase analytics data source "
-                        + "the configuration file cannot be found at: " + confFile.getPath());
-            }
             JAXBContext ctx = JAXBContext.newInstance(HBaseAnalyticsConfigurationEntry.class);
             Unmarshaller unmarshaller = ctx.createUnmarshaller();
             return (HBaseAnalyticsConfigurationEntry) unmarshaller.unmarshal(confFile);
@@ -21,8 +21,12 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.junit.AfterClass;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.data.commons.test.AnalyticsRecordStoreTest;
 
 import java.io.IOException;
@@ -49,6 +53,25 @@ public class HBaseAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
         return entry;
     }
 
+    /**
+     * HBase reports the row counts of time range scans from the index table, and the region sizes of full
+     * table scans.
+     */
+    @Test
+    @Override
+    public void testRecordGroupStatistics() throws AnalyticsException {
+        super.testRecordGroupStatistics();
+        this.store.deleteTable("T1");
+        this.store.createTable("T1");
+        this.store.put(generateRecords("T1", 1, 100, System.currentTimeMillis(), 10));
+        for (RecordGroup rg : this.store.get("T1", 3, null, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)) {
+            RecordGroupStatistics stats = this.store.getStatistics(rg);
+            Assert.assertNotNull(stats, "Record group statistics not available");
+            Assert.assertTrue(stats.getByteSize() >= 0, "Region size not populated");
+        }
+        this.store.deleteTable("T1");
+    }
+
     @AfterClass
     public void destroy() throws AnalyticsException {
         if (this.store != null) {
@@ -0,0 +1,238 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
+import org.wso2.carbon.analytics.data.commons.sources.Record;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the buffered writes and the read prefetching of the record store against an in-process HBase stand-in.
+ */
+public class HBaseBufferedWriteTest {
+
+    private static final String TABLE = "T1";
+
+    private static final String DATA_TABLE = HBaseUtils.generateTableName(TABLE,
+            HBaseAnalyticsDSConstants.TableType.DATA);
+
+    private static final int WRITER_THREADS = 4;
+
+    private static final int PUTS_PER_WRITER = 100;
+
+    private static final int RECORDS_PER_PUT = 10;
+
+    private InMemoryHBase hbase;
+
+    private List<HBaseAnalyticsRecordStore> stores = new ArrayList<>();
+
+    @BeforeMethod
+    public void setup() {
+        this.hbase = new InMemoryHBase();
+    }
+
+    @AfterMethod
+    public void destroy() throws AnalyticsException {
+        for (HBaseAnalyticsRecordStore store : this.stores) {
+            store.destroy();
+        }
+        this.stores.clear();
+    }
+
+    @Test
+    public void testBufferedWriteThroughput() throws Exception {
+        /* a one byte write buffer sends every put on its own, as a flush after each put did */
+        long[] unbuffered = this.writeConcurrently(1);
+        this.hbase = new InMemoryHBase();
+        long[] buffered = this.writeConcurrently(64 * 1024);
+        int records = WRITER_THREADS * PUTS_PER_WRITER * RECORDS_PER_PUT;
+        System.out.println("Unbuffered writes: " + records * 1000L / Math.max(unbuffered[0], 1) +
+                " records/s in " + unbuffered[1] + " round trips");
+        System.out.println("Buffered writes: " + records * 1000L / Math.max(buffered[0], 1) +
+                " records/s in " + buffered[1] + " round trips");
+        Assert.assertTrue(buffered[1] < unbuffered[1], "The buffered writes took " + buffered[1] +
+                " round trips, the unbuffered ones " + unbuffered[1]);
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        HBaseAnalyticsRecordStore store = this.createStore(64 * 1024, 100, false);
+        store.createTable(TABLE);
+        store.put(this.generateRecords("record", 0, 10));
+        Assert.assertTrue(this.hbase.getRowKeys(DATA_TABLE).isEmpty());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.hbase.getRowKeys(DATA_TABLE).size() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(this.hbase.getRowKeys(DATA_TABLE).size(), 10);
+    }
+
+    @Test
+    public void testFailedPutsAreReported() throws Exception {
+        HBaseAnalyticsRecordStore store = this.createStore(64 * 1024, 0, false);
+        store.createTable(TABLE);
+        this.hbase.setFailingRows(row -> row.startsWith("bad"));
+        store.put(this.generateRecords("bad", 0, 3));
+        store.put(this.generateRecords("good", 0, 3));
+        /* the reads flush the buffer, and the failures are reported to the next put */
+        Assert.assertEquals(this.readIds(store, this.ids("good", 0, 3)).size(), 3);
+        try {
+            store.put(this.generateRecords("good", 3, 6));
+            Assert.fail("The failed puts were not reported");
+        } catch (AnalyticsException e) {
+            Assert.assertTrue(e.getMessage().contains("3 previously put records"), e.getMessage());
+        }
+        /* the failures are reported once */
+        store.put(this.generateRecords("good", 3, 6));
+        Assert.assertEquals(this.readIds(store, this.ids("good", 0, 6)).size(), 6);
+    }
+
+    @Test
+    public void testReadsSeeBufferedWrites() throws Exception {
+        HBaseAnalyticsRecordStore store = this.createStore(64 * 1024, 0, false);
+        store.createTable(TABLE);
+        store.put(this.generateRecords("record", 0, 20));
+        Assert.assertTrue(this.hbase.getRowKeys(DATA_TABLE).isEmpty());
+        Assert.assertEquals(this.readIds(store, this.ids("record", 0, 20)).size(), 20);
+
+        store.put(this.generateRecords("record", 20, 30));
+        store.delete(TABLE, this.ids("record", 20, 30));
+        Assert.assertEquals(this.hbase.getRowKeys(DATA_TABLE).size(), 20);
+    }
+
+    @Test
+    public void testCloseWaitsForPrefetch() throws Exception {
+        Assert.assertFalse(new HBaseAnalyticsConfigurationEntry().isReadPrefetchEnabled());
+        HBaseAnalyticsRecordStore store = this.createStore(64 * 1024, 0, true);
+        store.createTable(TABLE);
+        store.put(this.generateRecords("record", 0, 50));
+        this.hbase.setRoundTripLatency(50);
+        /* the iterators are closed while the next batch is read in the background */
+        for (RecordGroup group : store.get(TABLE, 1, null, this.ids("record", 0, 50))) {
+            try (AnalyticsIterator<Record> iterator = store.readRecords(group)) {
+                iterator.next();
+            }
+        }
+        for (RecordGroup group : store.get(TABLE, 1, null, 0, 50, 0, -1)) {
+            try (AnalyticsIterator<Record> iterator = store.readRecords(group)) {
+                iterator.next();
+            }
+        }
+        Assert.assertEquals(this.hbase.getClosedHandleCalls(), Collections.emptyList());
+    }
+
+    /**
+     * Writes the records from several threads, and returns the time it took in milliseconds and the number of
+     * round trips it took.
+     */
+    private long[] writeConcurrently(long writeBufferSize) throws Exception {
+        HBaseAnalyticsRecordStore store = this.createStore(writeBufferSize, 0, false);
+        store.createTable(TABLE);
+        this.hbase.setRoundTripLatency(1);
+        long roundTrips = this.hbase.getRoundTrips();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_THREADS);
+        AtomicInteger writers = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < WRITER_THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    String prefix = "writer" + writers.getAndIncrement() + "-";
+                    for (int j = 0; j < PUTS_PER_WRITER; j++) {
+                        store.put(this.generateRecords(prefix, j * RECORDS_PER_PUT, (j + 1) * RECORDS_PER_PUT));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            store.destroy();
+        } finally {
+            executor.shutdownNow();
+            this.stores.remove(store);
+        }
+        long time = System.currentTimeMillis() - start;
+        Assert.assertEquals(this.hbase.getRowKeys(DATA_TABLE).size(),
+                WRITER_THREADS * PUTS_PER_WRITER * RECORDS_PER_PUT);
+        return new long[]{time, this.hbase.getRoundTrips() - roundTrips};
+    }
+
+    private HBaseAnalyticsRecordStore createStore(long writeBufferSize, long writeFlushInterval,
+                                                  boolean readPrefetch) throws AnalyticsException {
+        HBaseAnalyticsConfigurationEntry entry = new HBaseAnalyticsConfigurationEntry();
+        entry.setBatchSize(10);
+        entry.setWriteBufferSize(writeBufferSize);
+        entry.setWriteFlushInterval(writeFlushInterval);
+        entry.setReadPrefetchEnabled(readPrefetch);
+        try {
+            HBaseAnalyticsRecordStore store = new HBaseAnalyticsRecordStore(this.hbase.createConnection(), entry);
+            this.stores.add(store);
+            return store;
+        } catch (IOException e) {
+            throw new AnalyticsException(e.getMessage(), e);
+        }
+    }
+
+    private List<Record> generateRecords(String prefix, int from, int to) {
+        List<Record> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(new Record(prefix + i, TABLE, Collections.singletonMap("value", (Object) i), i));
+        }
+        return records;
+    }
+
+    private List<String> ids(String prefix, int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add(prefix + i);
+        }
+        return ids;
+    }
+
+    private List<Record> readIds(HBaseAnalyticsRecordStore store, List<String> ids) throws AnalyticsException {
+        List<Record> result = new ArrayList<>();
+        for (RecordGroup group : store.get(TABLE, 1, null, ids)) {
+            try (AnalyticsIterator<Record> iterator = store.readRecords(group)) {
+                while (iterator.hasNext()) {
+                    result.add(iterator.next());
+                }
+            } catch (IOException e) {
+                throw new AnalyticsException(e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+}
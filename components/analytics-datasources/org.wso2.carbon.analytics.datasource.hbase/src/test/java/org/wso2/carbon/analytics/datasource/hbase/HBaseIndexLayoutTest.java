@@ -0,0 +1,219 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
+import org.wso2.carbon.analytics.data.commons.sources.Record;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.datasource.hbase.rg.HBaseTimestampRecordGroup;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.hbase.util.HBaseUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Tests the salted timestamp index layout against an in-process HBase stand-in.
+ */
+public class HBaseIndexLayoutTest {
+
+    private static final String TABLE = "T1";
+
+    private static final String INDEX_TABLE = HBaseUtils.generateTableName(TABLE,
+            HBaseAnalyticsDSConstants.TableType.INDEX);
+
+    private InMemoryHBase hbase;
+
+    private List<HBaseAnalyticsRecordStore> stores = new ArrayList<>();
+
+    @BeforeMethod
+    public void setup() {
+        this.hbase = new InMemoryHBase();
+    }
+
+    @AfterMethod
+    public void destroy() throws AnalyticsException {
+        for (HBaseAnalyticsRecordStore store : this.stores) {
+            store.destroy();
+        }
+        this.stores.clear();
+    }
+
+    @Test
+    public void testIndexScanHeadOrder() throws IOException {
+        PriorityQueue<HBaseTimestampIterator.IndexScanHead> heads = new PriorityQueue<>();
+        long[][] bucketTimestamps = {{1, 4, 7}, {2, 4, 5}, {3}, {}};
+        for (int bucket = 0; bucket < bucketTimestamps.length; bucket++) {
+            HBaseTimestampIterator.IndexScanHead head = new HBaseTimestampIterator.IndexScanHead(bucket,
+                    this.createScanner(bucket, bucketTimestamps[bucket]));
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        List<String> merged = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            HBaseTimestampIterator.IndexScanHead head = heads.poll();
+            merged.add(HBaseUtils.decodeIndexTimestamp(head.getRow().getRow()) + "@" + head.getBucket());
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        /* the buckets are merged in timestamp order, and the lower bucket goes first for equal timestamps */
+        Assert.assertEquals(merged, Arrays.asList("1@0", "2@1", "3@2", "4@0", "4@1", "5@1", "7@0"));
+    }
+
+    @Test
+    public void testSaltedTimeRangeRead() throws AnalyticsException {
+        HBaseAnalyticsRecordStore store = this.createStore(8, 60);
+        store.createTable(TABLE);
+        store.put(this.generateRecords(0, 100));
+        Assert.assertEquals(this.hbase.getTableDescriptor(INDEX_TABLE).getValue(
+                HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_ATTRIBUTE), "8");
+        for (byte[] indexKey : this.hbase.getRowKeys(INDEX_TABLE)) {
+            Assert.assertEquals(indexKey.length, Bytes.SIZEOF_LONG + 1);
+        }
+
+        /* the buckets are read in several batches, and merged in timestamp order */
+        List<Long> timestamps = this.readTimestamps(store, store.get(TABLE, 1, null, 0, 100, 0, -1));
+        Assert.assertEquals(timestamps, this.range(0, 100));
+
+        /* a count limited read returns the earliest records of all the buckets */
+        timestamps = this.readTimestamps(store, store.get(TABLE, 8, null, 0, 100, 0, 15));
+        Assert.assertEquals(timestamps, this.range(0, 15));
+
+        /* a partitioned read returns a record group per bucket */
+        RecordGroup[] groups = store.get(TABLE, 8, null, 0, 100, 0, -1);
+        Assert.assertEquals(groups.length, 8);
+        Set<Integer> buckets = new HashSet<>();
+        for (RecordGroup group : groups) {
+            buckets.add(((HBaseTimestampRecordGroup) group).getBucket());
+        }
+        Assert.assertEquals(buckets.size(), 8);
+        timestamps = this.readTimestamps(store, groups);
+        Collections.sort(timestamps);
+        Assert.assertEquals(timestamps, this.range(0, 100));
+    }
+
+    @Test
+    public void testMigrateIndex() throws Exception {
+        HBaseAnalyticsRecordStore writer = this.createStore(0, 1);
+        HBaseAnalyticsRecordStore migrator = this.createStore(0, 1);
+        writer.createTable(TABLE);
+        writer.put(this.generateRecords(0, 50));
+        for (byte[] indexKey : this.hbase.getRowKeys(INDEX_TABLE)) {
+            Assert.assertEquals(indexKey.length, Bytes.SIZEOF_LONG);
+        }
+
+        migrator.migrateIndex(TABLE, 4);
+        Assert.assertEquals(this.hbase.getTableDescriptor(INDEX_TABLE).getValue(
+                HBaseAnalyticsDSConstants.INDEX_SALT_BUCKETS_ATTRIBUTE), "4");
+
+        /* the writer cached the unsalted layout before the migration, and has read the new one by now */
+        writer.put(this.generateRecords(50, 100));
+        List<byte[]> indexKeys = this.hbase.getRowKeys(INDEX_TABLE);
+        Assert.assertEquals(indexKeys.size(), 100);
+        for (byte[] indexKey : indexKeys) {
+            Assert.assertEquals(indexKey.length, Bytes.SIZEOF_LONG + 1);
+        }
+        Assert.assertEquals(this.readTimestamps(writer, writer.get(TABLE, 1, null, 0, 100, 0, -1)),
+                this.range(0, 100));
+        Assert.assertEquals(this.readTimestamps(migrator, migrator.get(TABLE, 1, null, 0, 100, 0, -1)),
+                this.range(0, 100));
+    }
+
+    private HBaseAnalyticsRecordStore createStore(int saltBuckets, int layoutCacheTimeout) throws AnalyticsException {
+        HBaseAnalyticsConfigurationEntry entry = new HBaseAnalyticsConfigurationEntry();
+        entry.setBatchSize(10);
+        entry.setIndexSaltBuckets(saltBuckets);
+        entry.setIndexLayoutCacheTimeout(layoutCacheTimeout);
+        try {
+            HBaseAnalyticsRecordStore store = new HBaseAnalyticsRecordStore(this.hbase.createConnection(), entry);
+            this.stores.add(store);
+            return store;
+        } catch (IOException e) {
+            throw new AnalyticsException(e.getMessage(), e);
+        }
+    }
+
+    private List<Record> generateRecords(int from, int to) {
+        List<Record> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(new Record("record" + i, TABLE, Collections.singletonMap("value", (Object) i), i));
+        }
+        return records;
+    }
+
+    private List<Long> range(long from, long to) {
+        List<Long> result = new ArrayList<>();
+        for (long i = from; i < to; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private List<Long> readTimestamps(HBaseAnalyticsRecordStore store, RecordGroup[] groups)
+            throws AnalyticsException {
+        List<Long> result = new ArrayList<>();
+        for (RecordGroup group : groups) {
+            try (AnalyticsIterator<Record> iterator = store.readRecords(group)) {
+                while (iterator.hasNext()) {
+                    result.add(iterator.next().getTimestamp());
+                }
+            } catch (IOException e) {
+                throw new AnalyticsException(e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    private ResultScanner createScanner(int bucket, long... timestamps) {
+        List<Result> rows = new ArrayList<>();
+        for (long timestamp : timestamps) {
+            byte[] row = Bytes.add(new byte[]{(byte) bucket}, HBaseUtils.encodeLong(timestamp));
+            rows.add(Result.create(Collections.singletonList(new KeyValue(row,
+                    HBaseAnalyticsDSConstants.ANALYTICS_INDEX_COLUMN_FAMILY_NAME, Bytes.toBytes("record"),
+                    Bytes.toBytes("record")))));
+        }
+        Iterator<Result> iterator = rows.iterator();
+        return (ResultScanner) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                new Class[]{ResultScanner.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("next")) {
+                        return iterator.hasNext() ? iterator.next() : null;
+                    }
+                    return null;
+                });
+    }
+
+}
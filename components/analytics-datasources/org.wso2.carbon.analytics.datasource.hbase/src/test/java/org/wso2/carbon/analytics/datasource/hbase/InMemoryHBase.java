@@ -0,0 +1,454 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.TableNotEnabledException;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-process stand-in for an HBase cluster. It keeps the tables in memory, and hands out proxies of the client
+ * interfaces the record store uses. Every table operation, and every flush of a buffered mutator, counts as one
+ * round trip to the cluster, which takes the configured latency.
+ */
+public class InMemoryHBase {
+
+    private final Map<TableName, MemTable> tables = new ConcurrentHashMap<>();
+
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    private final List<String> closedHandleCalls = new CopyOnWriteArrayList<>();
+
+    private volatile long roundTripLatency;
+
+    private volatile Predicate<String> failingRows = row -> false;
+
+    public Connection createConnection() {
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "getTable":
+                    return this.createTable((TableName) args[0]);
+                case "getAdmin":
+                    return this.createAdmin();
+                case "getRegionLocator":
+                    return this.createRegionLocator((TableName) args[0]);
+                case "getBufferedMutator":
+                    return this.createBufferedMutator(args[0] instanceof BufferedMutatorParams ?
+                            (BufferedMutatorParams) args[0] : new BufferedMutatorParams((TableName) args[0]));
+                case "close":
+                    return null;
+                case "isClosed":
+                    return false;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    /**
+     * Sets the time every round trip to the cluster takes, in milliseconds.
+     */
+    public void setRoundTripLatency(long roundTripLatency) {
+        this.roundTripLatency = roundTripLatency;
+    }
+
+    /**
+     * Sets the rows whose buffered mutations fail, and are reported to the exception listener of their mutator.
+     */
+    public void setFailingRows(Predicate<String> failingRows) {
+        this.failingRows = failingRows;
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * Returns the operations called on table handles after they were closed.
+     */
+    public List<String> getClosedHandleCalls() {
+        return closedHandleCalls;
+    }
+
+    public HTableDescriptor getTableDescriptor(String tableName) {
+        MemTable table = this.tables.get(TableName.valueOf(tableName));
+        return table == null ? null : table.descriptor;
+    }
+
+    /**
+     * Returns the row keys of the given table, in order.
+     */
+    public List<byte[]> getRowKeys(String tableName) {
+        MemTable table = this.tables.get(TableName.valueOf(tableName));
+        return table == null ? Collections.emptyList() : new ArrayList<>(table.rows.keySet());
+    }
+
+    private MemTable lookupTable(TableName name) throws IOException {
+        MemTable table = this.tables.get(name);
+        if (table == null) {
+            throw new TableNotFoundException(name.getNameAsString());
+        }
+        if (!table.enabled) {
+            throw new TableNotEnabledException(name.getNameAsString());
+        }
+        return table;
+    }
+
+    private void roundTrip() {
+        this.roundTrips.incrementAndGet();
+        if (this.roundTripLatency > 0) {
+            try {
+                Thread.sleep(this.roundTripLatency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Table createTable(TableName name) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return proxy(Table.class, (method, args) -> {
+            if (method.equals("close")) {
+                closed.set(true);
+                return null;
+            }
+            if (closed.get()) {
+                this.closedHandleCalls.add(name + "." + method);
+                throw new IllegalStateException("Table handle of [" + name + "] is closed");
+            }
+            switch (method) {
+                case "getName":
+                    return name;
+                default:
+            }
+            MemTable table = this.lookupTable(name);
+            this.roundTrip();
+            /* an operation still in flight when its handle is closed fails as well */
+            if (closed.get()) {
+                this.closedHandleCalls.add(name + "." + method);
+                throw new IllegalStateException("Table handle of [" + name + "] was closed during " + method);
+            }
+            switch (method) {
+                case "get":
+                    if (args[0] instanceof Get) {
+                        return table.get(((Get) args[0]).getRow());
+                    }
+                    List<Result> results = new ArrayList<>();
+                    for (Object get : (List<?>) args[0]) {
+                        results.add(table.get(((Get) get).getRow()));
+                    }
+                    return results.toArray(new Result[results.size()]);
+                case "getScanner":
+                    return this.createScanner(table.scan((Scan) args[0]));
+                case "put":
+                case "delete":
+                    for (Object mutation : args[0] instanceof Mutation ? Collections.singletonList(args[0]) :
+                            (List<?>) args[0]) {
+                        table.apply((Mutation) mutation);
+                    }
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private ResultScanner createScanner(List<Result> results) {
+        Iterator<Result> iterator = results.iterator();
+        return proxy(ResultScanner.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    if (args == null) {
+                        return iterator.hasNext() ? iterator.next() : null;
+                    }
+                    List<Result> batch = new ArrayList<>();
+                    while (iterator.hasNext() && batch.size() < (Integer) args[0]) {
+                        batch.add(iterator.next());
+                    }
+                    return batch.toArray(new Result[batch.size()]);
+                case "iterator":
+                    return iterator;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private Admin createAdmin() {
+        return proxy(Admin.class, (method, args) -> {
+            MemTable table;
+            switch (method) {
+                case "tableExists":
+                    return this.tables.containsKey((TableName) args[0]);
+                case "createTable":
+                    HTableDescriptor descriptor = (HTableDescriptor) args[0];
+                    if (this.tables.putIfAbsent(descriptor.getTableName(), new MemTable(descriptor)) != null) {
+                        throw new IOException("Table [" + descriptor.getTableName() + "] already exists");
+                    }
+                    return null;
+                case "getTableDescriptor":
+                    table = this.tables.get((TableName) args[0]);
+                    if (table == null) {
+                        throw new TableNotFoundException(args[0].toString());
+                    }
+                    return table.descriptor;
+                case "isTableEnabled":
+                    return this.lookupTable((TableName) args[0]).enabled;
+                case "disableTable":
+                    this.lookupTable((TableName) args[0]).enabled = false;
+                    return null;
+                case "enableTable":
+                    table = this.tables.get((TableName) args[0]);
+                    if (table == null) {
+                        throw new TableNotFoundException(args[0].toString());
+                    }
+                    table.enabled = true;
+                    return null;
+                case "deleteTable":
+                    table = this.tables.get((TableName) args[0]);
+                    if (table == null) {
+                        throw new TableNotFoundException(args[0].toString());
+                    }
+                    if (table.enabled) {
+                        throw new IOException("Table [" + args[0] + "] is not disabled");
+                    }
+                    this.tables.remove((TableName) args[0]);
+                    return null;
+                case "getClusterStatus":
+                    throw new IOException("The cluster status is not available");
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private RegionLocator createRegionLocator(TableName name) {
+        /* every table is a single region */
+        return proxy(RegionLocator.class, (method, args) -> {
+            switch (method) {
+                case "getRegionLocation":
+                    return new HRegionLocation(new HRegionInfo(name), ServerName.valueOf("localhost", 16020, 0L));
+                case "getStartEndKeys":
+                    return new Pair<>(new byte[][]{HConstants.EMPTY_START_ROW},
+                            new byte[][]{HConstants.EMPTY_END_ROW});
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    /**
+     * Buffers the mutations until the write buffer size is reached, or it is flushed, and then sends the buffer in
+     * one round trip. The mutations of the failing rows are reported to the exception listener.
+     */
+    private BufferedMutator createBufferedMutator(BufferedMutatorParams params) {
+        List<Mutation> buffer = new ArrayList<>();
+        long[] bufferSize = new long[1];
+        InvocationHandlerFunction flush = (method, args) -> {
+            List<Mutation> mutations;
+            synchronized (buffer) {
+                if (buffer.isEmpty()) {
+                    return null;
+                }
+                mutations = new ArrayList<>(buffer);
+                buffer.clear();
+                bufferSize[0] = 0;
+            }
+            MemTable table = this.lookupTable(params.getTableName());
+            this.roundTrip();
+            List<Throwable> errors = new ArrayList<>();
+            List<Row> failedRows = new ArrayList<>();
+            List<String> hosts = new ArrayList<>();
+            for (Mutation mutation : mutations) {
+                if (this.failingRows.test(Bytes.toString(mutation.getRow()))) {
+                    errors.add(new IOException("Failed to write the row"));
+                    failedRows.add(mutation);
+                    hosts.add("localhost:16020");
+                } else {
+                    table.apply(mutation);
+                }
+            }
+            if (!failedRows.isEmpty()) {
+                RetriesExhaustedWithDetailsException e = new RetriesExhaustedWithDetailsException(errors,
+                        failedRows, hosts);
+                if (params.getListener() == null) {
+                    throw e;
+                }
+                params.getListener().onException(e, null);
+            }
+            return null;
+        };
+        return proxy(BufferedMutator.class, (method, args) -> {
+            switch (method) {
+                case "mutate":
+                    boolean full;
+                    synchronized (buffer) {
+                        for (Object mutation : args[0] instanceof Mutation ? Collections.singletonList(args[0]) :
+                                (Collection<?>) args[0]) {
+                            buffer.add((Mutation) mutation);
+                            bufferSize[0] += ((Mutation) mutation).heapSize();
+                        }
+                        full = bufferSize[0] >= params.getWriteBufferSize();
+                    }
+                    return full ? flush.invoke(method, args) : null;
+                case "flush":
+                case "close":
+                    return flush.invoke(method, args);
+                case "getName":
+                    return params.getTableName();
+                case "getWriteBufferSize":
+                    return params.getWriteBufferSize();
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandlerFunction function) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+            }
+            return function.invoke(method.getName(), args);
+        };
+        return (T) Proxy.newProxyInstance(InMemoryHBase.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private interface InvocationHandlerFunction {
+
+        Object invoke(String method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * The rows of a table, each holding its cells keyed by qualifier.
+     */
+    private static class MemTable {
+
+        private final HTableDescriptor descriptor;
+
+        private final NavigableMap<byte[], NavigableMap<byte[], Cell>> rows =
+                new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+
+        private volatile boolean enabled = true;
+
+        MemTable(HTableDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        Result get(byte[] row) {
+            NavigableMap<byte[], Cell> cells = this.rows.get(row);
+            return Result.create(cells == null ? Collections.<Cell>emptyList() : new ArrayList<>(cells.values()));
+        }
+
+        List<Result> scan(Scan scan) {
+            NavigableMap<byte[], NavigableMap<byte[], Cell>> range = this.rows;
+            if (scan.getStartRow().length > 0) {
+                range = range.tailMap(scan.getStartRow(), true);
+            }
+            if (scan.getStopRow().length > 0) {
+                range = range.headMap(scan.getStopRow(), false);
+            }
+            List<Result> results = new ArrayList<>();
+            for (NavigableMap<byte[], Cell> cells : range.values()) {
+                results.add(Result.create(new ArrayList<>(cells.values())));
+            }
+            return results;
+        }
+
+        void apply(Mutation mutation) {
+            byte[] row = mutation.getRow();
+            if (mutation instanceof Delete && mutation.getFamilyCellMap().isEmpty()) {
+                this.rows.remove(row);
+                return;
+            }
+            synchronized (this) {
+                NavigableMap<byte[], Cell> cells = this.rows.computeIfAbsent(row,
+                        key -> new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR));
+                for (List<Cell> familyCells : mutation.getFamilyCellMap().values()) {
+                    for (Cell cell : familyCells) {
+                        byte[] qualifier = CellUtil.cloneQualifier(cell);
+                        if (mutation instanceof Put) {
+                            cells.put(qualifier, new KeyValue(row, CellUtil.cloneFamily(cell), qualifier,
+                                    CellUtil.cloneValue(cell)));
+                        } else {
+                            cells.remove(qualifier);
+                        }
+                    }
+                }
+                if (cells.isEmpty()) {
+                    this.rows.remove(row);
+                }
+            }
+        }
+    }
+}
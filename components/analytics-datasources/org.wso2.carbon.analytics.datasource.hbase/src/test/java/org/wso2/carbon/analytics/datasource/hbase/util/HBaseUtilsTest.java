@@ -0,0 +1,110 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.analytics.datasource.hbase.util;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class HBaseUtilsTest {
+
+    @Test
+    public void testUnsaltedIndexKey() {
+        long timestamp = 1491000000000L;
+        byte[] key = HBaseUtils.generateIndexKey("record", timestamp, 0);
+        Assert.assertEquals(key, HBaseUtils.encodeLong(timestamp));
+        Assert.assertEquals(HBaseUtils.decodeIndexTimestamp(key), timestamp);
+    }
+
+    @Test
+    public void testSaltedIndexKey() {
+        long timestamp = 1491000000000L;
+        Set<Integer> buckets = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String recordId = "record" + i;
+            byte[] key = HBaseUtils.generateIndexKey(recordId, timestamp, 16);
+            Assert.assertEquals(key.length, Bytes.SIZEOF_LONG + 1);
+            int bucket = key[0] & 0xFF;
+            Assert.assertEquals(bucket, HBaseUtils.computeIndexSaltBucket(recordId, 16));
+            Assert.assertTrue(bucket < 16, "Bucket out of range: " + bucket);
+            Assert.assertEquals(HBaseUtils.decodeIndexTimestamp(key), timestamp);
+            /* the same record always lands in the same bucket */
+            Assert.assertEquals(HBaseUtils.generateIndexKey(recordId, timestamp, 16), key);
+            buckets.add(bucket);
+        }
+        Assert.assertEquals(buckets.size(), 16, "The records are not spread over all the buckets");
+    }
+
+    @Test
+    public void testSaltedIndexKeysOrderByTimestampWithinBucket() {
+        byte[] earlier = HBaseUtils.generateIndexKey("record", 1000L, 8);
+        byte[] later = HBaseUtils.generateIndexKey("record", 2000L, 8);
+        Assert.assertTrue(Bytes.compareTo(earlier, later) < 0);
+    }
+
+    @Test
+    public void testMaxBucketIndexKey() {
+        /* bucket 255 is stored as a negative byte, and must still decode */
+        byte[] key = Bytes.add(new byte[]{(byte) 255}, HBaseUtils.encodeLong(42L));
+        Assert.assertEquals(HBaseUtils.decodeIndexTimestamp(key), 42L);
+    }
+
+    @Test
+    public void testIndexPrefixes() {
+        byte[][] prefixes = HBaseUtils.generateIndexPrefixes(0, -1);
+        Assert.assertEquals(prefixes.length, 1);
+        Assert.assertEquals(prefixes[0].length, 0);
+
+        prefixes = HBaseUtils.generateIndexPrefixes(4, -1);
+        Assert.assertEquals(prefixes.length, 4);
+        for (int i = 0; i < prefixes.length; i++) {
+            Assert.assertEquals(prefixes[i], new byte[]{(byte) i});
+        }
+
+        prefixes = HBaseUtils.generateIndexPrefixes(4, 2);
+        Assert.assertEquals(prefixes.length, 1);
+        Assert.assertEquals(prefixes[0], new byte[]{2});
+    }
+
+    @Test
+    public void testIndexPrefixStopRow() {
+        Assert.assertEquals(HBaseUtils.generateIndexPrefixStopRow(new byte[0]).length, 0);
+        Assert.assertEquals(HBaseUtils.generateIndexPrefixStopRow(new byte[]{3}), new byte[]{4});
+        /* the last bucket is scanned to the end of the table */
+        Assert.assertEquals(HBaseUtils.generateIndexPrefixStopRow(new byte[]{(byte) 255}).length, 0);
+    }
+
+    @Test
+    public void testIndexSplitKeys() {
+        Assert.assertEquals(HBaseUtils.generateIndexSplitKeys(0).length, 0);
+        Assert.assertEquals(HBaseUtils.generateIndexSplitKeys(1).length, 0);
+        byte[][] splitKeys = HBaseUtils.generateIndexSplitKeys(4);
+        Assert.assertEquals(splitKeys.length, 3);
+        for (int i = 0; i < splitKeys.length; i++) {
+            Assert.assertEquals(splitKeys[i], new byte[]{(byte) (i + 1)});
+        }
+        /* every bucket starts its own region */
+        splitKeys = HBaseUtils.generateIndexSplitKeys(256);
+        Assert.assertEquals(splitKeys.length, 255);
+        Assert.assertEquals(splitKeys[254], new byte[]{(byte) 255});
+    }
+
+}
@@ -11,8 +11,22 @@ public class RDBMSAnalyticsDSConstants {
 
     public static final String PARTITION_COUNT = "partitionCount";
 
+    public static final String MAX_CONCURRENT_READS = "maxConcurrentReads";
+
+    public static final String READ_PREFETCH_SIZE = "readPrefetchSize";
+
+    public static final String READ_PREFETCH_THREAD_COUNT = "readPrefetchThreadCount";
+
     public static final int RECORD_BATCH_SIZE = 1000;
 
     public static final int DEFAULT_PARTITION_COUNT = 100;
 
+    public static final int DEFAULT_READ_PREFETCH_SIZE = 1000;
+
+    public static final int DEFAULT_READ_PREFETCH_THREAD_COUNT = 10;
+
+    /* used when the query configuration of the database does not define a record time range query */
+    public static final String DEFAULT_RECORD_TIME_RANGE_QUERY = "SELECT MIN(timestamp), MAX(timestamp) FROM " +
+            "{{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?";
+
 }
@@ -19,14 +19,17 @@
 package org.wso2.carbon.analytics.datasource.rdbms;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.data.commons.AnalyticsRecordStoreStatistics;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 
 import javax.sql.DataSource;
@@ -34,12 +37,19 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Abstract RDBMS database backed implementation of {@link AnalyticsRecordStore}.
  */
-public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
+public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore, AnalyticsRecordStoreStatistics {
     
     private static final Log log = LogFactory.getLog(RDBMSAnalyticsRecordStore.class);
 
@@ -55,6 +65,12 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
     private int partitionCount = RDBMSAnalyticsDSConstants.DEFAULT_PARTITION_COUNT;
 
+    private int readPrefetchSize = RDBMSAnalyticsDSConstants.DEFAULT_READ_PREFETCH_SIZE;
+
+    private Semaphore readPermits;
+
+    private ExecutorService readPrefetchExecutor;
+
     public RDBMSAnalyticsRecordStore() throws AnalyticsException {
         this.rdbmsQueryConfigurationEntry = null;
     }
@@ -72,6 +88,28 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         if (partitionCountProp != null) {
             this.partitionCount = Integer.parseInt(partitionCountProp);
         }
+        String maxConcurrentReadsProp = properties.get(RDBMSAnalyticsDSConstants.MAX_CONCURRENT_READS);
+        if (maxConcurrentReadsProp != null && Integer.parseInt(maxConcurrentReadsProp) > 0) {
+            /* bounds the number of read cursors, and therefore connections, held open at once by this store */
+            this.readPermits = new Semaphore(Integer.parseInt(maxConcurrentReadsProp), true);
+        }
+        String readPrefetchSizeProp = properties.get(RDBMSAnalyticsDSConstants.READ_PREFETCH_SIZE);
+        if (readPrefetchSizeProp != null) {
+            this.readPrefetchSize = Integer.parseInt(readPrefetchSizeProp);
+        }
+        if (this.readPrefetchSize > 0) {
+            int prefetchThreadCount = RDBMSAnalyticsDSConstants.DEFAULT_READ_PREFETCH_THREAD_COUNT;
+            String prefetchThreadCountProp = properties.get(RDBMSAnalyticsDSConstants.READ_PREFETCH_THREAD_COUNT);
+            if (prefetchThreadCountProp != null) {
+                prefetchThreadCount = Integer.parseInt(prefetchThreadCountProp);
+            }
+            /* when all the prefetch threads are busy, the next batch is read by the consumer itself, rather than
+             * queueing it behind other fetches which may be waiting for the read permits it holds */
+            this.readPrefetchExecutor = new ThreadPoolExecutor(0, prefetchThreadCount, 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), new ThreadFactoryBuilder()
+                    .setNameFormat("RDBMSAnalyticsRecordStore-prefetch-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
         try {
             this.dataSource = (DataSource) AnalyticsCommonUtils.loadDatasource(dsName);
         } catch (Exception e) {
@@ -169,6 +207,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
     private void addRecordsSimilar(Connection conn, List<Record> records) throws SQLException, AnalyticsException {
         Record firstRecord = records.get(0);
         String tableName = firstRecord.getTableName();
+        records = this.removeDuplicateRecords(records);
         String mergeSQL = this.getRecordMergeSQL(tableName);
         if (mergeSQL != null) {
             try {
@@ -183,6 +222,33 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         }
     }
 
+    /**
+     * A record id repeated within a single batch makes most batched merges/inserts fail, and since the records
+     * are full replacements, only the last occurrence of an id is kept.
+     */
+    private List<Record> removeDuplicateRecords(List<Record> records) {
+        Map<String, Record> recordsById = new LinkedHashMap<>(records.size());
+        List<Record> recordsWithoutIds = null;
+        for (Record record : records) {
+            if (record.getId() == null) {
+                if (recordsWithoutIds == null) {
+                    recordsWithoutIds = new ArrayList<>();
+                }
+                recordsWithoutIds.add(record);
+            } else {
+                recordsById.put(record.getId(), record);
+            }
+        }
+        if (recordsWithoutIds == null && recordsById.size() == records.size()) {
+            return records;
+        }
+        List<Record> result = new ArrayList<>(recordsById.values());
+        if (recordsWithoutIds != null) {
+            result.addAll(recordsWithoutIds);
+        }
+        return result;
+    }
+
     private int abs(int val) {
         if (val == Integer.MIN_VALUE) {
             return Integer.MAX_VALUE;
@@ -210,14 +276,8 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
     private void mergeRecordsSimilar(Connection conn, List<Record> records, String tableName, String query)
             throws SQLException, AnalyticsException {
-        PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(query);
-            for (Record record : records) {
-                this.populateStatementForAdd(stmt, record);
-                stmt.addBatch();
-            }
-            stmt.executeBatch();
+            this.executeBatchSimilar(conn, records, query);
             conn.commit();
         } catch (SQLException e) {
             RDBMSUtils.rollbackConnection(conn);
@@ -226,6 +286,19 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             } else {
                 throw e;
             }
+        }
+    }
+
+    private void executeBatchSimilar(Connection conn, List<Record> records, String query)
+            throws SQLException, AnalyticsException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(query);
+            for (Record record : records) {
+                this.populateStatementForAdd(stmt, record);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
         } finally {
             RDBMSUtils.cleanupConnection(null, stmt, null);
         }
@@ -236,10 +309,74 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         try {
             this.insertBatchRecordsSimilar(conn, records, tableName);
         } catch (SQLException e) {
-            /* batch insert failed, maybe because one of the records were already there,
-             * lets try to sequentially insert/update */
-            this.insertAndUpdateRecordsSimilarSequentially(conn, records, tableName);
+            /* batch insert failed, maybe because some of the records were already there,
+             * lets split the batch into the existing and the new records, and write each set in bulk */
+            try {
+                this.upsertBatchRecordsSimilar(conn, records, tableName);
+            } catch (SQLException e1) {
+                /* the set based upsert can still fail in the case of a concurrent writer adding the same ids,
+                 * lets try to sequentially insert/update as the last resort */
+                if (log.isDebugEnabled()) {
+                    log.debug("Bulk upsert failed for table '" + tableName + "', falling back to sequential " +
+                            "insert/update: " + e1.getMessage(), e1);
+                }
+                this.insertAndUpdateRecordsSimilarSequentially(conn, records, tableName);
+            }
+        }
+    }
+
+    private void upsertBatchRecordsSimilar(Connection conn, List<Record> records, String tableName)
+            throws SQLException, AnalyticsException {
+        Set<String> existingIds = this.lookupExistingRecordIds(conn, tableName, records);
+        List<Record> recordsToUpdate = new ArrayList<>(existingIds.size());
+        List<Record> recordsToInsert = new ArrayList<>(records.size() - existingIds.size());
+        for (Record record : records) {
+            if (existingIds.contains(record.getId())) {
+                recordsToUpdate.add(record);
+            } else {
+                recordsToInsert.add(record);
+            }
+        }
+        try {
+            if (!recordsToUpdate.isEmpty()) {
+                this.executeBatchSimilar(conn, recordsToUpdate, this.getRecordUpdateSQL(tableName));
+            }
+            if (!recordsToInsert.isEmpty()) {
+                this.executeBatchSimilar(conn, recordsToInsert, this.getRecordInsertSQL(tableName));
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw e;
+        }
+    }
+
+    private Set<String> lookupExistingRecordIds(Connection conn, String tableName, List<Record> records)
+            throws SQLException {
+        List<String> ids = new ArrayList<>(records.size());
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        Set<String> result = new HashSet<>();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        for (List<String> idSubList : Lists.partition(ids, this.rdbmsQueryConfigurationEntry.getRecordBatchSize())) {
+            try {
+                stmt = conn.prepareStatement(this.generateGetRecordIdRetrievalWithIdQuery(tableName,
+                        idSubList.size()));
+                for (int i = 0; i < idSubList.size(); i++) {
+                    stmt.setString(i + 1, idSubList.get(i));
+                }
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    result.add(rs.getString(1));
+                }
+            } finally {
+                RDBMSUtils.cleanupConnection(rs, stmt, null);
+                rs = null;
+            }
         }
+        return result;
     }
 
 
@@ -313,7 +450,17 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         if (!this.tableExists(tableName)) {
             throw new AnalyticsTableNotAvailableException(tableName);
         }
-        return new RDBMSIDsRecordGroup[]{new RDBMSIDsRecordGroup(tableName, columns, ids)};
+        if (numPartitionsHint <= 1 || ids.size() <= 1) {
+            return new RDBMSIDsRecordGroup[]{new RDBMSIDsRecordGroup(tableName, columns, ids)};
+        }
+        List<Integer[]> idRanges = AnalyticsCommonUtils.splitNumberRange(ids.size(), numPartitionsHint);
+        RDBMSIDsRecordGroup[] result = new RDBMSIDsRecordGroup[idRanges.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer[] idRange = idRanges.get(i);
+            result[i] = new RDBMSIDsRecordGroup(tableName, columns,
+                    new ArrayList<>(ids.subList(idRange[0], idRange[0] + idRange[1])));
+        }
+        return result;
     }
 
     private List<Integer[]> generatePartitionPlan(int numPartitionsHint) throws AnalyticsException {
@@ -330,35 +477,174 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         if (!this.tableExists(tableName)) {
             throw new AnalyticsTableNotAvailableException(tableName);
         }
+        /* pagination is applied per query, so a paginated read cannot be split into independent groups */
         if (numPartitionsHint > 1 && (recordsFrom > 0 || (recordsCount != -1 && recordsCount != Integer.MAX_VALUE))) {
             numPartitionsHint = 1;
         }
-        List<Integer[]> params = this.generatePartitionPlan(numPartitionsHint);
-        RDBMSRangeRecordGroup[] result = new RDBMSRangeRecordGroup[params.size()];
-        Integer[] param;
-        for (int i = 0; i < result.length; i++) {
-            param = params.get(i);
-            result[i] = new RDBMSRangeRecordGroup(tableName, columns, timeFrom, timeTo,
-                    recordsFrom, recordsCount, param[0], param[1]);
+        /* the hint is shared between the timestamp and the partition key dimensions, the partition keys take
+         * the splits the timestamp ranges could not provide, e.g. when the table has no records yet */
+        int timeSplits = numPartitionsHint > 1 ? Math.max((int) Math.sqrt(numPartitionsHint),
+                (numPartitionsHint + this.getPartitionCount() - 1) / this.getPartitionCount()) : 1;
+        List<Long[]> timeRanges = this.generateTimeRangePlan(tableName, timeFrom, timeTo, timeSplits);
+        List<Integer[]> keyRanges = this.generatePartitionPlan(
+                (numPartitionsHint + timeRanges.size() - 1) / timeRanges.size());
+        RDBMSRangeRecordGroup[] result = new RDBMSRangeRecordGroup[keyRanges.size() * timeRanges.size()];
+        int index = 0;
+        for (Long[] timeRange : timeRanges) {
+            for (Integer[] keyRange : keyRanges) {
+                result[index++] = new RDBMSRangeRecordGroup(tableName, columns, timeRange[0], timeRange[1],
+                        recordsFrom, recordsCount, keyRange[0], keyRange[1]);
+            }
+        }
+        return result;
+    }
+
+    private List<Long[]> generateTimeRangePlan(String tableName, long timeFrom, long timeTo,
+                                               int splits) throws AnalyticsException {
+        List<Long[]> result = new ArrayList<>(Math.max(1, splits));
+        if (splits > 1) {
+            long[] bounds = this.lookupTimeBounds(tableName, timeFrom, timeTo);
+            /* the span is calculated inclusive of the max value, bail out if it would overflow */
+            if (bounds != null && bounds[1] > bounds[0] && bounds[1] - bounds[0] < Long.MAX_VALUE) {
+                long step = Math.max(1, (bounds[1] - bounds[0] + 1) / splits);
+                long current = timeFrom;
+                long end;
+                for (int i = 0; i < splits && current < timeTo; i++) {
+                    /* the first and the last ranges are stretched to the requested bounds, so records
+                     * added after planning are not missed */
+                    if (i + 1 == splits || bounds[0] + step * (i + 1) >= timeTo) {
+                        end = timeTo;
+                    } else {
+                        end = bounds[0] + step * (i + 1);
+                    }
+                    result.add(new Long[]{current, end});
+                    current = end;
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(new Long[]{timeFrom, timeTo});
         }
         return result;
     }
 
+    private long[] lookupTimeBounds(String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        String query = this.getRecordTimeRangeQuery(tableName);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                long min = rs.getLong(1);
+                if (rs.wasNull()) {
+                    return null;
+                }
+                return new long[]{min, rs.getLong(2)};
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in looking up the time range of table '" + tableName + "': " +
+                    e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+
+    @Override
+    public RecordGroupStatistics getStatistics(RecordGroup recordGroup) throws AnalyticsException {
+        if (recordGroup instanceof RDBMSIDsRecordGroup) {
+            return new RecordGroupStatistics(((RDBMSIDsRecordGroup) recordGroup).getIds().size(),
+                    RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN);
+        } else if (recordGroup instanceof RDBMSRangeRecordGroup) {
+            return this.lookupRangeStatistics((RDBMSRangeRecordGroup) recordGroup);
+        } else {
+            throw new AnalyticsException("Invalid RDBMS RecordGroup implementation: " + recordGroup.getClass());
+        }
+    }
+
+    private RecordGroupStatistics lookupRangeStatistics(RDBMSRangeRecordGroup recordGroup) throws AnalyticsException {
+        String query = this.getRecordStatisticsQuery(recordGroup.getTableName());
+        if (query == null) {
+            return null;
+        }
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setInt(1, recordGroup.getPartitionStart());
+            stmt.setInt(2, recordGroup.getPartitionEnd());
+            stmt.setLong(3, recordGroup.getTimeFrom());
+            stmt.setLong(4, recordGroup.getTimeTo());
+            rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            long count = rs.getLong(1);
+            if (count == 0) {
+                return new RecordGroupStatistics(0, 0, RecordGroupStatistics.UNKNOWN, RecordGroupStatistics.UNKNOWN);
+            }
+            long minTimestamp = rs.getLong(2);
+            long maxTimestamp = rs.getLong(3);
+            /* a paginated group only reads a slice of the range */
+            long pageCount = recordGroup.getRecordsCount();
+            if (pageCount >= 0 && pageCount != Integer.MAX_VALUE) {
+                count = Math.max(0, Math.min(pageCount, count - recordGroup.getRecordsFrom()));
+            }
+            /* the size of the records is not known without reading the data blobs, which is what the
+             * statistics are meant to avoid */
+            return new RecordGroupStatistics(count, RecordGroupStatistics.UNKNOWN, minTimestamp, maxTimestamp);
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in looking up the statistics of table '" +
+                    recordGroup.getTableName() + "': " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+
     @Override
     public AnalyticsIterator<Record> readRecords(RecordGroup recordGroup) throws AnalyticsException {
+        AnalyticsIterator<Record> result;
         if (recordGroup instanceof RDBMSRangeRecordGroup) {
             RDBMSRangeRecordGroup recordRangeGroup = (RDBMSRangeRecordGroup) recordGroup;
-            return this.getRecords(recordRangeGroup.getTableName(),
+            result = this.getRecords(recordRangeGroup.getTableName(),
                     recordRangeGroup.getColumns(), recordRangeGroup.getTimeFrom(),
                     recordRangeGroup.getTimeTo(), recordRangeGroup.getRecordsFrom(), recordRangeGroup.getRecordsCount(),
                     recordRangeGroup.getPartitionStart(), recordRangeGroup.getPartitionEnd());
         } else if (recordGroup instanceof RDBMSIDsRecordGroup) {
             RDBMSIDsRecordGroup recordIdGroup = (RDBMSIDsRecordGroup) recordGroup;
-            return this.getRecords(recordIdGroup.getTableName(),
+            result = this.getRecords(recordIdGroup.getTableName(),
                     recordIdGroup.getColumns(), recordIdGroup.getIds());
         } else {
             throw new AnalyticsException("Invalid RDBMS RecordGroup implementation: " + recordGroup.getClass());
         }
+        if (this.readPrefetchExecutor != null) {
+            result = new RDBMSPrefetchingIterator(result, this.readPrefetchSize, this.readPrefetchExecutor);
+        }
+        return result;
+    }
+
+    private void acquireReadPermit() throws AnalyticsException {
+        if (this.readPermits != null) {
+            try {
+                this.readPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AnalyticsException("Interrupted while waiting for a read connection: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void releaseReadPermit() {
+        if (this.readPermits != null) {
+            this.readPermits.release();
+        }
     }
 
     public AnalyticsIterator<Record> getRecords(String tableName, List<String> columns,
@@ -368,6 +654,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs;
+        this.acquireReadPermit();
+        /* from here on, the permit is released by the iterator once it is exhausted, fails or is closed */
+        boolean iteratorCreated = false;
         try {
             conn = this.getConnection(false);
             if (!this.rdbmsQueryConfigurationEntry.isForwardOnlyReadEnabled()) {
@@ -388,7 +677,8 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             stmt.setInt(5, paginationIndices[0]);
             stmt.setInt(6, paginationIndices[1]);
             rs = stmt.executeQuery();
-            return new RDBMSResultSetIterator(tableName, columns, conn, stmt, rs);
+            iteratorCreated = true;
+            return new RDBMSResultSetIterator(this, tableName, columns, conn, stmt, rs);
         } catch (SQLException e) {
             if (conn != null && !this.tableExists(conn, tableName)) {
                 RDBMSUtils.cleanupConnection(null, stmt, conn);
@@ -397,6 +687,10 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                 RDBMSUtils.cleanupConnection(null, stmt, conn);
                 throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
             }
+        } finally {
+            if (!iteratorCreated) {
+                this.releaseReadPermit();
+            }
         }
     }
 
@@ -438,6 +732,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs;
+        this.acquireReadPermit();
+        /* from here on, the permit is released by the iterator once it is exhausted, fails or is closed */
+        boolean iteratorCreated = false;
         try {
             conn = this.getConnection();
             stmt = conn.prepareStatement(recordGetSQL);
@@ -445,7 +742,8 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                 stmt.setString(i + 1, ids.get(i));
             }
             rs = stmt.executeQuery();
-            return new RDBMSResultSetIterator(tableName, columns, conn, stmt, rs);
+            iteratorCreated = true;
+            return new RDBMSResultSetIterator(this, tableName, columns, conn, stmt, rs);
         } catch (SQLException e) {
             if (conn != null && !this.tableExists(conn, tableName)) {
                 RDBMSUtils.cleanupConnection(null, stmt, conn);
@@ -454,6 +752,10 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                 RDBMSUtils.cleanupConnection(null, stmt, conn);
                 throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
             }
+        } finally {
+            if (!iteratorCreated) {
+                this.releaseReadPermit();
+            }
         }
     }
 
@@ -502,7 +804,9 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
     @Override
     public void destroy() throws AnalyticsException {
-        /* do nothing */
+        if (this.readPrefetchExecutor != null) {
+            this.readPrefetchExecutor.shutdownNow();
+        }
     }
 
     private void delete(Connection conn, String tableName, List<String> ids) throws AnalyticsException {
@@ -540,6 +844,20 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         return query.replace(RECORD_IDS_PLACEHOLDER, this.getDynamicSQLParams(recordCount));
     }
 
+    private String getRecordTimeRangeQuery(String tableName) {
+        String query = this.getQueryConfiguration().getRecordTimeRangeQuery();
+        if (query == null) {
+            /* the query is standard SQL, so the time splits do not depend on every configuration defining it */
+            query = RDBMSAnalyticsDSConstants.DEFAULT_RECORD_TIME_RANGE_QUERY;
+        }
+        return this.translateQueryWithTableInfo(query, tableName);
+    }
+
+    private String getRecordStatisticsQuery(String tableName) {
+        String query = this.getQueryConfiguration().getRecordStatisticsQuery();
+        return this.translateQueryWithTableInfo(query, tableName);
+    }
+
     private String getRecordRetrievalQuery(String tableName) {
         String query = this.getQueryConfiguration().getRecordRetrievalQuery();
         return this.translateQueryWithTableInfo(query, tableName);
@@ -552,6 +870,17 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         return query;
     }
 
+    private String generateGetRecordIdRetrievalWithIdQuery(String tableName, int recordCount) {
+        String query = this.getQueryConfiguration().getRecordIdRetrievalWithIdsQuery();
+        if (query == null) {
+            /* the record id is the first column of the full record retrieval query too */
+            query = this.getQueryConfiguration().getRecordRetrievalWithIdsQuery();
+        }
+        query = this.translateQueryWithTableInfo(query, tableName);
+        query = this.translateQueryWithRecordIdsInfo(query, recordCount);
+        return query;
+    }
+
     private String generateRecordDeletionRecordsWithIdsQuery(String tableName, int recordCount) {
         String query = this.getQueryConfiguration().getRecordDeletionWithIdsQuery();
         query = this.translateQueryWithTableInfo(query, tableName);
@@ -640,6 +969,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
      */
     private static class RDBMSResultSetIterator implements AnalyticsIterator<Record> {
 
+        private RDBMSAnalyticsRecordStore reader;
         private String tableName;
         private List<String> columns;
         private Connection conn;
@@ -647,9 +977,11 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         private ResultSet rs;
         private Record nextValue;
         private boolean prefetched;
+        private boolean released;
 
-        public RDBMSResultSetIterator(String tableName, List<String> columns,
+        public RDBMSResultSetIterator(RDBMSAnalyticsRecordStore reader, String tableName, List<String> columns,
                                       Connection conn, Statement stmt, ResultSet rs) {
+            this.reader = reader;
             this.tableName = tableName;
             this.columns = columns;
             this.conn = conn;
@@ -674,6 +1006,10 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                 this.nextValue = null;
                 return result;
             }
+            if (this.rs == null) {
+                /* already exhausted or closed, and the read permit is released */
+                return null;
+            }
             Set<String> colSet = null;
             if (this.columns != null && this.columns.size() > 0) {
                 colSet = new HashSet<>(this.columns);
@@ -690,18 +1026,26 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
                     return new Record(this.rs.getString(1), this.tableName, values, this.rs.getLong(2));
                 } else {
                     /* end of the result set, time to clean up.. */
-                    RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
-                    this.rs = null;
-                    this.stmt = null;
-                    this.conn = null;
+                    this.cleanup();
                     return null;
                 }
             } catch (Exception e) {
-                RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
+                this.cleanup();
                 throw new RuntimeException(e.getMessage(), e);
             }
         }
 
+        private synchronized void cleanup() {
+            RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
+            this.rs = null;
+            this.stmt = null;
+            this.conn = null;
+            if (!this.released) {
+                this.released = true;
+                this.reader.releaseReadPermit();
+            }
+        }
+
         @Override
         public void remove() {
             /* this is a read-only iterator, nothing will be removed */
@@ -711,16 +1055,13 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
         protected void finalize() throws Throwable {
             /* in the unlikely case, this iterator does not go to the end,
              * we have to make sure the connection is cleaned up */
-            RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
+            this.cleanup();
             super.finalize();
         }
 
         @Override
         public void close() throws IOException {
-            RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
-            this.rs = null;
-            this.stmt = null;
-            this.conn = null;
+            this.cleanup();
         }
     }
 
@@ -760,7 +1101,7 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
         private RecordGroup[] rgs;
 
-        private Iterator<Record> itr;
+        private AnalyticsIterator<Record> itr;
 
         private int index = -1;
 
@@ -783,11 +1124,14 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
             } else {
                 if (rgs.length > this.index + 1) {
                     try {
+                        if (this.itr != null) {
+                            this.itr.close();
+                        }
                         this.index++;
                         RDBMSIDsRecordGroup recordIdGroup = (RDBMSIDsRecordGroup) (rgs[index]);
                         this.itr = this.reader.getRecords(recordIdGroup.getTableName(),
                                 recordIdGroup.getColumns(), recordIdGroup.getIds());
-                    } catch (AnalyticsException e) {
+                    } catch (AnalyticsException | IOException e) {
                         throw new IllegalStateException("Error in traversing record group: " + e.getMessage(), e);
                     }
                     return this.hasNext();
@@ -813,9 +1157,104 @@ public class RDBMSAnalyticsRecordStore implements AnalyticsRecordStore {
 
         @Override
         public void close() throws IOException {
-            /* ignored */
+            /* releases the read permit of the group being read, the earlier groups have released theirs */
+            if (this.itr != null) {
+                this.itr.close();
+            }
         }
     }
 
+    /**
+     * This class wraps a record iterator and reads the next batch of records in the background,
+     * while the consumer is processing the current batch.
+     */
+    private static class RDBMSPrefetchingIterator implements AnalyticsIterator<Record> {
+
+        private AnalyticsIterator<Record> source;
+
+        private int batchSize;
+
+        private ExecutorService executor;
+
+        private List<Record> batch = Collections.emptyList();
+
+        private int index;
+
+        private Future<List<Record>> nextBatch;
+
+        public RDBMSPrefetchingIterator(AnalyticsIterator<Record> source, int batchSize, ExecutorService executor) {
+            this.source = source;
+            this.batchSize = batchSize;
+            this.executor = executor;
+            this.nextBatch = this.fetchNextBatch();
+        }
+
+        private Future<List<Record>> fetchNextBatch() {
+            return this.executor.submit(() -> {
+                List<Record> result = new ArrayList<>(batchSize);
+                while (result.size() < batchSize && source.hasNext()) {
+                    result.add(source.next());
+                }
+                return result;
+            });
+        }
+
+        private List<Record> awaitNextBatch() {
+            try {
+                return this.nextBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while prefetching records: " + e.getMessage(), e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error in prefetching records: " + e.getCause().getMessage(),
+                        e.getCause());
+            } finally {
+                this.nextBatch = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.index < this.batch.size()) {
+                return true;
+            }
+            if (this.nextBatch == null) {
+                return false;
+            }
+            this.batch = this.awaitNextBatch();
+            this.index = 0;
+            if (this.batch.size() == this.batchSize) {
+                this.nextBatch = this.fetchNextBatch();
+            }
+            return !this.batch.isEmpty();
+        }
+
+        @Override
+        public Record next() {
+            if (this.hasNext()) {
+                return this.batch.get(this.index++);
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+
+        @Override
+        public void close() throws IOException {
+            /* wait for any in-flight fetch, so the underlying result set is not used concurrently while closing */
+            if (this.nextBatch != null) {
+                try {
+                    this.awaitNextBatch();
+                } catch (IllegalStateException ignore) {
+                    /* the source is closed below anyway */
+                }
+            }
+            this.source.close();
+        }
+    }
 
 }
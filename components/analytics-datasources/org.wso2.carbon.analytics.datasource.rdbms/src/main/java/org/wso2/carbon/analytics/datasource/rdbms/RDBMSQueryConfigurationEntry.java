@@ -42,6 +42,9 @@ public class RDBMSQueryConfigurationEntry {
     private String recordRetrievalQuery;
     private String recordDeletionQuery;
     private String recordRetrievalWithIdsQuery;
+    private String recordIdRetrievalWithIdsQuery;
+    private String recordTimeRangeQuery;
+    private String recordStatisticsQuery;
     private String recordDeletionWithIdsQuery;
     private int recordBatchSize = RDBMSAnalyticsDSConstants.RECORD_BATCH_SIZE;
     private PaginationMode paginationMode;
@@ -161,6 +164,30 @@ public class RDBMSQueryConfigurationEntry {
         this.recordRetrievalWithIdsQuery = recordRetrievalWithIdsQuery;
     }
 
+    public String getRecordIdRetrievalWithIdsQuery() {
+        return recordIdRetrievalWithIdsQuery;
+    }
+
+    public void setRecordIdRetrievalWithIdsQuery(String recordIdRetrievalWithIdsQuery) {
+        this.recordIdRetrievalWithIdsQuery = recordIdRetrievalWithIdsQuery;
+    }
+
+    public String getRecordTimeRangeQuery() {
+        return recordTimeRangeQuery;
+    }
+
+    public void setRecordTimeRangeQuery(String recordTimeRangeQuery) {
+        this.recordTimeRangeQuery = recordTimeRangeQuery;
+    }
+
+    public String getRecordStatisticsQuery() {
+        return recordStatisticsQuery;
+    }
+
+    public void setRecordStatisticsQuery(String recordStatisticsQuery) {
+        this.recordStatisticsQuery = recordStatisticsQuery;
+    }
+
     public String getRecordDeletionWithIdsQuery() {
         return recordDeletionWithIdsQuery;
     }
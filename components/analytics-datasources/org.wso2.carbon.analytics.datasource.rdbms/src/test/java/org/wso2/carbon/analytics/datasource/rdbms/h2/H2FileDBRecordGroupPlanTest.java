@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms.h2;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsIterator;
+import org.wso2.carbon.analytics.data.commons.sources.Record;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.test.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsDSConstants;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSRangeRecordGroup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * H2 tests of the record groups the RDBMS record store splits a read into, and of reading them with prefetching.
+ */
+public class H2FileDBRecordGroupPlanTest {
+
+    private static final String TABLE_NAME = "PLAN_T1";
+    private static final long TIME_FROM = 1000;
+    private static final int RECORD_COUNT = 100;
+
+    private RDBMSAnalyticsRecordStore recordStore;
+    private RDBMSAnalyticsRecordStore prefetchingRecordStore;
+    private List<Record> records;
+
+    @BeforeClass
+    public void setup() throws AnalyticsException {
+        System.setProperty(AnalyticsCommonUtils.WSO2_CARBON_CONF_DIR_SYS_PROP, "src/test/resources/conf_h2a");
+        this.recordStore = this.createRecordStore(0);
+        /* the records are read in exactly full batches, followed by an empty one */
+        this.prefetchingRecordStore = this.createRecordStore(4);
+        this.recordStore.deleteTable(TABLE_NAME);
+        this.recordStore.createTable(TABLE_NAME);
+        this.records = AnalyticsRecordStoreTest.generateRecords(TABLE_NAME, 1, RECORD_COUNT, TIME_FROM, 1);
+        this.recordStore.put(this.records);
+    }
+
+    @AfterClass
+    public void destroy() throws AnalyticsException {
+        this.recordStore.deleteTable(TABLE_NAME);
+        this.recordStore.destroy();
+        this.prefetchingRecordStore.destroy();
+    }
+
+    private RDBMSAnalyticsRecordStore createRecordStore(int readPrefetchSize) throws AnalyticsException {
+        RDBMSAnalyticsRecordStore store = new RDBMSAnalyticsRecordStore();
+        Map<String, String> props = new HashMap<>();
+        props.put(RDBMSAnalyticsDSConstants.DATASOURCE, "WSO2_ANALYTICS_EVENT_STORE_DB");
+        props.put(RDBMSAnalyticsDSConstants.PARTITION_COUNT, "4");
+        props.put(RDBMSAnalyticsDSConstants.READ_PREFETCH_SIZE, Integer.toString(readPrefetchSize));
+        store.init(props);
+        return store;
+    }
+
+    @Test
+    public void testTimeSplitBoundaries() throws AnalyticsException, IOException {
+        RecordGroup[] groups = this.recordStore.get(TABLE_NAME, 16, null, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1);
+        /* four time ranges, split evenly over the actual timestamps 1000 to 1099, of four key ranges each */
+        Assert.assertEquals(groups.length, 16);
+        List<Long> timeBounds = this.getTimeBounds(groups);
+        Assert.assertEquals(timeBounds, Arrays.asList(Long.MIN_VALUE, 1025L, 1050L, 1075L,
+                Long.MAX_VALUE));
+        this.assertReadOnce(groups, this.records);
+    }
+
+    @Test
+    public void testTimeSplitBoundariesOfSubRange() throws AnalyticsException, IOException {
+        RecordGroup[] groups = this.recordStore.get(TABLE_NAME, 16, null, TIME_FROM + 10, TIME_FROM + 20, 0, -1);
+        /* the ranges are half open, the record at the end of the requested range is not read */
+        List<Long> timeBounds = this.getTimeBounds(groups);
+        Assert.assertEquals(timeBounds.get(0).longValue(), TIME_FROM + 10);
+        Assert.assertEquals(timeBounds.get(timeBounds.size() - 1).longValue(), TIME_FROM + 20);
+        Assert.assertTrue(timeBounds.size() > 2);
+        this.assertReadOnce(groups, this.records.subList(10, 20));
+    }
+
+    @Test
+    public void testTimeSplitOfEmptyRange() throws AnalyticsException, IOException {
+        /* there is nothing to split the time on, so the partition keys take all the splits */
+        RecordGroup[] groups = this.recordStore.get(TABLE_NAME, 16, null, 0, TIME_FROM, 0, -1);
+        Assert.assertEquals(groups.length, 4);
+        Assert.assertEquals(this.getTimeBounds(groups), Arrays.asList(0L, TIME_FROM));
+        this.assertReadOnce(groups, new ArrayList<>());
+    }
+
+    @Test
+    public void testPrefetchedRecordsKeepTheirOrder() throws AnalyticsException, IOException {
+        RecordGroup group = this.recordStore.get(TABLE_NAME, 1, null, Long.MIN_VALUE, Long.MAX_VALUE, 0, -1)[0];
+        List<String> expected = this.readIds(this.recordStore, group);
+        Assert.assertEquals(expected.size(), RECORD_COUNT);
+        Assert.assertEquals(this.readIds(this.prefetchingRecordStore, group), expected);
+    }
+
+    /**
+     * Returns the distinct time bounds of the groups, checking that the time ranges follow each other.
+     */
+    private List<Long> getTimeBounds(RecordGroup[] groups) {
+        List<Long> result = new ArrayList<>();
+        for (RecordGroup group : groups) {
+            RDBMSRangeRecordGroup rangeGroup = (RDBMSRangeRecordGroup) group;
+            if (result.isEmpty()) {
+                result.add(rangeGroup.getTimeFrom());
+                result.add(rangeGroup.getTimeTo());
+            } else if (rangeGroup.getTimeFrom() != result.get(result.size() - 2)) {
+                Assert.assertEquals(rangeGroup.getTimeFrom(), result.get(result.size() - 1).longValue());
+                Assert.assertTrue(rangeGroup.getTimeTo() > rangeGroup.getTimeFrom());
+                result.add(rangeGroup.getTimeTo());
+            }
+        }
+        return result;
+    }
+
+    private void assertReadOnce(RecordGroup[] groups, List<Record> expected) throws AnalyticsException,
+            IOException {
+        Set<String> ids = new HashSet<>();
+        for (RecordGroup group : groups) {
+            RDBMSRangeRecordGroup rangeGroup = (RDBMSRangeRecordGroup) group;
+            try (AnalyticsIterator<Record> iterator = this.recordStore.readRecords(group)) {
+                while (iterator.hasNext()) {
+                    Record record = iterator.next();
+                    Assert.assertTrue(record.getTimestamp() >= rangeGroup.getTimeFrom() &&
+                            record.getTimestamp() < rangeGroup.getTimeTo());
+                    Assert.assertTrue(ids.add(record.getId()), "Record " + record.getId() + " is read twice");
+                }
+            }
+        }
+        Set<String> expectedIds = new HashSet<>();
+        for (Record record : expected) {
+            expectedIds.add(record.getId());
+        }
+        Assert.assertEquals(ids, expectedIds);
+    }
+
+    private List<String> readIds(RDBMSAnalyticsRecordStore store, RecordGroup group) throws AnalyticsException,
+            IOException {
+        List<String> ids = new ArrayList<>();
+        try (AnalyticsIterator<Record> iterator = store.readRecords(group)) {
+            while (iterator.hasNext()) {
+                ids.add(iterator.next().getId());
+            }
+        }
+        return ids;
+    }
+
+}
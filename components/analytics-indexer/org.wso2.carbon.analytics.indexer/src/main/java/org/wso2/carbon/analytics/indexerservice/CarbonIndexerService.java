@@ -1,5 +1,6 @@
 package org.wso2.carbon.analytics.indexerservice;
 
+import org.wso2.carbon.analytics.indexerservice.config.IndexerConfiguration;
 import org.wso2.carbon.analytics.indexerservice.exceptions.IndexSchemaNotFoundException;
 import org.wso2.carbon.analytics.indexerservice.exceptions.IndexerException;
 import org.wso2.carbon.analytics.indexerservice.impl.CarbonIndexerClient;
@@ -71,7 +72,14 @@ public interface CarbonIndexerService {
     public boolean indexConfigsExists(String table) throws IndexerException;
 
     /**
-     * Inserts records as Solr documents to Solr index.
+     * Returns the indexer configuration the service was initialized with.
+     * @return {@link IndexerConfiguration}, or null if the configuration could not be loaded
+     */
+    public IndexerConfiguration getIndexerConfiguration();
+
+    /**
+     * Inserts records as Solr documents to Solr index. The documents are committed within the configured
+     * commit-within interval, or immediately if it is not set.
      * @param table The name of the table from which the documents/records are indexed
      * @param docs Documents which represents the records
      * @throws IndexerException Exceptions is thrown if something goes wrong.
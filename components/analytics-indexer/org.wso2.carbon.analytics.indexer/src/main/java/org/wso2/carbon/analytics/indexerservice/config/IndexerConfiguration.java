@@ -12,10 +12,16 @@ public class IndexerConfiguration {
     private final static String BASE_CONFIG_SET = "gettingstarted";
     private final static String DEFAULT_NO_OF_SHARDS = "2";
     private final static String DEFAULT_NO_OF_REPLICA = "1";
+    private final static String DEFAULT_COMMIT_WITHIN_MS = "1000";
+    private final static String DEFAULT_INDEX_QUEUE_SIZE = "1024";
+    private final static String DEFAULT_INDEX_BATCH_SIZE = "5000";
     private String solrServerUrl;
     private int noOfShards;
     private int noOfReplicas;
     private String baseConfigSet;
+    private int commitWithinMs = Integer.parseInt(DEFAULT_COMMIT_WITHIN_MS);
+    private int indexQueueSize = Integer.parseInt(DEFAULT_INDEX_QUEUE_SIZE);
+    private int indexBatchSize = Integer.parseInt(DEFAULT_INDEX_BATCH_SIZE);
 
     @XmlElement(name = "solr-cloud-url", defaultValue = DEFAULT_SOLR_URL )
     public String getSolrServerUrl() {
@@ -52,4 +58,41 @@ public class IndexerConfiguration {
     public void setBaseConfigSet(String baseConfigSet) {
         this.baseConfigSet = baseConfigSet;
     }
-}
+
+    /**
+     * The maximum time in milliseconds Solr may hold added documents before making them searchable.
+     * A value less than or equal to zero makes every update request issue an explicit commit.
+     */
+    @XmlElement(name = "commit-within-ms", defaultValue = DEFAULT_COMMIT_WITHIN_MS)
+    public int getCommitWithinMs() {
+        return commitWithinMs;
+    }
+
+    public void setCommitWithinMs(int commitWithinMs) {
+        this.commitWithinMs = commitWithinMs;
+    }
+
+    /**
+     * The number of staged record batches which the index worker reads from the staging area at a time.
+     */
+    @XmlElement(name = "index-queue-size", defaultValue = DEFAULT_INDEX_QUEUE_SIZE)
+    public int getIndexQueueSize() {
+        return indexQueueSize;
+    }
+
+    public void setIndexQueueSize(int indexQueueSize) {
+        this.indexQueueSize = indexQueueSize;
+    }
+
+    /**
+     * The maximum number of documents sent to Solr in a single update request.
+     */
+    @XmlElement(name = "index-batch-size", defaultValue = DEFAULT_INDEX_BATCH_SIZE)
+    public int getIndexBatchSize() {
+        return indexBatchSize;
+    }
+
+    public void setIndexBatchSize(int indexBatchSize) {
+        this.indexBatchSize = indexBatchSize;
+    }
+}
\ No newline at end of file
@@ -383,13 +383,23 @@ public class CarbonIndexerServiceImpl implements CarbonIndexerService {
         }
     }
 
+    @Override
+    public IndexerConfiguration getIndexerConfiguration() {
+        return indexConfig;
+    }
+
     @Override
     public void indexDocuments(String table, List<CarbonIndexDocument> docs) throws IndexerException {
         try {
             CarbonIndexerClient client = getIndexerClient();
-            client.add(table, IndexerUtils.getSolrInputDocuments(docs));
-            //TODO:should find a better way to commit, there are different overloaded methods of commit
-            client.commit(table);
+            int commitWithinMs = indexConfig != null ? indexConfig.getCommitWithinMs() : 0;
+            if (commitWithinMs > 0) {
+                /* let Solr batch the commits, instead of opening a new searcher for every update request */
+                client.add(table, IndexerUtils.getSolrInputDocuments(docs), commitWithinMs);
+            } else {
+                client.add(table, IndexerUtils.getSolrInputDocuments(docs));
+                client.commit(table);
+            }
         } catch (SolrServerException | IOException e) {
             log.error("Error while inserting the documents to index for table: " + table, e);
             throw new IndexerException("Error while inserting the documents to index for table: " + table, e);
@@ -36,40 +36,58 @@ import scala.runtime.AbstractFunction1;
 import scala.runtime.BoxedUnit;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * This class is used by Spark to write to the DAL Layer.
+ * This class is used by Spark to write to the DAL Layer. The rows are converted into records while up to
+ * a configured number of earlier batches are being written to the data service asynchronously, so a task
+ * does not have to alternate between converting rows and waiting on the record store.
  */
 public class AnalyticsDALWriter extends AbstractFunction1<Iterator<Row>, BoxedUnit> implements Serializable {
 
     private static final long serialVersionUID = -1919222653470217466L;
     private static final Log log = LogFactory.getLog(AnalyticsDALWriter.class);
 
+    private static final AtomicInteger writerThreadCount = new AtomicInteger();
+
+    /* shared by all the tasks of an executor, the number of outstanding puts is bounded per task */
+    private static final ExecutorService writerExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "AnalyticsDALWriter-" + writerThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private int recordBatchSize;
+    private int maxPendingBatches;
     private String tableName;
     private StructType sch;
 
     public AnalyticsDALWriter(String tableName, StructType sch, int recordBatchSize) {
+        this(tableName, sch, recordBatchSize, AnalyzerEngineConstants.DEFAULT_INSERT_MAX_PENDING_BATCHES);
+    }
+
+    /**
+     * Creates a writer which writes the given number of records per put, with at most the given number of
+     * puts in flight per task. If the max pending batches is zero, the records are written synchronously.
+     */
+    public AnalyticsDALWriter(String tableName, StructType sch, int recordBatchSize, int maxPendingBatches) {
         this.recordBatchSize = recordBatchSize;
+        this.maxPendingBatches = maxPendingBatches;
         this.tableName = tableName;
         this.sch = sch;
     }
 
-    private void handleAnalyticsTableSchemaInvalidation() {
-        AnalyticsDataService ads;
-        try {
-            ads = AnalyticsServiceHolder.getAnalyticsDataService();
-        } catch (AnalyticsDataServiceLoadException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
-        ads.invalidateTable(this.tableName);
-    }
-
     /**
      * Apply the body of this function to the argument.
      *
@@ -79,55 +97,100 @@ public class AnalyticsDALWriter extends AbstractFunction1<Iterator<Row>, BoxedUn
     @Override
     public BoxedUnit apply(Iterator<Row> iterator) {
         AnalyticsDataHolder.getInstance().setAnalyticsConfigsDir(SparkFiles.getRootDirectory());
-        List<Row> rows = new ArrayList<>(recordBatchSize);
+        AnalyticsDataService ads;
+        try {
+            ads = AnalyticsServiceHolder.getAnalyticsDataService();
+        } catch (AnalyticsDataServiceLoadException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
         /* We have to invalidate the table information, since here, if some other node
         changes the table information, we cannot know about it (no cluster communication) */
-        this.handleAnalyticsTableSchemaInvalidation();
-        while (iterator.hasNext()) {
-            if (rows.size() < recordBatchSize) {
-                rows.add(iterator.next());
-                if (rows.size() == recordBatchSize) {
-                    putRecords(rows);
-                    rows.clear();
+        ads.invalidateTable(this.tableName);
+        this.write(ads, iterator);
+        return BoxedUnit.UNIT;
+    }
+
+    /**
+     * Converts the rows into records and writes them to the given data service in batches.
+     */
+    void write(AnalyticsDataService ads, Iterator<Row> iterator) {
+        String[] columnNames = this.sch.fieldNames();
+        int timestampIndex = Arrays.asList(columnNames).indexOf(AnalyticsCommonConstants.TIMESTAMP_FIELD);
+        Deque<Future<?>> pendingPuts = new ArrayDeque<>();
+        boolean success = false;
+        try {
+            List<Record> records = new ArrayList<>(this.recordBatchSize);
+            while (iterator.hasNext()) {
+                records.add(this.convertToRecord(iterator.next(), columnNames, timestampIndex));
+                if (records.size() >= this.recordBatchSize) {
+                    this.putRecords(ads, records, pendingPuts);
+                    records = new ArrayList<>(this.recordBatchSize);
                 }
             }
+            if (!records.isEmpty()) {
+                this.putRecords(ads, records, pendingPuts);
+            }
+            while (!pendingPuts.isEmpty()) {
+                this.awaitPut(pendingPuts.poll());
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                /* the task is failing, the puts which have not started yet need not be done */
+                for (Future<?> pendingPut : pendingPuts) {
+                    pendingPut.cancel(false);
+                }
+            }
+        }
+    }
+
+    private void putRecords(AnalyticsDataService ads, List<Record> records, Deque<Future<?>> pendingPuts) {
+        if (this.maxPendingBatches <= 0) {
+            this.putRecords(ads, records);
+            return;
         }
-        if (!rows.isEmpty()) {
-            putRecords(rows);
+        while (pendingPuts.size() >= this.maxPendingBatches) {
+            this.awaitPut(pendingPuts.poll());
         }
-        return BoxedUnit.UNIT;
+        pendingPuts.add(writerExecutor.submit(() -> this.putRecords(ads, records)));
     }
 
-    private void putRecords(List<Row> rows) {
-        List<Record> records = new ArrayList<>(rows.size());
-        records.addAll(rows.stream().map(row -> this.convertToRecord(row, this.sch)).collect(Collectors.toList()));
+    private void putRecords(AnalyticsDataService ads, List<Record> records) {
         try {
-            AnalyticsDataService ads = AnalyticsServiceHolder.getAnalyticsDataService();
             ads.put(records);
         } catch (AnalyticsException e) {
             String msg = "Error while inserting data into table " + this.tableName + ": " + e.getMessage();
             throw new RuntimeException(msg, e);
-        } catch (AnalyticsDataServiceLoadException e) {
-            throw new RuntimeException(e.getMessage(), e);
         }
     }
 
-    private Record convertToRecord(Row row, StructType schema) {
-        String[] columnNames = schema.fieldNames();
-        Map<String, Object> result = new HashMap<>();
-        long timestamp = -1;
+    private void awaitPut(Future<?> put) {
+        try {
+            put.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while inserting data into table " + this.tableName, e);
+        } catch (ExecutionException e) {
+            /* rethrow in the task thread, so the task fails with the original cause */
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Record convertToRecord(Row row, String[] columnNames, int timestampIndex) {
+        Map<String, Object> result = new HashMap<>((int) (row.length() / 0.75f) + 1);
         for (int i = 0; i < row.length(); i++) {
-            if (columnNames[i].equals(AnalyticsCommonConstants.TIMESTAMP_FIELD)) {
-                timestamp = row.getLong(i);
-            } else {
+            if (i != timestampIndex) {
                 result.put(columnNames[i], row.get(i));
             }
         }
-        if (timestamp < 0) { // timestamp has not being set
+        if (timestampIndex < 0 || row.isNullAt(timestampIndex) || row.getLong(timestampIndex) < 0) {
+            // timestamp has not been set
             return new Record(this.tableName, result);
         } else {
-            return new Record(this.tableName, result, timestamp);
+            return new Record(this.tableName, result, row.getLong(timestampIndex));
         }
     }
 }
-
@@ -43,6 +43,8 @@ public class AnalyticsIncrementalMetaStore {
     private static final String COLUMN_TABLE_ID = "TABLE_ID";
     private static final String COLUMN_PRIMARY_VALUE = "PRIMARY_VAL";
     private static final String COLUMN_TEMP_VALUE = "TEMP_VAL";
+    private static final ThreadLocal<Map<String, List<IncrementalTimestampAccumulator>>> INCREMENTAL_SCANS =
+            new ThreadLocal<>();
 
     private AnalyticsDataService ads;
 
@@ -59,16 +61,11 @@ public class AnalyticsIncrementalMetaStore {
     }
 
     public void setLastProcessedTimestamp(String id, long ts, boolean isPrimary) throws AnalyticsException {
-        Map<String, Object> values = new HashMap<>();
-        values.put(COLUMN_TABLE_ID, id);
         if (isPrimary) {
-            values.put(COLUMN_PRIMARY_VALUE, ts);
+            this.writeTimestamps(id, ts, this.getLastProcessedTimestamp(id, false));
         } else {
-            values.put(COLUMN_PRIMARY_VALUE, this.getLastProcessedTimestamp(id, true));
-            values.put(COLUMN_TEMP_VALUE, ts);
+            this.writeTimestamps(id, this.getLastProcessedTimestamp(id, true), ts);
         }
-        Record record = new Record(INC_META_TABLE, values);
-        this.ads.put(new ArrayList<>(Collections.singletonList(record)));
     }
 
     public long getLastProcessedTimestamp(String id, boolean primaryValue) throws AnalyticsException {
@@ -94,8 +91,102 @@ public class AnalyticsIncrementalMetaStore {
         }
     }
 
+    /**
+     * Commits the given timestamp as the last processed timestamp of the incremental id, if it is later than the
+     * current one. The pending timestamp is cleared, since it is superseded by the committed one.
+     */
+    public void commitLastProcessedTimestamp(String id, long ts) throws AnalyticsException {
+        long current = this.getLastProcessedTimestamp(id, true);
+        this.writeTimestamps(id, Math.max(current, ts), Long.MIN_VALUE);
+    }
+
+    /**
+     * Commits the pending timestamp recorded by the incremental scans of queries which were not inserts,
+     * as done with the INCREMENTAL_TABLE_COMMIT command.
+     */
+    public void commitPendingTimestamp(String id) throws AnalyticsException {
+        long pending = this.getLastProcessedTimestamp(id, false);
+        if (pending != Long.MIN_VALUE) {
+            this.commitLastProcessedTimestamp(id, pending);
+        }
+    }
+
+    /**
+     * Moves the last processed timestamp of the incremental id back, so the next incremental scan re-reads
+     * the data from the given timestamp onwards.
+     */
+    public void backfillFrom(String id, long fromTs) throws AnalyticsException {
+        this.writeTimestamps(id, fromTs == Long.MIN_VALUE ? Long.MIN_VALUE : fromTs - 1, Long.MIN_VALUE);
+    }
+
     public void resetIncrementalTimestamps(String id) throws AnalyticsException {
-        this.setLastProcessedTimestamp(id, Long.MIN_VALUE, true);
-        this.setLastProcessedTimestamp(id, Long.MIN_VALUE, false);
+        this.writeTimestamps(id, Long.MIN_VALUE, Long.MIN_VALUE);
+    }
+
+    /* the meta record is written as a whole, since a put replaces all the values of an existing record */
+    private void writeTimestamps(String id, long primaryTs, long tempTs) throws AnalyticsException {
+        Map<String, Object> values = new HashMap<>();
+        values.put(COLUMN_TABLE_ID, id);
+        values.put(COLUMN_PRIMARY_VALUE, primaryTs);
+        values.put(COLUMN_TEMP_VALUE, tempTs);
+        Record record = new Record(INC_META_TABLE, values);
+        this.ads.put(new ArrayList<>(Collections.singletonList(record)));
+    }
+
+    /**
+     * Starts tracking the incremental scans planned by the current thread, for the query it is about to execute.
+     */
+    public static void beginIncrementalScans() {
+        INCREMENTAL_SCANS.set(new HashMap<>());
+    }
+
+    /**
+     * Registers an incremental scan planned by the current thread, with the accumulator its tasks report
+     * the read timestamps to.
+     */
+    public static void registerIncrementalScan(String id, IncrementalTimestampAccumulator accumulator) {
+        Map<String, List<IncrementalTimestampAccumulator>> scans = INCREMENTAL_SCANS.get();
+        if (scans != null) {
+            List<IncrementalTimestampAccumulator> accumulators = scans.get(id);
+            if (accumulators == null) {
+                accumulators = new ArrayList<>();
+                scans.put(id, accumulators);
+            }
+            accumulators.add(accumulator);
+        }
+    }
+
+    /**
+     * Stops tracking the incremental scans of the current thread, and returns the maximum timestamp read by
+     * the scans of each incremental id.
+     */
+    public static Map<String, Long> endIncrementalScans() {
+        return getMaxTimestamps(detachIncrementalScans());
+    }
+
+    /**
+     * Stops tracking the incremental scans of the current thread, and returns the scans planned so far. This is used
+     * when the tasks of the scans are still to run, e.g. for a query cursor, so the timestamps they read can be
+     * looked up with {@link #getMaxTimestamps(Map)} once the cursor is consumed.
+     */
+    public static Map<String, List<IncrementalTimestampAccumulator>> detachIncrementalScans() {
+        Map<String, List<IncrementalTimestampAccumulator>> scans = INCREMENTAL_SCANS.get();
+        INCREMENTAL_SCANS.remove();
+        return scans != null ? scans : Collections.emptyMap();
+    }
+
+    /**
+     * Returns the maximum timestamp read by the given scans of each incremental id.
+     */
+    public static Map<String, Long> getMaxTimestamps(Map<String, List<IncrementalTimestampAccumulator>> scans) {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, List<IncrementalTimestampAccumulator>> entry : scans.entrySet()) {
+            long maxTs = Long.MIN_VALUE;
+            for (IncrementalTimestampAccumulator accumulator : entry.getValue()) {
+                maxTs = Math.max(maxTs, accumulator.value());
+            }
+            result.put(entry.getKey(), maxTs);
+        }
+        return result;
     }
 }
@@ -22,21 +22,27 @@ import org.apache.spark.Partition;
 import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
- * Spark analytics partition implementation, based on {@link RecordGroup}.
+ * Spark analytics partition implementation, based on one or more {@link RecordGroup}s of a record store, which
+ * are read one after the other.
  */
 public class AnalyticsPartition implements Partition, Serializable {
 
     private static final long serialVersionUID = -5286081735740660738L;
 
     private String recordStoreName;
-    private RecordGroup recordGroup;
+    private RecordGroup[] recordGroups;
     private int index;
 
     public AnalyticsPartition(String recordStoreName, RecordGroup recordGroup, int index) {
+        this(recordStoreName, new RecordGroup[]{recordGroup}, index);
+    }
+
+    public AnalyticsPartition(String recordStoreName, RecordGroup[] recordGroups, int index) {
         this.recordStoreName = recordStoreName;
-        this.recordGroup = recordGroup;
+        this.recordGroups = recordGroups;
         this.index = index;
     }
 
@@ -44,8 +50,8 @@ public class AnalyticsPartition implements Partition, Serializable {
         return recordStoreName;
     }
 
-    public RecordGroup getRecordGroup() {
-        return recordGroup;
+    public RecordGroup[] getRecordGroups() {
+        return recordGroups;
     }
 
     @Override
@@ -55,7 +61,7 @@ public class AnalyticsPartition implements Partition, Serializable {
 
     @Override
     public int hashCode() {
-        return this.recordGroup.hashCode();
+        return Arrays.hashCode(this.recordGroups);
     }
 
     @Override
@@ -64,7 +70,7 @@ public class AnalyticsPartition implements Partition, Serializable {
             return false;
         }
         AnalyticsPartition part = (AnalyticsPartition) rhs;
-        return this.index == part.index && this.recordGroup.equals(part.getRecordGroup());
+        return this.index == part.index && Arrays.equals(this.recordGroups, part.getRecordGroups());
     }
 
 }
@@ -23,17 +23,21 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.spark.Dependency;
 import org.apache.spark.InterruptibleIterator;
 import org.apache.spark.Partition;
+import org.apache.spark.SparkConf;
 import org.apache.spark.SparkContext;
 import org.apache.spark.SparkFiles;
 import org.apache.spark.TaskContext;
 import org.apache.spark.rdd.RDD;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
+import org.wso2.carbon.analytics.data.commons.AnalyticsDataService;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataHolder;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataResponse;
 import org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonConstants;
 import org.wso2.carbon.analytics.data.commons.sources.Record;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroup;
+import org.wso2.carbon.analytics.data.commons.sources.RecordGroupStatistics;
 import org.wso2.carbon.analytics.engine.exceptions.AnalyticsDataServiceLoadException;
 import org.wso2.carbon.analytics.engine.services.AnalyticsServiceHolder;
 import scala.collection.Iterator;
@@ -41,9 +45,13 @@ import scala.collection.JavaConversions;
 import scala.collection.Seq;
 import scala.reflect.ClassTag;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import static scala.collection.JavaConversions.asScalaIterator;
 
@@ -56,21 +64,33 @@ public class AnalyticsRDD extends RDD<Row> {
     private static final long serialVersionUID = 5948588299500227997L;
 
     private String tableName;
-    private String incrementalId;
     private List<String> columns;
+    private List<String> ids;
     private long timeTo;
     private long timeFrom;
-    private boolean incrementalEnabled;
+    private IncrementalTimestampAccumulator incrementalTimestamps;
 
-    public AnalyticsRDD(String tableName, List<String> columns, long timeFrom, long timeTo, boolean incrementalEnabled,
-                        String incrementalId, SparkContext sc, Seq<Dependency<?>> deps, ClassTag<Row> evidence) {
+    public AnalyticsRDD(String tableName, List<String> columns, long timeFrom, long timeTo,
+                        IncrementalTimestampAccumulator incrementalTimestamps, SparkContext sc,
+                        Seq<Dependency<?>> deps, ClassTag<Row> evidence) {
+        this(tableName, columns, null, timeFrom, timeTo, incrementalTimestamps, sc, deps, evidence);
+    }
+
+    /**
+     * Creates an RDD which reads the given columns of the records in the given time range, restricted to the
+     * given record ids if those are not null. If an incremental timestamp accumulator is given, the timestamps
+     * of the read records are reported to it.
+     */
+    public AnalyticsRDD(String tableName, List<String> columns, List<String> ids, long timeFrom, long timeTo,
+                        IncrementalTimestampAccumulator incrementalTimestamps, SparkContext sc,
+                        Seq<Dependency<?>> deps, ClassTag<Row> evidence) {
         super(sc, deps, evidence);
         this.tableName = tableName;
+        this.ids = ids;
         this.timeFrom = timeFrom;
         this.timeTo = timeTo;
         this.columns = columns;
-        this.incrementalEnabled = incrementalEnabled;
-        this.incrementalId = incrementalId;
+        this.incrementalTimestamps = incrementalTimestamps;
     }
 
     @Override
@@ -78,18 +98,23 @@ public class AnalyticsRDD extends RDD<Row> {
         AnalyticsDataHolder.getInstance().setAnalyticsConfigsDir(SparkFiles.getRootDirectory());
         AnalyticsPartition partition = (AnalyticsPartition) split;
         try {
-            java.util.Iterator<Record> recordsItr = AnalyticsServiceHolder.getAnalyticsDataService().readRecords(
-                    partition.getRecordStoreName(), partition.getRecordGroup());
+            java.util.Iterator<Record> recordsItr = new RecordGroupsIterator(
+                    AnalyticsServiceHolder.getAnalyticsDataService(), partition.getRecordStoreName(),
+                    partition.getRecordGroups());
+            if (this.ids != null && (this.timeFrom != Long.MIN_VALUE || this.timeTo != Long.MAX_VALUE)) {
+                /* the id based record groups are not bounded by time, so the time range is applied here */
+                recordsItr = new TimeRangeRecordIterator(recordsItr, this.timeFrom, this.timeTo);
+            }
             return new InterruptibleIterator(taskContext, asScalaIterator(getRowRecordIteratorAdaptor(recordsItr,
-                    this.incrementalEnabled, this.incrementalId)));
+                    this.incrementalTimestamps)));
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
     protected java.util.Iterator<Row> getRowRecordIteratorAdaptor(java.util.Iterator<Record> recordItr,
-                                                                  boolean incEnable, String incID) {
-        return new RowRecordIteratorAdaptor(recordItr, incEnable, incID);
+                                                                  IncrementalTimestampAccumulator incTimestamps) {
+        return new RowRecordIteratorAdaptor(recordItr, incTimestamps);
     }
 
     @Override
@@ -97,7 +122,11 @@ public class AnalyticsRDD extends RDD<Row> {
         if (split instanceof AnalyticsPartition) {
             AnalyticsPartition ap = (AnalyticsPartition) split;
             try {
-                return JavaConversions.asScalaBuffer(Arrays.asList(ap.getRecordGroup().getLocations())).toList();
+                Set<String> locations = new LinkedHashSet<>();
+                for (RecordGroup recordGroup : ap.getRecordGroups()) {
+                    locations.addAll(Arrays.asList(recordGroup.getLocations()));
+                }
+                return JavaConversions.asScalaBuffer(new ArrayList<>(locations)).toList();
             } catch (AnalyticsException e) {
                 log.error("Error in getting preffered location: " + e.getMessage() +
                         " falling back to default impl.", e);
@@ -110,29 +139,229 @@ public class AnalyticsRDD extends RDD<Row> {
 
     @Override
     public Partition[] getPartitions() {
-        AnalyticsDataResponse resp;
         try {
-            resp = AnalyticsServiceHolder.getAnalyticsDataService().get(this.tableName,
-                    computePartitions(), this.columns, timeFrom, timeTo, 0, -1);
+            AnalyticsDataService ads = AnalyticsServiceHolder.getAnalyticsDataService();
+            SparkConf conf = this.sparkContext().getConf();
+            long targetBytes = conf.getSizeAsBytes(AnalyzerEngineConstants.CARBON_PARTITION_TARGET_SIZE,
+                    AnalyzerEngineConstants.DEFAULT_PARTITION_TARGET_SIZE);
+            long rowBytes = conf.getSizeAsBytes(AnalyzerEngineConstants.CARBON_PARTITION_ROW_SIZE,
+                    AnalyzerEngineConstants.DEFAULT_PARTITION_ROW_SIZE);
+            int maxPartitions = Math.max(1, conf.getInt(AnalyzerEngineConstants.CARBON_PARTITION_MAX,
+                    this.sparkContext().defaultParallelism() * 4));
+            if (this.ids != null) {
+                /* the number of records is known up front, so the ids are split into sized groups right away */
+                int numPartitions = AnalyzerEngineConstants.SPARK_DEFAULT_PARTITION_COUNT;
+                if (targetBytes > 0) {
+                    numPartitions = computePartitionCount(this.ids.size() * Math.max(1, rowBytes), targetBytes,
+                            maxPartitions);
+                }
+                return this.toPartitions(ads.get(this.tableName, numPartitions, this.columns, this.ids), null);
+            }
+            if (targetBytes <= 0) {
+                return this.toPartitions(ads.get(this.tableName, AnalyzerEngineConstants.SPARK_DEFAULT_PARTITION_COUNT,
+                        this.columns, this.timeFrom, this.timeTo, 0, -1), null);
+            }
+            /* the scan is planned once at the finest granularity allowed, and the record groups are packed into
+             * partitions of the target size */
+            AnalyticsDataResponse resp = ads.get(this.tableName, maxPartitions, this.columns, this.timeFrom,
+                    this.timeTo, 0, -1);
+            long[] groupBytes = this.estimateGroupSizes(ads, resp.getEntries(), rowBytes);
+            if (groupBytes == null) {
+                return this.toPartitions(resp, null);
+            }
+            int[] assignment = packRecordGroups(groupBytes, targetBytes, maxPartitions);
+            if (log.isDebugEnabled()) {
+                log.debug("Packed the " + groupBytes.length + " record groups of table '" + this.tableName +
+                        "' into " + (assignment.length == 0 ? 0 : assignment[assignment.length - 1] + 1) +
+                        " partitions.");
+            }
+            return this.toPartitions(resp, assignment);
         } catch (AnalyticsDataServiceLoadException e) {
             throw new RuntimeException(e.getMessage(), e);
         } catch (AnalyticsException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
+    }
+
+    /**
+     * Creates the partitions of the given response, where the given assignment maps each record group to the
+     * index of its partition. Without an assignment, each record group is a partition of its own.
+     */
+    private Partition[] toPartitions(AnalyticsDataResponse resp, int[] assignment) {
         List<AnalyticsDataResponse.Entry> entries = resp.getEntries();
-        Partition[] result = new Partition[entries.size()];
+        List<Partition> result = new ArrayList<>();
+        List<RecordGroup> current = new ArrayList<>();
+        String currentStore = null;
         for (int i = 0; i < entries.size(); i++) {
-            result[i] = new AnalyticsPartition(entries.get(i).getRecordStoreName(), entries.get(i).getRecordGroup(), i);
+            AnalyticsDataResponse.Entry entry = entries.get(i);
+            boolean split = assignment == null || (i > 0 && assignment[i] != assignment[i - 1]) ||
+                    !entry.getRecordStoreName().equals(currentStore);
+            if (split && !current.isEmpty()) {
+                result.add(new AnalyticsPartition(currentStore, current.toArray(new RecordGroup[current.size()]),
+                        result.size()));
+                current.clear();
+            }
+            currentStore = entry.getRecordStoreName();
+            current.add(entry.getRecordGroup());
+        }
+        if (!current.isEmpty()) {
+            result.add(new AnalyticsPartition(currentStore, current.toArray(new RecordGroup[current.size()]),
+                    result.size()));
+        }
+        return result.toArray(new Partition[result.size()]);
+    }
+
+    /**
+     * Estimates the size of each record group in bytes from its statistics, or from its row count and the
+     * configured average row size where the record store does not know the byte size. Returns null if the
+     * record store does not provide statistics for all the groups.
+     */
+    private long[] estimateGroupSizes(AnalyticsDataService ads, List<AnalyticsDataResponse.Entry> entries,
+                                      long rowBytes) throws AnalyticsException {
+        long[] result = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            RecordGroupStatistics stats = ads.getRecordGroupStatistics(entries.get(i).getRecordStoreName(),
+                    entries.get(i).getRecordGroup());
+            if (stats == null) {
+                return null;
+            } else if (stats.getByteSize() >= 0) {
+                result[i] = stats.getByteSize();
+            } else if (stats.getRowCount() >= 0) {
+                result[i] = stats.getRowCount() * Math.max(1, rowBytes);
+            } else {
+                return null;
+            }
         }
         return result;
     }
 
-    private int computePartitions() throws AnalyticsException {
-        //fixme: fix when analytics executor is added
-        /*if (ServiceHolder.getAnalyticskExecutor() != null) {
-            return ServiceHolder.getAnalyticskExecutor().getNumPartitionsHint();
-        }*/
-        return AnalyzerEngineConstants.SPARK_DEFAULT_PARTITION_COUNT;
+    /**
+     * Computes the number of partitions to split a scan of the given size into, so that each task reads roughly
+     * the target number of bytes, bounded by the given maximum.
+     */
+    static int computePartitionCount(long totalBytes, long targetBytes, int maxPartitions) {
+        long partitions = (totalBytes + targetBytes - 1) / targetBytes;
+        return (int) Math.max(1, Math.min(Math.max(1, maxPartitions), partitions));
+    }
+
+    /**
+     * Packs consecutive record groups into partitions of roughly the target number of bytes, without exceeding
+     * the maximum number of partitions. Returns the partition index of each record group, the indexes are
+     * ascending and contiguous from zero.
+     */
+    static int[] packRecordGroups(long[] groupBytes, long targetBytes, int maxPartitions) {
+        long totalBytes = 0;
+        for (long bytes : groupBytes) {
+            totalBytes += bytes;
+        }
+        int partitions = computePartitionCount(totalBytes, targetBytes, maxPartitions);
+        /* the partition size which spreads the scan evenly over the computed number of partitions */
+        long partitionBytes = Math.max(1, (totalBytes + partitions - 1) / partitions);
+        int[] result = new int[groupBytes.length];
+        long offset = 0;
+        long lastSlot = -1;
+        int index = -1;
+        for (int i = 0; i < groupBytes.length; i++) {
+            /* a group goes to the partition in which its first byte falls, a group starting in a slot already
+             * taken by the previous group is packed with it */
+            long slot = Math.min(offset / partitionBytes, partitions - 1);
+            if (slot != lastSlot) {
+                index++;
+                lastSlot = slot;
+            }
+            result[i] = index;
+            offset += groupBytes[i];
+        }
+        return result;
+    }
+
+    /**
+     * Record iterator which reads the given record groups one after the other.
+     */
+    private static class RecordGroupsIterator implements java.util.Iterator<Record> {
+
+        private AnalyticsDataService ads;
+        private String recordStoreName;
+        private RecordGroup[] recordGroups;
+        private int nextGroup;
+        private java.util.Iterator<Record> recordItr;
+
+        public RecordGroupsIterator(AnalyticsDataService ads, String recordStoreName, RecordGroup[] recordGroups) {
+            this.ads = ads;
+            this.recordStoreName = recordStoreName;
+            this.recordGroups = recordGroups;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((this.recordItr == null || !this.recordItr.hasNext()) &&
+                    this.nextGroup < this.recordGroups.length) {
+                try {
+                    this.recordItr = this.ads.readRecords(this.recordStoreName, this.recordGroups[this.nextGroup++]);
+                } catch (AnalyticsException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+            return this.recordItr != null && this.recordItr.hasNext();
+        }
+
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.recordItr.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Record iterator which skips the records outside the time range [timeFrom, timeTo).
+     */
+    private static class TimeRangeRecordIterator implements java.util.Iterator<Record> {
+
+        private java.util.Iterator<Record> recordItr;
+        private long timeFrom;
+        private long timeTo;
+        private Record nextRecord;
+
+        public TimeRangeRecordIterator(java.util.Iterator<Record> recordItr, long timeFrom, long timeTo) {
+            this.recordItr = recordItr;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.nextRecord == null && this.recordItr.hasNext()) {
+                Record record = this.recordItr.next();
+                if (record != null && record.getTimestamp() >= this.timeFrom && record.getTimestamp() < this.timeTo) {
+                    this.nextRecord = record;
+                }
+            }
+            return this.nextRecord != null;
+        }
+
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Record record = this.nextRecord;
+            this.nextRecord = null;
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
     }
 
     /**
@@ -141,42 +370,29 @@ public class AnalyticsRDD extends RDD<Row> {
     private class RowRecordIteratorAdaptor implements java.util.Iterator<Row> {
 
         private java.util.Iterator<Record> recordItr;
-        private boolean incEnable;
-        private String incID;
+        private IncrementalTimestampAccumulator incTimestamps;
         private long incMaxTS = Long.MIN_VALUE;
 
-        public RowRecordIteratorAdaptor(java.util.Iterator<Record> recordItr, boolean incEnable, String incID) {
+        public RowRecordIteratorAdaptor(java.util.Iterator<Record> recordItr,
+                                        IncrementalTimestampAccumulator incTimestamps) {
             this.recordItr = recordItr;
-            this.incEnable = incEnable;
-            this.incID = incID;
+            this.incTimestamps = incTimestamps;
         }
 
         @Override
         public boolean hasNext() {
             boolean hasNext = this.recordItr.hasNext();
-            if (!hasNext && this.incEnable) {
-                this.updateIncProcessingTS();
+            if (!hasNext && this.incTimestamps != null) {
+                /* the driver commits the maximum after the query succeeds, see AnalyticsIncrementalMetaStore */
+                this.incTimestamps.add(this.incMaxTS);
             }
             return hasNext;
         }
 
-        private void updateIncProcessingTS() {
-            try {
-                long existingIncTS = AnalyticsServiceHolder.getIncrementalMetaStore()
-                        .getLastProcessedTimestamp(this.incID, false);
-                if (existingIncTS < this.incMaxTS) {
-                    AnalyticsServiceHolder.getIncrementalMetaStore()
-                            .setLastProcessedTimestamp(this.incID, this.incMaxTS, false);
-                }
-            } catch (AnalyticsException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
-        }
-
         @Override
         public Row next() {
             Record record = this.recordItr.next();
-            if (this.incEnable) {
+            if (this.incTimestamps != null) {
                 if (record.getTimestamp() > this.incMaxTS) {
                     this.incMaxTS = record.getTimestamp();
                 }
@@ -194,6 +410,8 @@ public class AnalyticsRDD extends RDD<Row> {
             for (int i = 0; i < columns.size(); i++) {
                 if (columns.get(i).equals(AnalyticsCommonConstants.TIMESTAMP_FIELD)) {
                     rowVals[i] = record.getTimestamp();
+                } else if (columns.get(i).equals(AnalyticsCommonConstants.ID_FIELD)) {
+                    rowVals[i] = record.getId();
                 } else {
                     rowVals[i] = recordVals.get(columns.get(i));
                 }
@@ -27,7 +27,9 @@ import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SQLContext;
 import org.apache.spark.sql.sources.BaseRelation;
+import org.apache.spark.sql.sources.Filter;
 import org.apache.spark.sql.sources.InsertableRelation;
+import org.apache.spark.sql.sources.PrunedFilteredScan;
 import org.apache.spark.sql.sources.TableScan;
 import org.apache.spark.sql.types.StructType;
 import org.wso2.carbon.analytics.data.commons.AnalyticsDataService;
@@ -54,7 +56,8 @@ import static org.wso2.carbon.analytics.engine.utils.AnalyzerEngineUtils.isEmpty
 /**
  * Analytics Relation class mapping DAS relations.
  */
-public class AnalyticsRelation extends BaseRelation implements TableScan, InsertableRelation, Serializable {
+public class AnalyticsRelation extends BaseRelation implements TableScan, PrunedFilteredScan, InsertableRelation,
+        Serializable {
 
     private static final long serialVersionUID = -7773419083178608517L;
     private static final Log log = LogFactory.getLog(AnalyticsRelation.class);
@@ -62,6 +65,7 @@ public class AnalyticsRelation extends BaseRelation implements TableScan, Insert
     private SQLContext sqlContext;
     private StructType schema;
     private int recordBatchSize;
+    private int maxPendingBatches;
     private String tableName;
     private String recordStore;
     private boolean incEnabled;
@@ -83,6 +87,9 @@ public class AnalyticsRelation extends BaseRelation implements TableScan, Insert
         this.mergeFlag = mergeFlag;
         this.recordBatchSize = Integer.parseInt(sqlContext.sparkContext().getConf()
                 .get(AnalyzerEngineConstants.CARBON_INSERT_BATCH_SIZE));
+        this.maxPendingBatches = sqlContext.sparkContext().getConf().getInt(
+                AnalyzerEngineConstants.CARBON_INSERT_MAX_PENDING_BATCHES,
+                AnalyzerEngineConstants.DEFAULT_INSERT_MAX_PENDING_BATCHES);
         setIncrementalParameters(incrementalParams);
     }
 
@@ -101,12 +108,18 @@ public class AnalyticsRelation extends BaseRelation implements TableScan, Insert
 
     @Override
     public RDD<Row> buildScan() {
+        return this.buildScan(this.schema.fieldNames(), new Filter[0]);
+    }
+
+    @Override
+    public RDD<Row> buildScan(String[] requiredColumns, Filter[] filters) {
         if (isEmptySchema(this.schema)) {
             String msg = "Unable to scan through the table as the schema is unavailable for " + this.tableName;
             throw new RuntimeException(msg);
         }
+        AnalyticsScanFilter scanFilter = new AnalyticsScanFilter(filters);
         long fromTimestamp;
-        long toTimestamp = Long.MAX_VALUE;
+        long toTimestamp = scanFilter.getTimeTo();
         if (this.incEnabled) {
             try {
                 fromTimestamp = AnalyticsServiceHolder.getIncrementalMetaStore()
@@ -114,21 +127,36 @@ public class AnalyticsRelation extends BaseRelation implements TableScan, Insert
             } catch (AnalyticsException e) {
                 throw new RuntimeException("Cannot access the incremental meta store! ", e);
             }
-            if (fromTimestamp > 0) {
+            if (fromTimestamp != Long.MIN_VALUE) {
                 if (this.windowUnit != null) {
                     fromTimestamp = AnalyzerEngineUtils.getIncrementalStartTime(fromTimestamp, windowUnit, incBuffer);
                 } else {
                     fromTimestamp += 1;
                 }
             }
+            fromTimestamp = Math.max(fromTimestamp, scanFilter.getTimeFrom());
         } else {
-            fromTimestamp = Long.MIN_VALUE;
+            fromTimestamp = scanFilter.getTimeFrom();
+        }
+        IncrementalTimestampAccumulator incTimestamps = null;
+        if (this.incEnabled) {
+            incTimestamps = new IncrementalTimestampAccumulator();
+            this.sqlContext.sparkContext().register(incTimestamps, AnalyzerEngineConstants.INC_TABLE + this.incID);
+            AnalyticsIncrementalMetaStore.registerIncrementalScan(this.incID, incTimestamps);
         }
-        return getAnalyticsRDD(this.tableName,
-                new ArrayList<>(Arrays.asList(this.schema.fieldNames())),
-                this.sqlContext.sparkContext(), (Seq<Dependency<?>>) scala.collection.Seq$.MODULE$.empty(),
-                ClassTag$.MODULE$.apply(Row.class), fromTimestamp, toTimestamp, this.incEnabled,
-                this.incID);
+        if (log.isDebugEnabled()) {
+            log.debug("Scanning table " + this.tableName + " with columns " + Arrays.toString(requiredColumns) +
+                    ", time range [" + fromTimestamp + ", " + toTimestamp + ") and ids " + scanFilter.getIds());
+        }
+        return getAnalyticsRDD(this.tableName, new ArrayList<>(Arrays.asList(requiredColumns)),
+                scanFilter.getIds(), this.sqlContext.sparkContext(),
+                (Seq<Dependency<?>>) scala.collection.Seq$.MODULE$.empty(), ClassTag$.MODULE$.apply(Row.class),
+                fromTimestamp, toTimestamp, incTimestamps);
+    }
+
+    @Override
+    public Filter[] unhandledFilters(Filter[] filters) {
+        return new AnalyticsScanFilter(filters).getUnhandledFilters();
     }
 
     @Override
@@ -190,16 +218,16 @@ public class AnalyticsRelation extends BaseRelation implements TableScan, Insert
     }
 
     private void writeDataFrameToDAL(Dataset<Row> data) {
-        for (int i = 0; i < data.rdd().partitions().length; i++) {
-            //fixme: add the Carbon Scala utils from Java
-            data.sqlContext().sparkContext().runJob(data.rdd(), new AnalyticsDALWriter(this.tableName, data.schema(),
-                    this.recordBatchSize), ClassTag$.MODULE$.Unit());
-        }
+        /* a single job writes all the partitions, each task running the writer on its own partition */
+        data.sqlContext().sparkContext().runJob(data.rdd(), new AnalyticsDALWriter(this.tableName, data.schema(),
+                this.recordBatchSize, this.maxPendingBatches), ClassTag$.MODULE$.Unit());
     }
 
-    protected AnalyticsRDD getAnalyticsRDD(String tableName, List<String> columns, SparkContext sparkContext,
-                                           Seq<Dependency<?>> deps, ClassTag<Row> evidence, long startTime,
-                                           long endTime, boolean incEnable, String incID) {
-        return new AnalyticsRDD(tableName, columns, startTime, endTime, incEnable, incID, sparkContext, deps, evidence);
+    protected AnalyticsRDD getAnalyticsRDD(String tableName, List<String> columns, List<String> ids,
+                                           SparkContext sparkContext, Seq<Dependency<?>> deps,
+                                           ClassTag<Row> evidence, long startTime, long endTime,
+                                           IncrementalTimestampAccumulator incTimestamps) {
+        return new AnalyticsRDD(tableName, columns, ids, startTime, endTime, incTimestamps, sparkContext, deps,
+                evidence);
     }
 }
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.engine.commons;
+
+import org.apache.spark.sql.sources.And;
+import org.apache.spark.sql.sources.EqualTo;
+import org.apache.spark.sql.sources.Filter;
+import org.apache.spark.sql.sources.GreaterThan;
+import org.apache.spark.sql.sources.GreaterThanOrEqual;
+import org.apache.spark.sql.sources.In;
+import org.apache.spark.sql.sources.LessThan;
+import org.apache.spark.sql.sources.LessThanOrEqual;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates the Spark data source filters of a scan into the time range and the record id restrictions the
+ * analytics data service can apply natively. The time range applies to id based lookups as well, see AnalyticsRDD.
+ * The filters which cannot be served by the record store are kept aside, so they can be reported back to Spark
+ * for evaluation.
+ */
+public class AnalyticsScanFilter {
+
+    private long timeFrom = Long.MIN_VALUE;
+    private long timeTo = Long.MAX_VALUE;
+    private Set<String> ids;
+    private List<Filter> unhandledFilters = new ArrayList<>();
+
+    public AnalyticsScanFilter(Filter[] filters) {
+        if (filters != null) {
+            for (Filter filter : filters) {
+                if (!this.processTimeFilter(filter)) {
+                    if (!this.processIdFilter(filter)) {
+                        this.unhandledFilters.add(filter);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the inclusive start time of the scan, Long.MIN_VALUE if there is no lower bound.
+     */
+    public long getTimeFrom() {
+        return timeFrom;
+    }
+
+    /**
+     * Returns the non-inclusive end time of the scan, Long.MAX_VALUE if there is no upper bound.
+     */
+    public long getTimeTo() {
+        return timeTo;
+    }
+
+    /**
+     * Returns the record ids the scan is restricted to, or null if the scan is not an id based lookup.
+     */
+    public List<String> getIds() {
+        if (this.ids == null) {
+            return null;
+        }
+        return new ArrayList<>(this.ids);
+    }
+
+    /**
+     * Returns the filters which the record store cannot evaluate, and must be applied by Spark.
+     */
+    public Filter[] getUnhandledFilters() {
+        return this.unhandledFilters.toArray(new Filter[this.unhandledFilters.size()]);
+    }
+
+    private boolean processTimeFilter(Filter filter) {
+        if (filter instanceof And) {
+            And and = (And) filter;
+            /* only consume the conjunction if both sides can be pushed down, else leave it for Spark as a whole */
+            if (this.isTimeFilter(and.left()) && this.isTimeFilter(and.right())) {
+                this.processTimeFilter(and.left());
+                this.processTimeFilter(and.right());
+                return true;
+            }
+            return false;
+        }
+        if (!this.isTimeFilter(filter)) {
+            return false;
+        }
+        if (filter instanceof GreaterThan) {
+            long value = this.toLong(((GreaterThan) filter).value());
+            if (value == Long.MAX_VALUE) {
+                this.timeFrom = Long.MAX_VALUE;
+            } else {
+                this.timeFrom = Math.max(this.timeFrom, value + 1);
+            }
+        } else if (filter instanceof GreaterThanOrEqual) {
+            this.timeFrom = Math.max(this.timeFrom, this.toLong(((GreaterThanOrEqual) filter).value()));
+        } else if (filter instanceof LessThan) {
+            this.timeTo = Math.min(this.timeTo, this.toLong(((LessThan) filter).value()));
+        } else if (filter instanceof LessThanOrEqual) {
+            long value = this.toLong(((LessThanOrEqual) filter).value());
+            if (value != Long.MAX_VALUE) {
+                this.timeTo = Math.min(this.timeTo, value + 1);
+            }
+        } else if (filter instanceof EqualTo) {
+            long value = this.toLong(((EqualTo) filter).value());
+            this.timeFrom = Math.max(this.timeFrom, value);
+            if (value != Long.MAX_VALUE) {
+                this.timeTo = Math.min(this.timeTo, value + 1);
+            }
+        }
+        return true;
+    }
+
+    private boolean isTimeFilter(Filter filter) {
+        String attribute;
+        Object value;
+        if (filter instanceof GreaterThan) {
+            attribute = ((GreaterThan) filter).attribute();
+            value = ((GreaterThan) filter).value();
+        } else if (filter instanceof GreaterThanOrEqual) {
+            attribute = ((GreaterThanOrEqual) filter).attribute();
+            value = ((GreaterThanOrEqual) filter).value();
+        } else if (filter instanceof LessThan) {
+            attribute = ((LessThan) filter).attribute();
+            value = ((LessThan) filter).value();
+        } else if (filter instanceof LessThanOrEqual) {
+            attribute = ((LessThanOrEqual) filter).attribute();
+            value = ((LessThanOrEqual) filter).value();
+        } else if (filter instanceof EqualTo) {
+            attribute = ((EqualTo) filter).attribute();
+            value = ((EqualTo) filter).value();
+        } else if (filter instanceof And) {
+            And and = (And) filter;
+            return this.isTimeFilter(and.left()) && this.isTimeFilter(and.right());
+        } else {
+            return false;
+        }
+        return AnalyticsCommonConstants.TIMESTAMP_FIELD.equals(attribute) && this.isIntegral(value);
+    }
+
+    private boolean processIdFilter(Filter filter) {
+        List<Object> values;
+        if (filter instanceof EqualTo && AnalyticsCommonConstants.ID_FIELD.equals(((EqualTo) filter).attribute())) {
+            values = Arrays.asList(((EqualTo) filter).value());
+        } else if (filter instanceof In && AnalyticsCommonConstants.ID_FIELD.equals(((In) filter).attribute())) {
+            values = Arrays.asList(((In) filter).values());
+        } else {
+            return false;
+        }
+        Set<String> filterIds = new LinkedHashSet<>(values.size());
+        for (Object value : values) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            filterIds.add((String) value);
+        }
+        if (this.ids == null) {
+            this.ids = filterIds;
+        } else {
+            this.ids.retainAll(filterIds);
+        }
+        return true;
+    }
+
+    private boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+}
@@ -45,8 +45,18 @@ public class AnalyzerEngineConstants {
     public static final String INC_TABLE_COMMIT = "incremental_table_commit";
     public static final String INC_TABLE_RESET = "incremental_table_reset";
     public static final String INC_TABLE_SHOW = "incremental_table_show";
+    public static final String INC_TABLE_BACKFILL = "incremental_table_backfill";
 
     public static final String CARBON_INSERT_BATCH_SIZE = "carbon.insert.batch.size";
+    public static final String CARBON_INSERT_MAX_PENDING_BATCHES = "carbon.insert.max.pending.batches";
+    public static final int DEFAULT_INSERT_MAX_PENDING_BATCHES = 2;
+    public static final String CARBON_RESULTS_LIMIT = "carbon.spark.results.limit";
+    public static final String CARBON_RESULTS_MAX_MEMORY = "carbon.spark.results.max.memory";
+    public static final String CARBON_PARTITION_TARGET_SIZE = "carbon.spark.partition.target.size";
+    public static final String CARBON_PARTITION_MAX = "carbon.spark.partition.max";
+    public static final String DEFAULT_PARTITION_TARGET_SIZE = "64m";
+    public static final String CARBON_PARTITION_ROW_SIZE = "carbon.spark.partition.row.size";
+    public static final String DEFAULT_PARTITION_ROW_SIZE = "1k";
 
     /**
      * Incremental window units.
@@ -0,0 +1,71 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.engine.commons;
+
+import org.apache.spark.util.AccumulatorV2;
+
+/**
+ * Accumulator which collects the maximum record timestamp read by the tasks of an incremental scan, so the driver
+ * can commit it as the last processed timestamp once the query using the scan has completed.
+ * Taking the maximum is idempotent, so re-executed tasks do not affect the result.
+ */
+public class IncrementalTimestampAccumulator extends AccumulatorV2<Long, Long> {
+
+    private static final long serialVersionUID = 2880402466203016651L;
+
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    @Override
+    public boolean isZero() {
+        return this.maxTimestamp == Long.MIN_VALUE;
+    }
+
+    @Override
+    public AccumulatorV2<Long, Long> copy() {
+        IncrementalTimestampAccumulator accumulator = new IncrementalTimestampAccumulator();
+        accumulator.maxTimestamp = this.maxTimestamp;
+        return accumulator;
+    }
+
+    @Override
+    public void reset() {
+        this.maxTimestamp = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void add(Long timestamp) {
+        this.add(timestamp.longValue());
+    }
+
+    public void add(long timestamp) {
+        if (timestamp > this.maxTimestamp) {
+            this.maxTimestamp = timestamp;
+        }
+    }
+
+    @Override
+    public void merge(AccumulatorV2<Long, Long> other) {
+        this.add(other.value());
+    }
+
+    @Override
+    public Long value() {
+        return this.maxTimestamp;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.engine.commons;
+
+import org.apache.spark.SparkContext;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.util.SizeEstimator;
+import org.wso2.carbon.analytics.data.commons.AnalyticsEngineQueryCursor;
+import org.wso2.carbon.analytics.engine.exceptions.AnalyticsExecutionException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Query cursor backed by {@link Dataset#toLocalIterator()}, which fetches the result to the driver one partition
+ * at a time as it is consumed. All the Spark jobs of the cursor run in their own job group, so the query can be
+ * cancelled while a partition is being computed. The job group is only set on the calling thread while it submits
+ * the jobs of the cursor, after which the job group of the caller is restored.
+ * <p>
+ * The memory limit bounds the estimated size of each chunk, and of all the rows read one by one with
+ * {@link #next()}, as the caller is expected to hold on to those. Results larger than the limit are read in chunks.
+ */
+public class SparkAnalyticsEngineQueryCursor implements AnalyticsEngineQueryCursor {
+
+    private static final String JOB_GROUP_PREFIX = "carbon-analytics-cursor-";
+    private static final int SIZE_SAMPLING_INTERVAL = 100;
+    /* the thread local properties set by SparkContext#setJobGroup */
+    private static final String[] JOB_GROUP_PROPERTIES = {"spark.jobGroup.id", "spark.job.description",
+            "spark.job.interruptOnCancel"};
+    private static final AtomicLong cursorCount = new AtomicLong();
+
+    private SparkContext sparkContext;
+    private String jobGroupId;
+    private String description;
+    private String[] columns;
+    private Iterator<Row> rows;
+    private long maxChunkBytes;
+    private long fetchedRows;
+    private long fetchedBytes;
+    private long chunkedBytes;
+    private long averageRowSize;
+    private Runnable completionCallback;
+    private boolean exhausted;
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+
+    /**
+     * @param sparkContext  the spark context the dataset belongs to
+     * @param query         the query the dataset is the result of
+     * @param dataset       the result of the query
+     * @param maxChunkBytes the maximum estimated size of a chunk, and of the rows read one by one, a value less than
+     *                      or equal to zero for no limit
+     */
+    public SparkAnalyticsEngineQueryCursor(SparkContext sparkContext, String query, Dataset<Row> dataset,
+                                           long maxChunkBytes) {
+        this(sparkContext, query, dataset, maxChunkBytes, null);
+    }
+
+    /**
+     * @param completionCallback run once all the rows are fetched, unless the cursor is cancelled or closed before
+     */
+    public SparkAnalyticsEngineQueryCursor(SparkContext sparkContext, String query, Dataset<Row> dataset,
+                                           long maxChunkBytes, Runnable completionCallback) {
+        this.sparkContext = sparkContext;
+        this.jobGroupId = JOB_GROUP_PREFIX + cursorCount.incrementAndGet();
+        this.description = query;
+        this.columns = dataset.schema().fieldNames();
+        this.maxChunkBytes = maxChunkBytes;
+        this.completionCallback = completionCallback;
+        String[] callerJobGroup = this.setJobGroup();
+        try {
+            this.rows = dataset.toLocalIterator();
+        } finally {
+            this.restoreJobGroup(callerJobGroup);
+        }
+    }
+
+    @Override
+    public String[] getColumns() {
+        return columns;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.isOpen()) {
+            return false;
+        }
+        /* the next partition is fetched by the calling thread, which must carry the job group of the cursor */
+        String[] callerJobGroup = this.setJobGroup();
+        boolean hasNext;
+        try {
+            hasNext = this.rows.hasNext();
+        } finally {
+            this.restoreJobGroup(callerJobGroup);
+        }
+        if (!hasNext && !this.cancelled) {
+            this.exhausted = true;
+            if (this.completionCallback != null) {
+                this.completionCallback.run();
+            }
+        }
+        return hasNext;
+    }
+
+    /**
+     * @throws IllegalStateException if the rows read one by one exceed the memory limit, in which case the query is
+     *                               cancelled
+     */
+    @Override
+    public List<Object> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = this.nextRow();
+        if (this.maxChunkBytes > 0 && this.fetchedBytes - this.chunkedBytes > this.maxChunkBytes) {
+            this.cancel();
+            throw new IllegalStateException("The rows read from the query exceed the limit of " +
+                    this.maxChunkBytes + " bytes, read large results in chunks");
+        }
+        List<Object> values = new ArrayList<>(row.length());
+        for (int i = 0; i < row.length(); i++) {
+            values.add(row.get(i));
+        }
+        return values;
+    }
+
+    @Override
+    public List<List<Object>> nextChunk(int maxRows) throws AnalyticsExecutionException {
+        List<List<Object>> chunk = new ArrayList<>(this.columns.length);
+        for (int i = 0; i < this.columns.length; i++) {
+            chunk.add(new ArrayList<>());
+        }
+        long chunkStartBytes = this.fetchedBytes;
+        try {
+            int count = 0;
+            while (count < maxRows && this.hasNext()) {
+                Row row = this.nextRow();
+                for (int i = 0; i < this.columns.length; i++) {
+                    chunk.get(i).add(row.get(i));
+                }
+                count++;
+                if (this.maxChunkBytes > 0 && this.fetchedBytes - chunkStartBytes >= this.maxChunkBytes) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            throw new AnalyticsExecutionException("Error in fetching query results: " + e.getMessage(), e);
+        } finally {
+            this.chunkedBytes += this.fetchedBytes - chunkStartBytes;
+        }
+        if (this.cancelled) {
+            throw new AnalyticsExecutionException("The query is cancelled");
+        }
+        return chunk;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Query results cannot be removed");
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+        this.sparkContext.cancelJobGroup(this.jobGroupId);
+    }
+
+    @Override
+    public void close() {
+        /* a consumed or cancelled cursor has no jobs left to stop */
+        if (this.isOpen()) {
+            this.cancel();
+        }
+        this.closed = true;
+    }
+
+    private boolean isOpen() {
+        return !this.exhausted && !this.cancelled && !this.closed;
+    }
+
+    private Row nextRow() {
+        Row row = this.rows.next();
+        /* estimating the size of every row is expensive, so the average of a sample of the rows is used */
+        if (this.fetchedRows % SIZE_SAMPLING_INTERVAL == 0) {
+            long sampleCount = this.fetchedRows / SIZE_SAMPLING_INTERVAL;
+            this.averageRowSize = (this.averageRowSize * sampleCount + SizeEstimator.estimate(row)) /
+                    (sampleCount + 1);
+        }
+        this.fetchedRows++;
+        this.fetchedBytes += this.averageRowSize;
+        return row;
+    }
+
+    /**
+     * Sets the job group of the cursor on the calling thread.
+     *
+     * @return the job group properties of the caller, to be restored once the jobs are submitted
+     */
+    private String[] setJobGroup() {
+        String[] callerJobGroup = new String[JOB_GROUP_PROPERTIES.length];
+        for (int i = 0; i < JOB_GROUP_PROPERTIES.length; i++) {
+            callerJobGroup[i] = this.sparkContext.getLocalProperty(JOB_GROUP_PROPERTIES[i]);
+        }
+        this.sparkContext.setJobGroup(this.jobGroupId, this.description, true);
+        return callerJobGroup;
+    }
+
+    private void restoreJobGroup(String[] callerJobGroup) {
+        for (int i = 0; i < JOB_GROUP_PROPERTIES.length; i++) {
+            /* a null value removes the property, the same as clearJobGroup does */
+            this.sparkContext.setLocalProperty(JOB_GROUP_PROPERTIES[i], callerJobGroup[i]);
+        }
+    }
+}
@@ -23,21 +23,30 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.spark.SparkConf;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
 import org.apache.spark.util.Utils;
 import org.wso2.carbon.analytics.data.commons.AnalyticsEngine;
+import org.wso2.carbon.analytics.data.commons.AnalyticsEngineQueryCursor;
 import org.wso2.carbon.analytics.data.commons.AnalyticsEngineQueryResult;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.service.AnalyticsDataHolder;
+import org.wso2.carbon.analytics.engine.commons.AnalyticsIncrementalMetaStore;
 import org.wso2.carbon.analytics.engine.commons.AnalyticsRelationProvider;
 import org.wso2.carbon.analytics.engine.commons.AnalyzerEngineConstants;
+import org.wso2.carbon.analytics.engine.commons.IncrementalTimestampAccumulator;
+import org.wso2.carbon.analytics.engine.commons.SparkAnalyticsEngineQueryCursor;
 import org.wso2.carbon.analytics.engine.commons.SparkAnalyticsEngineQueryResult;
 import org.wso2.carbon.analytics.engine.exceptions.AnalyticsExecutionException;
+import org.wso2.carbon.analytics.engine.services.AnalyticsServiceHolder;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -48,6 +57,11 @@ import static org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonCons
  */
 public class SparkAnalyticsEngine implements AnalyticsEngine {
     private static final Log log = LogFactory.getLog(SparkAnalyticsEngine.class);
+    /* the result of the incremental table commands */
+    private static final StructType INCREMENTAL_TABLE_SCHEMA = new StructType()
+            .add("incremental_id", DataTypes.StringType)
+            .add("last_processed_timestamp", DataTypes.LongType)
+            .add("pending_timestamp", DataTypes.LongType);
 
     private SparkSession sparkSession;
     private SparkConf sparkConf;
@@ -139,23 +153,27 @@ public class SparkAnalyticsEngine implements AnalyticsEngine {
 
     @Override
     public AnalyticsEngineQueryResult executeQuery(String query) throws AnalyticsExecutionException {
-        String processedQuery = replaceShorthandStrings(query);
-        if (processedQuery.endsWith(";")) {
-            processedQuery = processedQuery.substring(0, processedQuery.length() - 1).trim();
+        String processedQuery = this.processQuery(query);
+        AnalyticsEngineQueryResult incrementalQueryResult = this.checkAndProcessIncrementalQuery(processedQuery);
+        if (incrementalQueryResult != null) {
+            return incrementalQueryResult;
         }
-        // todo: implement processing incremental queries
-        // checkAndProcessIncrementalQuery();
 
         long start = System.currentTimeMillis();
         boolean success = true;
         AnalyticsEngineQueryResult analyticsEngineQueryResult = null;
+        AnalyticsIncrementalMetaStore.beginIncrementalScans();
         try {
             Dataset<Row> resultsSet = sparkSession.sql(processedQuery);
-            analyticsEngineQueryResult = convertToResult(resultsSet);
+            analyticsEngineQueryResult = convertToResult(query, resultsSet);
+            this.updateIncrementalTimestamps(AnalyticsIncrementalMetaStore.endIncrementalScans(),
+                    this.isInsertQuery(processedQuery));
         } catch (Throwable throwable) {
             success = false;
             throw new AnalyticsExecutionException("Exception in executing query " + query, throwable);
         } finally {
+            /* discards the incremental scans of a failed query, so their timestamps are not committed */
+            AnalyticsIncrementalMetaStore.endIncrementalScans();
             // todo: add printing this based on -DenableAnalyticsStats
             long end = System.currentTimeMillis();
             if (success) {
@@ -168,20 +186,199 @@ public class SparkAnalyticsEngine implements AnalyticsEngine {
         return analyticsEngineQueryResult;
     }
 
+    @Override
+    public AnalyticsEngineQueryCursor executeQueryWithCursor(String query) throws AnalyticsExecutionException {
+        String processedQuery = this.processQuery(query);
+        AnalyticsEngineQueryResult incrementalQueryResult = this.checkAndProcessIncrementalQuery(processedQuery);
+        if (incrementalQueryResult != null) {
+            List<Row> rows = new ArrayList<>(incrementalQueryResult.getRows().size());
+            for (List<Object> row : incrementalQueryResult.getRows()) {
+                rows.add(RowFactory.create(row.toArray()));
+            }
+            return new SparkAnalyticsEngineQueryCursor(this.sparkSession.sparkContext(), query,
+                    this.sparkSession.createDataFrame(rows, INCREMENTAL_TABLE_SCHEMA), this.getResultsMaxMemory());
+        }
+        AnalyticsIncrementalMetaStore.beginIncrementalScans();
+        try {
+            Dataset<Row> resultsSet = sparkSession.sql(processedQuery);
+            /* planning the query registers its incremental scans, whose tasks only run as the cursor is consumed */
+            resultsSet.queryExecution().executedPlan();
+            Runnable completionCallback = this.createIncrementalScansCompletion(query,
+                    AnalyticsIncrementalMetaStore.detachIncrementalScans(), this.isInsertQuery(processedQuery));
+            return new SparkAnalyticsEngineQueryCursor(this.sparkSession.sparkContext(), query, resultsSet,
+                    this.getResultsMaxMemory(), completionCallback);
+        } catch (Throwable throwable) {
+            throw new AnalyticsExecutionException("Exception in executing query " + query, throwable);
+        } finally {
+            AnalyticsIncrementalMetaStore.endIncrementalScans();
+        }
+    }
+
+    /**
+     * Returns the callback which records the timestamps read by the incremental scans of a cursor query, once
+     * the cursor is consumed, the same way as {@link #executeQuery(String)} does for a completed query.
+     */
+    private Runnable createIncrementalScansCompletion(String query,
+                                                      Map<String, List<IncrementalTimestampAccumulator>> scans,
+                                                      boolean commit) {
+        if (scans.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            try {
+                this.updateIncrementalTimestamps(AnalyticsIncrementalMetaStore.getMaxTimestamps(scans), commit);
+            } catch (AnalyticsException e) {
+                log.error("Error in updating the incremental timestamps of query: " + query + ", " +
+                        e.getMessage(), e);
+            }
+        };
+    }
+
+    private String processQuery(String query) {
+        String processedQuery = replaceShorthandStrings(query);
+        if (processedQuery.endsWith(";")) {
+            processedQuery = processedQuery.substring(0, processedQuery.length() - 1).trim();
+        }
+        return processedQuery;
+    }
+
+    /**
+     * Records the maximum timestamps read by the incremental scans of a successfully executed query. The timestamps
+     * of an insert query are committed right away, as its results are already persisted, while the ones of other
+     * queries are kept pending until they are committed with the INCREMENTAL_TABLE_COMMIT command.
+     */
+    private void updateIncrementalTimestamps(Map<String, Long> incrementalTimestamps, boolean commit)
+            throws AnalyticsException {
+        if (incrementalTimestamps.isEmpty()) {
+            return;
+        }
+        AnalyticsIncrementalMetaStore metaStore = AnalyticsServiceHolder.getIncrementalMetaStore();
+        for (Map.Entry<String, Long> entry : incrementalTimestamps.entrySet()) {
+            if (entry.getValue() == Long.MIN_VALUE) {
+                /* nothing new was read */
+                continue;
+            }
+            if (commit) {
+                metaStore.commitLastProcessedTimestamp(entry.getKey(), entry.getValue());
+            } else if (metaStore.getLastProcessedTimestamp(entry.getKey(), false) < entry.getValue()) {
+                metaStore.setLastProcessedTimestamp(entry.getKey(), entry.getValue(), false);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Incremental timestamp of '" + entry.getKey() + "' " + (commit ? "committed" : "updated") +
+                        " to " + entry.getValue());
+            }
+        }
+    }
+
+    private boolean isInsertQuery(String query) {
+        return query.toLowerCase(Locale.ENGLISH).startsWith("insert");
+    }
+
+    /**
+     * Processes the incremental table commands, which take a comma separated list of incremental ids:
+     * INCREMENTAL_TABLE_COMMIT commits the pending timestamps, INCREMENTAL_TABLE_RESET makes the next
+     * incremental scans read all the data, INCREMENTAL_TABLE_SHOW shows the timestamps, and
+     * INCREMENTAL_TABLE_BACKFILL [ids] [timestamp] makes the next incremental scans read the data from
+     * the given timestamp onwards.
+     *
+     * @return the committed and pending timestamps of the given ids, or null if the query is not a command
+     */
+    private AnalyticsEngineQueryResult checkAndProcessIncrementalQuery(String query)
+            throws AnalyticsExecutionException {
+        String[] tokens = query.trim().split("\\s+", 2);
+        String command = tokens[0].toLowerCase(Locale.ENGLISH);
+        if (!command.startsWith(AnalyzerEngineConstants.INC_TABLE)) {
+            return null;
+        }
+        if (tokens.length < 2) {
+            throw new AnalyticsExecutionException("Incremental ids are not given: " + query);
+        }
+        List<String> ids = new ArrayList<>();
+        for (String id : tokens[1].split("[\\s,]+")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        try {
+            AnalyticsIncrementalMetaStore metaStore = AnalyticsServiceHolder.getIncrementalMetaStore();
+            switch (command) {
+                case AnalyzerEngineConstants.INC_TABLE_COMMIT:
+                    for (String id : ids) {
+                        metaStore.commitPendingTimestamp(id);
+                    }
+                    break;
+                case AnalyzerEngineConstants.INC_TABLE_RESET:
+                    for (String id : ids) {
+                        metaStore.resetIncrementalTimestamps(id);
+                    }
+                    break;
+                case AnalyzerEngineConstants.INC_TABLE_BACKFILL:
+                    if (ids.size() < 2) {
+                        throw new AnalyticsExecutionException("The backfill timestamp is not given: " + query);
+                    }
+                    long fromTs;
+                    try {
+                        fromTs = Long.parseLong(ids.remove(ids.size() - 1));
+                    } catch (NumberFormatException e) {
+                        throw new AnalyticsExecutionException("Invalid backfill timestamp: " + query, e);
+                    }
+                    for (String id : ids) {
+                        metaStore.backfillFrom(id, fromTs);
+                    }
+                    break;
+                case AnalyzerEngineConstants.INC_TABLE_SHOW:
+                    break;
+                default:
+                    throw new AnalyticsExecutionException("Unknown incremental table command: " + tokens[0]);
+            }
+            List<List<Object>> rows = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                List<Object> row = new ArrayList<>(3);
+                row.add(id);
+                row.add(metaStore.getLastProcessedTimestamp(id, true));
+                row.add(metaStore.getLastProcessedTimestamp(id, false));
+                rows.add(row);
+            }
+            log.info("Executed incremental table command: " + query);
+            return new SparkAnalyticsEngineQueryResult(INCREMENTAL_TABLE_SCHEMA.fieldNames(), rows);
+        } catch (AnalyticsException e) {
+            throw new AnalyticsExecutionException("Exception in executing incremental table command " + query, e);
+        }
+    }
+
     @Override
     public String getVersion() {
         return AnalyzerEngineConstants.SPARK_ANALYTICS_ENGINE_NAME + " : " + this.sparkSession.version();
     }
 
-    private AnalyticsEngineQueryResult convertToResult(Dataset<Row> results) {
-        int resultsLimit = this.sparkConf.getInt("carbon.spark.results.limit", -1);
+    private AnalyticsEngineQueryResult convertToResult(String query, Dataset<Row> results)
+            throws AnalyticsExecutionException {
+        int resultsLimit = this.sparkConf.getInt(AnalyzerEngineConstants.CARBON_RESULTS_LIMIT, -1);
         if (resultsLimit != -1) {
-            return new SparkAnalyticsEngineQueryResult(results.schema().fieldNames(),
-                    convertRowsToResult(results.limit(resultsLimit).collectAsList()));
-        } else {
+            results = results.limit(resultsLimit);
+        }
+        long resultsMaxMemory = this.getResultsMaxMemory();
+        if (resultsMaxMemory <= 0) {
             return new SparkAnalyticsEngineQueryResult(results.schema().fieldNames(),
                     convertRowsToResult(results.collectAsList()));
         }
+        /* fetch partition by partition, so an oversized result fails the query instead of the driver */
+        List<List<Object>> rows = new ArrayList<>();
+        try (SparkAnalyticsEngineQueryCursor cursor = new SparkAnalyticsEngineQueryCursor(
+                this.sparkSession.sparkContext(), query, results, resultsMaxMemory)) {
+            while (cursor.hasNext()) {
+                rows.add(cursor.next());
+            }
+        } catch (IllegalStateException e) {
+            /* the cursor cancels the query once the rows read exceed the limit */
+            throw new AnalyticsExecutionException("The result of the query exceeds the limit of " +
+                    resultsMaxMemory + " bytes, use a cursor to read large results", e);
+        }
+        return new SparkAnalyticsEngineQueryResult(results.schema().fieldNames(), rows);
+    }
+
+    private long getResultsMaxMemory() {
+        return this.sparkConf.getSizeAsBytes(AnalyzerEngineConstants.CARBON_RESULTS_MAX_MEMORY, "0");
     }
 
     private List<List<Object>> convertRowsToResult(List<Row> rows) {
@@ -20,15 +20,22 @@ package org.wso2.carbon.analytics.engine;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.spark.SparkContext;
+import org.apache.spark.sql.SparkSession;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.data.commons.AnalyticsEngine;
+import org.wso2.carbon.analytics.data.commons.AnalyticsEngineQueryCursor;
 import org.wso2.carbon.analytics.data.commons.AnalyticsEngineQueryResult;
 import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
 import org.wso2.carbon.analytics.data.commons.utils.AnalyticsCommonUtils;
 import org.wso2.carbon.analytics.engine.core.SparkAnalyticsEngine;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 public class SparkAnalyticsEngineTestBase {
     private static final Log log = LogFactory.getLog(SparkAnalyticsEngineTestBase.class);
 
@@ -70,6 +77,115 @@ public class SparkAnalyticsEngineTestBase {
         Assert.assertEquals(analyticsEngineQueryResult.getRows().size() -
                 analyticsEngineQueryResultBeforeTest.getRows().size(), 1);
     }
+
+    @Test(dependsOnMethods = "writingToDALTest")
+    public void prunedFilteredScanTest() throws AnalyticsException {
+        log.info("================== Pruned and filtered scan Test =====================");
+        this.analyticsEngine.executeQuery("CREATE TEMPORARY VIEW employee using CarbonAnalytics options " +
+                "(tableName \"EMPLOYEE\", schema \"name STRING, age INT, _timestamp LONG\");");
+        this.analyticsEngine.executeQuery("INSERT OVERWRITE TABLE employee select 'a', 20, 1000;");
+        this.analyticsEngine.executeQuery("INSERT INTO employee select 'b', 30, 2000;");
+        this.analyticsEngine.executeQuery("INSERT INTO employee select 'c', 40, 3000;");
+        AnalyticsEngineQueryResult analyticsEngineQueryResult = this.analyticsEngine
+                .executeQuery("SELECT name FROM employee WHERE _timestamp >= 2000 AND _timestamp < 3000");
+        Assert.assertEquals(analyticsEngineQueryResult.getRows().size(), 1);
+        Assert.assertEquals(analyticsEngineQueryResult.getRows().get(0).toString(), "[b]");
+        analyticsEngineQueryResult = this.analyticsEngine
+                .executeQuery("SELECT name FROM employee WHERE _timestamp > 1000 AND age > 35");
+        Assert.assertEquals(analyticsEngineQueryResult.getRows().size(), 1);
+        Assert.assertEquals(analyticsEngineQueryResult.getRows().get(0).toString(), "[c]");
+    }
+
+    @Test(dependsOnMethods = "prunedFilteredScanTest")
+    public void cursorQueryTest() throws AnalyticsException, IOException {
+        log.info("================== Query cursor Test =====================");
+        AnalyticsEngineQueryCursor cursor = this.analyticsEngine
+                .executeQueryWithCursor("SELECT name, age FROM employee WHERE age >= 30");
+        try {
+            Assert.assertEquals(cursor.getColumns(), new String[]{"name", "age"});
+            List<List<Object>> chunk = cursor.nextChunk(1);
+            Assert.assertEquals(chunk.size(), 2);
+            Assert.assertEquals(chunk.get(0).size(), 1);
+            chunk = cursor.nextChunk(10);
+            Assert.assertEquals(chunk.get(0).size(), 1);
+            Assert.assertEquals(chunk.get(1).size(), 1);
+            Assert.assertTrue(cursor.nextChunk(10).get(0).isEmpty());
+            Assert.assertFalse(cursor.hasNext());
+        } finally {
+            cursor.close();
+        }
+        /* the cursor restores the job group of the calling thread once its jobs are submitted */
+        SparkContext sparkContext = SparkSession.builder().getOrCreate().sparkContext();
+        sparkContext.setJobGroup("caller", "jobs of the caller", false);
+        try {
+            cursor = this.analyticsEngine.executeQueryWithCursor("SELECT name FROM employee");
+            Assert.assertTrue(cursor.hasNext());
+            Assert.assertEquals(sparkContext.getLocalProperty("spark.jobGroup.id"), "caller");
+        } finally {
+            sparkContext.clearJobGroup();
+        }
+        cursor.cancel();
+        Assert.assertFalse(cursor.hasNext());
+        cursor.close();
+    }
+
+    @Test(dependsOnMethods = "prunedFilteredScanTest")
+    public void incrementalProcessingTest() throws AnalyticsException, IOException {
+        log.info("================== Incremental processing Test =====================");
+        this.analyticsEngine.executeQuery("CREATE TEMPORARY VIEW inc_source using CarbonAnalytics options " +
+                "(tableName \"INC_SOURCE\", schema \"name STRING, _timestamp LONG\", " +
+                "incrementalParams \"INC_SOURCE_ID\");");
+        this.analyticsEngine.executeQuery("CREATE TEMPORARY VIEW inc_summary using CarbonAnalytics options " +
+                "(tableName \"INC_SUMMARY\", schema \"name STRING\");");
+        this.analyticsEngine.executeQuery("INCREMENTAL_TABLE_RESET INC_SOURCE_ID");
+        this.analyticsEngine.executeQuery("INSERT OVERWRITE TABLE inc_source select 'a', 1000;");
+        this.analyticsEngine.executeQuery("INSERT INTO inc_source select 'b', 2000;");
+        /* a plain select keeps the read timestamp pending */
+        Assert.assertEquals(this.analyticsEngine.executeQuery("SELECT name FROM inc_source").getRows().size(), 2);
+        AnalyticsEngineQueryResult showResult = this.analyticsEngine
+                .executeQuery("INCREMENTAL_TABLE_SHOW INC_SOURCE_ID");
+        Assert.assertEquals(showResult.getRows().get(0).get(1), Long.MIN_VALUE);
+        Assert.assertEquals(showResult.getRows().get(0).get(2), 2000L);
+        /* an insert commits the read timestamp once it succeeds */
+        this.analyticsEngine.executeQuery("INSERT OVERWRITE TABLE inc_summary SELECT name FROM inc_source;");
+        showResult = this.analyticsEngine.executeQuery("INCREMENTAL_TABLE_SHOW INC_SOURCE_ID");
+        Assert.assertEquals(showResult.getRows().get(0).get(1), 2000L);
+        this.analyticsEngine.executeQuery("INSERT INTO inc_source select 'c', 3000;");
+        AnalyticsEngineQueryResult result = this.analyticsEngine.executeQuery("SELECT name FROM inc_source");
+        Assert.assertEquals(result.getRows().size(), 1);
+        Assert.assertEquals(result.getRows().get(0).toString(), "[c]");
+        this.analyticsEngine.executeQuery("INSERT INTO inc_summary SELECT name FROM inc_source;");
+        Assert.assertEquals(this.analyticsEngine.executeQuery("SELECT * FROM inc_summary").getRows().size(), 3);
+        Assert.assertEquals(this.analyticsEngine.executeQuery("SELECT name FROM inc_source").getRows().size(), 0);
+        this.analyticsEngine.executeQuery("INCREMENTAL_TABLE_BACKFILL INC_SOURCE_ID 2000");
+        Assert.assertEquals(this.analyticsEngine.executeQuery("SELECT name FROM inc_source").getRows().size(), 2);
+        this.analyticsEngine.executeQuery("INCREMENTAL_TABLE_RESET INC_SOURCE_ID");
+        /* a cursor query records the read timestamp once the cursor is consumed */
+        AnalyticsEngineQueryCursor cursor = this.analyticsEngine.executeQueryWithCursor("SELECT name FROM inc_source");
+        try {
+            Assert.assertEquals(this.analyticsEngine.executeQuery("INCREMENTAL_TABLE_SHOW INC_SOURCE_ID")
+                    .getRows().get(0).get(2), Long.MIN_VALUE);
+            int count = 0;
+            while (cursor.hasNext()) {
+                cursor.next();
+                count++;
+            }
+            Assert.assertEquals(count, 3);
+        } finally {
+            cursor.close();
+        }
+        /* the incremental table commands are run the same way through a cursor */
+        cursor = this.analyticsEngine.executeQueryWithCursor("INCREMENTAL_TABLE_SHOW INC_SOURCE_ID");
+        try {
+            Assert.assertEquals(cursor.getColumns(), new String[]{"incremental_id", "last_processed_timestamp",
+                    "pending_timestamp"});
+            Assert.assertEquals(cursor.next(), Arrays.asList("INC_SOURCE_ID", Long.MIN_VALUE, 3000L));
+            Assert.assertFalse(cursor.hasNext());
+        } finally {
+            cursor.close();
+        }
+        Assert.assertEquals(this.analyticsEngine.executeQuery("SELECT name FROM inc_source").getRows().size(), 3);
+    }
 /*
     @Test(dependsOnMethods = "simpleQueryExecutionTest", expectedExceptions = AnalyticsExecutionException.class)
     public void accessingUnrecognizedTableTest() throws AnalyticsException {
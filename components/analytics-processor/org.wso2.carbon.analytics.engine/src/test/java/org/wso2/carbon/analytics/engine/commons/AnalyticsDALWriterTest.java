@@ -0,0 +1,209 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.engine.commons;
+
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.data.commons.AnalyticsDataService;
+import org.wso2.carbon.analytics.data.commons.exception.AnalyticsException;
+import org.wso2.carbon.analytics.data.commons.sources.AnalyticsCommonConstants;
+import org.wso2.carbon.analytics.data.commons.sources.Record;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static scala.collection.JavaConversions.asScalaIterator;
+
+/**
+ * Unit test class for the batched writes of AnalyticsDALWriter, against a stub analytics data service.
+ */
+public class AnalyticsDALWriterTest {
+
+    private static final String TABLE_NAME = "TEST_TABLE";
+    private static final StructType SCHEMA = new StructType()
+            .add("name", DataTypes.StringType)
+            .add(AnalyticsCommonConstants.TIMESTAMP_FIELD, DataTypes.LongType);
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void testSynchronousPuts() {
+        StubDataService dataService = new StubDataService(null);
+        dataService.release();
+        List<Row> rows = new ArrayList<>();
+        rows.add(RowFactory.create("a", 1000L));
+        rows.add(RowFactory.create("b", null));
+        rows.add(RowFactory.create("c", -1L));
+        long start = System.currentTimeMillis();
+        new AnalyticsDALWriter(TABLE_NAME, SCHEMA, 2, 0).write(dataService.create(), asScalaIterator(rows.iterator()));
+
+        Assert.assertEquals(dataService.batchSizes, Arrays.asList(2, 1));
+        List<Record> records = dataService.records;
+        Assert.assertEquals(records.get(0).getTableName(), TABLE_NAME);
+        Assert.assertEquals(records.get(0).getValues(), Collections.singletonMap("name", "a"));
+        Assert.assertEquals(records.get(0).getTimestamp(), 1000L);
+        /* a missing or negative timestamp is set to the time of the write */
+        Assert.assertTrue(records.get(1).getTimestamp() >= start);
+        Assert.assertTrue(records.get(2).getTimestamp() >= start);
+    }
+
+    @Test
+    public void testPendingPutsAreBounded() throws Exception {
+        StubDataService dataService = new StubDataService(null);
+        AnalyticsDALWriter writer = new AnalyticsDALWriter(TABLE_NAME, SCHEMA, 1, 2);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread task = new Thread(() -> {
+            try {
+                writer.write(dataService.create(), asScalaIterator(rows(10).iterator()));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        task.start();
+        try {
+            dataService.awaitPuts(2);
+            /* the task waits for a put to complete before converting more rows */
+            Thread.sleep(200);
+            Assert.assertEquals(dataService.putCount.get(), 2);
+            Assert.assertTrue(task.isAlive());
+        } finally {
+            dataService.release();
+        }
+        task.join(TIMEOUT);
+        Assert.assertFalse(task.isAlive());
+        Assert.assertNull(error.get());
+        Assert.assertEquals(dataService.records.size(), 10);
+        Assert.assertTrue(dataService.maxActivePuts.get() <= 2);
+    }
+
+    @Test
+    public void testFailedBatchFailsTheTask() {
+        /* the first batch fails while the later ones are still in flight */
+        StubDataService dataService = new StubDataService("row0");
+        try {
+            new AnalyticsDALWriter(TABLE_NAME, SCHEMA, 1, 3).write(dataService.create(),
+                    asScalaIterator(rows(10).iterator()));
+            Assert.fail("The write must fail with the failed batch");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof AnalyticsException);
+            Assert.assertTrue(e.getMessage().contains(TABLE_NAME));
+        } finally {
+            dataService.release();
+        }
+        /* no more batches are submitted once a put fails */
+        Assert.assertTrue(dataService.putCount.get() <= 3);
+    }
+
+    @Test
+    public void testFailedSynchronousPutFailsTheTask() {
+        StubDataService dataService = new StubDataService("row1");
+        dataService.release();
+        try {
+            new AnalyticsDALWriter(TABLE_NAME, SCHEMA, 1, 0).write(dataService.create(),
+                    asScalaIterator(rows(10).iterator()));
+            Assert.fail("The write must fail with the failed batch");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof AnalyticsException);
+        }
+        Assert.assertEquals(dataService.putCount.get(), 2);
+        Assert.assertEquals(dataService.records.size(), 1);
+    }
+
+    private static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(RowFactory.create("row" + i, (long) i));
+        }
+        return rows;
+    }
+
+    /**
+     * Records the batches put to it. The puts wait until they are released, and the put of the batch starting
+     * with the given name fails right away.
+     */
+    private static class StubDataService implements InvocationHandler {
+
+        private final String failingName;
+        private final CountDownLatch releaseLatch = new CountDownLatch(1);
+        private final AtomicInteger putCount = new AtomicInteger();
+        private final AtomicInteger activePuts = new AtomicInteger();
+        private final AtomicInteger maxActivePuts = new AtomicInteger();
+        private final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        private StubDataService(String failingName) {
+            this.failingName = failingName;
+        }
+
+        private AnalyticsDataService create() {
+            return (AnalyticsDataService) Proxy.newProxyInstance(AnalyticsDataService.class.getClassLoader(),
+                    new Class[]{AnalyticsDataService.class}, this);
+        }
+
+        private void release() {
+            releaseLatch.countDown();
+        }
+
+        private void awaitPuts(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (putCount.get() < count) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline, "Expected " + count + " puts");
+                Thread.sleep(10);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!"put".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            List<Record> batch = (List<Record>) args[0];
+            putCount.incrementAndGet();
+            int active = activePuts.incrementAndGet();
+            maxActivePuts.accumulateAndGet(active, Math::max);
+            try {
+                if (batch.get(0).getValue("name").equals(failingName)) {
+                    throw new AnalyticsException("Error in writing " + failingName);
+                }
+                if (!releaseLatch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new AnalyticsException("The put was not released");
+                }
+                records.addAll(batch);
+                batchSizes.add(batch.size());
+                return null;
+            } finally {
+                activePuts.decrementAndGet();
+            }
+        }
+    }
+
+}
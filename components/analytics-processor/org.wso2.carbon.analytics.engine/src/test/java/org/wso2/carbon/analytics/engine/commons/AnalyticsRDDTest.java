@@ -0,0 +1,75 @@
+/*
+ *  Copyright (c) 2017 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.engine.commons;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test class for the partition sizing of AnalyticsRDD.
+ */
+public class AnalyticsRDDTest {
+
+    @Test
+    public void testPartitionCount() {
+        Assert.assertEquals(AnalyticsRDD.computePartitionCount(0, 100, 8), 1);
+        Assert.assertEquals(AnalyticsRDD.computePartitionCount(100, 100, 8), 1);
+        Assert.assertEquals(AnalyticsRDD.computePartitionCount(101, 100, 8), 2);
+        Assert.assertEquals(AnalyticsRDD.computePartitionCount(10000, 100, 8), 8);
+        /* e.g. the ids path, 5000 ids of 1k rows in partitions of 1m */
+        Assert.assertEquals(AnalyticsRDD.computePartitionCount(5000 * 1024L, 1024 * 1024, 24), 5);
+    }
+
+    @Test
+    public void testPackEvenGroups() {
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[]{10, 10, 10, 10, 10, 10}, 20, 8),
+                new int[]{0, 0, 1, 1, 2, 2});
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[]{10, 10, 10, 10}, 100, 8),
+                new int[]{0, 0, 0, 0});
+    }
+
+    @Test
+    public void testPackSkewedGroups() {
+        /* the groups following a large group start a new partition */
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[]{5, 50, 5, 5, 5}, 20, 8),
+                new int[]{0, 0, 1, 1, 1});
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[]{0, 0, 30, 0, 0}, 10, 8),
+                new int[]{0, 0, 0, 1, 1});
+    }
+
+    @Test
+    public void testPackHonoursMaxPartitions() {
+        long[] groups = new long[100];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = 1000 + i;
+        }
+        int[] result = AnalyticsRDD.packRecordGroups(groups, 100, 7);
+        Assert.assertEquals(result[result.length - 1], 6);
+        for (int i = 1; i < result.length; i++) {
+            Assert.assertTrue(result[i] == result[i - 1] || result[i] == result[i - 1] + 1);
+        }
+    }
+
+    @Test
+    public void testPackEmptyScan() {
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[]{0, 0, 0}, 100, 8), new int[]{0, 0, 0});
+        Assert.assertEquals(AnalyticsRDD.packRecordGroups(new long[0], 100, 8), new int[0]);
+    }
+
+}
@@ -72,6 +72,10 @@ public class AgentConfiguration {
 
     private String ciphers;
 
+    private String thriftProtocol = DataEndpointConstants.THRIFT_BINARY_PROTOCOL;
+
+    private boolean framedTransport;
+
     @XmlElement(name = "Name")
     public String getDataEndpointName() {
         return dataEndpointName;
@@ -287,6 +291,28 @@ public class AgentConfiguration {
         this.ciphers = ciphers;
     }
 
+    @XmlElement(name = "ThriftProtocol")
+    public String getThriftProtocol() {
+        return thriftProtocol;
+    }
+
+    public void setThriftProtocol(String thriftProtocol) {
+        if (thriftProtocol != null) {
+            this.thriftProtocol = thriftProtocol.trim();
+        } else {
+            this.thriftProtocol = DataEndpointConstants.THRIFT_BINARY_PROTOCOL;
+        }
+    }
+
+    @XmlElement(name = "FramedTransport")
+    public boolean isFramedTransport() {
+        return framedTransport;
+    }
+
+    public void setFramedTransport(boolean framedTransport) {
+        this.framedTransport = framedTransport;
+    }
+
     /**
      * Validates the configurations that valid.
      *
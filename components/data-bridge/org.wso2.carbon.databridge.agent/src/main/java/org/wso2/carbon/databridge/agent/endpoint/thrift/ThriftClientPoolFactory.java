@@ -18,12 +18,14 @@
 package org.wso2.carbon.databridge.agent.endpoint.thrift;
 
 import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.*;
 import org.wso2.carbon.databridge.agent.AgentHolder;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
 import org.wso2.carbon.databridge.agent.exception.DataEndpointException;
 import org.wso2.carbon.databridge.agent.client.AbstractClientPoolFactory;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
 import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
 import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
 import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
@@ -37,10 +39,19 @@ public class ThriftClientPoolFactory extends AbstractClientPoolFactory {
     public Object createClient(String protocol, String hostName, int port) throws DataEndpointException,
             DataEndpointAgentConfigurationException {
         if (protocol.equalsIgnoreCase(DataEndpointConfiguration.Protocol.TCP.toString())) {
-            int socketTimeout = AgentHolder.getInstance().getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).
-                    getAgentConfiguration().getSocketTimeoutMS();
-            TTransport receiverTransport = new TSocket(hostName, port, socketTimeout);
-            TProtocol tProtocol = new TBinaryProtocol(receiverTransport);
+            AgentConfiguration agentConfiguration = AgentHolder.getInstance().
+                    getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE).getAgentConfiguration();
+            TTransport receiverTransport = new TSocket(hostName, port, agentConfiguration.getSocketTimeoutMS());
+            if (agentConfiguration.isFramedTransport()) {
+                // required by the non blocking receiver servers, which read the requests frame by frame
+                receiverTransport = new TFramedTransport(receiverTransport);
+            }
+            TProtocol tProtocol;
+            if (DataEndpointConstants.THRIFT_COMPACT_PROTOCOL.equalsIgnoreCase(agentConfiguration.getThriftProtocol())) {
+                tProtocol = new TCompactProtocol(receiverTransport);
+            } else {
+                tProtocol = new TBinaryProtocol(receiverTransport);
+            }
             ThriftEventTransmissionService.Client client = new ThriftEventTransmissionService.Client(tProtocol);
             try {
                 receiverTransport.open();
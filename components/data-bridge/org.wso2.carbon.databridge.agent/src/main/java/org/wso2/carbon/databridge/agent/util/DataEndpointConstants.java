@@ -43,4 +43,7 @@ public class DataEndpointConstants {
     public static final String SYNC_STRATEGY = "sync";
     public static final String ASYNC_STRATEGY = "async";
 
+    public static final String THRIFT_BINARY_PROTOCOL = "binary";
+    public static final String THRIFT_COMPACT_PROTOCOL = "compact";
+
 }
@@ -0,0 +1,177 @@
+/*
+*  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.agent.test.thrift;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataEndpointConfiguration;
+import org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftClientPoolFactory;
+import org.wso2.carbon.databridge.agent.exception.DataEndpointAgentConfigurationException;
+import org.wso2.carbon.databridge.agent.test.DataPublisherTestUtil;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.thrift.service.general.ThriftEventTransmissionService;
+import org.wso2.carbon.databridge.commons.thrift.utils.CommonThriftConstants;
+import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
+import org.wso2.carbon.databridge.receiver.thrift.internal.utils.ThriftDataReceiverConstants;
+
+import java.net.ServerSocket;
+
+/**
+ * Publishes to each type of Thrift receiver server, with the transport and protocol of the agent set to match.
+ */
+public class ThriftServerTypeTest {
+    private static final String STREAM_NAME = "org.wso2.esb.MediatorStatistics";
+    private static final String VERSION = "1.0.0";
+    private static final String AGENT_CONFIG_FILE_NAME = "data-agent-config.xml";
+    private static final int NUMBER_OF_EVENTS = 1000;
+    private static final long TIMEOUT = 10000;
+
+    private static final String STREAM_DEFN = "{" +
+            "  'name':'" + STREAM_NAME + "'," +
+            "  'version':'" + VERSION + "'," +
+            "  'nickName': 'Stock Quote Information'," +
+            "  'description': 'Some Desc'," +
+            "  'tags':['foo', 'bar']," +
+            "  'metaData':[" +
+            "          {'name':'ipAdd','type':'STRING'}" +
+            "  ]," +
+            "  'payloadData':[" +
+            "          {'name':'symbol','type':'STRING'}," +
+            "          {'name':'price','type':'DOUBLE'}," +
+            "          {'name':'volume','type':'INT'}," +
+            "          {'name':'max','type':'DOUBLE'}," +
+            "          {'name':'min','type':'Double'}" +
+            "  ]" +
+            "}";
+
+    private ThriftTestServer thriftTestServer;
+
+    @BeforeClass
+    public static void init() {
+        DataPublisherTestUtil.setKeyStoreParams();
+        DataPublisherTestUtil.setTrustStoreParams();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (thriftTestServer != null) {
+            thriftTestServer.stop();
+            thriftTestServer = null;
+        }
+        // the agent configuration changed by a test is reloaded by the next one
+        AgentHolder.shutdown();
+    }
+
+    @Test
+    public void testThreadPoolServer() throws Exception {
+        publishAndVerify(7631, ThriftDataReceiverConstants.SERVER_TYPE_THREAD_POOL,
+                ThriftDataReceiverConstants.THRIFT_PROTOCOL_COMPACT, false);
+    }
+
+    @Test
+    public void testHsHaServer() throws Exception {
+        publishAndVerify(7641, ThriftDataReceiverConstants.SERVER_TYPE_HSHA,
+                ThriftDataReceiverConstants.THRIFT_PROTOCOL_COMPACT, true);
+    }
+
+    @Test
+    public void testThreadedSelectorServer() throws Exception {
+        publishAndVerify(7651, ThriftDataReceiverConstants.SERVER_TYPE_THREADED_SELECTOR,
+                ThriftDataReceiverConstants.THRIFT_PROTOCOL_BINARY, true);
+    }
+
+    @Test
+    public void testAgentTransportAndProtocol() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            AgentConfiguration agentConfiguration = getThriftAgentConfiguration();
+            TProtocol protocol = createClientProtocol(serverSocket.getLocalPort());
+            Assert.assertTrue(protocol instanceof TBinaryProtocol);
+            Assert.assertTrue(protocol.getTransport() instanceof TSocket);
+            protocol.getTransport().close();
+
+            agentConfiguration.setFramedTransport(true);
+            agentConfiguration.setThriftProtocol(DataEndpointConstants.THRIFT_COMPACT_PROTOCOL);
+            protocol = createClientProtocol(serverSocket.getLocalPort());
+            Assert.assertTrue(protocol instanceof TCompactProtocol);
+            Assert.assertTrue(protocol.getTransport() instanceof TFramedTransport);
+            protocol.getTransport().close();
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private void publishAndVerify(int port, String serverType, String thriftProtocol, boolean framedTransport)
+            throws Exception {
+        thriftTestServer = new ThriftTestServer();
+        thriftTestServer.start(port, serverType, thriftProtocol);
+        thriftTestServer.addStreamDefinition(STREAM_DEFN);
+
+        AgentConfiguration agentConfiguration = getThriftAgentConfiguration();
+        agentConfiguration.setFramedTransport(framedTransport);
+        agentConfiguration.setThriftProtocol(thriftProtocol);
+        String hostName = DataPublisherTestUtil.LOCAL_HOST;
+        DataPublisher dataPublisher = new DataPublisher("Thrift", "tcp://" + hostName + ":" + port,
+                "ssl://" + hostName + ":" + (port + CommonThriftConstants.SECURE_EVENT_RECEIVER_PORT_OFFSET),
+                "admin", "admin");
+        Event event = new Event();
+        event.setStreamId(DataBridgeCommonsUtils.generateStreamId(STREAM_NAME, VERSION));
+        event.setMetaData(new Object[]{"127.0.0.1"});
+        event.setCorrelationData(null);
+        event.setPayloadData(new Object[]{"WSO2 \u00e9\u20ac", 123.4, 2, 12.4, 1.3});
+        for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+            dataPublisher.publish(event);
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (thriftTestServer.getNumberOfEventsReceived() < NUMBER_OF_EVENTS
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        dataPublisher.shutdown();
+        Assert.assertEquals(NUMBER_OF_EVENTS, thriftTestServer.getNumberOfEventsReceived());
+        Event receivedEvent = thriftTestServer.getLastReceivedEvent();
+        Assert.assertEquals(event.getStreamId(), receivedEvent.getStreamId());
+        Assert.assertArrayEquals(event.getMetaData(), receivedEvent.getMetaData());
+        Assert.assertArrayEquals(event.getPayloadData(), receivedEvent.getPayloadData());
+    }
+
+    private static AgentConfiguration getThriftAgentConfiguration() throws DataEndpointAgentConfigurationException {
+        AgentHolder.setConfigPath(DataPublisherTestUtil.getDataAgentConfigPath(AGENT_CONFIG_FILE_NAME));
+        return AgentHolder.getInstance().getDataEndpointAgent(DataEndpointConstants.THRIFT_DATA_AGENT_TYPE)
+                .getAgentConfiguration();
+    }
+
+    private static TProtocol createClientProtocol(int port) throws Exception {
+        ThriftEventTransmissionService.Client client = (ThriftEventTransmissionService.Client)
+                new ThriftClientPoolFactory().createClient(DataEndpointConfiguration.Protocol.TCP.toString(),
+                        DataPublisherTestUtil.LOCAL_HOST, port);
+        return client.getOutputProtocol();
+    }
+}
@@ -24,6 +24,7 @@ import org.wso2.carbon.databridge.commons.Credentials;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
 import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
+import org.wso2.carbon.databridge.commons.thrift.utils.CommonThriftConstants;
 import org.wso2.carbon.databridge.commons.utils.EventDefinitionConverterUtils;
 import org.wso2.carbon.databridge.core.AgentCallback;
 import org.wso2.carbon.databridge.core.DataBridge;
@@ -33,6 +34,8 @@ import org.wso2.carbon.databridge.core.exception.DataBridgeException;
 import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
 import org.wso2.carbon.databridge.core.internal.authentication.AuthenticationHandler;
 import org.wso2.carbon.databridge.receiver.thrift.ThriftDataReceiver;
+import org.wso2.carbon.databridge.receiver.thrift.conf.ThriftDataReceiverConfiguration;
+import org.wso2.carbon.databridge.receiver.thrift.internal.utils.ThriftDataReceiverConstants;
 
 import java.net.SocketException;
 import java.util.List;
@@ -44,6 +47,7 @@ public class ThriftTestServer {
     ThriftDataReceiver thriftDataReceiver;
     InMemoryStreamDefinitionStore streamDefinitionStore;
     AtomicInteger numberOfEventsReceived;
+    volatile Event lastReceivedEvent;
     RestarterThread restarterThread;
 
     public void startTestServer() throws DataBridgeException, InterruptedException {
@@ -73,6 +77,11 @@ public class ThriftTestServer {
     }
 
     public void start(int receiverPort) throws DataBridgeException {
+        start(receiverPort, ThriftDataReceiverConstants.DEFAULT_SERVER_TYPE,
+                ThriftDataReceiverConstants.DEFAULT_THRIFT_PROTOCOL);
+    }
+
+    public void start(int receiverPort, String serverType, String thriftProtocol) throws DataBridgeException {
         DataPublisherTestUtil.setKeyStoreParams();
         streamDefinitionStore = getStreamDefinitionStore();
         numberOfEventsReceived = new AtomicInteger(0);
@@ -95,7 +104,11 @@ public class ThriftTestServer {
             }
         }, streamDefinitionStore, DataPublisherTestUtil.getDataBridgeConfigPath());
 
-        thriftDataReceiver = new ThriftDataReceiver(receiverPort, databridge);
+        ThriftDataReceiverConfiguration receiverConfiguration = new ThriftDataReceiverConfiguration(
+                receiverPort + CommonThriftConstants.SECURE_EVENT_RECEIVER_PORT_OFFSET, receiverPort);
+        receiverConfiguration.setServerType(serverType);
+        receiverConfiguration.setThriftProtocol(thriftProtocol);
+        thriftDataReceiver = new ThriftDataReceiver(receiverConfiguration, databridge);
 
         databridge.subscribe(new AgentCallback() {
             int totalSize = 0;
@@ -111,6 +124,7 @@ public class ThriftTestServer {
 
             @Override
             public void receive(List<Event> eventList, Credentials credentials) {
+                lastReceivedEvent = eventList.get(eventList.size() - 1);
                 numberOfEventsReceived.addAndGet(eventList.size());
                 log.info("Received events : " + numberOfEventsReceived);
 //                log.info("eventListSize=" + eventList.size() + " eventList " + eventList + " for username " + credentials.getUsername());
@@ -129,6 +143,10 @@ public class ThriftTestServer {
         else return 0;
     }
 
+    public Event getLastReceivedEvent() {
+        return lastReceivedEvent;
+    }
+
     public void resetReceivedEvents() {
         numberOfEventsReceived.set(0);
     }
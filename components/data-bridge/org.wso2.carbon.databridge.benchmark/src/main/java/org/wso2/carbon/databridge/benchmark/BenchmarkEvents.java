@@ -0,0 +1,83 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.exception.MalformedStreamDefinitionException;
+
+import java.util.Arrays;
+
+/**
+ * The stream and events published by the benchmarks. Every event carries the System.nanoTime() at
+ * which it was published as its first payload attribute, which the in-process receiver uses to
+ * measure the delivery latency, and a string attribute padding the event to the requested size.
+ */
+public final class BenchmarkEvents {
+
+    public static final String STREAM_NAME = "org.wso2.carbon.databridge.benchmark.Stream";
+    public static final String STREAM_VERSION = "1.0.0";
+
+    /**
+     * Approximate serialized size of the attributes other than the padding: the timestamp, stream id,
+     * meta data, send time, sequence and the length of the padding string.
+     */
+    private static final int FIXED_EVENT_SIZE = 100;
+
+    private BenchmarkEvents() {
+    }
+
+    public static StreamDefinition createStreamDefinition() {
+        try {
+            StreamDefinition streamDefinition = new StreamDefinition(STREAM_NAME, STREAM_VERSION);
+            streamDefinition.addMetaData("clientId", AttributeType.INT);
+            streamDefinition.addCorrelationData("correlationId", AttributeType.LONG);
+            streamDefinition.addPayloadData("sendTime", AttributeType.LONG);
+            streamDefinition.addPayloadData("sequence", AttributeType.LONG);
+            streamDefinition.addPayloadData("value", AttributeType.DOUBLE);
+            streamDefinition.addPayloadData("padding", AttributeType.STRING);
+            return streamDefinition;
+        } catch (MalformedStreamDefinitionException e) {
+            throw new IllegalStateException("Invalid benchmark stream definition", e);
+        }
+    }
+
+    /**
+     * @param eventSize the approximate serialized size of the events in bytes
+     * @return the padding string making events of the given size
+     */
+    public static String createPadding(int eventSize) {
+        char[] padding = new char[Math.max(0, eventSize - FIXED_EVENT_SIZE)];
+        Arrays.fill(padding, 'x');
+        return new String(padding);
+    }
+
+    public static Event createEvent(String streamId, int clientId, long sequence, String padding) {
+        long sendTime = System.nanoTime();
+        return new Event(streamId, System.currentTimeMillis(), new Object[]{clientId}, new Object[]{sequence},
+                new Object[]{sendTime, sequence, (double) sequence, padding});
+    }
+
+    /**
+     * @return the time at which the event was created by {@link #createEvent}, in System.nanoTime()
+     */
+    public static long getSendTime(Event event) {
+        return (Long) event.getPayloadData()[0];
+    }
+}
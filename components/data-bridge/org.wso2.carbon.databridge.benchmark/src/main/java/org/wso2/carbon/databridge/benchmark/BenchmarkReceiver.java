@@ -0,0 +1,199 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Credentials;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.utils.LogLinearHistogram;
+import org.wso2.carbon.databridge.core.AgentCallback;
+import org.wso2.carbon.databridge.core.DataBridge;
+import org.wso2.carbon.databridge.core.Utils.AgentSession;
+import org.wso2.carbon.databridge.core.conf.DataBridgeConfiguration;
+import org.wso2.carbon.databridge.core.definitionstore.InMemoryStreamDefinitionStore;
+import org.wso2.carbon.databridge.core.exception.DataBridgeException;
+import org.wso2.carbon.databridge.core.exception.StreamDefinitionStoreException;
+import org.wso2.carbon.databridge.core.internal.authentication.AuthenticationHandler;
+import org.wso2.carbon.databridge.receiver.binary.conf.BinaryDataReceiverConfiguration;
+import org.wso2.carbon.databridge.receiver.binary.internal.BinaryDataReceiver;
+import org.wso2.carbon.databridge.receiver.thrift.ThriftDataReceiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process data bridge with a binary or Thrift receiver, which counts the received events and
+ * records their delivery latency. Every login is accepted, so that the benchmark does not depend on
+ * a user store.
+ */
+public class BenchmarkReceiver {
+
+    private static final Log log = LogFactory.getLog(BenchmarkReceiver.class);
+
+    private static final String KEY_STORE = "wso2carbon.jks";
+
+    private final String transport;
+    private final int port;
+    private final int securePort;
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final LogLinearHistogram latencyHistogram = new LogLinearHistogram();
+    private volatile long lastReceiveTime;
+    private BinaryDataReceiver binaryDataReceiver;
+    private ThriftDataReceiver thriftDataReceiver;
+
+    /**
+     * @param transport  {@link DataBridgeBenchmark#BINARY} or {@link DataBridgeBenchmark#THRIFT}
+     * @param port       the event receiving port
+     * @param securePort the authentication port
+     */
+    public BenchmarkReceiver(String transport, int port, int securePort) {
+        this.transport = transport;
+        this.port = port;
+        this.securePort = securePort;
+    }
+
+    public void start(StreamDefinition streamDefinition, int workerThreads, int eventBufferSize)
+            throws DataBridgeException, IOException, StreamDefinitionStoreException {
+        prepareKeyStore();
+        InMemoryStreamDefinitionStore streamDefinitionStore = new InMemoryStreamDefinitionStore();
+        streamDefinitionStore.saveStreamDefinitionToStore(streamDefinition);
+
+        DataBridgeConfiguration dataBridgeConfiguration = new DataBridgeConfiguration();
+        dataBridgeConfiguration.setWorkerThreads(workerThreads);
+        dataBridgeConfiguration.setEventBufferSize(eventBufferSize);
+        DataBridge dataBridge = new DataBridge(new AuthenticationHandler() {
+            @Override
+            public boolean authenticate(String userName, String password) {
+                return true;
+            }
+
+            @Override
+            public void initContext(AgentSession agentSession) {
+            }
+
+            @Override
+            public void destroyContext(AgentSession agentSession) {
+            }
+        }, streamDefinitionStore, dataBridgeConfiguration);
+        // the receivers read the key store password from the initial configuration
+        dataBridge.setInitialConfig(dataBridgeConfiguration);
+
+        dataBridge.subscribe(new AgentCallback() {
+            @Override
+            public void definedStream(StreamDefinition streamDefinition) {
+            }
+
+            @Override
+            public void removeStream(StreamDefinition streamDefinition) {
+            }
+
+            @Override
+            public void receive(List<Event> eventList, Credentials credentials) {
+                long receiveTime = System.nanoTime();
+                for (Event event : eventList) {
+                    latencyHistogram.record(receiveTime - BenchmarkEvents.getSendTime(event));
+                }
+                receivedEvents.addAndGet(eventList.size());
+                lastReceiveTime = receiveTime;
+            }
+        });
+
+        if (DataBridgeBenchmark.BINARY.equalsIgnoreCase(transport)) {
+            binaryDataReceiver = new BinaryDataReceiver(new BinaryDataReceiverConfiguration(securePort, port),
+                    dataBridge);
+            binaryDataReceiver.start();
+        } else {
+            thriftDataReceiver = new ThriftDataReceiver(securePort, port, dataBridge);
+            thriftDataReceiver.start(DataBridgeBenchmark.LOCAL_HOST);
+        }
+        log.info("Started the " + transport + " benchmark receiver on port " + port + " and secure port "
+                + securePort);
+    }
+
+    public void stop() {
+        if (binaryDataReceiver != null) {
+            binaryDataReceiver.stop();
+        }
+        if (thriftDataReceiver != null) {
+            thriftDataReceiver.stop();
+        }
+    }
+
+    /**
+     * Waits until the given number of events have been received since the last reset.
+     *
+     * @return true if the events were received within the timeout
+     */
+    public boolean awaitEvents(long events, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (receivedEvents.get() < events) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public void reset() {
+        receivedEvents.set(0);
+        latencyHistogram.reset();
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    /**
+     * @return the System.nanoTime() at which the last events were received
+     */
+    public long getLastReceiveTime() {
+        return lastReceiveTime;
+    }
+
+    public LogLinearHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * The receivers load the key store from src/test/resources of the working directory, or else from
+     * resources/security of the carbon home. Unless a carbon home is given, the key store of the agent
+     * tests, which the build bundles with the benchmark, is extracted to a temporary carbon home.
+     */
+    private static void prepareKeyStore() throws IOException {
+        if (new File("src" + File.separator + "test" + File.separator + "resources").exists()
+                || System.getProperty("carbon.home") != null) {
+            return;
+        }
+        Path carbonHome = Files.createTempDirectory("databridge-benchmark");
+        Path securityDirectory = Files.createDirectories(carbonHome.resolve("resources").resolve("security"));
+        try (InputStream keyStore = BenchmarkReceiver.class.getResourceAsStream("/" + KEY_STORE)) {
+            Files.copy(keyStore, securityDirectory.resolve(KEY_STORE), StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty("carbon.home", carbonHome.toString());
+    }
+}
@@ -0,0 +1,328 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark;
+
+import org.wso2.carbon.databridge.agent.AgentHolder;
+import org.wso2.carbon.databridge.agent.DataPublisher;
+import org.wso2.carbon.databridge.agent.conf.AgentConfiguration;
+import org.wso2.carbon.databridge.agent.conf.DataAgentsConfiguration;
+import org.wso2.carbon.databridge.agent.util.DataEndpointConstants;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.utils.LogLinearHistogram;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end benchmark of the data bridge. It starts an in-process binary or Thrift receiver and
+ * drives it with the {@link DataPublisher} agent, then reports the sustained throughput, the GC
+ * activity and allocation during the measurement, and the percentiles of the delivery latency from
+ * the publish call to the receiver callback.
+ * <p>
+ * The options are given as name=value arguments, e.g.
+ * {@code transport=thrift events=2000000 eventSize=512 batchSize=500 connections=8}, see
+ * {@link #printUsage()}. Unless a rate is given the publishers send as fast as the pipeline accepts
+ * events, so the latency includes the time spent in the full agent queue; give a rate below the
+ * sustained throughput to measure the latency at that load.
+ */
+public class DataBridgeBenchmark {
+
+    static final String BINARY = "Binary";
+    static final String THRIFT = "Thrift";
+    static final String LOCAL_HOST = "localhost";
+
+    private static final String TRUST_STORE = "client-truststore.jks";
+    private static final String KEY_STORE_PASSWORD = "wso2carbon";
+    private static final int SECURE_PORT_OFFSET = 100;
+
+    private final String transport;
+    private final long events;
+    private final long warmupEvents;
+    private final int eventSize;
+    private final int batchSize;
+    private final int connections;
+    private final int publishers;
+    private final int queueSize;
+    private final long rate;
+    private final int port;
+    private final int receiverThreads;
+    private final int receiverBufferSize;
+    private final long timeoutMillis;
+
+    private DataBridgeBenchmark(Map<String, String> options) {
+        transport = THRIFT.equalsIgnoreCase(getOption(options, "transport", BINARY)) ? THRIFT : BINARY;
+        events = Long.parseLong(getOption(options, "events", "1000000"));
+        warmupEvents = Long.parseLong(getOption(options, "warmupEvents", "200000"));
+        eventSize = Integer.parseInt(getOption(options, "eventSize", "200"));
+        batchSize = Integer.parseInt(getOption(options, "batchSize", "200"));
+        connections = Integer.parseInt(getOption(options, "connections", "4"));
+        publishers = Integer.parseInt(getOption(options, "publishers", "1"));
+        queueSize = Integer.parseInt(getOption(options, "queueSize", "32768"));
+        rate = Long.parseLong(getOption(options, "rate", "0"));
+        port = Integer.parseInt(getOption(options, "port", THRIFT.equals(transport) ? "7611" : "9611"));
+        receiverThreads = Integer.parseInt(getOption(options, "receiverThreads", "10"));
+        receiverBufferSize = Integer.parseInt(getOption(options, "receiverBufferSize", "2000"));
+        timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(getOption(options, "timeoutSeconds", "300")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                printUsage();
+                return;
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new DataBridgeBenchmark(options).run();
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: DataBridgeBenchmark [name=value]...\n"
+                + "  transport           Binary or Thrift (Binary)\n"
+                + "  events              number of measured events (1000000)\n"
+                + "  warmupEvents        number of events sent before measuring (200000)\n"
+                + "  eventSize           approximate serialized size of an event in bytes (200)\n"
+                + "  batchSize           maximum number of events sent in a message by the agent (200)\n"
+                + "  connections         number of agent publisher threads, each using its own connection (4)\n"
+                + "  publishers          number of threads calling DataPublisher.publish (1)\n"
+                + "  queueSize           agent queue size, a power of two (32768)\n"
+                + "  rate                total events per second to publish, 0 for as fast as possible (0)\n"
+                + "  port                receiver port, the authentication port is 100 above it (9611 / 7611)\n"
+                + "  receiverThreads     receiver worker threads (10)\n"
+                + "  receiverBufferSize  receiver event queue size in bundles (2000)\n"
+                + "  timeoutSeconds      time to wait for the receiver to get all events (300)");
+    }
+
+    private static String getOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private void run() throws Exception {
+        StreamDefinition streamDefinition = BenchmarkEvents.createStreamDefinition();
+        BenchmarkReceiver receiver = new BenchmarkReceiver(transport, port, port + SECURE_PORT_OFFSET);
+        receiver.start(streamDefinition, receiverThreads, receiverBufferSize);
+        AgentHolder.setConfigPath(writeAgentConfiguration());
+        DataPublisher dataPublisher = new DataPublisher(transport, "tcp://" + LOCAL_HOST + ":" + port,
+                "ssl://" + LOCAL_HOST + ":" + (port + SECURE_PORT_OFFSET), "admin", "admin");
+        String streamId = streamDefinition.getStreamId();
+        String padding = BenchmarkEvents.createPadding(eventSize);
+        try {
+            System.out.println("Warming up with " + warmupEvents + " events");
+            publish(dataPublisher, streamId, padding, warmupEvents);
+            if (!receiver.awaitEvents(warmupEvents, timeoutMillis)) {
+                System.out.println("Warm up timed out, received " + receiver.getReceivedEvents() + " of "
+                        + warmupEvents + " events");
+                return;
+            }
+            receiver.reset();
+
+            System.out.println("Measuring " + events + " events");
+            ResourceSnapshot before = ResourceSnapshot.take();
+            long startTime = System.nanoTime();
+            publish(dataPublisher, streamId, padding, events);
+            boolean completed = receiver.awaitEvents(events, timeoutMillis);
+            long endTime = receiver.getLastReceiveTime();
+            ResourceSnapshot after = ResourceSnapshot.take();
+            if (!completed) {
+                System.out.println("Timed out, received " + receiver.getReceivedEvents() + " of " + events
+                        + " events");
+            }
+            report(receiver.getReceivedEvents(), endTime - startTime, before, after,
+                    receiver.getLatencyHistogram());
+        } finally {
+            dataPublisher.shutdownWithAgent();
+            receiver.stop();
+        }
+    }
+
+    private void publish(final DataPublisher dataPublisher, final String streamId, final String padding,
+                         long count) throws Exception {
+        final CountDownLatch done = new CountDownLatch(publishers);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final long nanosPerEvent = rate > 0 ? TimeUnit.SECONDS.toNanos(publishers) / rate : 0;
+        for (int i = 0; i < publishers; i++) {
+            final int clientId = i;
+            final long eventsOfPublisher = count / publishers + (i < count % publishers ? 1 : 0);
+            Thread publisher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long startTime = System.nanoTime();
+                        for (long sequence = 0; sequence < eventsOfPublisher; sequence++) {
+                            if (nanosPerEvent > 0) {
+                                long delay = startTime + sequence * nanosPerEvent - System.nanoTime();
+                                if (delay > 0) {
+                                    LockSupport.parkNanos(delay);
+                                }
+                            }
+                            dataPublisher.publish(BenchmarkEvents.createEvent(streamId, clientId, sequence, padding));
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "BenchmarkPublisher-" + i);
+            publisher.start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Error publishing the benchmark events", failure.get());
+        }
+    }
+
+    private void report(long receivedEvents, long elapsedNanos, ResourceSnapshot before, ResourceSnapshot after,
+                        LogLinearHistogram latency) {
+        double seconds = elapsedNanos / 1e9;
+        long gcCount = after.gcCount - before.gcCount;
+        long gcMillis = after.gcMillis - before.gcMillis;
+        System.out.println("transport=" + transport + " eventSize=" + eventSize + " batchSize=" + batchSize
+                + " connections=" + connections + " publishers=" + publishers
+                + (rate > 0 ? " rate=" + rate : ""));
+        System.out.printf("throughput      %.0f events/s, %.1f MB/s%n", receivedEvents / seconds,
+                receivedEvents * (double) eventSize / seconds / (1024 * 1024));
+        System.out.printf("duration        %.3f s%n", seconds);
+        System.out.printf("gc              %d collections, %d ms (%.2f%% of the time)%n", gcCount, gcMillis,
+                gcMillis / (seconds * 10));
+        if (after.allocatedBytes >= 0) {
+            long allocated = ResourceSnapshot.allocatedBetween(before, after);
+            System.out.printf("allocation      %.1f MB/s, %.0f bytes/event%n",
+                    allocated / seconds / (1024 * 1024), receivedEvents == 0 ? 0 : (double) allocated / receivedEvents);
+        }
+        System.out.printf("latency (ms)    mean=%.3f p50=%.3f p99=%.3f p999=%.3f max=%.3f%n",
+                latency.getMeanValue() / 1e6, latency.getValueAtPercentile(50) / 1e6,
+                latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6,
+                latency.getMaxValue() / 1e6);
+    }
+
+    /**
+     * Writes the data-agent-config.xml of the run, with the agent trust store extracted to the same
+     * temporary directory.
+     *
+     * @return the path of the configuration
+     */
+    private String writeAgentConfiguration() throws IOException, JAXBException {
+        Path directory = Files.createTempDirectory("databridge-benchmark-agent");
+        Path trustStore = directory.resolve(TRUST_STORE);
+        try (InputStream inputStream = DataBridgeBenchmark.class.getResourceAsStream("/" + TRUST_STORE)) {
+            Files.copy(inputStream, trustStore, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        AgentConfiguration agentConfiguration = new AgentConfiguration();
+        agentConfiguration.setDataEndpointName(transport);
+        agentConfiguration.setClassName(THRIFT.equals(transport)
+                ? "org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftDataEndpoint"
+                : "org.wso2.carbon.databridge.agent.endpoint.binary.BinaryDataEndpoint");
+        agentConfiguration.setTrustStore(trustStore.toString());
+        agentConfiguration.setTrustStorePassword(KEY_STORE_PASSWORD);
+        agentConfiguration.setPublishingStrategy(DataEndpointConstants.ASYNC_STRATEGY);
+        agentConfiguration.setQueueSize(queueSize);
+        agentConfiguration.setBatchSize(batchSize);
+        agentConfiguration.setCorePoolSize(connections);
+        agentConfiguration.setMaxPoolSize(connections);
+        agentConfiguration.setSocketTimeoutMS(30000);
+        agentConfiguration.setKeepAliveTimeInPool(20);
+        agentConfiguration.setReconnectionInterval(30);
+        agentConfiguration.setMaxTransportPoolSize(Math.max(250, connections));
+        agentConfiguration.setMaxIdleConnections(Math.max(250, connections));
+        agentConfiguration.setEvictionTimePeriod(5500);
+        agentConfiguration.setMinIdleTimeInPool(5000);
+        agentConfiguration.setSecureMaxTransportPoolSize(250);
+        agentConfiguration.setSecureMaxIdleConnections(250);
+        agentConfiguration.setSecureEvictionTimePeriod(5500);
+        agentConfiguration.setSecureMinIdleTimeInPool(5000);
+        DataAgentsConfiguration dataAgentsConfiguration = new DataAgentsConfiguration();
+        dataAgentsConfiguration.setAgentConfigurations(Collections.singletonList(agentConfiguration));
+
+        File configFile = directory.resolve(DataEndpointConstants.DATA_AGENT_CONF_FILE_NAME).toFile();
+        Marshaller marshaller = JAXBContext.newInstance(DataAgentsConfiguration.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        marshaller.marshal(dataAgentsConfiguration, configFile);
+        return configFile.getAbsolutePath();
+    }
+
+    /**
+     * GC counters of the JVM and the bytes allocated by each live thread at a point in time.
+     */
+    private static final class ResourceSnapshot {
+
+        private long gcCount;
+        private long gcMillis;
+        private long allocatedBytes = -1;
+        private final Map<Long, Long> threadAllocatedBytes = new HashMap<Long, Long>();
+
+        private static ResourceSnapshot take() {
+            ResourceSnapshot snapshot = new ResourceSnapshot();
+            for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.gcCount += Math.max(0, gcBean.getCollectionCount());
+                snapshot.gcMillis += Math.max(0, gcBean.getCollectionTime());
+            }
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+                if (allocationBean.isThreadAllocatedMemorySupported()
+                        && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                    long[] threadIds = threadBean.getAllThreadIds();
+                    long[] allocated = allocationBean.getThreadAllocatedBytes(threadIds);
+                    snapshot.allocatedBytes = 0;
+                    for (int i = 0; i < threadIds.length; i++) {
+                        if (allocated[i] >= 0) {
+                            snapshot.threadAllocatedBytes.put(threadIds[i], allocated[i]);
+                            snapshot.allocatedBytes += allocated[i];
+                        }
+                    }
+                }
+            }
+            return snapshot;
+        }
+
+        /**
+         * @return the bytes allocated between the snapshots by the threads alive at the end, which
+         * excludes the allocation of threads that terminated in between
+         */
+        private static long allocatedBetween(ResourceSnapshot before, ResourceSnapshot after) {
+            long allocated = 0;
+            for (Map.Entry<Long, Long> entry : after.threadAllocatedBytes.entrySet()) {
+                Long previous = before.threadAllocatedBytes.get(entry.getKey());
+                allocated += entry.getValue() - (previous == null ? 0 : previous);
+            }
+            return allocated;
+        }
+    }
+}
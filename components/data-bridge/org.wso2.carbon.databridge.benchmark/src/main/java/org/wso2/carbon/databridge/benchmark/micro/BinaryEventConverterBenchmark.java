@@ -0,0 +1,150 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark.micro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.databridge.agent.endpoint.binary.BinaryEventSender;
+import org.wso2.carbon.databridge.benchmark.BenchmarkEvents;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+import org.wso2.carbon.databridge.receiver.binary.BinaryEventConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the binary transport event conversion: the agent encoding a batch of events into a
+ * publish message, and the receiver decoding the message into events. Run the main method to measure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryEventConverterBenchmark {
+
+    static final String SESSION_ID = "f3a6a6f4-8d52-4c0f-9a32-5b9e0c1f2d7e";
+
+    /**
+     * Length of the message type and message size header preceding the message body on the wire.
+     */
+    private static final int MESSAGE_HEADER_SIZE = 5;
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    @Param({"100", "1000"})
+    private int eventSize;
+
+    private List<Event> events;
+    private StreamTypeHolder streamTypeHolder;
+    private byte[] message;
+    private ByteArrayOutputStream outputStream;
+    private Socket socket;
+
+    @Setup
+    public void setup() throws IOException {
+        StreamDefinition streamDefinition = BenchmarkEvents.createStreamDefinition();
+        streamTypeHolder = new StreamTypeHolder();
+        streamTypeHolder.putStreamDefinition(streamDefinition);
+        events = createEvents(streamDefinition.getStreamId(), batchSize, eventSize);
+        outputStream = new ByteArrayOutputStream();
+        socket = createCapturingSocket(outputStream);
+        message = encode(socket, outputStream, events);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        outputStream.reset();
+        BinaryEventSender.sendBinaryPublishMessage(socket, events, SESSION_ID);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public List<Event> decode() {
+        return BinaryEventConverter.getConverter().toEventList(message, streamTypeHolder);
+    }
+
+    static List<Event> createEvents(String streamId, int count, int eventSize) {
+        String padding = BenchmarkEvents.createPadding(eventSize);
+        List<Event> events = new ArrayList<Event>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(BenchmarkEvents.createEvent(streamId, 0, i, padding));
+        }
+        return events;
+    }
+
+    /**
+     * @return the body of the binary publish message of the events, as handed to the receiver
+     * {@link BinaryEventConverter}
+     */
+    static byte[] encodeMessage(List<Event> events) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        return encode(createCapturingSocket(outputStream), outputStream, events);
+    }
+
+    private static byte[] encode(Socket socket, ByteArrayOutputStream outputStream, List<Event> events)
+            throws IOException {
+        outputStream.reset();
+        BinaryEventSender.sendBinaryPublishMessage(socket, events, SESSION_ID);
+        byte[] bytes = outputStream.toByteArray();
+        return Arrays.copyOfRange(bytes, MESSAGE_HEADER_SIZE, bytes.length);
+    }
+
+    /**
+     * @return an unconnected socket writing to the given stream, so that the agent encoding is
+     * measured without the network
+     */
+    private static Socket createCapturingSocket(final OutputStream outputStream) {
+        return new Socket() {
+            @Override
+            public OutputStream getOutputStream() {
+                return outputStream;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BinaryEventConverterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
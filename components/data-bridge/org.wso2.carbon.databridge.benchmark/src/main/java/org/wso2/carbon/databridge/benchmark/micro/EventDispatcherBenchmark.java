@@ -0,0 +1,157 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark.micro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.databridge.benchmark.BenchmarkEvents;
+import org.wso2.carbon.databridge.commons.Credentials;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.utils.EventDefinitionConverterUtils;
+import org.wso2.carbon.databridge.core.AgentCallback;
+import org.wso2.carbon.databridge.core.Utils.AgentSession;
+import org.wso2.carbon.databridge.core.conf.DataBridgeConfiguration;
+import org.wso2.carbon.databridge.core.definitionstore.InMemoryStreamDefinitionStore;
+import org.wso2.carbon.databridge.core.internal.EventDispatcher;
+import org.wso2.carbon.databridge.core.internal.authentication.AuthenticationHandler;
+import org.wso2.carbon.databridge.receiver.binary.BinaryEventConverter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of the receiver side dispatching of binary event bundles: the receiver threads queue the
+ * bundles in the {@link EventDispatcher}, whose worker threads decode them and deliver the events to a
+ * subscriber. The event queue is bounded, so the measured rate is the rate at which the workers
+ * deliver events once the queue is full. Run the main method to measure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventDispatcherBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int EVENT_SIZE = 200;
+
+    @State(Scope.Benchmark)
+    public static class Dispatcher {
+
+        private EventDispatcher eventDispatcher;
+        private AgentSession agentSession;
+        private byte[] message;
+        private final AtomicLong receivedEvents = new AtomicLong();
+        private final AtomicLong publishedEvents = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            DataBridgeConfiguration dataBridgeConfiguration = new DataBridgeConfiguration();
+            eventDispatcher = new EventDispatcher(new InMemoryStreamDefinitionStore(), dataBridgeConfiguration,
+                    new AuthenticationHandler() {
+                        @Override
+                        public boolean authenticate(String userName, String password) {
+                            return true;
+                        }
+
+                        @Override
+                        public void initContext(AgentSession agentSession) {
+                        }
+
+                        @Override
+                        public void destroyContext(AgentSession agentSession) {
+                        }
+                    });
+            eventDispatcher.addCallback(new AgentCallback() {
+                @Override
+                public void definedStream(StreamDefinition streamDefinition) {
+                }
+
+                @Override
+                public void removeStream(StreamDefinition streamDefinition) {
+                }
+
+                @Override
+                public void receive(List<Event> eventList, Credentials credentials) {
+                    receivedEvents.addAndGet(eventList.size());
+                }
+            });
+            agentSession = new AgentSession(BinaryEventConverterBenchmark.SESSION_ID,
+                    new Credentials("admin", "admin"));
+            StreamDefinition streamDefinition = BenchmarkEvents.createStreamDefinition();
+            eventDispatcher.defineStream(EventDefinitionConverterUtils.convertToJson(streamDefinition), agentSession);
+            message = BinaryEventConverterBenchmark.encodeMessage(BinaryEventConverterBenchmark.createEvents(
+                    streamDefinition.getStreamId(), BATCH_SIZE, EVENT_SIZE));
+        }
+
+        /**
+         * Waits for the queued bundles to be delivered, so that an iteration does not leave work
+         * for the next one.
+         */
+        @TearDown(Level.Iteration)
+        public void drain() throws InterruptedException {
+            while (receivedEvents.get() < publishedEvents.get()) {
+                Thread.sleep(1);
+            }
+        }
+
+        private void publish() {
+            eventDispatcher.publish(message, agentSession, BinaryEventConverter.getConverter());
+            publishedEvents.addAndGet(BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void publish1Thread(Dispatcher dispatcher) {
+        dispatcher.publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void publish4Threads(Dispatcher dispatcher) {
+        dispatcher.publish();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EventDispatcherBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.databridge.benchmark.micro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.databridge.agent.endpoint.thrift.ThriftEventConverter;
+import org.wso2.carbon.databridge.benchmark.BenchmarkEvents;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.databridge.commons.thrift.data.ThriftEventBundle;
+import org.wso2.carbon.databridge.core.EventConverter;
+import org.wso2.carbon.databridge.core.StreamTypeHolder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the Thrift transport event conversion: the agent building the event bundle of a batch
+ * of events, and the receiver converting the bundle back into events. Run the main method to measure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThriftEventConverterBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    @Param({"100", "1000"})
+    private int eventSize;
+
+    private List<Event> events;
+    private StreamTypeHolder streamTypeHolder;
+    private ThriftEventBundle eventBundle;
+    private EventConverter receiverConverter;
+
+    @Setup
+    public void setup() {
+        StreamDefinition streamDefinition = BenchmarkEvents.createStreamDefinition();
+        streamTypeHolder = new StreamTypeHolder();
+        streamTypeHolder.putStreamDefinition(streamDefinition);
+        events = BinaryEventConverterBenchmark.createEvents(streamDefinition.getStreamId(), batchSize, eventSize);
+        eventBundle = encode();
+        receiverConverter = new org.wso2.carbon.databridge.receiver.thrift.converter.ThriftEventConverter();
+    }
+
+    @Benchmark
+    public ThriftEventBundle encode() {
+        ThriftEventBundle bundle = null;
+        for (Event event : events) {
+            bundle = ThriftEventConverter.toThriftEventBundle(event, bundle, BinaryEventConverterBenchmark.SESSION_ID);
+        }
+        return bundle;
+    }
+
+    @Benchmark
+    public List<Event> decode() {
+        return receiverConverter.toEventList(eventBundle, streamTypeHolder);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ThriftEventConverterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
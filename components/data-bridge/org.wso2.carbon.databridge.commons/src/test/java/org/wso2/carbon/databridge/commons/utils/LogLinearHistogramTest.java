@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wso2.carbon.databridge.commons.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LogLinearHistogramTest {
+
+    private static final long MAX_TRACKED_VALUE = (1L << 41) - 1;
+
+    @Test
+    public void testBucketIndex() {
+        // values below the sub bucket count have a bucket each
+        for (int value = 0; value < 32; value++) {
+            Assert.assertEquals(value, LogLinearHistogram.getBucketIndex(value));
+            Assert.assertEquals(value, LogLinearHistogram.getBucketValue(value));
+        }
+        Assert.assertEquals(32, LogLinearHistogram.getBucketIndex(32));
+        Assert.assertEquals(63, LogLinearHistogram.getBucketIndex(63));
+        // from 64 on, each bucket counts two or more values
+        Assert.assertEquals(64, LogLinearHistogram.getBucketIndex(64));
+        Assert.assertEquals(64, LogLinearHistogram.getBucketIndex(65));
+        Assert.assertEquals(65, LogLinearHistogram.getBucketIndex(66));
+
+        int previousIndex = -1;
+        for (long value = 0; value <= MAX_TRACKED_VALUE; value = value < 4096 ? value + 1 : value + value / 97) {
+            int index = LogLinearHistogram.getBucketIndex(value);
+            Assert.assertTrue("Bucket index must not decrease at " + value, index >= previousIndex);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void testBucketValue() {
+        for (long value = 1; value <= MAX_TRACKED_VALUE; value = value < 4096 ? value + 1 : value + value / 89) {
+            long bucketValue = LogLinearHistogram.getBucketValue(LogLinearHistogram.getBucketIndex(value));
+            Assert.assertTrue("Bucket value " + bucketValue + " of " + value + " is off by more than 1/32",
+                    Math.abs(bucketValue - value) <= value / 32);
+        }
+        long lastValue = LogLinearHistogram.getBucketValue(LogLinearHistogram.getBucketIndex(MAX_TRACKED_VALUE));
+        Assert.assertTrue(lastValue <= MAX_TRACKED_VALUE);
+        Assert.assertTrue(lastValue >= MAX_TRACKED_VALUE - MAX_TRACKED_VALUE / 32);
+    }
+
+    @Test
+    public void testOverflowIntoLastBucket() {
+        int lastIndex = LogLinearHistogram.getBucketIndex(MAX_TRACKED_VALUE);
+        Assert.assertEquals(lastIndex, LogLinearHistogram.getBucketIndex(MAX_TRACKED_VALUE + 1));
+        Assert.assertEquals(lastIndex, LogLinearHistogram.getBucketIndex(Long.MAX_VALUE));
+
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(2, histogram.getSampleCount());
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getMaxValue());
+        Assert.assertEquals(LogLinearHistogram.getBucketValue(lastIndex), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-1);
+        Assert.assertEquals(100, histogram.getSampleCount());
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+        Assert.assertEquals(50, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(99, histogram.getValueAtPercentile(99));
+        // the percentile is capped by the largest recorded value
+        Assert.assertEquals(100, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(50.5, histogram.getMeanValue(), 0.001);
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getSampleCount());
+        Assert.assertEquals(0, histogram.getMaxValue());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
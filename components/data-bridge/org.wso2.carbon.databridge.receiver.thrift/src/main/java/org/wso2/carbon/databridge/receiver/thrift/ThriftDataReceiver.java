@@ -21,8 +21,14 @@ package org.wso2.carbon.databridge.receiver.thrift;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.server.THsHaServer;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TSSLTransportFactory;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
@@ -45,6 +51,8 @@ import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Carbon based implementation of the agent server
@@ -55,6 +63,7 @@ public class ThriftDataReceiver {
     private ThriftDataReceiverConfiguration thriftDataReceiverConfiguration;
     private TServer authenticationServer;
     private TServer dataReceiverServer;
+    private ExecutorService dataReceiverExecutor;
 
     /**
      * Initialize Carbon Agent Server
@@ -200,15 +209,44 @@ public class ThriftDataReceiver {
                                           DataBridgeReceiverService dataBridgeReceiverService)
             throws DataBridgeException {
         try {
-            TServerSocket serverTransport = new TServerSocket(
-                    new InetSocketAddress(hostName, port));
             ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl> processor =
                     new ThriftEventTransmissionService.Processor<ThriftEventTransmissionServiceImpl>(
                             new ThriftEventTransmissionServiceImpl(dataBridgeReceiverService));
-            dataReceiverServer = new TThreadPoolServer(
-                    new TThreadPoolServer.Args(serverTransport).processor(processor));
+            TProtocolFactory protocolFactory = createProtocolFactory(
+                    thriftDataReceiverConfiguration.getThriftProtocol());
+            String serverType = thriftDataReceiverConfiguration.getServerType();
+            if (ThriftDataReceiverConstants.SERVER_TYPE_THREADED_SELECTOR.equalsIgnoreCase(serverType)) {
+                TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(
+                        new InetSocketAddress(hostName, port));
+                TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(serverTransport)
+                        .selectorThreads(thriftDataReceiverConfiguration.getSelectorThreads())
+                        .workerThreads(thriftDataReceiverConfiguration.getWorkerThreads());
+                args.processor(processor).protocolFactory(protocolFactory);
+                args.maxReadBufferBytes = thriftDataReceiverConfiguration.getMaxReadBufferBytes();
+                dataReceiverServer = new TThreadedSelectorServer(args);
+            } else if (ThriftDataReceiverConstants.SERVER_TYPE_HSHA.equalsIgnoreCase(serverType)) {
+                TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(
+                        new InetSocketAddress(hostName, port));
+                dataReceiverExecutor = Executors.newFixedThreadPool(
+                        thriftDataReceiverConfiguration.getWorkerThreads());
+                THsHaServer.Args args = new THsHaServer.Args(serverTransport).executorService(dataReceiverExecutor);
+                args.processor(processor).protocolFactory(protocolFactory);
+                args.maxReadBufferBytes = thriftDataReceiverConfiguration.getMaxReadBufferBytes();
+                dataReceiverServer = new THsHaServer(args);
+            } else if (ThriftDataReceiverConstants.SERVER_TYPE_THREAD_POOL.equalsIgnoreCase(serverType)) {
+                TServerSocket serverTransport = new TServerSocket(
+                        new InetSocketAddress(hostName, port));
+                dataReceiverServer = new TThreadPoolServer(
+                        new TThreadPoolServer.Args(serverTransport).processor(processor)
+                                .protocolFactory(protocolFactory));
+            } else {
+                throw new DataBridgeException("Unsupported Thrift server type '" + serverType + "', only "
+                        + ThriftDataReceiverConstants.SERVER_TYPE_THREAD_POOL + ", "
+                        + ThriftDataReceiverConstants.SERVER_TYPE_HSHA + " and "
+                        + ThriftDataReceiverConstants.SERVER_TYPE_THREADED_SELECTOR + " are supported");
+            }
             Thread thread = new Thread(new ServerThread(dataReceiverServer));
-            log.info("Thrift port : " + port);
+            log.info("Thrift port : " + port + ", server type : " + serverType);
             thread.start();
         } catch (TTransportException e) {
             throw new DataBridgeException("Cannot start Thrift server on port " + port +
@@ -216,12 +254,26 @@ public class ThriftDataReceiver {
         }
     }
 
+    private TProtocolFactory createProtocolFactory(String protocol) throws DataBridgeException {
+        if (ThriftDataReceiverConstants.THRIFT_PROTOCOL_COMPACT.equalsIgnoreCase(protocol)) {
+            return new TCompactProtocol.Factory();
+        } else if (ThriftDataReceiverConstants.THRIFT_PROTOCOL_BINARY.equalsIgnoreCase(protocol)) {
+            return new TBinaryProtocol.Factory();
+        }
+        throw new DataBridgeException("Unsupported Thrift protocol '" + protocol + "', only "
+                + ThriftDataReceiverConstants.THRIFT_PROTOCOL_BINARY + " and "
+                + ThriftDataReceiverConstants.THRIFT_PROTOCOL_COMPACT + " are supported");
+    }
+
     /**
      * To stop the server
      */
     public void stop() {
         authenticationServer.stop();
         dataReceiverServer.stop();
+        if (dataReceiverExecutor != null) {
+            dataReceiverExecutor.shutdown();
+        }
     }
 
     static class ServerThread implements Runnable {
@@ -35,6 +35,11 @@ public class ThriftDataReceiverConfiguration {
     private String sslProtocols;
     private String ciphers;
     private String receiverHostName;
+    private String serverType = ThriftDataReceiverConstants.DEFAULT_SERVER_TYPE;
+    private String thriftProtocol = ThriftDataReceiverConstants.DEFAULT_THRIFT_PROTOCOL;
+    private int selectorThreads = ThriftDataReceiverConstants.DEFAULT_SELECTOR_THREADS;
+    private int workerThreads = ThriftDataReceiverConstants.DEFAULT_WORKER_THREADS;
+    private long maxReadBufferBytes = ThriftDataReceiverConstants.DEFAULT_MAX_READ_BUFFER_BYTES;
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort) {
         secureDataReceiverPort = defaultSslPort;
@@ -73,6 +78,20 @@ public class ThriftDataReceiverConfiguration {
         sslProtocols =  sslProtocolObj != null ? sslProtocolObj.toString() : null;
         Object ciphersObj = dataReceiver.getOrDefault(ThriftDataReceiverConstants.CIPHERS_ELEMENT, null);
         ciphers =  sslProtocolObj != null ? ciphersObj.toString() : null;
+
+        serverType = dataReceiver.getOrDefault(ThriftDataReceiverConstants.SERVER_TYPE_ELEMENT,
+                ThriftDataReceiverConstants.DEFAULT_SERVER_TYPE).toString();
+        thriftProtocol = dataReceiver.getOrDefault(ThriftDataReceiverConstants.THRIFT_PROTOCOL_ELEMENT,
+                ThriftDataReceiverConstants.DEFAULT_THRIFT_PROTOCOL).toString();
+        selectorThreads = Integer.parseInt(dataReceiver.getOrDefault(
+                ThriftDataReceiverConstants.SELECTOR_THREADS_ELEMENT,
+                ThriftDataReceiverConstants.DEFAULT_SELECTOR_THREADS).toString());
+        workerThreads = Integer.parseInt(dataReceiver.getOrDefault(
+                ThriftDataReceiverConstants.WORKER_THREADS_ELEMENT,
+                ThriftDataReceiverConstants.DEFAULT_WORKER_THREADS).toString());
+        maxReadBufferBytes = Long.parseLong(dataReceiver.getOrDefault(
+                ThriftDataReceiverConstants.MAX_READ_BUFFER_BYTES_ELEMENT,
+                ThriftDataReceiverConstants.DEFAULT_MAX_READ_BUFFER_BYTES).toString());
     }
 
     public ThriftDataReceiverConfiguration(int defaultSslPort, int defaultPort,
@@ -127,4 +146,44 @@ public class ThriftDataReceiverConfiguration {
     public void setCiphers(String ciphers) {
         this.ciphers = ciphers;
     }
+
+    public String getServerType() {
+        return serverType;
+    }
+
+    public void setServerType(String serverType) {
+        this.serverType = serverType;
+    }
+
+    public String getThriftProtocol() {
+        return thriftProtocol;
+    }
+
+    public void setThriftProtocol(String thriftProtocol) {
+        this.thriftProtocol = thriftProtocol;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public long getMaxReadBufferBytes() {
+        return maxReadBufferBytes;
+    }
+
+    public void setMaxReadBufferBytes(long maxReadBufferBytes) {
+        this.maxReadBufferBytes = maxReadBufferBytes;
+    }
 }
@@ -116,7 +116,7 @@ public final class ThriftEventConverter implements EventConverter {
             eventBundleSize += thriftEventBundle.getLongAttributeListSize() * 8; // 8 bytes per long field
             eventBundleSize += thriftEventBundle.getLongAttributeListSize() * DataBridgeCommonsUtils.getReferenceSize(); // for each long reference
             for (String aStringField : thriftEventBundle.getStringAttributeList()){
-                eventBundleSize += aStringField.getBytes().length;
+                eventBundleSize += 2 * aStringField.length(); // 2 bytes per character held in memory, to avoid encoding
             }
             eventBundleSize += thriftEventBundle.getStringAttributeListSize() * DataBridgeCommonsUtils.getReferenceSize(); // for each string reference
             eventBundleSize += 4; //for eventNum field
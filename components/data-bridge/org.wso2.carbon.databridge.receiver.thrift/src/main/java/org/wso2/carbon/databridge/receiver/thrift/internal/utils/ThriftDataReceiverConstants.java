@@ -36,4 +36,20 @@ public final class ThriftDataReceiverConstants {
     public static final String DATA_BRIDGE_RECEIVER_NAME = "Thrift";
     public static final String DATA_BRIDGE_KEY_STORE_LOCATION = "keyStoreLocation";
     public static final String DATA_BRIDGE_KEY_STORE_PASSWORD = "keyStorePassword";
+
+    public static final String SERVER_TYPE_ELEMENT = "serverType";
+    public static final String SERVER_TYPE_THREAD_POOL = "threadPool";
+    public static final String SERVER_TYPE_HSHA = "hsha";
+    public static final String SERVER_TYPE_THREADED_SELECTOR = "threadedSelector";
+    public static final String DEFAULT_SERVER_TYPE = SERVER_TYPE_THREAD_POOL;
+    public static final String THRIFT_PROTOCOL_ELEMENT = "thriftProtocol";
+    public static final String THRIFT_PROTOCOL_BINARY = "binary";
+    public static final String THRIFT_PROTOCOL_COMPACT = "compact";
+    public static final String DEFAULT_THRIFT_PROTOCOL = THRIFT_PROTOCOL_BINARY;
+    public static final String SELECTOR_THREADS_ELEMENT = "selectorThreads";
+    public static final int DEFAULT_SELECTOR_THREADS = 2;
+    public static final String WORKER_THREADS_ELEMENT = "workerThreads";
+    public static final int DEFAULT_WORKER_THREADS = 10;
+    public static final String MAX_READ_BUFFER_BYTES_ELEMENT = "maxReadBufferBytes";
+    public static final long DEFAULT_MAX_READ_BUFFER_BYTES = 256L * 1024 * 1024;
 }
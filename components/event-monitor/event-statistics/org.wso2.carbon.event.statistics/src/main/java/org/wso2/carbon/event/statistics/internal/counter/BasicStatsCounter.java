@@ -19,35 +19,26 @@ package org.wso2.carbon.event.statistics.internal.counter;
 
 import org.wso2.carbon.event.statistics.internal.Constants;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free event rate counter. Updates only touch striped cells of the current time slices, and the rates are
+ * aggregated from the cells when they are read by the statistics reporters.
+ */
 public class BasicStatsCounter {
-    private long startTime;
-    private long lastUpdatedTime;
-
-    private long totalCount;
-
-    private long prevSecCount;
-    private long prevMinCount;
-    private long prev15MinCount;
-    private long prevHourCount;
-    private long prev6HourCount;
-    private long prevDayCount;
-
-    private long maxCountPerSec;
-    private double avgCountPerSec;
-
-    private long currentSecCount;
-    private long currentMinCount;
-    private long current15MinCount;
-    private long currentHourCount;
-    private long current6HourCount;
-    private long currentDayCount;
-
-    private long currentSec;
-    private long currentMin;
-    private long current15Min;
-    private long currentHour;
-    private long current6Hour;
-    private long currentDay;
+    private volatile long startTime;
+    private volatile long lastUpdatedTime;
+
+    private final LongAdder totalCount = new LongAdder();
+    private final AtomicLong maxCountPerSec = new AtomicLong();
+
+    private final TimeSliceCounter secCounter = new TimeSliceCounter(Constants.SEC_IN_MS);
+    private final TimeSliceCounter minCounter = new TimeSliceCounter(Constants.MIN_IN_MS);
+    private final TimeSliceCounter min15Counter = new TimeSliceCounter(Constants.MIN15_IN_MS);
+    private final TimeSliceCounter hourCounter = new TimeSliceCounter(Constants.HOUR_IN_MS);
+    private final TimeSliceCounter hour6Counter = new TimeSliceCounter(Constants.HOUR6_IN_MS);
+    private final TimeSliceCounter dayCounter = new TimeSliceCounter(Constants.DAY_IN_MS);
 
     public BasicStatsCounter() {
         reset();
@@ -55,38 +46,48 @@ public class BasicStatsCounter {
 
 
     public long getTotalCount() {
-        return totalCount;
+        return totalCount.sum();
     }
 
     public long getLastSecCount() {
-        return currentSecCount + (prevSecCount * (Constants.SEC_IN_MS - (lastUpdatedTime - currentSec * Constants.SEC_IN_MS))) / Constants.SEC_IN_MS;
+        return secCounter.getWindowCount(lastUpdatedTime);
     }
 
     public long getLastMinCount() {
-        return currentMinCount + (prevMinCount * (Constants.MIN_IN_MS - (lastUpdatedTime - currentMin * Constants.MIN_IN_MS))) / Constants.MIN_IN_MS;
+        return minCounter.getWindowCount(lastUpdatedTime);
     }
 
     public long getLast15MinCount() {
-        return current15MinCount + (prev15MinCount * (Constants.MIN15_IN_MS - (lastUpdatedTime - current15Min * Constants.MIN15_IN_MS))) / Constants.MIN15_IN_MS;
+        return min15Counter.getWindowCount(lastUpdatedTime);
     }
 
     public long getLastHourCount() {
-        return currentHourCount + (prevHourCount * (Constants.HOUR_IN_MS - (lastUpdatedTime - currentHour * Constants.HOUR_IN_MS))) / Constants.HOUR_IN_MS;
+        return hourCounter.getWindowCount(lastUpdatedTime);
     }
 
     public long getLast6HourCount() {
-        return current6HourCount + (prev6HourCount * (Constants.HOUR6_IN_MS - (lastUpdatedTime - current6Hour * Constants.HOUR6_IN_MS))) / Constants.HOUR6_IN_MS;
+        return hour6Counter.getWindowCount(lastUpdatedTime);
     }
 
     public long getLastDayCount() {
-        return currentDayCount + (prevDayCount * (Constants.DAY_IN_MS - (lastUpdatedTime - currentDay * Constants.DAY_IN_MS))) / Constants.DAY_IN_MS;
+        return dayCounter.getWindowCount(lastUpdatedTime);
     }
 
     public long getMaxCountPerSec() {
-        return maxCountPerSec;
+        return Math.max(maxCountPerSec.get(), secCounter.getMaxCount());
     }
 
     public double getAvgCountPerSec() {
+        long lastUpdatedTime = this.lastUpdatedTime;
+        long startTime = this.startTime;
+        double avgCountPerSec;
+        if (lastUpdatedTime < 0) {
+            avgCountPerSec = 0.0;
+        } else if (lastUpdatedTime / Constants.SEC_IN_MS == startTime / Constants.SEC_IN_MS) {
+            avgCountPerSec = getTotalCount();
+        } else {
+            avgCountPerSec = getTotalCount() * ((Constants.SEC_IN_MS * 1.0) / (lastUpdatedTime - startTime));
+        }
         return Math.round(avgCountPerSec * 1000) / 1000.0;
     }
 
@@ -94,61 +95,29 @@ public class BasicStatsCounter {
         return lastUpdatedTime;
     }
 
-    public synchronized void update() {
-        lastUpdatedTime = System.currentTimeMillis();
-        totalCount++;
-
-        if (currentSec < lastUpdatedTime / Constants.SEC_IN_MS) {
-            currentSec = lastUpdatedTime / Constants.SEC_IN_MS;
-            prevSecCount = currentSecCount;
-            currentSecCount = 0l;
-
-            if (currentMin < lastUpdatedTime / Constants.MIN_IN_MS) {
-                currentMin = lastUpdatedTime / Constants.MIN_IN_MS;
-                prevMinCount = currentMinCount;
-                currentMinCount = 0l;
-
-                if (current15Min < lastUpdatedTime / Constants.MIN15_IN_MS) {
-                    current15Min = lastUpdatedTime / Constants.MIN15_IN_MS;
-                    prev15MinCount = current15MinCount;
-                    current15MinCount = 0l;
-                }
-                if (currentHour < lastUpdatedTime / Constants.HOUR_IN_MS) {
-                    currentHour = lastUpdatedTime / Constants.HOUR_IN_MS;
-                    prevHourCount = currentHourCount;
-                    currentHourCount = 0l;
-                }
-
-                if (current6Hour < lastUpdatedTime / Constants.HOUR6_IN_MS) {
-                    current6Hour = lastUpdatedTime / Constants.HOUR6_IN_MS;
-                    prev6HourCount = current6HourCount;
-                    current6HourCount = 0l;
-                }
-                if (currentDay < lastUpdatedTime / Constants.DAY_IN_MS) {
-                    currentDay = lastUpdatedTime / Constants.DAY_IN_MS;
-                    prevDayCount = currentDayCount;
-                    currentDayCount = 0l;
-                }
-            }
-
+    public void update() {
+        long currentTime = System.currentTimeMillis();
+        if (lastUpdatedTime < currentTime) {
+            /* written at most once per millisecond, to keep the shared field off the hot path */
+            lastUpdatedTime = currentTime;
         }
+        totalCount.increment();
 
-
-        currentSecCount++;
-        currentMinCount++;
-        current15MinCount++;
-        currentHourCount++;
-        current6HourCount++;
-        currentDayCount++;
-
-        if (currentSecCount > maxCountPerSec) {
-            maxCountPerSec = currentSecCount;
+        long droppedSecCount = secCounter.increment(secCounter.getSlice(currentTime));
+        if (droppedSecCount > 0) {
+            updateMaxCountPerSec(droppedSecCount);
         }
-        if (currentSec == startTime / Constants.SEC_IN_MS) {
-            startTime = lastUpdatedTime;
-            avgCountPerSec = totalCount;
-        } else {
-            avgCountPerSec = totalCount * ((Constants.SEC_IN_MS * 1.0) / (lastUpdatedTime - startTime));
+        minCounter.increment(minCounter.getSlice(currentTime));
+        min15Counter.increment(min15Counter.getSlice(currentTime));
+        hourCounter.increment(hourCounter.getSlice(currentTime));
+        hour6Counter.increment(hour6Counter.getSlice(currentTime));
+        dayCounter.increment(dayCounter.getSlice(currentTime));
+    }
+
+    private void updateMaxCountPerSec(long count) {
+        long currentMax = maxCountPerSec.get();
+        while (count > currentMax && !maxCountPerSec.compareAndSet(currentMax, count)) {
+            currentMax = maxCountPerSec.get();
         }
     }
 
@@ -172,31 +141,15 @@ public class BasicStatsCounter {
         this.startTime = System.currentTimeMillis();
         lastUpdatedTime = -1l;
 
-        totalCount = 0l;
-
-        prevSecCount = 0l;
-        prevMinCount = 0l;
-        prev15MinCount = 0l;
-        prevHourCount = 0l;
-        prev6HourCount = 0l;
-        prevDayCount = 0l;
-
-        maxCountPerSec = 0l;
-        avgCountPerSec = 0.0;
-
-        currentSecCount = 0l;
-        currentMinCount = 0l;
-        current15MinCount = 0l;
-        currentHourCount = 0l;
-        current6HourCount = 0l;
-        currentDayCount = 0l;
-
-        currentSec = 0l;
-        currentMin = 0l;
-        current15Min = 0l;
-        currentHour = 0l;
-        current6Hour = 0l;
-        currentDay = 0l;
+        totalCount.reset();
+        maxCountPerSec.set(0l);
+
+        secCounter.reset();
+        minCounter.reset();
+        min15Counter.reset();
+        hourCounter.reset();
+        hour6Counter.reset();
+        dayCounter.reset();
 
     }
 }
@@ -0,0 +1,135 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.statistics.internal.counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events of fixed length time slices, keeping the current and the previous slices in a ring. Each slot
+ * of the ring is a striped counter, so concurrent updates of the same slice do not contend, and the slot is only
+ * claimed by a single updater when the time moves to a new slice.
+ */
+class TimeSliceCounter {
+
+    private static final int SLOT_COUNT = 3;
+
+    private static final long ROTATING = -1;
+
+    private final long sliceLength;
+
+    private final Slot[] slots = new Slot[SLOT_COUNT];
+
+    TimeSliceCounter(long sliceLength) {
+        this.sliceLength = sliceLength;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    long getSlice(long time) {
+        return time / sliceLength;
+    }
+
+    long getSliceLength() {
+        return sliceLength;
+    }
+
+    /**
+     * Counts an event of the given slice.
+     *
+     * @return the count of the slice which was dropped from the ring to make room for the given slice, or -1 if no
+     * slice was dropped by this call.
+     */
+    long increment(long slice) {
+        Slot slot = slots[(int) (slice % SLOT_COUNT)];
+        while (true) {
+            long currentSlice = slot.slice.get();
+            if (currentSlice == slice) {
+                slot.count.increment();
+                return -1;
+            }
+            if (currentSlice == ROTATING) {
+                /* another updater is moving the slot to a new slice, which will be visible shortly */
+                Thread.yield();
+                continue;
+            }
+            if (currentSlice > slice) {
+                /* a late update of a slice which is no longer kept */
+                return -1;
+            }
+            if (slot.slice.compareAndSet(currentSlice, ROTATING)) {
+                long droppedCount = slot.count.sumThenReset();
+                slot.count.increment();
+                slot.slice.set(slice);
+                return droppedCount;
+            }
+        }
+    }
+
+    /**
+     * Returns the count of the given slice, or 0 if the slice is not kept.
+     */
+    long getCount(long slice) {
+        if (slice < 0) {
+            return 0;
+        }
+        Slot slot = slots[(int) (slice % SLOT_COUNT)];
+        if (slot.slice.get() != slice) {
+            return 0;
+        }
+        return slot.count.sum();
+    }
+
+    /**
+     * Returns the largest count of the slices kept in the ring.
+     */
+    long getMaxCount() {
+        long maxCount = 0;
+        for (Slot slot : slots) {
+            if (slot.slice.get() != ROTATING) {
+                maxCount = Math.max(maxCount, slot.count.sum());
+            }
+        }
+        return maxCount;
+    }
+
+    /**
+     * Returns the count of the slice of the given time, with the count of the previous slice weighted by the part
+     * of it which still falls within one slice length of the given time.
+     */
+    long getWindowCount(long time) {
+        long slice = getSlice(time);
+        long previousSliceCount = getCount(slice - 1);
+        return getCount(slice) + (previousSliceCount * (sliceLength - (time - slice * sliceLength))) / sliceLength;
+    }
+
+    void reset() {
+        for (Slot slot : slots) {
+            slot.slice.set(0);
+            slot.count.reset();
+        }
+    }
+
+    private static class Slot {
+
+        private final AtomicLong slice = new AtomicLong();
+
+        private final LongAdder count = new LongAdder();
+    }
+}
@@ -41,4 +41,34 @@ public class CounterTest extends TestCase {
 
 
     }
+
+    public void testConcurrentUpdates() throws InterruptedException {
+
+        final BasicStatsCounter basicStatsCounter = new BasicStatsCounter();
+        final int threadCount = 16;
+        final int updatesPerThread = 10000;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < updatesPerThread; j++) {
+                        basicStatsCounter.update();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println(basicStatsCounter);
+
+        assertEquals(threadCount * updatesPerThread, basicStatsCounter.getTotalCount());
+        assertTrue(basicStatsCounter.getLastDayCount() <= basicStatsCounter.getTotalCount());
+        assertTrue(basicStatsCounter.getLastSecCount() <= basicStatsCounter.getTotalCount());
+        assertTrue(basicStatsCounter.getMaxCountPerSec() > 0);
+    }
 }
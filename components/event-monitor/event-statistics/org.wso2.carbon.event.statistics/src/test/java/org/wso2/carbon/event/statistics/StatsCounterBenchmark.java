@@ -0,0 +1,109 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.statistics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.event.statistics.internal.Constants;
+import org.wso2.carbon.event.statistics.internal.EventStatisticsMonitorImpl;
+import org.wso2.carbon.event.statistics.internal.counter.StatsCounter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark of the event statistics counters. All the threads share the tenant, category and deployment
+ * counters, as the events of every stream of a tenant do, while each thread updates its own element counter. It is
+ * not run with the unit tests, run the main method with the test classpath to measure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StatsCounterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedCounters {
+
+        private StatsCounter tenantData;
+        private StatsCounter categoryData;
+        private StatsCounter deploymentData;
+
+        @Setup
+        public void setup() {
+            tenantData = new StatsCounter("-1234", Constants.TENANT);
+            categoryData = new StatsCounter("EventReceiver", Constants.CATEGORY);
+            deploymentData = new StatsCounter("TestReceiver", Constants.DEPLOYMENT);
+            tenantData.addChildCounter(categoryData.getName(), categoryData);
+            categoryData.addChildCounter(deploymentData.getName(), deploymentData);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadMonitor {
+
+        private EventStatisticsMonitor monitor;
+
+        @Setup
+        public void setup(SharedCounters sharedCounters) {
+            StatsCounter elementData = new StatsCounter(Thread.currentThread().getName(), Constants.ELEMENT);
+            sharedCounters.deploymentData.addChildCounter(elementData.getName(), elementData);
+            monitor = new EventStatisticsMonitorImpl(sharedCounters.tenantData, sharedCounters.categoryData,
+                    sharedCounters.deploymentData, elementData);
+        }
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void incrementRequest16Threads(ThreadMonitor threadMonitor) {
+        threadMonitor.monitor.incrementRequest();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void incrementRequest32Threads(ThreadMonitor threadMonitor) {
+        threadMonitor.monitor.incrementRequest();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long readWhileUpdating16Threads(ThreadMonitor threadMonitor, SharedCounters sharedCounters) {
+        threadMonitor.monitor.incrementRequest();
+        return sharedCounters.tenantData.getRequestStatCounter().getLastSecCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StatsCounterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
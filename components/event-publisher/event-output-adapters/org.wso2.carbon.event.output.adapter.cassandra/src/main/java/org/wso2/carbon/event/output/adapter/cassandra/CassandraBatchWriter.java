@@ -0,0 +1,437 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.event.output.adapter.cassandra.internal.util.CassandraEventAdapterConstants;
+import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the events of a Cassandra output adapter with a prepared insert statement. The table is created with a column
+ * per attribute of the first event, typed by the attribute type in the output stream definition, and the configured
+ * partition keys and clustering columns as its primary key. An existing table has to be a CQL table with a column
+ * for each attribute. Bound statements are grouped into unlogged batches by the primary replica of their partition,
+ * so that each batch is sent by the token aware policy to a node owning all of its rows. Batches are sent
+ * asynchronously when they are full or when the flush interval elapses, and publishing blocks while the maximum
+ * number of batches is in flight.
+ */
+public class CassandraBatchWriter {
+
+    private static final Log log = LogFactory.getLog(CassandraBatchWriter.class);
+
+    private final String adapterName;
+    private final int tenantId;
+    private final Cluster cluster;
+    private final Session session;
+    private final String keySpaceName;
+    private final String tableName;
+    private final String strategyClass;
+    private final int replicationFactor;
+    private final Map<String, AttributeType> attributeTypes;
+    private final List<String> partitionKeys;
+    private final List<String> clusteringColumns;
+    private final List<String> indexedColumns;
+    private final int batchSize;
+    private final Semaphore inFlightBatches;
+    private final ScheduledExecutorService flushExecutor;
+    private final ProtocolVersion protocolVersion;
+    private final CodecRegistry codecRegistry;
+
+    private volatile PreparedStatement insertStatement;
+    private List<String> columns;
+    private List<DataType> columnTypes;
+    private int keyColumnCount;
+    private final Map<Host, List<BoundStatement>> pendingBatches = new HashMap<Host, List<BoundStatement>>();
+    private volatile Throwable connectionError;
+
+    public CassandraBatchWriter(String adapterName, int tenantId, Cluster cluster, Session session,
+                                String keySpaceName, String tableName, String strategyClass, int replicationFactor,
+                                Map<String, AttributeType> attributeTypes, List<String> partitionKeys, List<String> clusteringColumns,
+                                List<String> indexedColumns, int batchSize, long flushInterval,
+                                int maxInFlightBatches) {
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+        this.cluster = cluster;
+        this.session = session;
+        this.keySpaceName = keySpaceName;
+        this.tableName = tableName;
+        this.strategyClass = strategyClass;
+        this.replicationFactor = replicationFactor;
+        this.attributeTypes = attributeTypes;
+        this.partitionKeys = partitionKeys;
+        this.clusteringColumns = clusteringColumns;
+        this.indexedColumns = indexedColumns;
+        this.batchSize = batchSize;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        this.protocolVersion = cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+        this.codecRegistry = cluster.getConfiguration().getCodecRegistry();
+        TableMetadata table = getTableMetadata();
+        if (table != null && table.getOptions().isCompactStorage()) {
+            throw new OutputEventAdapterRuntimeException("Table '" + keySpaceName + "." + tableName + "' of Cassandra " +
+                    "Output Adapter '" + adapterName + "' is a column family created through Thrift, which the " +
+                    "adapter cannot write to. Use a new column family name, the adapter creates the table from the " +
+                    "first event");
+        }
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CassandraOutputAdapter-Flush-" +
+                        CassandraBatchWriter.this.adapterName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flushExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Throwable t) {
+                    log.error("Error while flushing the events of Cassandra Output Adapter '" +
+                            CassandraBatchWriter.this.adapterName + "'", t);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void write(Map<String, Object> event) {
+        Throwable error = connectionError;
+        if (error != null) {
+            throw new ConnectionUnavailableException("Cassandra cluster is not reachable from Output Adapter '" +
+                    adapterName + "'", error);
+        }
+        PreparedStatement statement = insertStatement;
+        if (statement == null) {
+            statement = initialize(event);
+        }
+        BoundStatement boundStatement = bind(statement, event);
+        if (boundStatement == null) {
+            return;
+        }
+        Host replica = getPrimaryReplica(boundStatement);
+        List<BoundStatement> fullBatch = null;
+        synchronized (pendingBatches) {
+            List<BoundStatement> batch = pendingBatches.get(replica);
+            if (batch == null) {
+                batch = new ArrayList<BoundStatement>(batchSize);
+                pendingBatches.put(replica, batch);
+            }
+            batch.add(boundStatement);
+            if (batch.size() >= batchSize) {
+                fullBatch = pendingBatches.remove(replica);
+            }
+        }
+        if (fullBatch != null) {
+            execute(fullBatch);
+        }
+    }
+
+    /**
+     * Sends the pending batches and stops the periodic flush.
+     */
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("Error while flushing the events of Cassandra Output Adapter '" + adapterName + "'", t);
+        }
+    }
+
+    private void flush() {
+        List<List<BoundStatement>> batches;
+        synchronized (pendingBatches) {
+            if (pendingBatches.isEmpty()) {
+                return;
+            }
+            batches = new ArrayList<List<BoundStatement>>(pendingBatches.values());
+            pendingBatches.clear();
+        }
+        for (List<BoundStatement> batch : batches) {
+            execute(batch);
+        }
+    }
+
+    private void execute(final List<BoundStatement> statements) {
+        Statement statement;
+        if (statements.size() == 1) {
+            statement = statements.get(0);
+        } else {
+            BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            batchStatement.addAll(statements);
+            statement = batchStatement;
+        }
+        inFlightBatches.acquireUninterruptibly();
+        ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet resultSet) {
+                inFlightBatches.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlightBatches.release();
+                if (t instanceof NoHostAvailableException) {
+                    connectionError = t;
+                }
+                EventAdapterUtil.logAndDrop(adapterName, statements.size() + " events",
+                        "Error while writing a batch to Cassandra", t, log, tenantId);
+            }
+        });
+    }
+
+    private Host getPrimaryReplica(BoundStatement statement) {
+        ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+        if (routingKey == null) {
+            return null;
+        }
+        Set<Host> replicas = cluster.getMetadata().getReplicas(Metadata.quote(keySpaceName), routingKey);
+        Iterator<Host> iterator = replicas.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private BoundStatement bind(PreparedStatement statement, Map<String, Object> event) {
+        BoundStatement boundStatement = statement.bind();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            if (partitionKeys.isEmpty() && i == 0) {
+                boundStatement.setUUID(i, UUIDs.timeBased());
+                continue;
+            }
+            Object value = event.get(column);
+            if (value == null) {
+                if (i < keyColumnCount) {
+                    EventAdapterUtil.logAndDrop(adapterName, event, "Primary key attribute '" + column +
+                            "' is null", log, tenantId);
+                    return null;
+                }
+                // Unset values do not write tombstones, which are only avoidable from protocol v4.
+                if (protocolVersion.compareTo(ProtocolVersion.V4) < 0) {
+                    boundStatement.setToNull(i);
+                }
+                continue;
+            }
+            switch (columnTypes.get(i).getName()) {
+                case INT:
+                    boundStatement.setInt(i, ((Number) value).intValue());
+                    break;
+                case BIGINT:
+                    boundStatement.setLong(i, ((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    boundStatement.setFloat(i, ((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    boundStatement.setDouble(i, ((Number) value).doubleValue());
+                    break;
+                case BOOLEAN:
+                    boundStatement.setBool(i, value instanceof Boolean ? (Boolean) value :
+                            Boolean.parseBoolean(value.toString()));
+                    break;
+                default:
+                    boundStatement.setString(i, value.toString());
+            }
+        }
+        return boundStatement;
+    }
+
+    /**
+     * Creates the keyspace, table and indexes if they do not exist, and prepares the insert statement, using the
+     * attributes of the given event.
+     */
+    private synchronized PreparedStatement initialize(Map<String, Object> event) {
+        if (insertStatement != null) {
+            return insertStatement;
+        }
+        List<String> columnList = new ArrayList<String>();
+        List<DataType> typeList = new ArrayList<DataType>();
+        if (partitionKeys.isEmpty()) {
+            columnList.add(CassandraEventAdapterConstants.CASSANDRA_EVENT_ID_COLUMN);
+            typeList.add(DataType.timeuuid());
+        }
+        List<String> keyColumns = new ArrayList<String>(partitionKeys);
+        keyColumns.addAll(clusteringColumns);
+        for (String keyColumn : keyColumns) {
+            if (!event.containsKey(keyColumn)) {
+                throw new OutputEventAdapterRuntimeException("Primary key column '" + keyColumn +
+                        "' is not an attribute of the events of Cassandra Output Adapter '" + adapterName + "'");
+            }
+            columnList.add(keyColumn);
+            typeList.add(getDataType(keyColumn, event.get(keyColumn)));
+        }
+        for (Map.Entry<String, Object> entry : event.entrySet()) {
+            if (!keyColumns.contains(entry.getKey())) {
+                columnList.add(entry.getKey());
+                typeList.add(getDataType(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        String qualifiedTableName = Metadata.quote(keySpaceName) + "." + Metadata.quote(tableName);
+        session.execute("CREATE KEYSPACE IF NOT EXISTS " + Metadata.quote(keySpaceName) +
+                " WITH replication = {'class': '" + strategyClass + "', 'replication_factor': " +
+                replicationFactor + "}");
+
+        StringBuilder createTable = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(qualifiedTableName)
+                .append(" (");
+        for (int i = 0; i < columnList.size(); i++) {
+            createTable.append(Metadata.quote(columnList.get(i))).append(' ').append(typeList.get(i)).append(", ");
+        }
+        createTable.append("PRIMARY KEY ((");
+        if (partitionKeys.isEmpty()) {
+            createTable.append(Metadata.quote(CassandraEventAdapterConstants.CASSANDRA_EVENT_ID_COLUMN));
+        } else {
+            appendColumns(createTable, partitionKeys);
+        }
+        createTable.append(')');
+        if (!clusteringColumns.isEmpty()) {
+            createTable.append(", ");
+            appendColumns(createTable, clusteringColumns);
+        }
+        createTable.append("))");
+        session.execute(createTable.toString());
+        TableMetadata table = getTableMetadata();
+        if (table != null) {
+            for (String column : columnList) {
+                if (table.getColumn(Metadata.quote(column)) == null) {
+                    throw new OutputEventAdapterRuntimeException("Table '" + keySpaceName + "." + tableName +
+                            "' of Cassandra Output Adapter '" + adapterName + "' has no column '" + column +
+                            "' for the attribute of the events. Use a new column family name, or add the column");
+                }
+            }
+        }
+
+        for (String indexedColumn : indexedColumns) {
+            session.execute("CREATE INDEX IF NOT EXISTS ON " + qualifiedTableName + " (" +
+                    Metadata.quote(indexedColumn) + ")");
+        }
+
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(qualifiedTableName).append(" (");
+        StringBuilder values = new StringBuilder(" VALUES (");
+        for (int i = 0; i < columnList.size(); i++) {
+            if (i > 0) {
+                insert.append(", ");
+                values.append(", ");
+            }
+            insert.append(Metadata.quote(columnList.get(i)));
+            values.append('?');
+        }
+        insert.append(')').append(values).append(')');
+
+        columns = columnList;
+        columnTypes = typeList;
+        keyColumnCount = (partitionKeys.isEmpty() ? 1 : 0) + keyColumns.size();
+        insertStatement = session.prepare(insert.toString());
+        return insertStatement;
+    }
+
+    /**
+     * Returns the metadata of the table as known to the driver, or null if the table does not exist.
+     */
+    private TableMetadata getTableMetadata() {
+        KeyspaceMetadata keyspace = cluster.getMetadata().getKeyspace(Metadata.quote(keySpaceName));
+        return keyspace == null ? null : keyspace.getTable(Metadata.quote(tableName));
+    }
+
+    private static void appendColumns(StringBuilder builder, List<String> columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(Metadata.quote(columns.get(i)));
+        }
+    }
+
+    /**
+     * Returns the CQL type of the given attribute from its type in the stream definition. Attributes which are not
+     * in the stream definition, such as arbitrary data or the attributes of a custom mapping, are typed by their value.
+     */
+    private DataType getDataType(String attribute, Object value) {
+        AttributeType attributeType = attributeTypes.get(attribute);
+        if (attributeType != null) {
+            switch (attributeType) {
+                case INT:
+                    return DataType.cint();
+                case LONG:
+                    return DataType.bigint();
+                case FLOAT:
+                    return DataType.cfloat();
+                case DOUBLE:
+                    return DataType.cdouble();
+                case BOOL:
+                    return DataType.cboolean();
+                default:
+                    return DataType.text();
+            }
+        }
+        if (value instanceof Integer) {
+            return DataType.cint();
+        } else if (value instanceof Long) {
+            return DataType.bigint();
+        } else if (value instanceof Float) {
+            return DataType.cfloat();
+        } else if (value instanceof Double) {
+            return DataType.cdouble();
+        } else if (value instanceof Boolean) {
+            return DataType.cboolean();
+        }
+        return DataType.text();
+    }
+}
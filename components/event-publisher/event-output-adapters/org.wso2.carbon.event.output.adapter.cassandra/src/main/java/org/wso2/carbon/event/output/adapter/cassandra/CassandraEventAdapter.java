@@ -17,31 +17,39 @@
 */
 package org.wso2.carbon.event.output.adapter.cassandra;
 
-import me.prettyprint.cassandra.model.BasicColumnDefinition;
-import me.prettyprint.cassandra.model.BasicColumnFamilyDefinition;
-import me.prettyprint.cassandra.serializers.StringSerializer;
-import me.prettyprint.cassandra.service.CassandraHostConfigurator;
-import me.prettyprint.cassandra.service.ThriftCfDef;
-import me.prettyprint.hector.api.Cluster;
-import me.prettyprint.hector.api.Keyspace;
-import me.prettyprint.hector.api.ddl.ColumnFamilyDefinition;
-import me.prettyprint.hector.api.ddl.ColumnIndexType;
-import me.prettyprint.hector.api.ddl.ComparatorType;
-import me.prettyprint.hector.api.ddl.KeyspaceDefinition;
-import me.prettyprint.hector.api.factory.HFactory;
-import me.prettyprint.hector.api.mutation.Mutator;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.databridge.commons.Attribute;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.event.output.adapter.cassandra.internal.ds.CassandraEventAdapterServiceValueHolder;
 import org.wso2.carbon.event.output.adapter.cassandra.internal.util.CassandraEventAdapterConstants;
 import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapter;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
 import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
+import org.wso2.carbon.event.stream.core.EventStreamService;
+import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
 
 import java.util.*;
 
+/**
+ * Writes the events of an output stream to a Cassandra table through the native protocol (CQL) of the DataStax
+ * driver, on port 9042 by default.
+ * <p/>
+ * Earlier versions of the adapter wrote through Hector on the Thrift port 9160, into a column family keyed by a
+ * random row key with one text column per attribute. Neither works with this adapter: the Thrift port is rejected
+ * when the adapter is initialized, and a column family created through Thrift (a COMPACT STORAGE table) or a table
+ * without a column for each attribute is rejected when the adapter connects or writes its first event. Such
+ * publishers have to be moved to the native transport port and to a new column family name, from which the adapter
+ * creates a table with a typed column per attribute and the configured primary key.
+ */
 public class CassandraEventAdapter implements OutputEventAdapter {
 
     private static final Log log = LogFactory.getLog(CassandraEventAdapter.class);
@@ -49,9 +57,8 @@ public class CassandraEventAdapter implements OutputEventAdapter {
     private Map<String, String> globalProperties;
 
     private Map<String, String> credentials = null;
-    private String columnFamilyName;
-    private Mutator<String> mutator;
     private Cluster cluster;
+    private volatile CassandraBatchWriter batchWriter;
     private int tenantId;
 
     public CassandraEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration,
@@ -68,24 +75,18 @@ public class CassandraEventAdapter implements OutputEventAdapter {
 
     @Override
     public void testConnect() {
-        Map<String, String> staticProperties = eventAdapterConfiguration.getStaticProperties();
-
-        String clusterName = CassandraEventAdapterConstants.CASSANDRA_CLUSTER_NAME_PREFIX + eventAdapterConfiguration.getName();
-
-        CassandraHostConfigurator chc = new CassandraHostConfigurator();
-        chc.setHosts(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_HOSTS));
-        if (staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT) != null) {
-            chc.setPort(Integer.parseInt(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT)));
-        }
-
-        Cluster cluster = HFactory.createCluster(clusterName, chc, credentials);
+        Cluster cluster = createCluster();
         try {
-            Set knownPools = cluster.getKnownPoolHosts(true);
-            if (knownPools == null || knownPools.size() == 0) {
+            cluster.init();
+            if (cluster.getMetadata().getAllHosts().isEmpty()) {
                 throw new ConnectionUnavailableException("Couldn't connect to Cassandra cluster no known hosts found");
             }
+        } catch (ConnectionUnavailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ConnectionUnavailableException("Couldn't connect to Cassandra cluster, " + e.getMessage(), e);
         } finally {
-            HFactory.shutdownCluster(cluster);
+            cluster.close();
         }
 
     }
@@ -94,92 +95,60 @@ public class CassandraEventAdapter implements OutputEventAdapter {
     public void connect() {
         Map<String, String> staticProperties = eventAdapterConfiguration.getStaticProperties();
 
-        String clusterName = CassandraEventAdapterConstants.CASSANDRA_CLUSTER_NAME_PREFIX + eventAdapterConfiguration.getName();
-
-        CassandraHostConfigurator chc = new CassandraHostConfigurator();
-        chc.setHosts(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_HOSTS));
-        if (staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT) != null) {
-            chc.setPort(Integer.parseInt(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT)));
-        }
-        cluster = HFactory.createCluster(clusterName, chc, credentials);
-
-        if (cluster.getKnownPoolHosts(true).size() < 1) {
+        cluster = createCluster();
+        Session session;
+        try {
+            session = cluster.connect();
+        } catch (RuntimeException e) {
+            cluster.close();
+            cluster = null;
             // not properly connected.
-            throw new ConnectionUnavailableException("Cannot connect to the Cassandra cluster '" + cluster.getName() +
-                    "' from Output Cassandra Adapter '" + eventAdapterConfiguration.getName() + "'");
+            throw new ConnectionUnavailableException("Cannot connect to the Cassandra cluster from Output Cassandra " +
+                    "Adapter '" + eventAdapterConfiguration.getName() + "', " + e.getMessage(), e);
         }
 
         String keySpaceName = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_KEY_SPACE_NAME);
-        Keyspace keyspace = HFactory.createKeyspace(keySpaceName, cluster);
-
-        columnFamilyName = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_COLUMN_FAMILY_NAME);
-
-        BasicColumnFamilyDefinition columnFamilyDefinition = new BasicColumnFamilyDefinition();
-        columnFamilyDefinition.setKeyspaceName(keySpaceName);
-        columnFamilyDefinition.setName(columnFamilyName);
-        columnFamilyDefinition.setComparatorType(ComparatorType.UTF8TYPE);
-        columnFamilyDefinition.setDefaultValidationClass(ComparatorType.UTF8TYPE.getClassName());
-        columnFamilyDefinition.setKeyValidationClass(ComparatorType.UTF8TYPE.getClassName());
+        String columnFamilyName = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_COLUMN_FAMILY_NAME);
 
         String strategy = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_STRATEGY_CLASS);
         if (strategy == null) {
             strategy = CassandraEventAdapterConstants.ADAPTER_CASSANDRA_DEFAULT_STRATEGY_CLASS;
         }
 
-        String indexColumnsString = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_INDEXED_COLUMNS);
-        if (indexColumnsString != null && !indexColumnsString.isEmpty()) {
-            String[] indexedColumns = indexColumnsString.split(",");
-            for (String key : indexedColumns) {
-                BasicColumnDefinition columnDefinition = new BasicColumnDefinition();
-                columnDefinition.setName(StringSerializer.get().toByteBuffer(key));
-                columnDefinition.setIndexType(ColumnIndexType.KEYS);
-                columnDefinition.setIndexName(keySpaceName + "_" + columnFamilyName + "_" + key + "_Index");
-                columnDefinition.setValidationClass(ComparatorType.UTF8TYPE.getClassName());
-                columnFamilyDefinition.addColumnDefinition(columnDefinition);
-            }
-        }
-
         int replicationFactor = CassandraEventAdapterConstants.ADAPTER_CASSANDRA_DEFAULT_REPLICATION_FACTOR;
         String replicationFactorString = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_REPLICATION_FACTOR);
         if (replicationFactorString != null) {
             replicationFactor = Integer.parseInt(replicationFactorString);
         }
 
-        ColumnFamilyDefinition cfDef = new ThriftCfDef(columnFamilyDefinition);
-
-        KeyspaceDefinition existingKeyspaceDefinition = cluster.describeKeyspace(keySpaceName);
-        if (existingKeyspaceDefinition == null) {
-            cluster.addKeyspace(HFactory.createKeyspaceDefinition(keySpaceName, strategy, replicationFactor, Arrays.asList(cfDef)));
-        } else {
-            ColumnFamilyDefinition existingColumnFamilyDefinition = null;
-            for (ColumnFamilyDefinition cfd : existingKeyspaceDefinition.getCfDefs()) {
-                if (cfd.getName().equals(cfDef.getName())) {
-                    existingColumnFamilyDefinition = cfd;
-                    break;
-                }
-            }
-            if (existingColumnFamilyDefinition == null) {
-                cluster.addColumnFamily(cfDef);
-            } else {
-                cluster.updateColumnFamily(cfDef);
-            }
+        try {
+            batchWriter = new CassandraBatchWriter(eventAdapterConfiguration.getName(), tenantId, cluster, session,
+                    keySpaceName, columnFamilyName, strategy, replicationFactor, getAttributeTypes(),
+                    getColumnList(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PARTITION_KEYS)),
+                    getColumnList(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_CLUSTERING_COLUMNS)),
+                    getColumnList(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_INDEXED_COLUMNS)),
+                    getIntGlobalProperty(CassandraEventAdapterConstants.ADAPTER_BATCH_SIZE_NAME,
+                            CassandraEventAdapterConstants.ADAPTER_DEFAULT_BATCH_SIZE),
+                    getIntGlobalProperty(CassandraEventAdapterConstants.ADAPTER_FLUSH_INTERVAL_NAME,
+                            (int) CassandraEventAdapterConstants.ADAPTER_DEFAULT_FLUSH_INTERVAL),
+                    getIntGlobalProperty(CassandraEventAdapterConstants.ADAPTER_MAX_IN_FLIGHT_BATCHES_NAME,
+                            CassandraEventAdapterConstants.ADAPTER_DEFAULT_MAX_IN_FLIGHT_BATCHES));
+        } catch (RuntimeException e) {
+            cluster.close();
+            cluster = null;
+            throw e;
         }
-        mutator = HFactory.createMutator(keyspace, new StringSerializer());
-
     }
 
     @Override
     public void publish(Object message, Map<String, String> dynamicProperties) {
         if (message instanceof Map) {
-            String uuid = UUID.randomUUID().toString();
-            try {
-                for (Map.Entry<String, Object> entry : ((Map<String, Object>) message).entrySet()) {
-                    mutator.insert(uuid, columnFamilyName, HFactory.createStringColumn(entry.getKey(), entry.getValue().toString()));
-                }
-                mutator.execute();
-            } catch (Throwable t) {
-                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, null, t, log, tenantId);
+            CassandraBatchWriter writer = batchWriter;
+            if (writer == null) {
+                throw new ConnectionUnavailableException("Output Cassandra Adapter '" +
+                        eventAdapterConfiguration.getName() + "' is not connected");
             }
+            writer.write((Map<String, Object>) message);
         } else {
             EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Event is not type of Map.", log, tenantId);
         }
@@ -188,8 +157,12 @@ public class CassandraEventAdapter implements OutputEventAdapter {
 
     @Override
     public void disconnect() {
+        if (batchWriter != null) {
+            batchWriter.close();
+            batchWriter = null;
+        }
         if (cluster != null) {
-            HFactory.shutdownCluster(cluster);
+            cluster.close();
             cluster = null;
         }
 
@@ -205,6 +178,88 @@ public class CassandraEventAdapter implements OutputEventAdapter {
         return false;
     }
 
+    private Cluster createCluster() {
+        Map<String, String> staticProperties = eventAdapterConfiguration.getStaticProperties();
+
+        Cluster.Builder builder = Cluster.builder()
+                .withClusterName(CassandraEventAdapterConstants.CASSANDRA_CLUSTER_NAME_PREFIX +
+                        eventAdapterConfiguration.getName())
+                .withLoadBalancingPolicy(new TokenAwarePolicy(DCAwareRoundRobinPolicy.builder().build(), false));
+        for (String host : staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_HOSTS).split(",")) {
+            if (!host.trim().isEmpty()) {
+                builder.addContactPoint(host.trim());
+            }
+        }
+        if (staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT) != null) {
+            builder.withPort(Integer.parseInt(staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT)));
+        }
+        if (credentials != null) {
+            builder.withCredentials(credentials.get("username"), credentials.get("password"));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the types of the attributes of the output stream, by the names they have in the events of the default
+     * map mapping, or an empty map if the stream definition is not available.
+     */
+    private Map<String, AttributeType> getAttributeTypes() {
+        Map<String, AttributeType> attributeTypes = new HashMap<String, AttributeType>();
+        String streamId = eventAdapterConfiguration.getOutputStreamIdOfWso2eventMessageFormat();
+        EventStreamService eventStreamService = CassandraEventAdapterServiceValueHolder.getEventStreamService();
+        if (streamId == null || eventStreamService == null) {
+            return attributeTypes;
+        }
+        StreamDefinition streamDefinition;
+        try {
+            streamDefinition = eventStreamService.getStreamDefinition(streamId);
+        } catch (EventStreamConfigurationException e) {
+            log.warn("Cannot load the definition of stream '" + streamId + "' of Output Cassandra Adapter '" +
+                    eventAdapterConfiguration.getName() + "', column types are taken from the first event", e);
+            return attributeTypes;
+        }
+        if (streamDefinition == null) {
+            return attributeTypes;
+        }
+        if (streamDefinition.getMetaData() != null) {
+            for (Attribute attribute : streamDefinition.getMetaData()) {
+                attributeTypes.put(CassandraEventAdapterConstants.EVENT_META_PREFIX + attribute.getName(),
+                        attribute.getType());
+            }
+        }
+        if (streamDefinition.getCorrelationData() != null) {
+            for (Attribute attribute : streamDefinition.getCorrelationData()) {
+                attributeTypes.put(CassandraEventAdapterConstants.EVENT_CORRELATION_PREFIX + attribute.getName(),
+                        attribute.getType());
+            }
+        }
+        if (streamDefinition.getPayloadData() != null) {
+            for (Attribute attribute : streamDefinition.getPayloadData()) {
+                attributeTypes.put(attribute.getName(), attribute.getType());
+            }
+        }
+        return attributeTypes;
+    }
+
+    private static List<String> getColumnList(String columns) {
+        List<String> columnList = new ArrayList<String>();
+        if (columns != null) {
+            for (String column : columns.split(",")) {
+                if (!column.trim().isEmpty()) {
+                    columnList.add(column.trim());
+                }
+            }
+        }
+        return columnList;
+    }
+
+    private int getIntGlobalProperty(String name, int defaultValue) {
+        if (globalProperties != null && globalProperties.get(name) != null) {
+            return Integer.parseInt(globalProperties.get(name).trim());
+        }
+        return defaultValue;
+    }
+
     private void validateOutputEventAdapterConfigurations() throws OutputEventAdapterException {
         Map<String, String> staticProperties = eventAdapterConfiguration.getStaticProperties();
 
@@ -220,11 +275,17 @@ public class CassandraEventAdapter implements OutputEventAdapter {
 
         String portProperty = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT);
         if(portProperty != null){
+            int port;
             try{
-                Integer.parseInt(portProperty);
+                port = Integer.parseInt(portProperty);
             } catch (NumberFormatException e){
                 throw new OutputEventAdapterException("Invalid value set for property 'Port': " + portProperty, e);
             }
+            if (port == CassandraEventAdapterConstants.CASSANDRA_THRIFT_PORT) {
+                throw new OutputEventAdapterException("Port " + port + " of Cassandra Output Adapter '" +
+                        eventAdapterConfiguration.getName() + "' is the Thrift port, the adapter connects to the " +
+                        "native transport port, 9042 by default");
+            }
         }
 
         String replicationFactorProperty = staticProperties.get(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_REPLICATION_FACTOR);
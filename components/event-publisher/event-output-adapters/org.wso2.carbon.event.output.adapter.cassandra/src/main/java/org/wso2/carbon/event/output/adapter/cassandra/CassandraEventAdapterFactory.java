@@ -92,6 +92,20 @@ public class CassandraEventAdapterFactory extends OutputEventAdapterFactory {
         columnFamily.setRequired(true);
         propertyList.add(columnFamily);
 
+        // partition keys
+        Property partitionKeys = new Property(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PARTITION_KEYS);
+        partitionKeys.setDisplayName(
+                resourceBundle.getString(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PARTITION_KEYS));
+        partitionKeys.setHint(resourceBundle.getString(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PARTITION_KEYS_HINT));
+        propertyList.add(partitionKeys);
+
+        // clustering columns
+        Property clusteringColumns = new Property(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_CLUSTERING_COLUMNS);
+        clusteringColumns.setDisplayName(
+                resourceBundle.getString(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_CLUSTERING_COLUMNS));
+        clusteringColumns.setHint(resourceBundle.getString(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_CLUSTERING_COLUMNS_HINT));
+        propertyList.add(clusteringColumns);
+
         // strategy class
         Property strategyClass = new Property(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_STRATEGY_CLASS);
         strategyClass.setDisplayName(
@@ -22,9 +22,13 @@ import org.apache.commons.logging.LogFactory;
 import org.osgi.service.component.ComponentContext;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterFactory;
 import org.wso2.carbon.event.output.adapter.cassandra.CassandraEventAdapterFactory;
+import org.wso2.carbon.event.stream.core.EventStreamService;
 
 /**
  * @scr.component component.name="output.Cassandra.AdapterService.component" immediate="true"
+ * @scr.reference name="eventStreamManager.service"
+ * interface="org.wso2.carbon.event.stream.core.EventStreamService" cardinality="1..1"
+ * policy="dynamic" bind="setEventStreamService" unbind="unsetEventStreamService"
  */
 public class CassandraEventAdapterServiceDS {
 
@@ -47,4 +51,11 @@ public class CassandraEventAdapterServiceDS {
         }
     }
 
+    protected void setEventStreamService(EventStreamService eventStreamService) {
+        CassandraEventAdapterServiceValueHolder.setEventStreamService(eventStreamService);
+    }
+
+    protected void unsetEventStreamService(EventStreamService eventStreamService) {
+        CassandraEventAdapterServiceValueHolder.setEventStreamService(null);
+    }
 }
@@ -29,6 +29,8 @@ public class CassandraEventAdapterConstants {
 
     public static final String ADAPTER_CASSANDRA_PORT = "port";
     public static final String ADAPTER_CASSANDRA_PORT_HINT = "port.hint";
+    // The Thrift RPC port the adapter connected to before it moved to the native transport.
+    public static final int CASSANDRA_THRIFT_PORT = 9160;
 
     public static final String ADAPTER_CASSANDRA_USER_NAME = "user.name";
 
@@ -49,8 +51,27 @@ public class CassandraEventAdapterConstants {
 
     public static final String ADAPTER_CASSANDRA_COLUMN_FAMILY_NAME = "column.family.name";
 
+    public static final String ADAPTER_CASSANDRA_PARTITION_KEYS = "partition.keys";
+    public static final String ADAPTER_CASSANDRA_PARTITION_KEYS_HINT = "partition.keys.hint";
+
+    public static final String ADAPTER_CASSANDRA_CLUSTERING_COLUMNS = "clustering.columns";
+    public static final String ADAPTER_CASSANDRA_CLUSTERING_COLUMNS_HINT = "clustering.columns.hint";
+
     public static final String CASSANDRA_CLUSTER_NAME_PREFIX = "EventPublisher_";
 
+    public static final String CASSANDRA_EVENT_ID_COLUMN = "event_id";
+
+    // Prefixes of the meta and correlation attributes in the events of the default map mapping.
+    public static final String EVENT_META_PREFIX = "meta_";
+    public static final String EVENT_CORRELATION_PREFIX = "correlation_";
+
+    public static final String ADAPTER_BATCH_SIZE_NAME = "batchSize";
+    public static final String ADAPTER_FLUSH_INTERVAL_NAME = "flushIntervalInMillis";
+    public static final String ADAPTER_MAX_IN_FLIGHT_BATCHES_NAME = "maxInFlightBatches";
+    public static final int ADAPTER_DEFAULT_BATCH_SIZE = 50;
+    public static final long ADAPTER_DEFAULT_FLUSH_INTERVAL = 100;
+    public static final int ADAPTER_DEFAULT_MAX_IN_FLIGHT_BATCHES = 64;
+
 
 
 }
@@ -0,0 +1,396 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TableOptionsMetadata;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.google.common.util.concurrent.AbstractFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CassandraBatchWriterTestCase {
+
+    private static final String KEYSPACE = "events";
+    private static final String TABLE = "readings";
+    private static final long FLUSH_INTERVAL = 60000;
+    private static final long TIMEOUT = 10000;
+
+    private final Host replica1 = mock(Host.class);
+    private final Host replica2 = mock(Host.class);
+    private final List<String> schemaStatements = new CopyOnWriteArrayList<String>();
+    private final List<BoundStatement> boundStatements = new CopyOnWriteArrayList<BoundStatement>();
+    private final List<Statement> executedStatements = new CopyOnWriteArrayList<Statement>();
+    private final List<TestResultSetFuture> futures = new CopyOnWriteArrayList<TestResultSetFuture>();
+    private volatile boolean completeImmediately = true;
+
+    private Cluster cluster;
+    private Metadata metadata;
+    private Session session;
+    private CassandraBatchWriter writer;
+
+    @Before
+    public void setUp() {
+        cluster = mock(Cluster.class);
+        Configuration configuration = mock(Configuration.class);
+        ProtocolOptions protocolOptions = mock(ProtocolOptions.class);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        when(configuration.getProtocolOptions()).thenReturn(protocolOptions);
+        when(configuration.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT_INSTANCE);
+        when(protocolOptions.getProtocolVersion()).thenReturn(ProtocolVersion.V4);
+
+        // the partitions of even keys are owned by the first replica, those of odd keys by the second
+        metadata = mock(Metadata.class);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getReplicas(anyString(), any(ByteBuffer.class))).thenAnswer(new Answer<Set<Host>>() {
+            @Override
+            public Set<Host> answer(InvocationOnMock invocation) {
+                ByteBuffer routingKey = (ByteBuffer) invocation.getArguments()[1];
+                return Collections.singleton(routingKey.getInt(0) % 2 == 0 ? replica1 : replica2);
+            }
+        });
+
+        final PreparedStatement insertStatement = mock(PreparedStatement.class);
+        when(insertStatement.bind()).thenAnswer(new Answer<BoundStatement>() {
+            @Override
+            public BoundStatement answer(InvocationOnMock invocation) {
+                return createBoundStatement();
+            }
+        });
+        session = mock(Session.class);
+        when(session.execute(anyString())).thenAnswer(new Answer<ResultSet>() {
+            @Override
+            public ResultSet answer(InvocationOnMock invocation) {
+                schemaStatements.add((String) invocation.getArguments()[0]);
+                return null;
+            }
+        });
+        when(session.prepare(anyString())).thenAnswer(new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer(InvocationOnMock invocation) {
+                schemaStatements.add((String) invocation.getArguments()[0]);
+                return insertStatement;
+            }
+        });
+        when(session.executeAsync(any(Statement.class))).thenAnswer(new Answer<ResultSetFuture>() {
+            @Override
+            public ResultSetFuture answer(InvocationOnMock invocation) {
+                executedStatements.add((Statement) invocation.getArguments()[0]);
+                TestResultSetFuture future = new TestResultSetFuture();
+                futures.add(future);
+                if (completeImmediately) {
+                    future.complete();
+                }
+                return future;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testStatementsAreBatchedByReplica() {
+        writer = createWriter(Collections.singletonList("id"), 2, 8);
+        for (int i = 0; i < 4; i++) {
+            writer.write(event(i));
+        }
+
+        // each batch holds the statements of the partitions of one replica
+        Assert.assertEquals(2, executedStatements.size());
+        Assert.assertEquals(Arrays.<Statement>asList(boundStatements.get(0), boundStatements.get(2)),
+                new ArrayList<Statement>(((BatchStatement) executedStatements.get(0)).getStatements()));
+        Assert.assertEquals(Arrays.<Statement>asList(boundStatements.get(1), boundStatements.get(3)),
+                new ArrayList<Statement>(((BatchStatement) executedStatements.get(1)).getStatements()));
+
+        // a batch which did not fill up is sent on close, a single statement without a batch
+        writer.write(event(4));
+        Assert.assertEquals(2, executedStatements.size());
+        writer.close();
+        writer = null;
+        Assert.assertEquals(3, executedStatements.size());
+        Assert.assertSame(boundStatements.get(4), executedStatements.get(2));
+    }
+
+    @Test
+    public void testInFlightBatchLimit() throws InterruptedException {
+        completeImmediately = false;
+        writer = createWriter(Collections.singletonList("id"), 1, 1);
+        writer.write(event(0));
+        Assert.assertEquals(1, executedStatements.size());
+
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writer.write(event(1));
+            }
+        });
+        publisher.start();
+        publisher.join(200);
+        Assert.assertTrue("Publishing must block while the maximum number of batches is in flight",
+                publisher.isAlive());
+        Assert.assertEquals(1, executedStatements.size());
+
+        futures.get(0).complete();
+        publisher.join(TIMEOUT);
+        Assert.assertFalse(publisher.isAlive());
+        Assert.assertEquals(2, executedStatements.size());
+
+        // a failed batch releases its slot as well
+        futures.get(1).fail(new IllegalStateException("Write timeout"));
+        writer.write(event(2));
+        Assert.assertEquals(3, executedStatements.size());
+    }
+
+    @Test
+    public void testNoHostAvailableSuspendsWriter() {
+        completeImmediately = false;
+        writer = createWriter(Collections.singletonList("id"), 1, 8);
+        writer.write(event(0));
+        futures.get(0).fail(new NoHostAvailableException(Collections.<InetSocketAddress, Throwable>emptyMap()));
+        try {
+            writer.write(event(1));
+            Assert.fail("Writing after no host was available must fail");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertTrue(e.getCause() instanceof NoHostAvailableException);
+        }
+    }
+
+    @Test
+    public void testColumnTypes() {
+        Map<String, AttributeType> attributeTypes = new HashMap<String, AttributeType>();
+        attributeTypes.put("name", AttributeType.STRING);
+        attributeTypes.put("total", AttributeType.LONG);
+        attributeTypes.put("count", AttributeType.INT);
+        attributeTypes.put("ratio", AttributeType.FLOAT);
+        attributeTypes.put("price", AttributeType.DOUBLE);
+        attributeTypes.put("valid", AttributeType.BOOL);
+        attributeTypes.put("note", AttributeType.STRING);
+        writer = new CassandraBatchWriter("test", -1234, cluster, session, KEYSPACE, TABLE,
+                "SimpleStrategy", 1, attributeTypes, Collections.singletonList("name"),
+                Collections.singletonList("total"), Collections.<String>emptyList(), 10, FLUSH_INTERVAL, 8);
+
+        // values are converted to the column type of their attribute, and attributes which are not in the stream
+        // definition are typed by their value
+        Map<String, Object> event = new LinkedHashMap<String, Object>();
+        event.put("count", 3);
+        event.put("total", 5);
+        event.put("name", "a");
+        event.put("ratio", 0.5);
+        event.put("price", 2);
+        event.put("valid", "true");
+        event.put("extra", 7L);
+        event.put("note", null);
+        writer.write(event);
+
+        Assert.assertEquals(Arrays.asList(
+                "CREATE KEYSPACE IF NOT EXISTS \"events\" WITH replication = {'class': 'SimpleStrategy', " +
+                        "'replication_factor': 1}",
+                "CREATE TABLE IF NOT EXISTS \"events\".\"readings\" (\"name\" text, \"total\" bigint, " +
+                        "\"count\" int, \"ratio\" float, \"price\" double, \"valid\" boolean, \"extra\" bigint, " +
+                        "\"note\" text, PRIMARY KEY ((\"name\"), \"total\"))",
+                "INSERT INTO \"events\".\"readings\" (\"name\", \"total\", \"count\", \"ratio\", \"price\", " +
+                        "\"valid\", \"extra\", \"note\") VALUES (?, ?, ?, ?, ?, ?, ?, ?)"), schemaStatements);
+
+        BoundStatement bound = boundStatements.get(0);
+        verify(bound).setString(0, "a");
+        verify(bound).setLong(1, 5L);
+        verify(bound).setInt(2, 3);
+        verify(bound).setFloat(3, 0.5f);
+        verify(bound).setDouble(4, 2.0);
+        verify(bound).setBool(5, true);
+        verify(bound).setLong(6, 7L);
+        // null values are left unset, which does not write a tombstone
+        verify(bound, never()).setString(eq(7), anyString());
+        verify(bound, never()).setToNull(anyInt());
+    }
+
+    @Test
+    public void testTimeBasedPartitionKey() {
+        writer = createWriter(Collections.<String>emptyList(), 10, 8);
+        writer.write(event(0));
+        Assert.assertTrue(schemaStatements.get(1), schemaStatements.get(1).startsWith(
+                "CREATE TABLE IF NOT EXISTS \"events\".\"readings\" (\"event_id\" timeuuid, "));
+        Assert.assertTrue(schemaStatements.get(1), schemaStatements.get(1).endsWith(
+                "PRIMARY KEY ((\"event_id\")))"));
+        verify(boundStatements.get(0)).setUUID(eq(0), any(UUID.class));
+    }
+
+    @Test
+    public void testNullPrimaryKeyIsDropped() {
+        writer = createWriter(Collections.singletonList("id"), 1, 8);
+        Map<String, Object> event = event(0);
+        writer.write(event);
+        event.put("id", null);
+        writer.write(event);
+        Assert.assertEquals(1, executedStatements.size());
+    }
+
+    @Test
+    public void testThriftColumnFamilyIsRejected() {
+        TableMetadata table = mockTable(true);
+        when(table.getColumn(anyString())).thenReturn(mock(ColumnMetadata.class));
+        try {
+            createWriter(Collections.singletonList("id"), 1, 8);
+            Assert.fail("A column family created through Thrift must be rejected");
+        } catch (OutputEventAdapterRuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Thrift"));
+        }
+    }
+
+    @Test
+    public void testTableWithoutAttributeColumnIsRejected() {
+        TableMetadata table = mockTable(false);
+        when(table.getColumn("\"id\"")).thenReturn(mock(ColumnMetadata.class));
+        writer = createWriter(Collections.singletonList("id"), 1, 8);
+        try {
+            writer.write(event(0));
+            Assert.fail("A table without a column for an attribute must be rejected");
+        } catch (OutputEventAdapterRuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("'value'"));
+        }
+        Assert.assertTrue(executedStatements.isEmpty());
+    }
+
+    private CassandraBatchWriter createWriter(List<String> partitionKeys, int batchSize, int maxInFlightBatches) {
+        return new CassandraBatchWriter("test", -1234, cluster, session, KEYSPACE, TABLE, "SimpleStrategy", 1,
+                Collections.<String, AttributeType>emptyMap(), partitionKeys, Collections.<String>emptyList(),
+                Collections.<String>emptyList(), batchSize, FLUSH_INTERVAL, maxInFlightBatches);
+    }
+
+    private TableMetadata mockTable(boolean compactStorage) {
+        KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        TableMetadata table = mock(TableMetadata.class);
+        TableOptionsMetadata options = mock(TableOptionsMetadata.class);
+        when(metadata.getKeyspace("\"" + KEYSPACE + "\"")).thenReturn(keyspace);
+        when(keyspace.getTable("\"" + TABLE + "\"")).thenReturn(table);
+        when(table.getOptions()).thenReturn(options);
+        when(options.isCompactStorage()).thenReturn(compactStorage);
+        return table;
+    }
+
+    private static Map<String, Object> event(int id) {
+        Map<String, Object> event = new LinkedHashMap<String, Object>();
+        event.put("id", id);
+        event.put("value", "value" + id);
+        return event;
+    }
+
+    /**
+     * Creates a bound statement whose routing key is the int value bound to its first column.
+     */
+    private BoundStatement createBoundStatement() {
+        final BoundStatement bound = mock(BoundStatement.class);
+        final ByteBuffer routingKey = ByteBuffer.allocate(4);
+        when(bound.setInt(eq(0), anyInt())).thenAnswer(new Answer<BoundStatement>() {
+            @Override
+            public BoundStatement answer(InvocationOnMock invocation) {
+                routingKey.putInt(0, (Integer) invocation.getArguments()[1]);
+                return bound;
+            }
+        });
+        when(bound.getRoutingKey(any(ProtocolVersion.class), any(CodecRegistry.class))).thenReturn(routingKey);
+        boundStatements.add(bound);
+        return bound;
+    }
+
+    private static class TestResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        private void complete() {
+            set(null);
+        }
+
+        private void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+            try {
+                return get(timeout, unit);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.cassandra;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.output.adapter.cassandra.internal.util.CassandraEventAdapterConstants;
+import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CassandraEventAdapterTestCase {
+
+    @Test
+    public void testThriftPortIsRejected() {
+        OutputEventAdapterConfiguration configuration = new OutputEventAdapterConfiguration();
+        configuration.setName("test");
+        Map<String, String> staticProperties = new HashMap<String, String>();
+        staticProperties.put(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_HOSTS, "localhost");
+        staticProperties.put(CassandraEventAdapterConstants.ADAPTER_CASSANDRA_PORT, "9160");
+        configuration.setStaticProperties(staticProperties);
+        try {
+            new CassandraEventAdapter(configuration, null).init();
+            Assert.fail("The Thrift port must be rejected");
+        } catch (OutputEventAdapterException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("9042"));
+        }
+    }
+}
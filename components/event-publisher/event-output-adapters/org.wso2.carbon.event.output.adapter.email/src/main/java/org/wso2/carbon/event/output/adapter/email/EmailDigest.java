@@ -0,0 +1,98 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.email;
+
+import org.wso2.carbon.event.output.adapter.email.internal.util.EmailEventAdapterConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events aggregated into a single email to a recipient, for a subject and email type.
+ */
+class EmailDigest {
+
+    private final String to;
+    private final String subject;
+    private final String type;
+    private final List<String> bodies = new ArrayList<String>();
+    private boolean closed;
+
+    EmailDigest(String to, String subject, String type) {
+        this.to = to;
+        this.subject = subject;
+        this.type = type;
+    }
+
+    /**
+     * @return false if the digest was already closed for sending, and a new digest is required
+     */
+    synchronized boolean add(String body) {
+        if (closed) {
+            return false;
+        }
+        bodies.add(body);
+        return true;
+    }
+
+    synchronized int size() {
+        return bodies.size();
+    }
+
+    /**
+     * Close the digest for new events.
+     *
+     * @return false if the digest was already closed
+     */
+    synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    String getTo() {
+        return to;
+    }
+
+    String getSubject() {
+        return subject;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    synchronized String getBody() {
+        String separator = EmailEventAdapterConstants.MAIL_TEXT_HTML.equals(type) ?
+                EmailEventAdapterConstants.DIGEST_HTML_SEPARATOR : EmailEventAdapterConstants.DIGEST_TEXT_SEPARATOR;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < bodies.size(); i++) {
+            if (i > 0) {
+                body.append(separator);
+            }
+            body.append(bodies.get(i));
+        }
+        return body.toString();
+    }
+
+    static String key(String to, String subject, String type) {
+        return to + "\u0000" + subject + "\u0000" + type;
+    }
+}
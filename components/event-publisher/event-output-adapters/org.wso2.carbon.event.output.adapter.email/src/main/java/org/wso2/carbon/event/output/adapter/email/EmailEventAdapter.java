@@ -35,38 +35,49 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import java.util.Date;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 
 /**
  * The Email event adapter sends mail using an SMTP server configuration defined
- * in output-event-adapters.xml email adapter sender definition.
+ * in output-event-adapters.xml email adapter sender definition. Emails are sent over
+ * a pool of SMTP connections shared by all the email adapters. When a digest window is
+ * set, the events to the same recipient with the same subject within the window are
+ * sent as a single email.
  */
 
 public class EmailEventAdapter implements OutputEventAdapter {
 
     private static final Log log = LogFactory.getLog(EmailEventAdapter.class);
     private static ThreadPoolExecutor threadPoolExecutor;
+    private static ScheduledExecutorService scheduledExecutorService;
     private static Session session;
+    private static SMTPTransportPool transportPool;
     private OutputEventAdapterConfiguration eventAdapterConfiguration;
     private Map<String, String> globalProperties;
     private int tenantId;
+    private long digestWindow;
+    private int digestMaxEvents;
+    private final ConcurrentMap<String, EmailDigest> digests = new ConcurrentHashMap<String, EmailDigest>();
 
 
     /**
      * Default from address for outgoing messages.
      */
-    private InternetAddress smtpFromAddress = null;
+    private static InternetAddress smtpFromAddress = null;
 
 
     public EmailEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration,
@@ -123,6 +134,24 @@ public class EmailEventAdapter implements OutputEventAdapter {
 
             threadPoolExecutor = new ThreadPoolExecutor(minThread, maxThread, defaultKeepAliveTime,
                     TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(jobQueSize));
+            scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        }
+
+        String digestWindowProperty = eventAdapterConfiguration.getStaticProperties() != null ?
+                eventAdapterConfiguration.getStaticProperties().get(EmailEventAdapterConstants.ADAPTER_EMAIL_DIGEST_WINDOW) : null;
+        if (digestWindowProperty != null && !digestWindowProperty.trim().isEmpty()) {
+            try {
+                digestWindow = Long.parseLong(digestWindowProperty.trim());
+            } catch (NumberFormatException e) {
+                throw new OutputEventAdapterException("Invalid value set for property 'Digest Window': " +
+                        digestWindowProperty, e);
+            }
+        }
+
+        if (globalProperties.get(EmailEventAdapterConstants.DIGEST_MAX_EVENTS_NAME) != null) {
+            digestMaxEvents = Integer.parseInt(globalProperties.get(EmailEventAdapterConstants.DIGEST_MAX_EVENTS_NAME));
+        } else {
+            digestMaxEvents = EmailEventAdapterConstants.DIGEST_MAX_EVENTS;
         }
 
     }
@@ -217,6 +246,43 @@ public class EmailEventAdapter implements OutputEventAdapter {
                 session = Session.getInstance(props);
                 log.info("Connecting adapter " + eventAdapterConfiguration.getName() + "without user authentication for tenant " + tenantId);
             }
+
+            int maxConnections;
+            long idleTimeout;
+            long keepAliveInterval;
+
+            if (globalProperties.get(EmailEventAdapterConstants.MAX_SMTP_CONNECTIONS_NAME) != null) {
+                maxConnections = Integer.parseInt(globalProperties.get(
+                        EmailEventAdapterConstants.MAX_SMTP_CONNECTIONS_NAME));
+            } else {
+                maxConnections = EmailEventAdapterConstants.MAX_SMTP_CONNECTIONS;
+            }
+
+            if (globalProperties.get(EmailEventAdapterConstants.SMTP_CONNECTION_IDLE_TIMEOUT_NAME) != null) {
+                idleTimeout = Long.parseLong(globalProperties.get(
+                        EmailEventAdapterConstants.SMTP_CONNECTION_IDLE_TIMEOUT_NAME));
+            } else {
+                idleTimeout = EmailEventAdapterConstants.SMTP_CONNECTION_IDLE_TIMEOUT_IN_MILLIS;
+            }
+
+            if (globalProperties.get(EmailEventAdapterConstants.SMTP_KEEP_ALIVE_INTERVAL_NAME) != null) {
+                keepAliveInterval = Long.parseLong(globalProperties.get(
+                        EmailEventAdapterConstants.SMTP_KEEP_ALIVE_INTERVAL_NAME));
+            } else {
+                keepAliveInterval = EmailEventAdapterConstants.SMTP_KEEP_ALIVE_INTERVAL_IN_MILLIS;
+            }
+
+            transportPool = new SMTPTransportPool(session, smtpFromAddress, maxConnections, idleTimeout);
+            scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        transportPool.keepAlive();
+                    } catch (Throwable t) {
+                        log.warn("Error while keeping the SMTP connections alive", t);
+                    }
+                }
+            }, keepAliveInterval, keepAliveInterval, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -239,6 +305,10 @@ public class EmailEventAdapter implements OutputEventAdapter {
 
         //Send email for each emailId
         for (String email : emailIds) {
+            if (digestWindow > 0) {
+                addToDigest(email, subject, message.toString(), emailType);
+                continue;
+            }
             try {
                 threadPoolExecutor.submit(new EmailSender(email, subject, message.toString(), emailType));
             } catch (RejectedExecutionException e) {
@@ -247,9 +317,63 @@ public class EmailEventAdapter implements OutputEventAdapter {
         }
     }
 
+    /**
+     * Add the event to the digest of the recipient and subject, starting a new digest to be sent
+     * after the digest window if there is none.
+     */
+    private void addToDigest(String to, String subject, String body, String type) {
+        final String key = EmailDigest.key(to, subject, type);
+        while (true) {
+            EmailDigest digest = digests.get(key);
+            if (digest == null) {
+                final EmailDigest newDigest = new EmailDigest(to, subject, type);
+                digest = digests.putIfAbsent(key, newDigest);
+                if (digest == null) {
+                    digest = newDigest;
+                    try {
+                        scheduledExecutorService.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                sendDigest(key, newDigest);
+                            }
+                        }, digestWindow, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        digests.remove(key, newDigest);
+                        EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), body,
+                                "Cannot schedule the email digest", e, log, tenantId);
+                        return;
+                    }
+                }
+            }
+            if (digest.add(body)) {
+                if (digest.size() >= digestMaxEvents) {
+                    sendDigest(key, digest);
+                }
+                return;
+            }
+        }
+    }
+
+    private void sendDigest(String key, EmailDigest digest) {
+        if (!digests.remove(key, digest) || !digest.close()) {
+            // Already sent.
+            return;
+        }
+        try {
+            threadPoolExecutor.submit(new EmailSender(digest.getTo(), digest.getSubject(), digest.getBody(),
+                    digest.getType()));
+        } catch (RejectedExecutionException e) {
+            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), digest.getBody(), "Job queue is full", e,
+                    log, tenantId);
+        }
+    }
+
     @Override
     public void disconnect() {
-        //not required
+        //Send the pending digests without waiting for their windows to end.
+        for (Map.Entry<String, EmailDigest> entry : digests.entrySet()) {
+            sendDigest(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -303,7 +427,7 @@ public class EmailEventAdapter implements OutputEventAdapter {
                     log.debug("Meta data of the email configured successfully");
                 }
 
-                Transport.send(message);
+                transportPool.send(message);
 
                 if (log.isDebugEnabled()) {
                     log.debug("Mail sent to the EmailID" + " " + to + " " + "Successfully");
@@ -58,7 +58,18 @@ public class EmailEventAdapterFactory extends OutputEventAdapterFactory {
 
     @Override
     public List<Property> getStaticPropertyList() {
-        return null;
+        List<Property> staticPropertyList = new ArrayList<Property>();
+
+        // set digest window
+        Property digestWindow = new Property(EmailEventAdapterConstants.ADAPTER_EMAIL_DIGEST_WINDOW);
+        digestWindow.setDisplayName(
+                resourceBundle.getString(EmailEventAdapterConstants.ADAPTER_EMAIL_DIGEST_WINDOW));
+        digestWindow.setRequired(false);
+        digestWindow.setHint(resourceBundle.getString(EmailEventAdapterConstants.ADAPTER_EMAIL_DIGEST_WINDOW_HINT));
+
+        staticPropertyList.add(digestWindow);
+
+        return staticPropertyList;
     }
 
     @Override
@@ -0,0 +1,199 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.email;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.output.adapter.email.internal.util.EmailEventAdapterConstants;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of connected SMTP transports of a mail session, so that emails are not sent over a new,
+ * authenticated SMTP connection each. Idle connections are kept alive with {@link #keepAlive()},
+ * and closed once they have not been used for the idle timeout. A connection which fails while
+ * sending is discarded and the email is retried once over a new connection.
+ */
+public class SMTPTransportPool {
+
+    private static final Log log = LogFactory.getLog(SMTPTransportPool.class);
+
+    private final Session session;
+    private final Address address;
+    private final long idleTimeout;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<PooledTransport>();
+
+    /**
+     * @param session        the mail session of the SMTP server
+     * @param address        address used to resolve the transport protocol of the session
+     * @param maxConnections the maximum number of concurrent SMTP connections
+     * @param idleTimeout    time after which an unused connection is closed, in milliseconds
+     */
+    public SMTPTransportPool(Session session, Address address, int maxConnections, long idleTimeout) {
+        this.session = session;
+        this.address = address;
+        this.idleTimeout = idleTimeout;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Send the message over a pooled connection.
+     *
+     * @param message the message to be sent
+     * @throws MessagingException if the message cannot be sent
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+        Address[] recipients = message.getAllRecipients();
+        try {
+            if (!permits.tryAcquire(EmailEventAdapterConstants.SMTP_CONNECTION_WAIT_TIME_IN_MILLIS,
+                    TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for an SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+        try {
+            try {
+                sendOnce(message, recipients);
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException e) {
+                log.debug("Error sending email over a pooled SMTP connection, retrying over a new connection", e);
+                sendOnce(message, recipients);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void sendOnce(MimeMessage message, Address[] recipients) throws MessagingException {
+        Transport transport = borrow();
+        try {
+            transport.sendMessage(message, recipients);
+        } catch (SendFailedException e) {
+            // The recipients were rejected, the connection is still usable.
+            idleTransports.offerFirst(new PooledTransport(transport));
+            throw e;
+        } catch (MessagingException e) {
+            close(transport);
+            throw e;
+        } catch (RuntimeException e) {
+            close(transport);
+            throw e;
+        }
+        idleTransports.offerFirst(new PooledTransport(transport));
+    }
+
+    /**
+     * Take the most recently used connection, validating it if it has been idle for a while, or
+     * open a new one.
+     */
+    private Transport borrow() throws MessagingException {
+        long currentTime = System.currentTimeMillis();
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            long idleTime = currentTime - pooled.lastUsedTime;
+            if (idleTime >= idleTimeout) {
+                close(pooled.transport);
+            } else if (idleTime < EmailEventAdapterConstants.SMTP_CONNECTION_VALIDATION_INTERVAL_IN_MILLIS ||
+                    pooled.transport.isConnected()) {
+                return pooled.transport;
+            } else {
+                close(pooled.transport);
+            }
+        }
+        Transport transport = session.getTransport(address);
+        transport.connect();
+        if (log.isDebugEnabled()) {
+            log.debug("Opened a new SMTP connection, " + idleTransports.size() + " idle connections in the pool");
+        }
+        return transport;
+    }
+
+    /**
+     * Close the connections idle for longer than the idle timeout, and send a NOOP over the others
+     * so that the SMTP server does not close them. Each connection idle at the start is checked
+     * once, from the most to the least recently used, and put back behind the connections not
+     * checked yet, so that the pool keeps its order.
+     */
+    public void keepAlive() {
+        long currentTime = System.currentTimeMillis();
+        List<PooledTransport> idle = new ArrayList<PooledTransport>(idleTransports);
+        for (PooledTransport pooled : idle) {
+            if (!permits.tryAcquire()) {
+                // All connections are in use.
+                return;
+            }
+            try {
+                if (!idleTransports.remove(pooled)) {
+                    // Borrowed in the meantime.
+                    continue;
+                }
+                if (currentTime - pooled.lastUsedTime >= idleTimeout || !pooled.transport.isConnected()) {
+                    close(pooled.transport);
+                } else {
+                    idleTransports.offerLast(pooled);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Close all the idle connections.
+     */
+    public void close() {
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            close(pooled.transport);
+        }
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error while closing SMTP connection", e);
+        }
+    }
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private final long lastUsedTime;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsedTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -38,6 +38,30 @@ public class EmailEventAdapterConstants {
     public static final String ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME = "jobQueueSize";
     public static final int ADAPTER_EXECUTOR_JOB_QUEUE_SIZE = 2000;
 
+    /**
+     * SMTP connection pool constants.
+     */
+
+    public static final String MAX_SMTP_CONNECTIONS_NAME = "maxSmtpConnections";
+    public static final String SMTP_CONNECTION_IDLE_TIMEOUT_NAME = "smtpConnectionIdleTimeoutInMillis";
+    public static final String SMTP_KEEP_ALIVE_INTERVAL_NAME = "smtpKeepAliveIntervalInMillis";
+    public static final int MAX_SMTP_CONNECTIONS = 8;
+    public static final long SMTP_CONNECTION_IDLE_TIMEOUT_IN_MILLIS = 300000;
+    public static final long SMTP_KEEP_ALIVE_INTERVAL_IN_MILLIS = 30000;
+    public static final long SMTP_CONNECTION_WAIT_TIME_IN_MILLIS = 30000;
+    public static final long SMTP_CONNECTION_VALIDATION_INTERVAL_IN_MILLIS = 5000;
+
+    /**
+     * Digest mode constants.
+     */
+
+    public static final String ADAPTER_EMAIL_DIGEST_WINDOW = "email.digest.window";
+    public static final String ADAPTER_EMAIL_DIGEST_WINDOW_HINT = "emailDigestWindow.hint";
+    public static final String DIGEST_MAX_EVENTS_NAME = "digestMaxEvents";
+    public static final int DIGEST_MAX_EVENTS = 1000;
+    public static final String DIGEST_TEXT_SEPARATOR = "\n\n";
+    public static final String DIGEST_HTML_SEPARATOR = "<hr/>";
+
 
     /**
      * SMTP property constants.
@@ -0,0 +1,195 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.email;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SMTPTransportPoolTestCase {
+
+    private static final long TIMEOUT = 10000;
+
+    private static final List<TestTransport> transports = new CopyOnWriteArrayList<TestTransport>();
+    private static volatile CountDownLatch concurrentSends = new CountDownLatch(0);
+
+    private Session session;
+    private Address address;
+
+    @Before
+    public void setUp() throws Exception {
+        transports.clear();
+        session = Session.getInstance(new Properties());
+        session.addProvider(new Provider(Provider.Type.TRANSPORT, "test", TestTransport.class.getName(),
+                "WSO2", "1.0"));
+        session.setProtocolForAddress("rfc822", "test");
+        address = new InternetAddress("admin@wso2.com");
+    }
+
+    @Test
+    public void testKeepAliveChecksEachIdleTransportOnce() throws Exception {
+        SMTPTransportPool pool = new SMTPTransportPool(session, address, 3, 60000);
+        sendConcurrently(pool, 3);
+        Assert.assertEquals(3, transports.size());
+
+        pool.keepAlive();
+        for (TestTransport transport : transports) {
+            Assert.assertEquals("Each idle transport must be checked once", 1, transport.connectionChecks);
+        }
+        pool.keepAlive();
+        for (TestTransport transport : transports) {
+            Assert.assertEquals(2, transport.connectionChecks);
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testKeepAliveClosesBrokenTransports() throws Exception {
+        SMTPTransportPool pool = new SMTPTransportPool(session, address, 2, 60000);
+        sendConcurrently(pool, 2);
+        Assert.assertEquals(2, transports.size());
+
+        // the server dropped one of the connections
+        TestTransport broken = transports.get(0);
+        broken.serverConnected = false;
+        pool.keepAlive();
+        Assert.assertTrue(broken.closed);
+        Assert.assertFalse(transports.get(1).closed);
+
+        pool.send(createMessage());
+        Assert.assertEquals("The remaining connection must be reused", 2, transports.size());
+        Assert.assertEquals(2, transports.get(1).sentMessages);
+        pool.close();
+    }
+
+    @Test
+    public void testKeepAliveClosesExpiredTransports() throws Exception {
+        SMTPTransportPool pool = new SMTPTransportPool(session, address, 2, 200);
+        sendConcurrently(pool, 2);
+        Thread.sleep(400);
+        pool.keepAlive();
+        for (TestTransport transport : transports) {
+            Assert.assertTrue("Every idle transport must be expired", transport.closed);
+        }
+
+        pool.send(createMessage());
+        Assert.assertEquals(3, transports.size());
+        pool.close();
+    }
+
+    /**
+     * Sends the given number of messages at the same time, so that each of them opens a connection of its own.
+     */
+    private void sendConcurrently(final SMTPTransportPool pool, int count) throws Exception {
+        concurrentSends = new CountDownLatch(count);
+        final List<Exception> errors = new CopyOnWriteArrayList<Exception>();
+        Thread[] senders = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            senders[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pool.send(createMessage());
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            senders[i].start();
+        }
+        for (Thread sender : senders) {
+            sender.join(TIMEOUT);
+        }
+        concurrentSends = new CountDownLatch(0);
+        Assert.assertTrue("Sending failed: " + errors, errors.isEmpty());
+        for (TestTransport transport : transports) {
+            // connecting checks the connection as well
+            transport.connectionChecks = 0;
+        }
+    }
+
+    private MimeMessage createMessage() throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(address);
+        message.setRecipient(Message.RecipientType.TO, address);
+        message.setSubject("test");
+        message.setText("test");
+        return message;
+    }
+
+    /**
+     * Transport which records its use instead of talking to an SMTP server. The connection check stands for the
+     * NOOP command the SMTP transport sends.
+     */
+    public static class TestTransport extends Transport {
+
+        private volatile int connectionChecks;
+        private volatile int sentMessages;
+        private volatile boolean serverConnected = true;
+        private volatile boolean closed;
+
+        public TestTransport(Session session, URLName urlName) {
+            super(session, urlName);
+            transports.add(this);
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) {
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isConnected() {
+            connectionChecks++;
+            return serverConnected && super.isConnected();
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            CountDownLatch latch = concurrentSends;
+            latch.countDown();
+            try {
+                latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new MessagingException("Interrupted", e);
+            }
+            sentMessages++;
+        }
+
+        @Override
+        public synchronized void close() throws MessagingException {
+            closed = true;
+            super.close();
+        }
+    }
+}
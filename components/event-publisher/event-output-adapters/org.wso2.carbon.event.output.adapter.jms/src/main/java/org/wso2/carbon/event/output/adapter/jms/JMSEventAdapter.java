@@ -23,6 +23,7 @@ import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapter;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
 import org.wso2.carbon.event.output.adapter.core.exception.TestConnectionNotSupportedException;
@@ -32,20 +33,34 @@ import org.wso2.carbon.event.output.adapter.jms.internal.util.JMSEventAdapterCon
 import org.wso2.carbon.event.output.adapter.jms.internal.util.JMSMessageSender;
 
 import javax.jms.Connection;
+import javax.jms.JMSException;
 import javax.jms.Session;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class JMSEventAdapter implements OutputEventAdapter {
 
     private static final Log log = LogFactory.getLog(JMSEventAdapter.class);
     private OutputEventAdapterConfiguration eventAdapterConfiguration;
     private Map<String, String> globalProperties;
-    private PublisherDetails publisherDetails = null;
-    private static ExecutorService executorService;
+    private final AtomicReference<Exception> connectionError = new AtomicReference<Exception>();
+    private JMSConnectionFactory jmsConnectionFactory;
+    private volatile BlockingQueue<JMSPublisherWorker.PublishRequest> jobQueue;
+    private volatile boolean closed = true;
+    private List<JMSPublisherWorker> workers;
+    private List<Thread> workerThreads;
+    private int publisherThreads;
+    private int jobQueueSize;
+    private int transactionBatchSize;
+    private long transactionBatchTimeout;
     private int tenantId;
 
     public JMSEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration,
@@ -59,53 +74,31 @@ public class JMSEventAdapter implements OutputEventAdapter {
 
         tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
 
-        //ExecutorService will be assigned  if it is null
-        if (executorService == null) {
-            int minThread;
-            int maxThread;
-            long defaultKeepAliveTime;
-            int jobQueSize;
-
-            //If global properties are available those will be assigned else constant values will be assigned
-            if (JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS_NOT_ALLOWED.equals(
-                    eventAdapterConfiguration.getStaticProperties().get(JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS)) ) {
-                minThread = 1;
-            } else if (globalProperties.get(JMSEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME) != null) {
-                minThread = Integer.parseInt(globalProperties.get(
-                        JMSEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME));
-            } else {
-                minThread = JMSEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE;
-            }
-
-            if (JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS_NOT_ALLOWED.equals(
-                    eventAdapterConfiguration.getStaticProperties().get(JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS))) {
-                maxThread = 1;
-            } else if (globalProperties.get(JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME) != null) {
-                maxThread = Integer.parseInt(globalProperties.get(
-                        JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME));
-            } else {
-                maxThread = JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE;
-            }
-
-            if (globalProperties.get(JMSEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME) != null) {
-                defaultKeepAliveTime = Integer.parseInt(globalProperties.get(
-                        JMSEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME));
-            } else {
-                defaultKeepAliveTime = JMSEventAdapterConstants.DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS;
-            }
-
-            if (globalProperties.get(JMSEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME) != null) {
-                jobQueSize = Integer.parseInt(globalProperties.get(
-                        JMSEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME));
-            } else {
-                jobQueSize = JMSEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE;
-            }
-
-            executorService = new ThreadPoolExecutor(minThread, maxThread, defaultKeepAliveTime, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(jobQueSize));
-
+        //If global properties are available those will be assigned else constant values will be assigned
+        if (JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS_NOT_ALLOWED.equals(
+                eventAdapterConfiguration.getStaticProperties().get(JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS))) {
+            publisherThreads = 1;
+        } else {
+            publisherThreads = getIntegerGlobalProperty(JMSEventAdapterConstants.ADAPTER_PUBLISHER_THREADS_NAME,
+                    JMSEventAdapterConstants.ADAPTER_PUBLISHER_THREADS);
+        }
+        jobQueueSize = getIntegerGlobalProperty(JMSEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME,
+                JMSEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE);
+        transactionBatchSize = getIntegerGlobalProperty(JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_SIZE_NAME,
+                JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_SIZE);
+        String batchTimeout = globalProperties.get(JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_TIMEOUT_NAME);
+        try {
+            transactionBatchTimeout = batchTimeout != null ? Long.parseLong(batchTimeout.trim()) :
+                    JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_TIMEOUT_IN_MILLIS;
+        } catch (NumberFormatException e) {
+            throw new OutputEventAdapterException("Invalid value set for global property '" +
+                    JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_TIMEOUT_NAME + "': " + batchTimeout, e);
+        }
+        if (publisherThreads < 1 || jobQueueSize < 1 || transactionBatchSize < 1 || transactionBatchTimeout < 1) {
+            throw new OutputEventAdapterException("Publisher threads, job queue size and transaction batch size " +
+                    "and timeout of JMS output adapter '" + eventAdapterConfiguration.getName() +
+                    "' should be positive");
         }
-
     }
 
     @Override
@@ -114,7 +107,7 @@ public class JMSEventAdapter implements OutputEventAdapter {
         try {
             Hashtable<String, String> adaptorProperties = new Hashtable<String, String>();
             adaptorProperties.putAll(eventAdapterConfiguration.getStaticProperties());
-            JMSConnectionFactory jmsConnectionFactory = new JMSConnectionFactory(adaptorProperties, eventAdapterConfiguration.getName(), adaptorProperties.get(JMSEventAdapterConstants.ADAPTER_JMS_DESTINATION), 1);
+            JMSConnectionFactory jmsConnectionFactory = new JMSConnectionFactory(adaptorProperties, eventAdapterConfiguration.getName(), adaptorProperties.get(JMSEventAdapterConstants.ADAPTER_JMS_DESTINATION));
             Connection connection = jmsConnectionFactory.createConnection();
             connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
             connection.close();
@@ -132,25 +125,97 @@ public class JMSEventAdapter implements OutputEventAdapter {
 
         Map<String, String> messageConfig = new HashMap<String, String>();
         messageConfig.put(JMSConstants.PARAM_DESTINATION, topicName);
-        publisherDetails = initPublisher(eventAdapterConfiguration, messageConfig);
+
+        connectionError.set(null);
+        jmsConnectionFactory = createConnectionFactory(eventAdapterConfiguration, topicName);
+        jobQueue = new ArrayBlockingQueue<JMSPublisherWorker.PublishRequest>(jobQueueSize);
+        closed = false;
+        workers = new ArrayList<JMSPublisherWorker>(publisherThreads);
+        workerThreads = new ArrayList<Thread>(publisherThreads);
+        try {
+            for (int i = 0; i < publisherThreads; i++) {
+                JMSMessageSender sender = new JMSMessageSender(jmsConnectionFactory, messageConfig,
+                        eventAdapterConfiguration.getName(), tenantId, connectionError);
+                workers.add(new JMSPublisherWorker(sender, jobQueue, eventAdapterConfiguration.getName(), topicName,
+                        tenantId, transactionBatchSize, transactionBatchTimeout, connectionError));
+            }
+        } catch (JMSException e) {
+            disconnect();
+            throw new ConnectionUnavailableException("Error while creating the JMS sessions of Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "', " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            disconnect();
+            throw new ConnectionUnavailableException("Error while connecting the JMS Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "', " + e.getMessage(), e);
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            Thread thread = new Thread(workers.get(i), "JMSOutputAdapter-" + eventAdapterConfiguration.getName() +
+                    "-" + i);
+            thread.setDaemon(true);
+            workerThreads.add(thread);
+            thread.start();
+        }
     }
 
     @Override
     public void publish(Object message, Map<String, String> dynamicProperties) {
 
-        try {
-            executorService.submit(new JMSSender(message, dynamicProperties));
-        } catch (RejectedExecutionException e) {
-            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Job queue is full", e, log, tenantId);
+        BlockingQueue<JMSPublisherWorker.PublishRequest> queue = jobQueue;
+        if (closed || queue == null) {
+            throw new ConnectionUnavailableException("JMS Output Adapter '" + eventAdapterConfiguration.getName() +
+                    "' is not connected");
+        }
+        Exception error = connectionError.get();
+        if (error != null) {
+            throw new ConnectionUnavailableException("JMS connection of Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "' is unavailable, " + error.getMessage(), error);
+        }
+        JMSPublisherWorker.PublishRequest request = new JMSPublisherWorker.PublishRequest(message,
+                dynamicProperties.get(JMSEventAdapterConstants.ADAPTER_JMS_HEADER));
+        if (!queue.offer(request)) {
+            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Job queue is full", log, tenantId);
+        } else if (closed && queue.remove(request)) {
+            // the adapter was disconnected concurrently, and the publishers may have stopped before taking the event
+            throw new ConnectionUnavailableException("JMS Output Adapter '" + eventAdapterConfiguration.getName() +
+                    "' was disconnected while publishing");
         }
     }
 
 
     @Override
     public void disconnect() {
-        if (publisherDetails != null) {
-            publisherDetails.getJmsMessageSender().close();
-            publisherDetails.getJmsConnectionFactory().close();
+        closed = true;
+        BlockingQueue<JMSPublisherWorker.PublishRequest> queue = jobQueue;
+        jobQueue = null;
+        if (workers != null) {
+            long deadline = System.currentTimeMillis() + JMSEventAdapterConstants.SHUTDOWN_WAIT_TIME_IN_MILLIS;
+            try {
+                for (int i = 0; i < workerThreads.size(); i++) {
+                    if (!queue.offer(JMSPublisherWorker.STOP, Math.max(1, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Thread thread : workerThreads) {
+                try {
+                    thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (thread.isAlive()) {
+                    thread.interrupt();
+                }
+            }
+            workers = null;
+            workerThreads = null;
+        }
+        if (jmsConnectionFactory != null) {
+            jmsConnectionFactory.close();
+            jmsConnectionFactory = null;
         }
     }
 
@@ -164,11 +229,9 @@ public class JMSEventAdapter implements OutputEventAdapter {
         return false;
     }
 
-    private PublisherDetails initPublisher(
-            OutputEventAdapterConfiguration outputEventAdaptorConfiguration,
-            Map<String, String> messageConfig) {
+    private JMSConnectionFactory createConnectionFactory(
+            OutputEventAdapterConfiguration outputEventAdaptorConfiguration, String destination) {
 
-        PublisherDetails publisherDetails;
         Hashtable<String, String> adapterProperties =
                 convertMapToHashTable(outputEventAdaptorConfiguration.getStaticProperties());
 
@@ -188,48 +251,19 @@ public class JMSEventAdapter implements OutputEventAdapter {
             adapterProperties.putAll(jmsSecuredProperties);
         }
 
-        int maxConnections;
-        if (JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS_NOT_ALLOWED.equals(
-            eventAdapterConfiguration.getStaticProperties().get(JMSEventAdapterConstants.ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS))) {
-            maxConnections = 1;
-        } else if (globalProperties.get(JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME) != null) {
-            maxConnections = Integer.parseInt(globalProperties.get(
-                    JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME));
-        } else {
-            maxConnections = JMSEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE;
-        }
-
-        JMSConnectionFactory jmsConnectionFactory = new JMSConnectionFactory(adapterProperties, outputEventAdaptorConfiguration.getName(), messageConfig.get(JMSEventAdapterConstants.ADAPTER_JMS_DESTINATION), maxConnections);
-        JMSMessageSender jmsMessageSender = new JMSMessageSender(jmsConnectionFactory);
-        publisherDetails = new PublisherDetails(jmsConnectionFactory, jmsMessageSender, messageConfig);
-
-        return publisherDetails;
+        return new JMSConnectionFactory(adapterProperties, outputEventAdaptorConfiguration.getName(), destination);
     }
 
-    public static class PublisherDetails {
-        private final JMSConnectionFactory jmsConnectionFactory;
-        private final JMSMessageSender jmsMessageSender;
-        private final Map<String, String> messageConfig;
-
-        public PublisherDetails(JMSConnectionFactory jmsConnectionFactory,
-                                JMSMessageSender jmsMessageSender, Map<String, String> messageConfig) {
-            this.jmsConnectionFactory = jmsConnectionFactory;
-            this.jmsMessageSender = jmsMessageSender;
-            this.messageConfig = messageConfig;
-        }
-
-        public JMSConnectionFactory getJmsConnectionFactory() {
-            return jmsConnectionFactory;
-        }
-
-        public JMSMessageSender getJmsMessageSender() {
-            return jmsMessageSender;
+    private int getIntegerGlobalProperty(String name, int defaultValue) throws OutputEventAdapterException {
+        String value = globalProperties.get(name);
+        if (value == null) {
+            return defaultValue;
         }
-
-        public Map<String, String> getMessageConfig() {
-            return messageConfig;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new OutputEventAdapterException("Invalid value set for global property '" + name + "': " + value, e);
         }
-
     }
 
     private Hashtable<String, String> convertMapToHashTable(Map<String, String> map) {
@@ -268,21 +302,4 @@ public class JMSEventAdapter implements OutputEventAdapter {
 
     }
 
-    public class JMSSender implements Runnable {
-
-        private Object jmsMessage;
-        private Map<String, String> dynamicProperties;
-
-        public JMSSender(Object jmsMessage, Map<String, String> dynamicProperties) {
-            this.jmsMessage = jmsMessage;
-            this.dynamicProperties = dynamicProperties;
-
-        }
-
-        @Override
-        public void run() {
-            publisherDetails.getJmsMessageSender().send(jmsMessage, publisherDetails, dynamicProperties.get(JMSEventAdapterConstants.ADAPTER_JMS_HEADER));
-        }
-    }
-
 }
@@ -0,0 +1,166 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.jms;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
+import org.wso2.carbon.event.output.adapter.jms.internal.util.JMSMessageSender;
+
+import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publisher thread of a JMS output adapter. Each worker owns a JMS session and takes the events to
+ * publish from the job queue shared by the workers of the adapter. On a transacted session the sent
+ * messages are committed every batch size messages, or when the oldest uncommitted message is older
+ * than the batch timeout.
+ */
+class JMSPublisherWorker implements Runnable {
+
+    private static final Log log = LogFactory.getLog(JMSPublisherWorker.class);
+
+    /**
+     * Queued once per worker when the adapter is disconnected. A worker commits and stops when it
+     * takes it, the events queued before it have been taken by the workers by then.
+     */
+    static final PublishRequest STOP = new PublishRequest(null, null);
+
+    private final JMSMessageSender sender;
+    private final BlockingQueue<PublishRequest> jobQueue;
+    private final String adapterName;
+    private final String destinationName;
+    private final int tenantId;
+    private final int batchSize;
+    private final long batchTimeout;
+    private final AtomicReference<Exception> connectionError;
+    private final List<Object> uncommitted = new ArrayList<Object>();
+    private long batchDeadline;
+
+    JMSPublisherWorker(JMSMessageSender sender, BlockingQueue<PublishRequest> jobQueue, String adapterName,
+                       String destinationName, int tenantId, int batchSize, long batchTimeout,
+                       AtomicReference<Exception> connectionError) {
+        this.sender = sender;
+        this.jobQueue = jobQueue;
+        this.adapterName = adapterName;
+        this.destinationName = destinationName;
+        this.tenantId = tenantId;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.connectionError = connectionError;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                PublishRequest request;
+                if (uncommitted.isEmpty()) {
+                    request = jobQueue.take();
+                } else {
+                    request = jobQueue.poll(batchDeadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (request == STOP) {
+                    break;
+                }
+                if (request != null) {
+                    publish(request);
+                }
+                if (!uncommitted.isEmpty() && (uncommitted.size() >= batchSize ||
+                        System.currentTimeMillis() >= batchDeadline)) {
+                    commit();
+                }
+            }
+            if (!uncommitted.isEmpty()) {
+                commit();
+            }
+        } catch (InterruptedException e) {
+            if (!uncommitted.isEmpty()) {
+                sender.rollback();
+                dropUncommitted("Publisher stopped before committing", e);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            sender.close();
+        }
+    }
+
+    private void publish(PublishRequest request) {
+        Exception error = connectionError.get();
+        if (error != null) {
+            EventAdapterUtil.logAndDrop(adapterName, request.message, "JMS connection is unavailable", error, log,
+                    tenantId);
+            return;
+        }
+        try {
+            sender.send(request.message, destinationName, request.jmsHeaders);
+            if (sender.isTransacted()) {
+                if (uncommitted.isEmpty()) {
+                    batchDeadline = System.currentTimeMillis() + batchTimeout;
+                }
+                uncommitted.add(request.message);
+            }
+        } catch (JMSException e) {
+            connectionError.compareAndSet(null, e);
+            EventAdapterUtil.logAndDrop(adapterName, request.message, "Error sending message to destination : " +
+                    destinationName, e, log, tenantId);
+            if (!uncommitted.isEmpty()) {
+                sender.rollback();
+                dropUncommitted("Transaction rolled back", e);
+            }
+        } catch (RuntimeException e) {
+            EventAdapterUtil.logAndDrop(adapterName, request.message, "Error sending message to destination : " +
+                    destinationName, e, log, tenantId);
+        }
+    }
+
+    private void commit() {
+        try {
+            sender.commit();
+            uncommitted.clear();
+        } catch (JMSException e) {
+            connectionError.compareAndSet(null, e);
+            sender.rollback();
+            dropUncommitted("Error committing local (i.e. session) transaction", e);
+        }
+    }
+
+    private void dropUncommitted(String reason, Exception e) {
+        for (Object message : uncommitted) {
+            EventAdapterUtil.logAndDrop(adapterName, message, reason, e, log, tenantId);
+        }
+        uncommitted.clear();
+    }
+
+    /**
+     * An event queued for publishing, with its JMS headers.
+     */
+    static class PublishRequest {
+        private final Object message;
+        private final String jmsHeaders;
+
+        PublishRequest(Object message, String jmsHeaders) {
+            this.message = message;
+            this.jmsHeaders = jmsHeaders;
+        }
+    }
+}
@@ -19,8 +19,6 @@ package org.wso2.carbon.event.output.adapter.jms.internal.util;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.pool.PoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
 
 import javax.jms.*;
@@ -28,6 +26,8 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Encapsulate a JMS Connection factory definition within an Axis2.xml
@@ -35,8 +35,8 @@ import java.util.Hashtable;
  * JMS Connection Factory definitions, allows JNDI properties as well as other service
  * level parameters to be defined, and re-used by each service that binds to it
  * <p/>
- * When used for sending messages out, the JMSConnectionFactory'ies are able to cache
- * a Connection, Session or Producer
+ * When used for sending messages out, the JMSConnectionFactory shares a single Connection
+ * between all the publisher sessions of an adapter, and caches the looked up Destinations
  */
 public class JMSConnectionFactory {
 
@@ -58,28 +58,25 @@ public class JMSConnectionFactory {
     private ConnectionFactory conFactory = null;
 
     /**
-     * The Shared Destination
+     * The Destinations looked up by this factory, by name
      */
-    private Destination sharedDestination = null;
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<String, Destination>();
 
-    private int maxConnections;
-
-    private GenericObjectPool connectionPool;
+    /**
+     * The Connection shared by all the sessions created from this factory
+     */
+    private Connection sharedConnection = null;
 
     private String destinationName;
 
     /**
      * Digest a JMS CF definition from an axis2.xml 'Parameter' and construct
      */
-    public JMSConnectionFactory(Hashtable<String, String> parameters, String name, String destination, int maxConcurrentConnections) {
+    public JMSConnectionFactory(Hashtable<String, String> parameters, String name, String destination) {
         this.parameters = parameters;
         this.name = name;
         this.destinationName = destination;
 
-        if (maxConcurrentConnections > 0) {
-            this.maxConnections = maxConcurrentConnections;
-        }
-
         try {
             context = new InitialContext(parameters);
             conFactory = JMSUtils.lookup(context, ConnectionFactory.class,
@@ -93,31 +90,25 @@ public class JMSConnectionFactory {
                     parameters.get(JMSConstants.PARAM_DESTINATION) +
                     " for JMS CF : " + name + " using : " + parameters, e);
         }
-
-        createConnectionPool();
     }
 
-    // need to initialize
-    private void createConnectionPool() {
-        GenericObjectPool.Config poolConfig = new GenericObjectPool.Config();
-        poolConfig.minEvictableIdleTimeMillis = 3000;
-        poolConfig.maxWait = 3000;
-        poolConfig.maxActive = maxConnections;
-        poolConfig.maxIdle = maxConnections;
-        poolConfig.minIdle = 0;
-        poolConfig.numTestsPerEvictionRun = Math.max(1, maxConnections / 10);
-        poolConfig.timeBetweenEvictionRunsMillis = 5000;
-        this.connectionPool = new GenericObjectPool(new PoolableJMSConnectionFactory(), poolConfig);
-
+    /**
+     * Create a new Session on the shared Connection. Sessions are not thread safe, hence each
+     * publisher thread is expected to create and own its Session.
+     *
+     * @return a new Session, transacted if requested by this JMS CF
+     * @throws JMSException on errors, to be handled and logged by the caller
+     */
+    public Session createSession() throws JMSException {
+        return JMSUtils.createSession(getSharedConnection(), isSessionTransacted(), Session.AUTO_ACKNOWLEDGE,
+                isJmsSpec11(), isQueue());
     }
 
-
-    public void returnPooledConnection(JMSPooledConnectionHolder pooledConnection) {
-        try {
-            this.connectionPool.returnObject(pooledConnection);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+    private synchronized Connection getSharedConnection() {
+        if (sharedConnection == null) {
+            sharedConnection = createConnection();
         }
+        return sharedConnection;
     }
 
     /**
@@ -127,7 +118,7 @@ public class JMSConnectionFactory {
      * @param destination Destination to be used
      * @return a new MessageProducer
      */
-    private MessageProducer createProducer(Session session, Destination destination) {
+    public MessageProducer createProducer(Session session, Destination destination) {
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Creating a new JMS MessageProducer from JMS CF : " + name);
@@ -152,17 +143,33 @@ public class JMSConnectionFactory {
         return context;
     }
 
+    /**
+     * Lookup the default Destination of this JMS CF definition
+     *
+     * @return JMS Destination for the default destination name or null
+     */
+    public Destination getDestination() {
+        return getDestination(destinationName);
+    }
+
     /**
      * Lookup a Destination using this JMS CF definitions and JNDI name
      *
+     * @param destinationName name of the destination to be looked up
      * @return JMS Destination for the given JNDI name or null
      */
-    public synchronized Destination getDestination() {
+    public Destination getDestination(String destinationName) {
+        Destination destination = destinations.get(destinationName);
+        if (destination != null) {
+            return destination;
+        }
         try {
-            if (sharedDestination == null) {
-                sharedDestination = JMSUtils.lookupDestination(context, destinationName, parameters.get(JMSConstants.PARAM_DEST_TYPE));
+            destination = JMSUtils.lookupDestination(context, destinationName,
+                    parameters.get(JMSConstants.PARAM_DEST_TYPE));
+            if (destination != null) {
+                destinations.put(destinationName, destination);
             }
-            return sharedDestination;
+            return destination;
         } catch (NamingException e) {
             handleException("Error looking up the JMS destinationName with name " + destinationName
                     + " of type " + parameters.get(JMSConstants.PARAM_DEST_TYPE), e);
@@ -244,7 +251,7 @@ public class JMSConnectionFactory {
      *
      * @return session transaction required by the clients of this?
      */
-    private boolean isSessionTransacted() {
+    public boolean isSessionTransacted() {
         return parameters.get(JMSConstants.PARAM_SESSION_TRANSACTED) != null &&
                 Boolean.valueOf(parameters.get(JMSConstants.PARAM_SESSION_TRANSACTED));
     }
@@ -281,22 +288,15 @@ public class JMSConnectionFactory {
         return connection;
     }
 
-    public JMSPooledConnectionHolder getConnectionFromPool() {
-        try {
-            return (JMSPooledConnectionHolder) this.connectionPool.borrowObject();
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        }
-        return null;
-    }
-
-
     public synchronized void close() {
 
-        try {
-            connectionPool.close();
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+        if (sharedConnection != null) {
+            try {
+                sharedConnection.close();
+            } catch (JMSException e) {
+                log.warn("Error while closing the shared Connection of factory : " + name, e);
+            }
+            sharedConnection = null;
         }
 
         if (context != null) {
@@ -308,96 +308,4 @@ public class JMSConnectionFactory {
         }
     }
 
-    /**
-     * Holder class for connections and its session/producer.
-     */
-    public static class JMSPooledConnectionHolder {
-        private Connection connection;
-        private Session session;
-        private MessageProducer producer;
-
-        public Connection getConnection() {
-            return connection;
-        }
-
-        public void setConnection(Connection connection) {
-            this.connection = connection;
-        }
-
-        public Session getSession() {
-            return session;
-        }
-
-        public void setSession(Session session) {
-            this.session = session;
-        }
-
-        public MessageProducer getProducer() {
-            return producer;
-        }
-
-        public void setProducer(MessageProducer producer) {
-            this.producer = producer;
-        }
-
-
-    }
-
-
-    /**
-     * JMSConnectionFactory used by the connection pool.
-     */
-    private class PoolableJMSConnectionFactory implements PoolableObjectFactory {
-
-        int count = 0;
-
-        @Override
-        public Object makeObject() throws Exception {
-            Connection con = createConnection();
-            try {
-                Session session = JMSUtils.createSession(
-                        con, isSessionTransacted(), Session.AUTO_ACKNOWLEDGE, isJmsSpec11(), isQueue());
-
-                MessageProducer producer = createProducer(session, getDestination());
-
-                JMSPooledConnectionHolder entry = new JMSPooledConnectionHolder();
-                entry.setConnection(con);
-                entry.setSession(session);
-                entry.setProducer(producer);
-                return entry;
-            } catch (JMSException e) {
-                log.error(e.getMessage(), e);
-                return null;
-            }
-
-        }
-
-        @Override
-        public void destroyObject(Object o) throws Exception {
-
-            JMSPooledConnectionHolder entry = (JMSPooledConnectionHolder) o;
-            entry.getProducer().close();
-            entry.getSession().close();
-            entry.getConnection().close();
-
-        }
-
-        @Override
-        public boolean validateObject(Object o) {
-            return false;
-        }
-
-        @Override
-        public void activateObject(Object o) throws Exception {
-
-        }
-
-        @Override
-        public void passivateObject(Object o) throws Exception {
-
-        }
-
-    }
-
-
 }
@@ -39,14 +39,15 @@ public class JMSEventAdapterConstants {
     public static final String ADAPTER_JMS_ALLOW_CONCURRENT_CONNECTIONS_NOT_ALLOWED = "disallow";
     public static final String ADAPTER_JMS_HEADER = "transport.jms.Header";
     public static final String ADAPTER_JMS_HEADER_HINT = "transport.jms.Header.Hint";
-    public static final long DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS = 20000;
-    public static final String ADAPTER_MIN_THREAD_POOL_SIZE_NAME = "minThread";
-    public static final String ADAPTER_MAX_THREAD_POOL_SIZE_NAME = "maxThread";
-    public static final String ADAPTER_KEEP_ALIVE_TIME_NAME = "keepAliveTimeInMillis";
+    public static final String ADAPTER_PUBLISHER_THREADS_NAME = "publisherThreads";
     public static final String ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME = "jobQueueSize";
-    public static final int ADAPTER_MIN_THREAD_POOL_SIZE = 8;
-    public static final int ADAPTER_MAX_THREAD_POOL_SIZE = 100;
+    public static final String ADAPTER_TRANSACTION_BATCH_SIZE_NAME = "transactionBatchSize";
+    public static final String ADAPTER_TRANSACTION_BATCH_TIMEOUT_NAME = "transactionBatchTimeoutInMillis";
+    public static final int ADAPTER_PUBLISHER_THREADS = 8;
     public static final int ADAPTER_EXECUTOR_JOB_QUEUE_SIZE = 2000;
+    public static final int ADAPTER_TRANSACTION_BATCH_SIZE = 100;
+    public static final long ADAPTER_TRANSACTION_BATCH_TIMEOUT_IN_MILLIS = 100;
+    public static final long SHUTDOWN_WAIT_TIME_IN_MILLIS = 5000;
     public static final String HEADER_SEPARATOR = ",";
     public static final String ENTRY_SEPARATOR = ":";
     public static final String PROPERTY_SEPARATOR = ",";
@@ -18,165 +18,228 @@
 package org.wso2.carbon.event.output.adapter.jms.internal.util;
 
 import org.apache.axiom.om.OMElement;
-import org.apache.axis2.transport.base.BaseConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
-import org.wso2.carbon.event.output.adapter.jms.JMSEventAdapter;
 
 import javax.jms.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Performs the actual sending of a JMS message, and the subsequent committing of a JTA transaction
- * (if requested) or the local session transaction, if used. An instance of this class is unique
- * to a single message send out operation and will not be shared.
+ * Performs the actual sending of JMS messages over a Session owned by a single publisher thread.
+ * The producers of the session are cached per destination and configured once with the delivery
+ * mode, priority and time to live of the adapter. Transacted sessions are not committed per
+ * message, the owner of the sender decides when to {@link #commit()}.
+ * <p/>
+ * On a non transacted session the JMS 2.0 asynchronous send is used when the JMS provider supports
+ * it, so that the publisher thread does not wait for the broker to acknowledge each message.
+ * Instances of this class are not thread safe.
  */
 public class JMSMessageSender {
 
     private static final Log log = LogFactory.getLog(JMSMessageSender.class);
 
+    private static final String COMPLETION_LISTENER_CLASS = "javax.jms.CompletionListener";
+
     /**
      * Should this sender use JMS 1.1 ? (if false, defaults to 1.0.2b)
      */
-    private boolean jmsSpec11 = true;
+    private final boolean jmsSpec11;
 
     /**
      * Are we sending to a Queue ?
      */
-    private Boolean isQueue = null;
+    private final Boolean isQueue;
 
-    /**
-     * Factory used by the connection pool.
-     */
-    private JMSConnectionFactory jmsConnectionFactory;
+    private final JMSConnectionFactory jmsConnectionFactory;
+    private final Session session;
+    private final boolean transacted;
+    private final Map<String, CachedProducer> producers = new HashMap<String, CachedProducer>();
+
+    private final Boolean persistent;
+    private final Integer priority;
+    private final Integer timeToLive;
+
+    private final String adapterName;
+    private final int tenantId;
+    private final AtomicReference<Exception> connectionError;
 
     /**
-     * Create a JMSSender using a JMSConnectionFactory and target EPR
+     * Create a JMSMessageSender with a new Session of the given JMSConnectionFactory
      *
      * @param jmsConnectionFactory the JMSConnectionFactory
+     * @param messageProperties    the message level properties of the adapter
+     * @param adapterName          name of the adapter, used when reporting dropped events
+     * @param tenantId             tenant of the adapter
+     * @param connectionError      set when an asynchronous send fails
+     * @throws JMSException if the session cannot be created
      */
-    public JMSMessageSender(JMSConnectionFactory jmsConnectionFactory) {
-        this.jmsSpec11 = jmsConnectionFactory.isJmsSpec11();
+    public JMSMessageSender(JMSConnectionFactory jmsConnectionFactory, Map<String, String> messageProperties,
+                            String adapterName, int tenantId, AtomicReference<Exception> connectionError)
+            throws JMSException {
         this.jmsConnectionFactory = jmsConnectionFactory;
+        this.jmsSpec11 = jmsConnectionFactory.isJmsSpec11();
+        this.isQueue = jmsConnectionFactory.isQueue();
+        this.session = jmsConnectionFactory.createSession();
+        this.transacted = session.getTransacted();
+        this.persistent = getBooleanProperty(messageProperties, JMSConstants.JMS_DELIVERY_MODE);
+        this.priority = getIntegerProperty(messageProperties, JMSConstants.JMS_PRIORITY);
+        this.timeToLive = getIntegerProperty(messageProperties, JMSConstants.JMS_TIME_TO_LIVE);
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+        this.connectionError = connectionError;
+    }
+
+    public boolean isTransacted() {
+        return transacted;
     }
 
     /**
-     * Perform actual send of JMS message to the Destination selected
+     * Perform actual send of JMS message to the Destination with the given name
+     *
+     * @param message         the event to be sent
+     * @param destinationName name of the Destination
+     * @param jmsHeaders      the JMS headers of the message, if any
+     * @throws JMSException on errors, to be handled and logged by the caller
      */
-    public void send(Object message, JMSEventAdapter.PublisherDetails publisherDetails, String jmsHeaders) {
+    public void send(Object message, String destinationName, String jmsHeaders) throws JMSException {
 
-        Map<String, String> messageProperties = publisherDetails.getMessageConfig();
+        CachedProducer cachedProducer = getProducer(destinationName);
+        Message jmsMessage = convertToJMSMessage(message, destinationName);
+        setJMSTransportHeaders(jmsMessage, jmsHeaders);
 
-        Boolean jtaCommit = getBooleanProperty(messageProperties, BaseConstants.JTA_COMMIT_AFTER_SEND);
-        Boolean rollbackOnly = getBooleanProperty(messageProperties, BaseConstants.SET_ROLLBACK_ONLY);
-        Boolean persistent = getBooleanProperty(messageProperties, JMSConstants.JMS_DELIVERY_MODE);
-        Integer priority = getIntegerProperty(messageProperties, JMSConstants.JMS_PRIORITY);
-        Integer timeToLive = getIntegerProperty(messageProperties, JMSConstants.JMS_TIME_TO_LIVE);
-
-        MessageProducer producer = null;
-        Destination destination = null;
-        Session session = null;
-        boolean sendingSuccessful = false;
-        JMSConnectionFactory.JMSPooledConnectionHolder pooledConnection = null;
-        try {
+        if (cachedProducer.asyncSend == null || !sendAsync(cachedProducer, jmsMessage)) {
+            MessageProducer producer = cachedProducer.producer;
+            if (jmsSpec11 || isQueue == null) {
+                producer.send(jmsMessage);
+            } else if (isQueue) {
+                ((QueueSender) producer).send(jmsMessage);
+            } else {
+                ((TopicPublisher) producer).publish(jmsMessage);
+            }
+        }
 
-            pooledConnection = jmsConnectionFactory.getConnectionFromPool();
+        if (log.isDebugEnabled()) {
+            log.debug("Sent message with JMS Message ID : " + jmsMessage.getJMSMessageID() +
+                    " to destination : " + destinationName);
+        }
+    }
 
-            producer = pooledConnection.getProducer();
-            session = pooledConnection.getSession();
-            Message jmsMessage = convertToJMSMessage(message, publisherDetails.getMessageConfig(), session);
-            setJMSTransportHeaders(jmsMessage, jmsHeaders);
+    /**
+     * Commit the local (JMS Session) transaction, if the session is transacted
+     *
+     * @throws JMSException on errors, to be handled and logged by the caller
+     */
+    public void commit() throws JMSException {
+        if (transacted) {
+            session.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Committed local (JMS Session) Transaction of adapter : " + adapterName);
+            }
+        }
+    }
 
-            // Do not commit, if message is marked for rollback
-            if (rollbackOnly != null && rollbackOnly) {
-                jtaCommit = Boolean.FALSE;
+    /**
+     * Roll back the local (JMS Session) transaction, if the session is transacted
+     */
+    public void rollback() {
+        if (transacted) {
+            try {
+                session.rollback();
+                if (log.isDebugEnabled()) {
+                    log.debug("Rolled back local (JMS Session) Transaction of adapter : " + adapterName);
+                }
+            } catch (JMSException e) {
+                log.warn("Error rolling back local (i.e. session) transaction of adapter : " + adapterName, e);
             }
+        }
+    }
 
+    private CachedProducer getProducer(String destinationName) throws JMSException {
+        CachedProducer cachedProducer = producers.get(destinationName);
+        if (cachedProducer == null) {
+            Destination destination = jmsConnectionFactory.getDestination(destinationName);
+            MessageProducer producer = jmsConnectionFactory.createProducer(session, destination);
             if (persistent != null) {
-                try {
-                    producer.setDeliveryMode(DeliveryMode.PERSISTENT);
-                } catch (JMSException e) {
-                    handleConnectionException("Error setting JMS Producer for PERSISTENT delivery", e);
-                }
+                producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
             }
             if (priority != null) {
-                try {
-                    producer.setPriority(priority);
-                } catch (JMSException e) {
-                    handleConnectionException("Error setting JMS Producer priority to : " + priority, e);
-                }
+                producer.setPriority(priority);
             }
             if (timeToLive != null) {
-                try {
-                    producer.setTimeToLive(timeToLive);
-                } catch (JMSException e) {
-                    handleConnectionException("Error setting JMS Producer TTL to : " + timeToLive, e);
-                }
+                producer.setTimeToLive(timeToLive);
             }
-
-            // perform actual message sending
-//        try {
-            if (jmsSpec11 || isQueue == null) {
-                producer.send(jmsMessage);
-
-            } else {
-                if (isQueue) {
-                    ((QueueSender) producer).send(jmsMessage);
-
-                } else {
-                    ((TopicPublisher) producer).publish(jmsMessage);
-                }
+            cachedProducer = new CachedProducer(producer);
+            if (!transacted && jmsSpec11) {
+                initAsyncSend(cachedProducer);
             }
-            sendingSuccessful = true;
+            producers.put(destinationName, cachedProducer);
+        }
+        return cachedProducer;
+    }
 
+    /**
+     * Resolve MessageProducer#send(Message, CompletionListener) of the JMS provider, which is only
+     * available from JMS 2.0 onwards. The JMS API bundled with the adapter is 1.1, hence the method
+     * is looked up and called reflectively.
+     */
+    private void initAsyncSend(CachedProducer cachedProducer) {
+        try {
+            Class<?> producerClass = cachedProducer.producer.getClass();
+            Class<?> listenerClass = Class.forName(COMPLETION_LISTENER_CLASS, false, producerClass.getClassLoader());
+            Method asyncSend = producerClass.getMethod("send", Message.class, listenerClass);
+            if (Modifier.isAbstract(asyncSend.getModifiers())) {
+                return;
+            }
+            asyncSend.setAccessible(true);
+            cachedProducer.asyncSend = asyncSend;
+            cachedProducer.completionListener = Proxy.newProxyInstance(listenerClass.getClassLoader(),
+                    new Class<?>[]{listenerClass}, new CompletionHandler());
             if (log.isDebugEnabled()) {
-
-//            // set the actual MessageID to the message context for use by any others down the line
-                String msgId = null;
-                try {
-                    msgId = jmsMessage.getJMSMessageID();
-                } catch (JMSException jmse) {
-                    log.error(jmse.getMessage(), jmse);
-                }
-
-                log.debug(
-                        " with JMS Message ID : " + msgId +
-                                " to destination : " + producer.getDestination());
+                log.debug("Using JMS 2.0 asynchronous send for adapter : " + adapterName);
             }
+        } catch (ClassNotFoundException e) {
+            // JMS 1.1 provider
+        } catch (NoSuchMethodException e) {
+            // JMS 1.1 provider
+        } catch (SecurityException e) {
+            log.debug("JMS 2.0 asynchronous send is not accessible, sending synchronously", e);
+        }
+    }
 
-        } catch (JMSException e) {
-            handleConnectionException("Error sending message to destination : " + destination, e);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        } finally {
-            if (jtaCommit != null) {
-
-                try {
-                    if (session.getTransacted()) {
-                        if (sendingSuccessful && (rollbackOnly == null || !rollbackOnly)) {
-                            session.commit();
-                        } else {
-                            session.rollback();
-                        }
-                    }
-
-                    if (log.isDebugEnabled()) {
-                        log.debug((sendingSuccessful ? "Committed" : "Rolled back") +
-                                " local (JMS Session) Transaction");
-                    }
-
-                } catch (Exception e) {
-                    handleConnectionException("Error committing/rolling back local (i.e. session) " +
-                            "transaction after sending of message "//with MessageContext ID : " +
-                            + " to destination : " + destination, e);
-                }
-            }
-            if (pooledConnection != null) {
-                jmsConnectionFactory.returnPooledConnection(pooledConnection);
+    /**
+     * @return false if the provider turned out not to support the asynchronous send, and the
+     * message still has to be sent
+     */
+    private boolean sendAsync(CachedProducer cachedProducer, Message jmsMessage) throws JMSException {
+        try {
+            cachedProducer.asyncSend.invoke(cachedProducer.producer, jmsMessage, cachedProducer.completionListener);
+            return true;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JMSException) {
+                throw (JMSException) cause;
+            } else if (cause instanceof AbstractMethodError || cause instanceof UnsupportedOperationException) {
+                log.debug("JMS provider does not support asynchronous send, sending synchronously", cause);
+                cachedProducer.asyncSend = null;
+                return false;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new OutputEventAdapterRuntimeException("Error sending message asynchronously", cause);
+        } catch (IllegalAccessException e) {
+            cachedProducer.asyncSend = null;
+            return false;
         }
     }
 
@@ -208,7 +271,26 @@ public class JMSMessageSender {
         return message;
     }
 
-    public Message convertToJMSMessage(Object messageObj, Map<String, String> messageProperties, Session session) {
+    /**
+     * Close the producers and the session of this sender
+     */
+    public void close() {
+        for (CachedProducer cachedProducer : producers.values()) {
+            try {
+                cachedProducer.producer.close();
+            } catch (JMSException e) {
+                log.warn("Error while closing a JMS producer of adapter : " + adapterName, e);
+            }
+        }
+        producers.clear();
+        try {
+            session.close();
+        } catch (JMSException e) {
+            log.warn("Error while closing the JMS session of adapter : " + adapterName, e);
+        }
+    }
+
+    private Message convertToJMSMessage(Object messageObj, String destinationName) {
         Message jmsMessage = null;
         try {
             if (messageObj instanceof OMElement) {
@@ -224,30 +306,17 @@ public class JMSMessageSender {
                 jmsMessage = mapMessage;
             }
         } catch (JMSException e) {
-            handleException("Failed to publish to topic:" + messageProperties.get(JMSConstants.PARAM_DESTINATION), e);
+            handleException("Failed to publish to topic:" + destinationName, e);
         }
 
         return jmsMessage;
     }
 
-    /**
-     * Close non-shared producer, session and connection if any
-     */
-
-    public void close() {
-        jmsConnectionFactory.close();
-    }
-
     private void handleException(String message, Exception e) {
         log.error(message, e);
         throw new OutputEventAdapterRuntimeException(message, e);
     }
 
-    private void handleConnectionException(String message, Exception e) {
-        log.error(message, e);
-        throw new ConnectionUnavailableException(message, e);
-    }
-
     private Boolean getBooleanProperty(Map<String, String> messageProperties, String name) {
         String o = messageProperties.get(name);
         if (o != null) {
@@ -264,4 +333,48 @@ public class JMSMessageSender {
         return null;
     }
 
+    /**
+     * A producer of the session, with the asynchronous send of the provider if supported.
+     */
+    private static class CachedProducer {
+        private final MessageProducer producer;
+        private Method asyncSend;
+        private Object completionListener;
+
+        private CachedProducer(MessageProducer producer) {
+            this.producer = producer;
+        }
+    }
+
+    /**
+     * Implements javax.jms.CompletionListener. Failed messages are dropped and the failure is
+     * reported, so that the adapter reconnects.
+     */
+    private class CompletionHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("onException".equals(method.getName()) && args != null && args.length == 2) {
+                Exception exception = (Exception) args[1];
+                connectionError.compareAndSet(null, exception);
+                Object event = args[0];
+                if (event instanceof TextMessage) {
+                    event = ((TextMessage) event).getText();
+                }
+                EventAdapterUtil.logAndDrop(adapterName, event, "Error while sending message to the JMS broker",
+                        exception, log, tenantId);
+                return null;
+            } else if ("onCompletion".equals(method.getName())) {
+                return null;
+            } else if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(method.getName())) {
+                return "CompletionListener of adapter : " + adapterName;
+            }
+            return null;
+        }
+    }
+
 }
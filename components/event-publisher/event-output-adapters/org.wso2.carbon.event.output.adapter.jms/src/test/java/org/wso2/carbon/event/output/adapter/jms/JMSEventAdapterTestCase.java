@@ -0,0 +1,263 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.jms;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+import org.wso2.carbon.event.output.adapter.jms.internal.util.JMSConstants;
+import org.wso2.carbon.event.output.adapter.jms.internal.util.JMSEventAdapterConstants;
+
+import javax.jms.CompletionListener;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.naming.Context;
+import javax.naming.spi.InitialContextFactory;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JMSEventAdapterTestCase {
+
+    private static final String CONNECTION_FACTORY = "ConnectionFactory";
+    private static final String DESTINATION = "events";
+    private static final long LONG_BATCH_TIMEOUT = 60000;
+    private static final long TIMEOUT = 10000;
+
+    private Connection connection;
+    private Session session;
+    private Destination destination;
+    private JMSEventAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        connection = mock(Connection.class);
+        session = mock(Session.class);
+        destination = mock(Destination.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.createTextMessage(anyString())).thenReturn(mock(TextMessage.class));
+
+        Context context = mock(Context.class);
+        when(context.lookup(CONNECTION_FACTORY)).thenReturn(connectionFactory);
+        when(context.lookup(DESTINATION)).thenReturn(destination);
+        TestInitialContextFactory.context = context;
+    }
+
+    @After
+    public void tearDown() {
+        if (adapter != null) {
+            adapter.disconnect();
+        }
+        TestInitialContextFactory.context = null;
+    }
+
+    @Test
+    public void testTransactedMessagesAreCommittedInBatches() throws Exception {
+        MessageProducer producer = mock(MessageProducer.class);
+        connect(producer, true, 3, LONG_BATCH_TIMEOUT);
+        verify(connection).createSession(true, Session.AUTO_ACKNOWLEDGE);
+
+        publish(5);
+        verify(producer, timeout(TIMEOUT).times(5)).send(any(Message.class));
+        verify(session, timeout(TIMEOUT)).commit();
+
+        // the incomplete batch is committed when the adapter is disconnected, without waiting for its timeout
+        long start = System.currentTimeMillis();
+        adapter.disconnect();
+        Assert.assertTrue(System.currentTimeMillis() - start < JMSEventAdapterConstants.SHUTDOWN_WAIT_TIME_IN_MILLIS);
+        adapter = null;
+        verify(session, times(2)).commit();
+        verify(session, never()).rollback();
+        verify(session).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void testTransactedMessagesAreCommittedAfterBatchTimeout() throws Exception {
+        MessageProducer producer = mock(MessageProducer.class);
+        connect(producer, true, 100, 50);
+
+        publish(2);
+        verify(session, timeout(TIMEOUT)).commit();
+        verify(producer, times(2)).send(any(Message.class));
+    }
+
+    @Test
+    public void testFailedSendRollsBackTransaction() throws Exception {
+        MessageProducer producer = mock(MessageProducer.class);
+        connect(producer, true, 3, LONG_BATCH_TIMEOUT);
+        publish(1);
+        verify(producer, timeout(TIMEOUT)).send(any(Message.class));
+
+        doThrow(new JMSException("Broker is down")).when(producer).send(any(Message.class));
+        publish(1);
+        verify(session, timeout(TIMEOUT)).rollback();
+        verify(session, never()).commit();
+        assertPublishIsRejected();
+    }
+
+    @Test
+    public void testFailedCommitRollsBackTransaction() throws Exception {
+        MessageProducer producer = mock(MessageProducer.class);
+        doThrow(new JMSException("Broker is down")).when(session).commit();
+        connect(producer, true, 2, LONG_BATCH_TIMEOUT);
+
+        publish(2);
+        verify(session, timeout(TIMEOUT)).rollback();
+        verify(producer, times(2)).send(any(Message.class));
+        assertPublishIsRejected();
+    }
+
+    @Test
+    public void testAsyncSendFallsBackToSyncSend() throws Exception {
+        Jms2MessageProducer producer = mock(Jms2MessageProducer.class);
+        doThrow(new UnsupportedOperationException()).when(producer).send(any(Message.class),
+                any(CompletionListener.class));
+        connect(producer, false, 1, LONG_BATCH_TIMEOUT);
+
+        // the asynchronous send is not tried again once the provider rejected it
+        publish(3);
+        verify(producer, timeout(TIMEOUT).times(3)).send(any(Message.class));
+        verify(producer, times(1)).send(any(Message.class), any(CompletionListener.class));
+        verify(session, never()).commit();
+    }
+
+    @Test
+    public void testFailedAsyncSendIsReported() throws Exception {
+        Jms2MessageProducer producer = mock(Jms2MessageProducer.class);
+        final CountDownLatch completed = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Object[] arguments = invocation.getArguments();
+                ((CompletionListener) arguments[1]).onException((Message) arguments[0],
+                        new JMSException("Broker is down"));
+                completed.countDown();
+                return null;
+            }
+        }).when(producer).send(any(Message.class), any(CompletionListener.class));
+        connect(producer, false, 1, LONG_BATCH_TIMEOUT);
+
+        publish(1);
+        Assert.assertTrue(completed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        verify(producer, never()).send(any(Message.class));
+        assertPublishIsRejected();
+    }
+
+    @Test
+    public void testPublishAfterDisconnectIsRejected() throws Exception {
+        MessageProducer producer = mock(MessageProducer.class);
+        connect(producer, false, 1, LONG_BATCH_TIMEOUT);
+        adapter.disconnect();
+        assertPublishIsRejected();
+
+        adapter.connect();
+        publish(1);
+        verify(producer, timeout(TIMEOUT)).send(any(Message.class));
+    }
+
+    private void connect(MessageProducer producer, boolean transacted, int transactionBatchSize,
+                         long transactionBatchTimeout) throws Exception {
+        when(session.getTransacted()).thenReturn(transacted);
+        when(session.createProducer(destination)).thenReturn(producer);
+
+        OutputEventAdapterConfiguration configuration = new OutputEventAdapterConfiguration();
+        configuration.setName("test");
+        Map<String, String> staticProperties = new HashMap<String, String>();
+        staticProperties.put(JMSEventAdapterConstants.JNDI_INITIAL_CONTEXT_FACTORY_CLASS,
+                TestInitialContextFactory.class.getName());
+        staticProperties.put(JMSEventAdapterConstants.ADAPTER_JMS_CONNECTION_FACTORY_JNDINAME, CONNECTION_FACTORY);
+        staticProperties.put(JMSEventAdapterConstants.ADAPTER_JMS_DESTINATION, DESTINATION);
+        staticProperties.put(JMSConstants.PARAM_SESSION_TRANSACTED, Boolean.toString(transacted));
+        configuration.setStaticProperties(staticProperties);
+        Map<String, String> globalProperties = new HashMap<String, String>();
+        globalProperties.put(JMSEventAdapterConstants.ADAPTER_PUBLISHER_THREADS_NAME, "1");
+        globalProperties.put(JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_SIZE_NAME,
+                Integer.toString(transactionBatchSize));
+        globalProperties.put(JMSEventAdapterConstants.ADAPTER_TRANSACTION_BATCH_TIMEOUT_NAME,
+                Long.toString(transactionBatchTimeout));
+
+        adapter = new JMSEventAdapter(configuration, globalProperties);
+        adapter.init();
+        adapter.connect();
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            adapter.publish("event-" + i, new HashMap<String, String>());
+        }
+    }
+
+    private void assertPublishIsRejected() {
+        try {
+            adapter.publish("rejected", new HashMap<String, String>());
+            Assert.fail("Publishing must be rejected");
+        } catch (ConnectionUnavailableException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A producer of a JMS 2.0 provider, with the asynchronous send.
+     */
+    public abstract static class Jms2MessageProducer implements MessageProducer {
+
+        public abstract void send(Message message, CompletionListener completionListener) throws JMSException;
+    }
+
+    /**
+     * Looks up the mocked connection factory and destination of a test.
+     */
+    public static class TestInitialContextFactory implements InitialContextFactory {
+
+        private static volatile Context context;
+
+        @Override
+        public Context getInitialContext(Hashtable<?, ?> environment) {
+            return context;
+        }
+    }
+}
@@ -18,35 +18,44 @@
 
 package org.wso2.carbon.event.output.adapter.kafka;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import kafka.javaapi.producer.Producer;
-import kafka.producer.KeyedMessage;
-import kafka.producer.ProducerConfig;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapter;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
 import org.wso2.carbon.event.output.adapter.core.exception.TestConnectionNotSupportedException;
 import org.wso2.carbon.event.output.adapter.kafka.internal.util.KafkaEventAdapterConstants;
 
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Publishes events to Kafka through the asynchronous producer. Events are batched per partition by the producer,
+ * and publishing blocks when its buffer is full. When the broker can not take events within the max block time,
+ * the adapter reports the connection as unavailable, so that the adapter runtime suspends it and reconnects later.
+ * The producer is closed only once no publish is sending through it anymore.
+ */
 public class KafkaEventAdapter implements OutputEventAdapter {
 
     private static final Log log = LogFactory.getLog(KafkaEventAdapter.class);
-    private static ThreadPoolExecutor threadPoolExecutor;
     private OutputEventAdapterConfiguration eventAdapterConfiguration;
     private Map<String, String> globalProperties;
-    private ProducerConfig config;
-    private Producer<String, Object> producer;
+    private volatile Producer<String, String> producer;
+    private volatile Exception deliveryTimeout;
+    private final ReadWriteLock producerLock = new ReentrantReadWriteLock();
     private int tenantId;
 
     public KafkaEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration,
@@ -57,48 +66,7 @@ public class KafkaEventAdapter implements OutputEventAdapter {
 
     @Override
     public void init() throws OutputEventAdapterException {
-
         tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
-
-        //ThreadPoolExecutor will be assigned  if it is null
-        if (threadPoolExecutor == null) {
-            int minThread;
-            int maxThread;
-            int jobQueSize;
-            long defaultKeepAliveTime;
-
-            //If global properties are available those will be assigned else constant values will be assigned
-            if (globalProperties.get(KafkaEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME) != null) {
-                minThread = Integer.parseInt(globalProperties.get(KafkaEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME));
-            } else {
-                minThread = KafkaEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE;
-            }
-
-            if (globalProperties.get(KafkaEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME) != null) {
-                maxThread = Integer.parseInt(globalProperties.get(KafkaEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME));
-            } else {
-                maxThread = KafkaEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE;
-            }
-
-            if (globalProperties.get(KafkaEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME) != null) {
-                defaultKeepAliveTime = Integer.parseInt(globalProperties.get(
-                        KafkaEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME));
-            } else {
-                defaultKeepAliveTime = KafkaEventAdapterConstants.DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS;
-            }
-
-            if (globalProperties.get(KafkaEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME) != null) {
-                jobQueSize = Integer.parseInt(globalProperties.get(
-                        KafkaEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME));
-            } else {
-                jobQueSize = KafkaEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE;
-            }
-
-            threadPoolExecutor = new ThreadPoolExecutor(minThread, maxThread, defaultKeepAliveTime,
-                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(jobQueSize), new ThreadFactoryBuilder()
-                    .setNameFormat("KafkaOutput-" + eventAdapterConfiguration.getName() + "-executor-thread-%d").build());
-        }
-
     }
 
     @Override
@@ -113,8 +81,21 @@ public class KafkaEventAdapter implements OutputEventAdapter {
         String kafkaConnect = staticProperties.get(KafkaEventAdapterConstants.ADAPTOR_META_BROKER_LIST);
         String optionalConfigs = staticProperties.get(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES);
         Properties props = new Properties();
-        props.put("metadata.broker.list", kafkaConnect);
-        props.put("serializer.class", "kafka.serializer.StringEncoder");
+        props.put(KafkaEventAdapterConstants.PRODUCER_BOOTSTRAP_SERVERS, kafkaConnect);
+        putProperty(props, staticProperties, KafkaEventAdapterConstants.ADAPTOR_LINGER_MS,
+                KafkaEventAdapterConstants.DEFAULT_LINGER_MS);
+        putProperty(props, staticProperties, KafkaEventAdapterConstants.ADAPTOR_BATCH_SIZE,
+                KafkaEventAdapterConstants.DEFAULT_BATCH_SIZE);
+        putProperty(props, staticProperties, KafkaEventAdapterConstants.ADAPTOR_COMPRESSION_TYPE,
+                KafkaEventAdapterConstants.DEFAULT_COMPRESSION_TYPE);
+        putProperty(props, staticProperties, KafkaEventAdapterConstants.ADAPTOR_MAX_IN_FLIGHT_REQUESTS,
+                KafkaEventAdapterConstants.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+        putProperty(props, globalProperties, KafkaEventAdapterConstants.ADAPTER_MAX_BLOCK_TIME_NAME,
+                KafkaEventAdapterConstants.PRODUCER_MAX_BLOCK_MS,
+                String.valueOf(KafkaEventAdapterConstants.DEFAULT_MAX_BLOCK_TIME_IN_MILLIS));
+        putProperty(props, globalProperties, KafkaEventAdapterConstants.ADAPTER_BUFFER_MEMORY_NAME,
+                KafkaEventAdapterConstants.PRODUCER_BUFFER_MEMORY,
+                String.valueOf(KafkaEventAdapterConstants.DEFAULT_BUFFER_MEMORY));
 
         if (optionalConfigs != null) {
             String[] optionalProperties = optionalConfigs.split(KafkaEventAdapterConstants.HEADER_SEPARATOR);
@@ -131,28 +112,63 @@ public class KafkaEventAdapter implements OutputEventAdapter {
             }
         }
 
-        config = new ProducerConfig(props);
-        producer = new Producer<String, Object>(config);
+        producer = createProducer(props);
+        deliveryTimeout = null;
+    }
 
+    Producer<String, String> createProducer(Properties props) {
+        // The Kafka client loads its pluggable classes through the context class loader.
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(KafkaProducer.class.getClassLoader());
+            return new KafkaProducer<String, String>(props, new StringSerializer(), new StringSerializer());
+        } catch (RuntimeException e) {
+            throw new ConnectionUnavailableException("Error while creating the Kafka producer of Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "', " + e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
     }
 
     @Override
     public void publish(Object message, Map<String, String> dynamicProperties) {
-
+        Exception timeout = deliveryTimeout;
+        if (timeout != null) {
+            throw new ConnectionUnavailableException("Kafka broker did not accept events of Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "' in time", timeout);
+        }
         //By default auto.create.topics.enable is true, then no need to create topic explicitly
         String topic = dynamicProperties.get(KafkaEventAdapterConstants.ADAPTOR_PUBLISH_TOPIC);
+        producerLock.readLock().lock();
         try {
-            threadPoolExecutor.submit(new KafkaSender(topic, message));
-        } catch (RejectedExecutionException e) {
-            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Job queue is full", e, log, tenantId);
+            if (producer == null) {
+                throw new ConnectionUnavailableException("Kafka producer of Output Adapter '" +
+                        eventAdapterConfiguration.getName() + "' is not connected");
+            }
+            // Blocks for up to max.block.ms when the producer buffer is full or the topic metadata is not available.
+            producer.send(new ProducerRecord<String, String>(topic, message.toString()), new DeliveryCallback(message));
+        } catch (TimeoutException e) {
+            throw new ConnectionUnavailableException("Kafka broker did not accept events of Output Adapter '" +
+                    eventAdapterConfiguration.getName() + "' in time", e);
+        } finally {
+            producerLock.readLock().unlock();
         }
     }
 
     @Override
     public void disconnect() {
+        Producer<String, String> currentProducer;
+        // Waits for the publishes sending through the producer, later ones find it disconnected.
+        producerLock.writeLock().lock();
+        try {
+            currentProducer = producer;
+            producer = null;
+        } finally {
+            producerLock.writeLock().unlock();
+        }
         //close producer
-        if (producer != null) {
-            producer.close();
+        if (currentProducer != null) {
+            currentProducer.close(KafkaEventAdapterConstants.PRODUCER_CLOSE_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -166,24 +182,40 @@ public class KafkaEventAdapter implements OutputEventAdapter {
         return false;
     }
 
+    private static void putProperty(Properties props, Map<String, String> properties, String key,
+                                    String defaultValue) {
+        putProperty(props, properties, key, key, defaultValue);
+    }
+
+    private static void putProperty(Properties props, Map<String, String> properties, String key, String producerKey,
+                                    String defaultValue) {
+        String value = properties != null ? properties.get(key) : null;
+        if (value == null || value.trim().isEmpty()) {
+            value = defaultValue;
+        }
+        props.put(producerKey, value.trim());
+    }
 
-    class KafkaSender implements Runnable {
+    /**
+     * Accounts the events the producer failed to deliver. Timeouts mean the broker is not reachable or can not keep
+     * up, which suspends the adapter on the next publish.
+     */
+    private class DeliveryCallback implements Callback {
 
-        String topic;
-        Object message;
+        private final Object message;
 
-        KafkaSender(String topic, Object message) {
-            this.topic = topic;
+        DeliveryCallback(Object message) {
             this.message = message;
         }
 
         @Override
-        public void run() {
-            try {
-                KeyedMessage<String, Object> data = new KeyedMessage<String, Object>(topic, message.toString());
-                producer.send(data);
-            } catch (Throwable e) {
-                log.error("Unexpected error when sending event via Kafka Output Adatper:" + e.getMessage(), e);
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            if (exception != null) {
+                if (exception instanceof TimeoutException) {
+                    deliveryTimeout = exception;
+                }
+                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message,
+                        "Error while delivering event to Kafka", exception, log, tenantId);
             }
         }
     }
@@ -58,6 +58,33 @@ public class KafkaEventAdapterFactory extends OutputEventAdapterFactory {
         webKafkaConnect.setRequired(true);
         propertyList.add(webKafkaConnect);
 
+        Property lingerMs = new Property(KafkaEventAdapterConstants.ADAPTOR_LINGER_MS);
+        lingerMs.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_LINGER_MS));
+        lingerMs.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_LINGER_MS_HINT));
+        lingerMs.setDefaultValue(KafkaEventAdapterConstants.DEFAULT_LINGER_MS);
+        propertyList.add(lingerMs);
+
+        Property batchSize = new Property(KafkaEventAdapterConstants.ADAPTOR_BATCH_SIZE);
+        batchSize.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_BATCH_SIZE));
+        batchSize.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_BATCH_SIZE_HINT));
+        batchSize.setDefaultValue(KafkaEventAdapterConstants.DEFAULT_BATCH_SIZE);
+        propertyList.add(batchSize);
+
+        Property compressionType = new Property(KafkaEventAdapterConstants.ADAPTOR_COMPRESSION_TYPE);
+        compressionType.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_COMPRESSION_TYPE));
+        compressionType.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_COMPRESSION_TYPE_HINT));
+        compressionType.setOptions(KafkaEventAdapterConstants.COMPRESSION_TYPES);
+        compressionType.setDefaultValue(KafkaEventAdapterConstants.DEFAULT_COMPRESSION_TYPE);
+        propertyList.add(compressionType);
+
+        Property maxInFlightRequests = new Property(KafkaEventAdapterConstants.ADAPTOR_MAX_IN_FLIGHT_REQUESTS);
+        maxInFlightRequests.setDisplayName(
+                resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_MAX_IN_FLIGHT_REQUESTS));
+        maxInFlightRequests.setHint(
+                resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_MAX_IN_FLIGHT_REQUESTS_HINT));
+        maxInFlightRequests.setDefaultValue(KafkaEventAdapterConstants.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+        propertyList.add(maxInFlightRequests);
+
         Property optionConfigProperties = new Property(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES);
         optionConfigProperties.setDisplayName(
                 resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES));
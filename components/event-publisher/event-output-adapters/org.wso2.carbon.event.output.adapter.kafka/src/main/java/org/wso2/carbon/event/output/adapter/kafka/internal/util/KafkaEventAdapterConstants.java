@@ -22,18 +22,31 @@ public class KafkaEventAdapterConstants {
     private KafkaEventAdapterConstants() {
     }
 
-    public static final int ADAPTER_MIN_THREAD_POOL_SIZE = 8;
-    public static final int ADAPTER_MAX_THREAD_POOL_SIZE = 100;
-    public static final int ADAPTER_EXECUTOR_JOB_QUEUE_SIZE = 2000;
-    public static final long DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS = 20000;
-    public static final String ADAPTER_MIN_THREAD_POOL_SIZE_NAME = "minThread";
-    public static final String ADAPTER_MAX_THREAD_POOL_SIZE_NAME = "maxThread";
-    public static final String ADAPTER_KEEP_ALIVE_TIME_NAME = "keepAliveTimeInMillis";
-    public static final String ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME = "jobQueueSize";
+    public static final String ADAPTER_MAX_BLOCK_TIME_NAME = "maxBlockTimeInMillis";
+    public static final String ADAPTER_BUFFER_MEMORY_NAME = "bufferMemory";
+    public static final long DEFAULT_MAX_BLOCK_TIME_IN_MILLIS = 10000;
+    public static final long DEFAULT_BUFFER_MEMORY = 33554432;
+    public static final long PRODUCER_CLOSE_TIMEOUT_IN_MILLIS = 10000;
     public final static String ADAPTOR_TYPE_KAFKA = "kafka";
     public final static String ADAPTOR_PUBLISH_TOPIC = "topic";
     public final static String ADAPTOR_META_BROKER_LIST = "meta.broker.list";
     public final static String ADAPTOR_META_BROKER_LIST_HINT = "meta.broker.list.hint";
+    public final static String ADAPTOR_LINGER_MS = "linger.ms";
+    public final static String ADAPTOR_LINGER_MS_HINT = "linger.ms.hint";
+    public final static String ADAPTOR_BATCH_SIZE = "batch.size";
+    public final static String ADAPTOR_BATCH_SIZE_HINT = "batch.size.hint";
+    public final static String ADAPTOR_COMPRESSION_TYPE = "compression.type";
+    public final static String ADAPTOR_COMPRESSION_TYPE_HINT = "compression.type.hint";
+    public final static String ADAPTOR_MAX_IN_FLIGHT_REQUESTS = "max.in.flight.requests.per.connection";
+    public final static String ADAPTOR_MAX_IN_FLIGHT_REQUESTS_HINT = "max.in.flight.requests.per.connection.hint";
+    public final static String DEFAULT_LINGER_MS = "5";
+    public final static String DEFAULT_BATCH_SIZE = "16384";
+    public final static String DEFAULT_COMPRESSION_TYPE = "none";
+    public final static String DEFAULT_MAX_IN_FLIGHT_REQUESTS = "5";
+    public final static String[] COMPRESSION_TYPES = {"none", "gzip", "snappy", "lz4"};
+    public final static String PRODUCER_BOOTSTRAP_SERVERS = "bootstrap.servers";
+    public final static String PRODUCER_MAX_BLOCK_MS = "max.block.ms";
+    public final static String PRODUCER_BUFFER_MEMORY = "buffer.memory";
     public final static String ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES = "optional.configuration";
     public final static String ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES_HINT = "optional.configuration.hint";
     public static final String HEADER_SEPARATOR = ",";
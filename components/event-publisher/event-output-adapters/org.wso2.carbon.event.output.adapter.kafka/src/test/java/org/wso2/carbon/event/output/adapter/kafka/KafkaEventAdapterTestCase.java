@@ -0,0 +1,209 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.kafka;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+import org.wso2.carbon.event.output.adapter.kafka.internal.util.KafkaEventAdapterConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class KafkaEventAdapterTestCase {
+
+    private static final String TOPIC = "events";
+    private static final long TIMEOUT = 10000;
+
+    private final Map<String, String> dynamicProperties =
+            Collections.singletonMap(KafkaEventAdapterConstants.ADAPTOR_PUBLISH_TOPIC, TOPIC);
+
+    private TestProducer producer;
+    private KafkaEventAdapter adapter;
+
+    @Before
+    public void setUp() {
+        OutputEventAdapterConfiguration configuration = new OutputEventAdapterConfiguration();
+        configuration.setName("test");
+        Map<String, String> staticProperties = new HashMap<String, String>();
+        staticProperties.put(KafkaEventAdapterConstants.ADAPTOR_META_BROKER_LIST, "localhost:9092");
+        configuration.setStaticProperties(staticProperties);
+        adapter = new KafkaEventAdapter(configuration, null) {
+            @Override
+            Producer<String, String> createProducer(Properties props) {
+                producer = new TestProducer();
+                return producer;
+            }
+        };
+        adapter.connect();
+    }
+
+    @Test
+    public void testPublish() {
+        publish("a", "b");
+        producer.completeNext();
+        producer.completeNext();
+        Assert.assertEquals(Arrays.asList("a", "b"), sentValues());
+        Assert.assertEquals(TOPIC, producer.history().get(0).topic());
+    }
+
+    @Test
+    public void testDeliveryTimeoutSuspendsAdapter() {
+        publish("a");
+        producer.errorNext(new TimeoutException("Expiring records"));
+        try {
+            publish("b");
+            Assert.fail("Publishing after a delivery timeout must fail");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // reconnecting resumes publishing
+        adapter.disconnect();
+        adapter.connect();
+        publish("c");
+        Assert.assertEquals(Collections.singletonList("c"), sentValues());
+    }
+
+    @Test
+    public void testSendTimeout() {
+        // the buffer is full or the topic metadata is not available within max.block.ms
+        producer.sendTimeout = true;
+        try {
+            publish("a");
+            Assert.fail("A send timeout must be reported as connection unavailable");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testPublishAfterDisconnect() {
+        adapter.disconnect();
+        Assert.assertTrue(producer.closed);
+        try {
+            publish("a");
+            Assert.fail("Publishing after disconnect must fail");
+        } catch (ConnectionUnavailableException e) {
+            // expected, the adapter is reconnected by the runtime
+        }
+        Assert.assertTrue(producer.history().isEmpty());
+    }
+
+    @Test
+    public void testDisconnectWaitsForPublish() throws Exception {
+        producer.blockSend();
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                publish("a");
+            }
+        });
+        publisher.start();
+        Assert.assertTrue(producer.sendStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        Thread disconnector = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                adapter.disconnect();
+            }
+        });
+        disconnector.start();
+        disconnector.join(200);
+        Assert.assertFalse("The producer must not be closed while a publish sends through it", producer.closed);
+
+        producer.sendReleased.countDown();
+        publisher.join(TIMEOUT);
+        disconnector.join(TIMEOUT);
+        Assert.assertTrue(producer.closed);
+        Assert.assertEquals(Collections.singletonList("a"), sentValues());
+    }
+
+    private void publish(String... events) {
+        for (String event : events) {
+            adapter.publish(event, dynamicProperties);
+        }
+    }
+
+    private List<String> sentValues() {
+        List<String> values = new ArrayList<String>();
+        for (ProducerRecord<String, String> record : producer.history()) {
+            values.add(record.value());
+        }
+        return values;
+    }
+
+    /**
+     * Producer which completes the sends when the test says so, and whose sends can time out or be held back.
+     */
+    private static class TestProducer extends MockProducer<String, String> {
+
+        private volatile boolean sendTimeout;
+        private volatile boolean closed;
+        private volatile CountDownLatch sendStarted = new CountDownLatch(0);
+        private volatile CountDownLatch sendReleased = new CountDownLatch(0);
+
+        private TestProducer() {
+            super(false, new StringSerializer(), new StringSerializer());
+        }
+
+        private void blockSend() {
+            sendStarted = new CountDownLatch(1);
+            sendReleased = new CountDownLatch(1);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, String> record, Callback callback) {
+            sendStarted.countDown();
+            try {
+                sendReleased.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Interrupted", e);
+            }
+            if (closed) {
+                throw new IllegalStateException("Cannot send after the producer is closed.");
+            }
+            if (sendTimeout) {
+                throw new TimeoutException("Failed to allocate memory within the configured max blocking time");
+            }
+            return super.send(record, callback);
+        }
+
+        @Override
+        public void close(long timeout, TimeUnit timeUnit) {
+            closed = true;
+        }
+    }
+}
@@ -20,7 +20,6 @@ package org.wso2.carbon.event.output.adapter.mqtt;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
-import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapter;
 import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
@@ -30,10 +29,6 @@ import org.wso2.carbon.event.output.adapter.mqtt.internal.util.MQTTBrokerConnect
 import org.wso2.carbon.event.output.adapter.mqtt.internal.util.MQTTEventAdapterConstants;
 
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Output MQTTEventAdapter will be used to publish events with MQTT protocol to specified broker and topic.
@@ -44,8 +39,11 @@ public class MQTTEventAdapter implements OutputEventAdapter {
     private Map<String, String> globalProperties;
     private MQTTAdapterPublisher mqttAdapterPublisher;
     private int connectionKeepAliveInterval;
+    private int maxInflight;
+    private int reconnectBufferSize;
+    private long reconnectInterval;
+    private long publishTimeout;
     private String qos;
-    private static ThreadPoolExecutor threadPoolExecutor;
     private static final Log log = LogFactory.getLog(MQTTEventAdapter.class);
     private int tenantId;
 
@@ -72,42 +70,32 @@ public class MQTTEventAdapter implements OutputEventAdapter {
 
         tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
 
-        //ThreadPoolExecutor will be assigned  if it is null
-        if (threadPoolExecutor == null) {
-            int minThread;
-            int maxThread;
-            int jobQueSize;
-            long defaultKeepAliveTime;
-
-            //If global properties are available those will be assigned else constant values will be assigned
-            if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME) != null) {
-                minThread = Integer.parseInt(globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MIN_THREAD_POOL_SIZE_NAME));
-            } else {
-                minThread = MQTTEventAdapterConstants.DEFAULT_MIN_THREAD_POOL_SIZE;
-            }
-
-            if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME) != null) {
-                maxThread = Integer.parseInt(globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MAX_THREAD_POOL_SIZE_NAME));
-            } else {
-                maxThread = MQTTEventAdapterConstants.DEFAULT_MAX_THREAD_POOL_SIZE;
-            }
+        //If global properties are available those will be assigned else constant values will be assigned
+        if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MAX_INFLIGHT_NAME) != null) {
+            maxInflight = Integer.parseInt(globalProperties.get(MQTTEventAdapterConstants.ADAPTER_MAX_INFLIGHT_NAME));
+        } else {
+            maxInflight = MQTTEventAdapterConstants.DEFAULT_MAX_INFLIGHT;
+        }
 
-            if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME) != null) {
-                defaultKeepAliveTime = Integer.parseInt(globalProperties.get(
-                        MQTTEventAdapterConstants.ADAPTER_KEEP_ALIVE_TIME_NAME));
-            } else {
-                defaultKeepAliveTime = MQTTEventAdapterConstants.DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS;
-            }
+        if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_RECONNECT_BUFFER_SIZE_NAME) != null) {
+            reconnectBufferSize = Integer.parseInt(globalProperties.get(
+                    MQTTEventAdapterConstants.ADAPTER_RECONNECT_BUFFER_SIZE_NAME));
+        } else {
+            reconnectBufferSize = MQTTEventAdapterConstants.DEFAULT_RECONNECT_BUFFER_SIZE;
+        }
 
-            if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME) != null) {
-                jobQueSize = Integer.parseInt(globalProperties.get(
-                        MQTTEventAdapterConstants.ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME));
-            } else {
-                jobQueSize = MQTTEventAdapterConstants.DEFAULT_EXECUTOR_JOB_QUEUE_SIZE;
-            }
+        if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_RECONNECT_INTERVAL_NAME) != null) {
+            reconnectInterval = Long.parseLong(globalProperties.get(
+                    MQTTEventAdapterConstants.ADAPTER_RECONNECT_INTERVAL_NAME));
+        } else {
+            reconnectInterval = MQTTEventAdapterConstants.DEFAULT_RECONNECT_INTERVAL_IN_MILLIS;
+        }
 
-            threadPoolExecutor = new ThreadPoolExecutor(minThread, maxThread, defaultKeepAliveTime,
-                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(jobQueSize));
+        if (globalProperties.get(MQTTEventAdapterConstants.ADAPTER_PUBLISH_TIMEOUT_NAME) != null) {
+            publishTimeout = Long.parseLong(globalProperties.get(
+                    MQTTEventAdapterConstants.ADAPTER_PUBLISH_TIMEOUT_NAME));
+        } else {
+            publishTimeout = MQTTEventAdapterConstants.DEFAULT_PUBLISH_TIMEOUT_IN_MILLIS;
         }
     }
 
@@ -127,35 +115,33 @@ public class MQTTEventAdapter implements OutputEventAdapter {
                                 .get(MQTTEventAdapterConstants.ADAPTER_CONF_PASSWORD),
                         connectionKeepAliveInterval,
                         eventAdapterConfiguration.getStaticProperties()
-                                .get(MQTTEventAdapterConstants.ADAPTER_CONF_CLEAN_SESSION)
+                                .get(MQTTEventAdapterConstants.ADAPTER_CONF_CLEAN_SESSION),
+                        maxInflight, reconnectBufferSize, reconnectInterval, publishTimeout
                 );
 
         String clientId = eventAdapterConfiguration.getStaticProperties().get(MQTTEventAdapterConstants.ADAPTER_CONF_CLIENTID);
 
         qos = eventAdapterConfiguration.getStaticProperties().get(MQTTEventAdapterConstants.ADAPTER_MESSAGE_QOS);
-        mqttAdapterPublisher = new MQTTAdapterPublisher(mqttBrokerConnectionConfiguration, clientId);
+        mqttAdapterPublisher = new MQTTAdapterPublisher(mqttBrokerConnectionConfiguration, clientId,
+                eventAdapterConfiguration.getName(), tenantId);
     }
 
     @Override
     public void publish(Object message, Map<String, String> dynamicProperties) {
 
         String topic = dynamicProperties.get(MQTTEventAdapterConstants.ADAPTER_MESSAGE_TOPIC);
-        try {
-            threadPoolExecutor.submit(new MQTTSender(topic, message));
-        } catch (RejectedExecutionException e) {
-            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Job queue is full", e, log, tenantId);
+        if (qos == null) {
+            mqttAdapterPublisher.publish(message, topic);
+        } else {
+            mqttAdapterPublisher.publish(Integer.parseInt(qos), message, topic);
         }
     }
 
     @Override
     public void disconnect() {
-        try {
-            if (mqttAdapterPublisher != null) {
-                mqttAdapterPublisher.close();
-                mqttAdapterPublisher = null;
-            }
-        } catch (OutputEventAdapterException e) {
-            log.error("Exception when closing the mqtt publisher connection on Output MQTT Adapter '" + eventAdapterConfiguration.getName() + "'", e);
+        if (mqttAdapterPublisher != null) {
+            mqttAdapterPublisher.close();
+            mqttAdapterPublisher = null;
         }
     }
 
@@ -168,29 +154,4 @@ public class MQTTEventAdapter implements OutputEventAdapter {
     public boolean isPolled() {
         return false;
     }
-
-    class MQTTSender implements Runnable {
-
-        String topic;
-        Object message;
-
-        MQTTSender(String topic, Object message) {
-            this.topic = topic;
-            this.message = message;
-        }
-
-        @Override
-        public void run() {
-            try {
-                if (qos == null) {
-                    mqttAdapterPublisher.publish(message.toString(), topic);
-                } else {
-                    mqttAdapterPublisher.publish(Integer.parseInt(qos), message.toString(), topic);
-                }
-            } catch (Throwable t) {
-                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, null, t, log, tenantId);
-
-            }
-        }
-    }
 }
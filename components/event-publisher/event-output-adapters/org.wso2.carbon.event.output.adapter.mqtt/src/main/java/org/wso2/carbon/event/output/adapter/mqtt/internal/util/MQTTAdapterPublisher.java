@@ -19,107 +19,128 @@ package org.wso2.carbon.event.output.adapter.mqtt.internal.util;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
 import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
-import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterException;
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class MQTTAdapterPublisher {
+/**
+ * Publishes the events of an output adapter over the pooled MQTT connection of its broker. Delivery
+ * is asynchronous, the events which the broker fails to acknowledge are dropped and counted. The
+ * counts are registered as an MBean until the publisher is closed.
+ */
+public class MQTTAdapterPublisher implements MQTTAdapterPublisherMBean {
 
     private static final Log log = LogFactory.getLog(MQTTAdapterPublisher.class);
-    private MqttClient mqttClient;
-
-    public MQTTAdapterPublisher(MQTTBrokerConnectionConfiguration mqttBrokerConnectionConfiguration, String clientId) {
-
-        if (clientId == null || clientId.trim().isEmpty()) {
-            clientId = MqttClient.generateClientId();
+    private final SharedMQTTClient mqttClient;
+    private final String adapterName;
+    private final int tenantId;
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public MQTTAdapterPublisher(MQTTBrokerConnectionConfiguration mqttBrokerConnectionConfiguration, String clientId,
+                                String adapterName, int tenantId) {
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+        try {
+            mqttClient = MQTTClientPool.acquire(mqttBrokerConnectionConfiguration, clientId, tenantId);
+        } catch (MqttException e) {
+            log.error("Error occurred when constructing MQTT client for broker url : "
+                    + mqttBrokerConnectionConfiguration.getBrokerUrl(), e);
+            throw new OutputEventAdapterRuntimeException(e);
         }
+        registerMBean();
+    }
 
-        boolean cleanSession = mqttBrokerConnectionConfiguration.isCleanSession();
-        int keepAlive = mqttBrokerConnectionConfiguration.getKeepAlive();
+    MQTTAdapterPublisher(SharedMQTTClient mqttClient, String adapterName, int tenantId) {
+        this.mqttClient = mqttClient;
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+    }
 
-        //SORTING messages until the server fetches them
-        String temp_directory = System.getProperty(MQTTEventAdapterConstants.ADAPTER_TEMP_DIRECTORY_NAME);
-        MqttDefaultFilePersistence dataStore = new MqttDefaultFilePersistence(temp_directory);
+    /**
+     * Publishes the event without waiting for the broker to acknowledge it.
+     *
+     * @throws ConnectionUnavailableException if the broker has been unreachable for longer than the
+     *                                        reconnect buffer can hold
+     */
+    public void publish(int qos, Object event, String topic) {
+        mqttClient.publish(new SharedMQTTClient.PendingMessage(this, event, topic, event.toString().getBytes(), qos));
+    }
 
-        try {
-            // Construct the connection options object that contains connection parameters
-            // such as cleanSession and LWT
-            MqttConnectOptions connectionOptions = new MqttConnectOptions();
-            connectionOptions.setCleanSession(cleanSession);
-            connectionOptions.setKeepAliveInterval(keepAlive);
-            if (mqttBrokerConnectionConfiguration.getBrokerPassword() != null) {
-                connectionOptions
-                        .setPassword(mqttBrokerConnectionConfiguration.getBrokerPassword().toCharArray());
-            }
-            if (mqttBrokerConnectionConfiguration.getBrokerUsername() != null) {
-                connectionOptions.setUserName(mqttBrokerConnectionConfiguration.getBrokerUsername());
-            }
+    public void publish(Object event, String topic) {
+        publish(MQTTEventAdapterConstants.DEFAULT_MESSAGE_QOS, event, topic);
+    }
 
-            // Construct an MQTT blocking mode client
-            mqttClient = new MqttClient(mqttBrokerConnectionConfiguration.getBrokerUrl(), clientId,
-                    dataStore);
-            mqttClient.connect(connectionOptions);
+    void onDelivered() {
+        deliveredCount.incrementAndGet();
+    }
 
-        } catch (MqttException e) {
-            log.error("Error occurred when constructing MQTT client for broker url : "
-                    + mqttBrokerConnectionConfiguration.getBrokerUrl(), e);
-            handleException(e);
+    void onDeliveryFailure(Object event, String message, Throwable e) {
+        failedCount.incrementAndGet();
+        if (e != null) {
+            EventAdapterUtil.logAndDrop(adapterName, event, message, e, log, tenantId);
+        } else {
+            EventAdapterUtil.logAndDrop(adapterName, event, message, log, tenantId);
         }
-
     }
 
-    public void publish(int qos, String payload, String topic) {
-        try {
-            // Create and configure a message
-            MqttMessage message = new MqttMessage(payload.getBytes());
-            message.setQos(qos);
+    @Override
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
 
-            // Send the message to the server, control is not returned until
-            // it has been delivered to the server meeting the specified
-            // quality of service.
-            mqttClient.publish(topic, message);
+    @Override
+    public long getFailedCount() {
+        return failedCount.get();
+    }
 
-        } catch (MqttException e) {
-            log.error("Error occurred when publishing message for MQTT server : "
-                    + mqttClient.getServerURI(), e);
-            handleException(e);
+    public void close() {
+        unregisterMBean();
+        MQTTClientPool.release(mqttClient);
+        if (log.isDebugEnabled()) {
+            log.debug("MQTT publisher of Output Adapter '" + adapterName + "' closed, " + deliveredCount.get()
+                    + " events delivered, " + failedCount.get() + " events dropped");
         }
     }
 
-    public void publish(String payload, String topic) {
+    private void registerMBean() {
         try {
-            // Create and configure a message
-            MqttMessage message = new MqttMessage(payload.getBytes());
-            mqttClient.publish(topic, message);
-        } catch (MqttException e) {
-            log.error("Error occurred when publishing message for MQTT server : "
-                    + mqttClient.getServerURI(), e);
-            handleException(e);
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(this, name);
+        } catch (Exception e) {
+            log.warn("Error registering the statistics MBean of MQTT output adapter '" + adapterName + "'", e);
         }
     }
 
-    public void close() throws OutputEventAdapterException {
+    private void unregisterMBean() {
         try {
-            mqttClient.disconnect(1000);
-            mqttClient.close();
-        } catch (MqttException e) {
-            throw new OutputEventAdapterException(e);
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Error un-registering the statistics MBean of MQTT output adapter '" + adapterName + "'", e);
         }
     }
 
-    private void handleException(MqttException e) {
-        //Check for Client not connected exception code and throw ConnectionUnavailableException
-        if (e.getReasonCode() == 32104) {
-            throw new ConnectionUnavailableException(e);
-        } else {
-            throw new OutputEventAdapterRuntimeException(e);
+    private ObjectName getObjectName() throws Exception {
+        String jmxAgentName = System.getProperty("jmx.agent.name");
+        if (jmxAgentName == null || "".equals(jmxAgentName)) {
+            jmxAgentName = "org.wso2.carbon.event";
         }
+        return new ObjectName(jmxAgentName + ":Type=MQTTOutputAdapter,Tenant=" + tenantId + ",Name=" +
+                ObjectName.quote(adapterName));
     }
 
 }
@@ -24,6 +24,10 @@ public class MQTTBrokerConnectionConfiguration {
     private String brokerUrl;
     private boolean cleanSession = true;
     private int keepAlive;
+    private int maxInflight;
+    private int reconnectBufferSize;
+    private long reconnectInterval;
+    private long publishTimeout;
 
     public String getBrokerPassword() {
         return brokerPassword;
@@ -45,12 +49,34 @@ public class MQTTBrokerConnectionConfiguration {
         return keepAlive;
     }
 
+    public int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public int getReconnectBufferSize() {
+        return reconnectBufferSize;
+    }
+
+    public long getReconnectInterval() {
+        return reconnectInterval;
+    }
+
+    public long getPublishTimeout() {
+        return publishTimeout;
+    }
+
     public MQTTBrokerConnectionConfiguration(String brokerUrl, String brokerUsername,
-                                             String brokerPassword, int keepAlive, String cleanSession) {
+                                             String brokerPassword, int keepAlive, String cleanSession,
+                                             int maxInflight, int reconnectBufferSize, long reconnectInterval,
+                                             long publishTimeout) {
         this.brokerUsername = brokerUsername;
         this.brokerPassword = brokerPassword;
         this.brokerUrl = brokerUrl;
         this.keepAlive = keepAlive;
+        this.maxInflight = maxInflight;
+        this.reconnectBufferSize = reconnectBufferSize;
+        this.reconnectInterval = reconnectInterval;
+        this.publishTimeout = publishTimeout;
 
         if (cleanSession != null) {
             this.cleanSession = Boolean.parseBoolean(cleanSession);
@@ -0,0 +1,87 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.mqtt.internal.util;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pool of the MQTT connections shared by the output adapters, keyed by the tenant and the connection
+ * configuration, so that adapters publishing to the same broker do not open a connection each.
+ */
+public final class MQTTClientPool {
+
+    private static final Map<String, SharedMQTTClient> clients = new HashMap<String, SharedMQTTClient>();
+    private static ScheduledExecutorService reconnectScheduler;
+
+    private MQTTClientPool() {
+    }
+
+    /**
+     * Returns the connection of the configuration, creating it if no adapter is using it. Each call
+     * must be matched by a call to {@link #release(SharedMQTTClient)}.
+     *
+     * @param clientId the client id, a client id is generated for the connection if not specified
+     */
+    public static synchronized SharedMQTTClient acquire(MQTTBrokerConnectionConfiguration configuration,
+                                                        String clientId, int tenantId) throws MqttException {
+        if (clientId != null && clientId.trim().isEmpty()) {
+            clientId = null;
+        }
+        String key = tenantId + "\u0000" + configuration.getBrokerUrl() + "\u0000" + configuration.getBrokerUsername()
+                + "\u0000" + configuration.getBrokerPassword() + "\u0000" + configuration.isCleanSession()
+                + "\u0000" + clientId;
+        SharedMQTTClient client = clients.get(key);
+        if (client == null) {
+            if (reconnectScheduler == null) {
+                reconnectScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "MQTTOutputAdapter-Reconnect");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            client = new SharedMQTTClient(key, configuration,
+                    clientId != null ? clientId : MqttAsyncClient.generateClientId(), reconnectScheduler);
+            clients.put(key, client);
+        }
+        client.retain();
+        return client;
+    }
+
+    /**
+     * Releases the connection, which is closed once no adapter is using it.
+     */
+    public static void release(SharedMQTTClient client) {
+        synchronized (MQTTClientPool.class) {
+            if (client.release() > 0) {
+                return;
+            }
+            clients.remove(client.getKey());
+        }
+        client.close();
+    }
+}
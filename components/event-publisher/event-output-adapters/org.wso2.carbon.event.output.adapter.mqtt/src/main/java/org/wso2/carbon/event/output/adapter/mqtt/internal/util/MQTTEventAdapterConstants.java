@@ -40,14 +40,20 @@ public final class MQTTEventAdapterConstants {
     public static final String ADAPTER_CONF_CLIENTID = "clientId";
     public static final String ADAPTER_CONF_CLIENTID_HINT = "clientId.hint";
 
-    public static final int DEFAULT_MIN_THREAD_POOL_SIZE = 8;
-    public static final int DEFAULT_MAX_THREAD_POOL_SIZE = 100;
-    public static final int DEFAULT_EXECUTOR_JOB_QUEUE_SIZE = 2000;
-    public static final long DEFAULT_KEEP_ALIVE_TIME_IN_MILLIS = 20000;
-    public static final String ADAPTER_MIN_THREAD_POOL_SIZE_NAME = "minThread";
-    public static final String ADAPTER_MAX_THREAD_POOL_SIZE_NAME = "maxThread";
-    public static final String ADAPTER_KEEP_ALIVE_TIME_NAME = "keepAliveTimeInMillis";
-    public static final String ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME = "jobQueueSize";
+    public static final int DEFAULT_MESSAGE_QOS = 1;
+
+    public static final String ADAPTER_MAX_INFLIGHT_NAME = "maxInflightMessages";
+    public static final int DEFAULT_MAX_INFLIGHT = 100;
+    // Fixed in-flight window of Paho clients older than 1.0.2
+    public static final int DEFAULT_CLIENT_MAX_INFLIGHT = 10;
+    public static final String ADAPTER_RECONNECT_BUFFER_SIZE_NAME = "reconnectBufferSize";
+    public static final int DEFAULT_RECONNECT_BUFFER_SIZE = 10000;
+    public static final String ADAPTER_RECONNECT_INTERVAL_NAME = "reconnectIntervalInMillis";
+    public static final long DEFAULT_RECONNECT_INTERVAL_IN_MILLIS = 5000;
+    public static final String ADAPTER_PUBLISH_TIMEOUT_NAME = "publishTimeoutInMillis";
+    public static final long DEFAULT_PUBLISH_TIMEOUT_IN_MILLIS = 10000;
+    public static final long DISCONNECT_QUIESCE_TIMEOUT_IN_MILLIS = 1000;
+    public static final long FLUSH_THREAD_KEEP_ALIVE_IN_MILLIS = 60000;
 
 
 }
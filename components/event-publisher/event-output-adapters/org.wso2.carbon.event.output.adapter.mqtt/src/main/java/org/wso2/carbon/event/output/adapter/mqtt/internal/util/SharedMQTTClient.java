@@ -0,0 +1,388 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.mqtt.internal.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous MQTT connection shared by the output adapters publishing to the same broker with
+ * the same connection configuration.
+ * <p>
+ * At most max in-flight messages are sent without being acknowledged by the broker, publishers wait
+ * for the window for up to the publish timeout. While the connection is down, messages are kept in
+ * a bounded reconnect buffer and sent in order once the connection is re-established. When the
+ * buffer is full a {@link ConnectionUnavailableException} is thrown, so that the adapter is suspended.
+ * The buffer is flushed by a thread of the connection, as waiting for the in-flight window would
+ * otherwise hold up the reconnects of the other connections.
+ */
+public class SharedMQTTClient implements MqttCallback {
+
+    private static final Log log = LogFactory.getLog(SharedMQTTClient.class);
+
+    private final String key;
+    private final String brokerUrl;
+    private final MqttAsyncClient mqttClient;
+    private final MqttConnectOptions connectionOptions;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final ThreadPoolExecutor flushExecutor;
+    private final Semaphore inflightWindow;
+    private final int reconnectBufferSize;
+    private final long reconnectInterval;
+    private final long publishTimeout;
+    private final Deque<PendingMessage> reconnectBuffer = new ArrayDeque<PendingMessage>();
+    private final IMqttActionListener deliveryListener = new DeliveryListener();
+    private int references;
+    private boolean connected;
+    private boolean connecting;
+    private boolean reconnectScheduled;
+    private boolean flushing;
+    private boolean closed;
+
+    SharedMQTTClient(String key, MQTTBrokerConnectionConfiguration configuration, String clientId,
+                     ScheduledExecutorService reconnectScheduler) throws MqttException {
+        //Storing messages until the server acknowledges them
+        this(key, configuration, new MqttAsyncClient(configuration.getBrokerUrl(), clientId,
+                        new MqttDefaultFilePersistence(System.getProperty(
+                                MQTTEventAdapterConstants.ADAPTER_TEMP_DIRECTORY_NAME))), reconnectScheduler);
+    }
+
+    SharedMQTTClient(String key, MQTTBrokerConnectionConfiguration configuration, MqttAsyncClient mqttClient,
+                     ScheduledExecutorService reconnectScheduler) {
+        this.key = key;
+        this.brokerUrl = configuration.getBrokerUrl();
+        this.reconnectScheduler = reconnectScheduler;
+        this.reconnectBufferSize = configuration.getReconnectBufferSize();
+        this.reconnectInterval = configuration.getReconnectInterval();
+        this.publishTimeout = configuration.getPublishTimeout();
+
+        connectionOptions = new MqttConnectOptions();
+        connectionOptions.setCleanSession(configuration.isCleanSession());
+        connectionOptions.setKeepAliveInterval(configuration.getKeepAlive());
+        if (configuration.getBrokerPassword() != null) {
+            connectionOptions.setPassword(configuration.getBrokerPassword().toCharArray());
+        }
+        if (configuration.getBrokerUsername() != null) {
+            connectionOptions.setUserName(configuration.getBrokerUsername());
+        }
+        inflightWindow = new Semaphore(setMaxInflight(connectionOptions, configuration.getMaxInflight()));
+
+        flushExecutor = new ThreadPoolExecutor(1, 1, MQTTEventAdapterConstants.FLUSH_THREAD_KEEP_ALIVE_IN_MILLIS,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MQTTOutputAdapter-Flush-" + brokerUrl);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flushExecutor.allowCoreThreadTimeOut(true);
+
+        this.mqttClient = mqttClient;
+        mqttClient.setCallback(this);
+        connect();
+    }
+
+    /**
+     * The in-flight window of the MQTT client can only be configured from Paho 1.0.2 onwards, older
+     * clients reject publishes beyond their fixed window.
+     *
+     * @return the in-flight window used
+     */
+    private static int setMaxInflight(MqttConnectOptions connectionOptions, int maxInflight) {
+        try {
+            Method setMaxInflight = MqttConnectOptions.class.getMethod("setMaxInflight", int.class);
+            setMaxInflight.invoke(connectionOptions, maxInflight);
+            return maxInflight;
+        } catch (NoSuchMethodException e) {
+            if (maxInflight > MQTTEventAdapterConstants.DEFAULT_CLIENT_MAX_INFLIGHT) {
+                log.info("MQTT client does not support configuring the in-flight window, using "
+                        + MQTTEventAdapterConstants.DEFAULT_CLIENT_MAX_INFLIGHT + " in-flight messages");
+                return MQTTEventAdapterConstants.DEFAULT_CLIENT_MAX_INFLIGHT;
+            }
+            return maxInflight;
+        } catch (IllegalAccessException e) {
+            log.warn("Cannot configure the in-flight window of the MQTT client", e);
+            return Math.min(maxInflight, MQTTEventAdapterConstants.DEFAULT_CLIENT_MAX_INFLIGHT);
+        } catch (InvocationTargetException e) {
+            log.warn("Cannot configure the in-flight window of the MQTT client", e.getCause());
+            return Math.min(maxInflight, MQTTEventAdapterConstants.DEFAULT_CLIENT_MAX_INFLIGHT);
+        }
+    }
+
+    /**
+     * Publishes the message, or buffers it until the connection is re-established.
+     *
+     * @throws ConnectionUnavailableException if the connection is down and the reconnect buffer is full
+     */
+    void publish(PendingMessage message) {
+        synchronized (this) {
+            if (closed) {
+                throw new ConnectionUnavailableException("MQTT connection to " + brokerUrl + " is closed");
+            }
+            if (!connected || flushing) {
+                if (reconnectBuffer.size() >= reconnectBufferSize) {
+                    throw new ConnectionUnavailableException("MQTT connection to " + brokerUrl
+                            + " is unavailable and " + reconnectBuffer.size() + " messages are waiting to be sent");
+                }
+                reconnectBuffer.addLast(message);
+                return;
+            }
+        }
+        send(message);
+    }
+
+    private void send(PendingMessage message) {
+        try {
+            if (!inflightWindow.tryAcquire(publishTimeout, TimeUnit.MILLISECONDS)) {
+                message.publisher.onDeliveryFailure(message.event, "Timed out waiting for " +
+                        "the in-flight messages to be acknowledged by " + brokerUrl, null);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            message.publisher.onDeliveryFailure(message.event, "Interrupted while waiting for the " +
+                    "in-flight messages to be acknowledged by " + brokerUrl, e);
+            return;
+        }
+        try {
+            mqttClient.publish(message.topic, message.payload, message.qos, false, message, deliveryListener);
+        } catch (MqttException e) {
+            inflightWindow.release();
+            if (e.getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED) {
+                synchronized (this) {
+                    if (!closed) {
+                        reconnectBuffer.addFirst(message);
+                        onDisconnected(e);
+                        return;
+                    }
+                }
+            }
+            message.publisher.onDeliveryFailure(message.event, "Error publishing message to " + brokerUrl, e);
+        }
+    }
+
+    private synchronized void connect() {
+        reconnectScheduled = false;
+        if (closed || connected || connecting) {
+            return;
+        }
+        connecting = true;
+        try {
+            mqttClient.connect(connectionOptions, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    onConnected();
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    synchronized (SharedMQTTClient.this) {
+                        connecting = false;
+                    }
+                    onDisconnected(exception);
+                }
+            });
+        } catch (MqttException e) {
+            connecting = false;
+            onDisconnected(e);
+        }
+    }
+
+    private void onConnected() {
+        synchronized (this) {
+            connecting = false;
+            if (closed) {
+                return;
+            }
+            connected = true;
+            flushing = !reconnectBuffer.isEmpty();
+            if (log.isDebugEnabled()) {
+                log.debug("Connected to MQTT broker " + brokerUrl + ", " + reconnectBuffer.size()
+                        + " buffered messages");
+            }
+            flushExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends the buffered messages, messages published meanwhile are buffered behind them to keep the
+     * publishing order.
+     */
+    private void flush() {
+        while (true) {
+            PendingMessage message;
+            synchronized (this) {
+                if (!connected || closed) {
+                    return;
+                }
+                message = reconnectBuffer.pollFirst();
+                if (message == null) {
+                    flushing = false;
+                    return;
+                }
+            }
+            send(message);
+        }
+    }
+
+    private synchronized void onDisconnected(Throwable cause) {
+        boolean wasConnected = connected;
+        connected = false;
+        if (closed || connecting || reconnectScheduled) {
+            return;
+        }
+        reconnectScheduled = true;
+        if (wasConnected) {
+            log.warn("Connection to MQTT broker " + brokerUrl + " lost, reconnecting every " + reconnectInterval
+                    + " ms", cause);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Cannot connect to MQTT broker " + brokerUrl + ", retrying in " + reconnectInterval + " ms",
+                    cause);
+        }
+        reconnectScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                connect();
+            }
+        }, reconnectInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        onDisconnected(cause);
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) throws Exception {
+        // Only used for publishing
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // Deliveries are tracked by the delivery listener of each message
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    int retain() {
+        return ++references;
+    }
+
+    int release() {
+        return --references;
+    }
+
+    /**
+     * Closes the connection, dropping the messages in the reconnect buffer.
+     */
+    void close() {
+        Deque<PendingMessage> dropped;
+        synchronized (this) {
+            closed = true;
+            connected = false;
+            dropped = new ArrayDeque<PendingMessage>(reconnectBuffer);
+            reconnectBuffer.clear();
+        }
+        flushExecutor.shutdown();
+        for (PendingMessage message : dropped) {
+            message.publisher.onDeliveryFailure(message.event, "MQTT connection to " + brokerUrl
+                    + " closed before the message could be sent", null);
+        }
+        try {
+            if (mqttClient.isConnected()) {
+                mqttClient.disconnect(MQTTEventAdapterConstants.DISCONNECT_QUIESCE_TIMEOUT_IN_MILLIS)
+                        .waitForCompletion(MQTTEventAdapterConstants.DISCONNECT_QUIESCE_TIMEOUT_IN_MILLIS * 2);
+            }
+        } catch (MqttException e) {
+            log.warn("Error disconnecting from MQTT broker " + brokerUrl, e);
+        }
+        try {
+            mqttClient.close();
+        } catch (MqttException e) {
+            log.warn("Error closing MQTT client of broker " + brokerUrl, e);
+        }
+    }
+
+    /**
+     * Releases the in-flight window slot of a message once the broker acknowledged it, or it failed.
+     */
+    private class DeliveryListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            inflightWindow.release();
+            ((PendingMessage) asyncActionToken.getUserContext()).publisher.onDelivered();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            inflightWindow.release();
+            PendingMessage message = (PendingMessage) asyncActionToken.getUserContext();
+            message.publisher.onDeliveryFailure(message.event, "Error delivering message to " + brokerUrl,
+                    exception);
+        }
+    }
+
+    /**
+     * A message of an adapter to be published.
+     */
+    static class PendingMessage {
+        private final MQTTAdapterPublisher publisher;
+        private final Object event;
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+
+        PendingMessage(MQTTAdapterPublisher publisher, Object event, String topic, byte[] payload, int qos) {
+            this.publisher = publisher;
+            this.event = event;
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.mqtt.internal.util;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.output.adapter.core.exception.ConnectionUnavailableException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class SharedMQTTClientTestCase {
+
+    private static final String TOPIC = "events";
+    private static final int QOS = 1;
+    private static final long TIMEOUT = 10000;
+
+    private ScheduledExecutorService reconnectScheduler;
+    private StubMqttClient stubClient;
+    private SharedMQTTClient client;
+    private MQTTAdapterPublisher publisher;
+
+    @Before
+    public void setUp() throws MqttException {
+        reconnectScheduler = Executors.newSingleThreadScheduledExecutor();
+        stubClient = new StubMqttClient();
+    }
+
+    @After
+    public void tearDown() {
+        stubClient.connected = false;
+        client.close();
+        reconnectScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testBufferedMessagesAreSentInOrder() throws Exception {
+        createClient(2, 10, TIMEOUT);
+        publish("a", "b", "c");
+        Assert.assertTrue("Messages must not be sent before the connection is up", stubClient.published.isEmpty());
+
+        stubClient.completeConnect();
+        awaitPublished(2);
+        // the window is full, the remaining message is sent once a delivery is acknowledged
+        publish("d");
+        stubClient.acknowledge(2);
+        awaitPublished(4);
+        stubClient.acknowledge(2);
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), stubClient.published);
+        Assert.assertEquals(4, publisher.getDeliveredCount());
+        Assert.assertEquals(0, publisher.getFailedCount());
+    }
+
+    @Test
+    public void testFullReconnectBuffer() throws Exception {
+        createClient(10, 2, TIMEOUT);
+        publish("a", "b");
+        try {
+            publish("c");
+            Assert.fail("Publishing to a full reconnect buffer must fail");
+        } catch (ConnectionUnavailableException e) {
+            // expected, the adapter is suspended
+        }
+
+        stubClient.completeConnect();
+        awaitPublished(2);
+        Assert.assertEquals(Arrays.asList("a", "b"), stubClient.published);
+    }
+
+    @Test
+    public void testInflightWindowRelease() throws Exception {
+        createClient(2, 10, 100);
+        stubClient.completeConnect();
+        publish("a", "b");
+        // no slot is released in time, the message is dropped
+        publish("c");
+        Assert.assertEquals(Arrays.asList("a", "b"), stubClient.published);
+        Assert.assertEquals(1, publisher.getFailedCount());
+
+        stubClient.acknowledge(1);
+        publish("d");
+        Assert.assertEquals(Arrays.asList("a", "b", "d"), stubClient.published);
+
+        // a failed delivery releases its slot as well
+        stubClient.fail(1);
+        publish("e");
+        Assert.assertEquals(Arrays.asList("a", "b", "d", "e"), stubClient.published);
+        Assert.assertEquals(1, publisher.getDeliveredCount());
+        Assert.assertEquals(2, publisher.getFailedCount());
+    }
+
+    private void createClient(int maxInflight, int reconnectBufferSize, long publishTimeout) {
+        MQTTBrokerConnectionConfiguration configuration = new MQTTBrokerConnectionConfiguration(
+                "tcp://localhost:1883", null, null, MQTTEventAdapterConstants.DEFAULT_CONNECTION_KEEP_ALIVE_INTERVAL,
+                null, maxInflight, reconnectBufferSize, TIMEOUT, publishTimeout);
+        client = new SharedMQTTClient("test", configuration, stubClient, reconnectScheduler);
+        publisher = new MQTTAdapterPublisher(client, "test", -1234);
+    }
+
+    private void publish(String... events) {
+        for (String event : events) {
+            publisher.publish(QOS, event, TOPIC);
+        }
+    }
+
+    private void awaitPublished(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (stubClient.published.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out, published messages " + stubClient.published);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * MQTT client which records the published messages instead of sending them to a broker. The connection
+     * is established and the deliveries are acknowledged when the test says so.
+     */
+    private static class StubMqttClient extends MqttAsyncClient {
+
+        private final List<String> published = new CopyOnWriteArrayList<String>();
+        private final List<Delivery> inflight = new CopyOnWriteArrayList<Delivery>();
+        private volatile IMqttActionListener connectListener;
+        private volatile boolean connected;
+
+        private StubMqttClient() throws MqttException {
+            super("tcp://localhost:1883", "test", new MemoryPersistence());
+        }
+
+        @Override
+        public IMqttToken connect(MqttConnectOptions options, Object userContext, IMqttActionListener callback) {
+            connectListener = callback;
+            return null;
+        }
+
+        private void completeConnect() {
+            connected = true;
+            connectListener.onSuccess(null);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public IMqttDeliveryToken publish(String topic, byte[] payload, int qos, boolean retained,
+                                          Object userContext, IMqttActionListener callback) throws MqttException {
+            if (!connected) {
+                throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+            }
+            MqttDeliveryToken token = new MqttDeliveryToken(getClientId());
+            token.setUserContext(userContext);
+            inflight.add(new Delivery(token, callback));
+            published.add(new String(payload));
+            return token;
+        }
+
+        private void acknowledge(int count) {
+            for (int i = 0; i < count; i++) {
+                Delivery delivery = inflight.remove(0);
+                delivery.callback.onSuccess(delivery.token);
+            }
+        }
+
+        private void fail(int count) {
+            for (int i = 0; i < count; i++) {
+                Delivery delivery = inflight.remove(0);
+                delivery.callback.onFailure(delivery.token,
+                        new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Delivery {
+        private final IMqttToken token;
+        private final IMqttActionListener callback;
+
+        private Delivery(IMqttToken token, IMqttActionListener callback) {
+            this.token = token;
+            this.callback = callback;
+        }
+    }
+}
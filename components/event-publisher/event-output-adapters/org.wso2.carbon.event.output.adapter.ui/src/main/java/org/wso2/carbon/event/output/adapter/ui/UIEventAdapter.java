@@ -21,8 +21,6 @@ package org.wso2.carbon.event.output.adapter.ui;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.Event;
@@ -33,13 +31,20 @@ import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterExc
 import org.wso2.carbon.event.output.adapter.core.exception.OutputEventAdapterRuntimeException;
 import org.wso2.carbon.event.output.adapter.core.exception.TestConnectionNotSupportedException;
 import org.wso2.carbon.event.output.adapter.ui.internal.UIOutputCallbackControllerServiceImpl;
+import org.wso2.carbon.event.output.adapter.ui.internal.UISessionSender;
 import org.wso2.carbon.event.output.adapter.ui.internal.ds.UIEventAdaptorServiceInternalValueHolder;
 import org.wso2.carbon.event.output.adapter.ui.internal.util.UIEventAdapterConstants;
 
-import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -59,8 +64,13 @@ public class UIEventAdapter implements OutputEventAdapter {
     private int queueSize;
     private LinkedBlockingDeque<Object> streamSpecificEvents;
     private static ThreadPoolExecutor executorService;
+    private Executor sessionExecutor;
     private int tenantId;
     private boolean doLogDroppedMessage;
+    private int sessionQueueSize;
+    private int sessionDrainBatchSize;
+    private int conflationKeyIndex = -1;
+    private ConcurrentHashMap<String, UISessionSender> sessionSenders = new ConcurrentHashMap<String, UISessionSender>();
 
     public UIEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration, Map<String,
             String> globalProperties) {
@@ -69,6 +79,16 @@ public class UIEventAdapter implements OutputEventAdapter {
         this.doLogDroppedMessage = true;
     }
 
+    UIEventAdapter(OutputEventAdapterConfiguration eventAdapterConfiguration,
+                   UIOutputAuthorizationService authorizationService, Executor sessionExecutor, int sessionQueueSize,
+                   int sessionDrainBatchSize) {
+        this(eventAdapterConfiguration, new HashMap<String, String>());
+        this.authorizationService = authorizationService;
+        this.sessionExecutor = sessionExecutor;
+        this.sessionQueueSize = sessionQueueSize;
+        this.sessionDrainBatchSize = sessionDrainBatchSize;
+    }
+
     @Override
     public void init() throws OutputEventAdapterException {
 
@@ -113,6 +133,7 @@ public class UIEventAdapter implements OutputEventAdapter {
             executorService = new ThreadPoolExecutor(minThread, maxThread, defaultKeepAliveTime, TimeUnit.MILLISECONDS,
                     new LinkedBlockingQueue<Runnable>(jobQueSize));
         }
+        sessionExecutor = executorService;
 
         streamId = eventAdapterConfiguration.getOutputStreamIdOfWso2eventMessageFormat();
         if (streamId == null || streamId.isEmpty()) {
@@ -169,6 +190,22 @@ public class UIEventAdapter implements OutputEventAdapter {
         } else {
             queueSize = UIEventAdapterConstants.EVENTS_QUEUE_SIZE;
         }
+        sessionQueueSize = getIntProperty(UIEventAdapterConstants.ADAPTER_SESSION_QUEUE_SIZE_NAME,
+                UIEventAdapterConstants.SESSION_QUEUE_SIZE);
+        sessionDrainBatchSize = getIntProperty(UIEventAdapterConstants.ADAPTER_SESSION_DRAIN_BATCH_SIZE_NAME,
+                UIEventAdapterConstants.SESSION_DRAIN_BATCH_SIZE);
+
+        Map<String, String> staticProperties = eventAdapterConfiguration.getStaticProperties();
+        String conflationKeyIndexProperty = staticProperties != null ?
+                staticProperties.get(UIEventAdapterConstants.ADAPTER_CONFLATION_KEY_INDEX) : null;
+        if (conflationKeyIndexProperty != null && !conflationKeyIndexProperty.trim().isEmpty()) {
+            try {
+                conflationKeyIndex = Integer.parseInt(conflationKeyIndexProperty.trim());
+            } catch (NumberFormatException e) {
+                throw new OutputEventAdapterException("Invalid conflation key index '" + conflationKeyIndexProperty
+                        + "' for the ui event adapter \"" + eventAdapterConfiguration.getName() + "\"", e);
+            }
+        }
         //TODO: set and get the authorization service name
         authorizationService = UIEventAdaptorServiceInternalValueHolder.getAuthorizationService(null);
     }
@@ -193,48 +230,16 @@ public class UIEventAdapter implements OutputEventAdapter {
             streamSpecificEvents.removeFirst();
         }
 
+        /* the attribute values are kept in the order of the serialized event, for the session filters */
+        String[] attributeValues = new String[1 + getLength(event.getMetaData())
+                + getLength(event.getCorrelationData()) + getLength(event.getPayloadData())];
+        attributeValues[0] = String.valueOf(event.getTimeStamp());
         eventBuilder.append(event.getTimeStamp());
 
-        if (event.getMetaData() != null) {
-            eventBuilder.append(",");
-            Object[] metaData = event.getMetaData();
-            for (int i = 0; i < metaData.length; i++) {
-                eventBuilder.append("\"");
-                eventBuilder.append(metaData[i]);
-                eventBuilder.append("\"");
-                if (i != (metaData.length - 1)) {
-                    eventBuilder.append(",");
-                }
-            }
-        }
-
-        if (event.getCorrelationData() != null) {
-            Object[] correlationData = event.getCorrelationData();
-
-            eventBuilder.append(",");
-
-            for (int i = 0; i < correlationData.length; i++) {
-                eventBuilder.append("\"");
-                eventBuilder.append(correlationData[i]);
-                eventBuilder.append("\"");
-                if (i != (correlationData.length - 1)) {
-                    eventBuilder.append(",");
-                }
-            }
-        }
-
-        if (event.getPayloadData() != null) {
-            Object[] payloadData = event.getPayloadData();
-            eventBuilder.append(",");
-            for (int i = 0; i < payloadData.length; i++) {
-                eventBuilder.append("\"");
-                eventBuilder.append(payloadData[i]);
-                eventBuilder.append("\"");
-                if (i != (payloadData.length - 1)) {
-                    eventBuilder.append(",");
-                }
-            }
-        }
+        int index = 1;
+        index = appendAttributes(eventBuilder, event.getMetaData(), attributeValues, index);
+        index = appendAttributes(eventBuilder, event.getCorrelationData(), attributeValues, index);
+        appendAttributes(eventBuilder, event.getPayloadData(), attributeValues, index);
 
         eventBuilder.append("]");
         String eventString = eventBuilder.toString();
@@ -243,12 +248,80 @@ public class UIEventAdapter implements OutputEventAdapter {
         eventValues[UIEventAdapterConstants.INDEX_ONE] = System.currentTimeMillis();
         streamSpecificEvents.add(eventValues);
 
-        try {
-            executorService.execute(new WebSocketSender(eventString));
-        } catch (RejectedExecutionException e) {
-            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Job queue is full", e, log, tenantId);
+        UIOutputCallbackControllerServiceImpl uiOutputCallbackControllerServiceImpl =
+                UIEventAdaptorServiceInternalValueHolder.getUIOutputCallbackRegisterServiceImpl();
+        sendToSessions(uiOutputCallbackControllerServiceImpl.getSessions(tenantId, streamId), eventString,
+                attributeValues);
+    }
+
+    /**
+     * Queues the event to the send queues of the subscribed sessions which are authorized to receive it, and
+     * reconciles the send queues with the subscribed sessions by their id.
+     *
+     * @param sessions        - The sessions subscribed to the stream, may be null.
+     * @param eventString     - The serialized event.
+     * @param attributeValues - The attribute values of the event, in the order of the serialized event.
+     */
+    void sendToSessions(List<SessionHolder> sessions, String eventString, String[] attributeValues) {
+        if (sessions == null || sessions.isEmpty()) {
+            if (doLogDroppedMessage) {
+                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), eventString, "No clients registered",
+                        log, tenantId);
+                doLogDroppedMessage = false;
+            }
+            closeSessionSenders(sessions);
+            return;
         }
+        doLogDroppedMessage = true;
 
+        String conflationKey = null;
+        if (conflationKeyIndex >= 0 && conflationKeyIndex < attributeValues.length) {
+            conflationKey = attributeValues[conflationKeyIndex];
+        }
+        // counts the senders of the subscribed sessions, any other sender belongs to a session which is gone
+        int liveSenders = 0;
+        for (SessionHolder session : sessions) {
+            UISessionSender sessionSender = sessionSenders.get(session.getId());
+            if (sessionSender != null && sessionSender.getSession() != session) {
+                // the session reconnected with the same id, its old connection is not used anymore
+                if (sessionSenders.remove(session.getId(), sessionSender)) {
+                    sessionSender.close();
+                }
+                sessionSender = null;
+            }
+            if (sessionSender != null) {
+                liveSenders++;
+            }
+            try {
+                if (!authorizationService.authorizeSubscription(attributeValues, session.getFilterProps(),
+                        session.getUsername(), session.getTenantId())) {
+                    continue;
+                }
+            } catch (UIAdaptorException e) {
+                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), eventString,
+                        "Cannot authorize the subscription", e, log, tenantId);
+                continue;
+            }
+            if (sessionSender == null) {
+                sessionSender = new UISessionSender(session, eventAdapterConfiguration.getName(), tenantId,
+                        sessionQueueSize, sessionDrainBatchSize, sessionExecutor);
+                UISessionSender existingSender = sessionSenders.putIfAbsent(session.getId(), sessionSender);
+                if (existingSender != null) {
+                    sessionSender = existingSender;
+                }
+                liveSenders++;
+            }
+            try {
+                sessionSender.offer(eventString, conflationKey);
+            } catch (RejectedExecutionException e) {
+                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), eventString,
+                        "Job queue is full, the event is kept queued for session " + session.getId(), e, log,
+                        tenantId);
+            }
+        }
+        if (sessionSenders.size() > liveSenders) {
+            closeSessionSenders(sessions);
+        }
     }
 
     @Override
@@ -271,6 +344,7 @@ public class UIEventAdapter implements OutputEventAdapter {
         if (tenantSpecificStreamEventMap != null && streamId != null) {
             tenantSpecificStreamEventMap.remove(streamId);  //Removing the streamId and events registered for the output adapter
         }
+        closeSessionSenders(null);
     }
 
     @Override
@@ -278,49 +352,65 @@ public class UIEventAdapter implements OutputEventAdapter {
         return true;
     }
 
-    private class WebSocketSender implements Runnable {
-
-        private String message;
+    /**
+     * Returns the send queues of the dashboard sessions currently receiving events, which carry the per session lag
+     * and drop statistics.
+     */
+    public Collection<UISessionSender> getSessionSenders() {
+        return Collections.unmodifiableCollection(sessionSenders.values());
+    }
 
-        public WebSocketSender(String message) {
-            this.message = message;
+    /**
+     * Closes the send queues of the sessions which are no longer subscribed, matching the sessions by their id.
+     *
+     * @param activeSessions - The subscribed sessions, or null to close all the send queues.
+     */
+    private void closeSessionSenders(Collection<SessionHolder> activeSessions) {
+        Set<String> activeSessionIds = new HashSet<String>();
+        if (activeSessions != null) {
+            for (SessionHolder session : activeSessions) {
+                activeSessionIds.add(session.getId());
+            }
+        }
+        Iterator<Map.Entry<String, UISessionSender>> iterator = sessionSenders.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, UISessionSender> entry = iterator.next();
+            if (!activeSessionIds.contains(entry.getKey())) {
+                entry.getValue().close();
+                iterator.remove();
+            }
         }
+    }
 
-        /**
-         * When an object implementing interface <code>Runnable</code> is used
-         * to create a thread, starting the thread causes the object's
-         * <code>run</code> method to be called in that separately executing
-         * thread.
-         * <p/>
-         * The general contract of the method <code>run</code> is that it may
-         * take any action whatsoever.
-         *
-         * @see Thread#run()
-         */
-        @Override
-        public void run() {
-            UIOutputCallbackControllerServiceImpl uiOutputCallbackControllerServiceImpl = UIEventAdaptorServiceInternalValueHolder.getUIOutputCallbackRegisterServiceImpl();
-            CopyOnWriteArrayList<SessionHolder> sessions = uiOutputCallbackControllerServiceImpl.getSessions(tenantId, streamId);
-            if (sessions != null) {
-                doLogDroppedMessage = true;
-                for (SessionHolder session : sessions) {
-                    synchronized (session) {
-                        try {
-                            JSONArray eventJson = new JSONArray(message);
-                            if (authorizationService.authorizeSubscription(eventJson, session.getFilterProps(),
-                                    session.getUsername(), session.getTenantId())){
-                                session.sendText(message);
-                            }
-                        } catch (IOException | JSONException | UIAdaptorException e) {
-                            EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "Cannot send to endpoint", e, log, tenantId);
-                        }
-                    }
+    private int appendAttributes(StringBuilder eventBuilder, Object[] data, String[] attributeValues, int index) {
+        if (data != null) {
+            eventBuilder.append(",");
+            for (int i = 0; i < data.length; i++) {
+                String value = String.valueOf(data[i]);
+                attributeValues[index++] = value;
+                eventBuilder.append("\"");
+                eventBuilder.append(value);
+                eventBuilder.append("\"");
+                if (i != (data.length - 1)) {
+                    eventBuilder.append(",");
                 }
-            } else if (doLogDroppedMessage) {
-                EventAdapterUtil.logAndDrop(eventAdapterConfiguration.getName(), message, "No clients registered", log, tenantId);
-                doLogDroppedMessage = false;
             }
         }
+        return index;
     }
-}
 
+    private int getLength(Object[] data) {
+        return data != null ? data.length : 0;
+    }
+
+    private int getIntProperty(String name, int defaultValue) {
+        if (globalProperties.get(name) != null) {
+            try {
+                return Integer.parseInt(globalProperties.get(name));
+            } catch (NumberFormatException e) {
+                log.error("String does not have the appropriate format for conversion." + e.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -64,7 +64,16 @@ public class UIEventAdapterFactory extends OutputEventAdapterFactory {
 
     @Override
     public List<Property> getStaticPropertyList() {
-        return null;
+        List<Property> staticPropertyList = new ArrayList<Property>();
+
+        Property conflationKeyIndex = new Property(UIEventAdapterConstants.ADAPTER_CONFLATION_KEY_INDEX);
+        conflationKeyIndex.setDisplayName(
+                resourceBundle.getString(UIEventAdapterConstants.ADAPTER_CONFLATION_KEY_INDEX));
+        conflationKeyIndex.setHint(resourceBundle.getString(UIEventAdapterConstants.ADAPTER_CONFLATION_KEY_INDEX_HINT));
+        conflationKeyIndex.setRequired(false);
+        staticPropertyList.add(conflationKeyIndex);
+
+        return staticPropertyList;
     }
 
     @Override
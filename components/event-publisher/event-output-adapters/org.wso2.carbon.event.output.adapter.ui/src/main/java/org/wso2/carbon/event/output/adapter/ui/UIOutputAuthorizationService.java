@@ -19,6 +19,7 @@ package org.wso2.carbon.event.output.adapter.ui;/*
 import org.json.JSONArray;
 import org.wso2.carbon.databridge.commons.Event;
 
+import java.util.Arrays;
 import java.util.Map;
 
 public interface UIOutputAuthorizationService {
@@ -28,4 +29,14 @@ public interface UIOutputAuthorizationService {
     boolean authorizeSubscription(JSONArray eventJson, Map<Integer, String> filterProps,
                                   String username, int tenantId) throws UIAdaptorException;
 
+    /**
+     * Authorizes the subscription against the attribute values of an event, given in the order they appear in the
+     * serialized event, so the event need not be parsed again for each session. Implementations which only work
+     * on the JSON form are given a JSONArray built from the values.
+     */
+    default boolean authorizeSubscription(String[] eventValues, Map<Integer, String> filterProps,
+                                          String username, int tenantId) throws UIAdaptorException {
+        return authorizeSubscription(new JSONArray(Arrays.asList(eventValues)), filterProps, username, tenantId);
+    }
+
 }
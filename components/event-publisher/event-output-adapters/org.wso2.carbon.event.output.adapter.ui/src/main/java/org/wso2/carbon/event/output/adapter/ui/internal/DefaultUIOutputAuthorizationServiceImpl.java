@@ -23,6 +23,7 @@ import org.wso2.carbon.event.output.adapter.ui.UIAdaptorException;
 import org.wso2.carbon.event.output.adapter.ui.UIOutputAuthorizationService;
 import org.wso2.carbon.event.output.adapter.ui.internal.util.UIEventAdapterConstants;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 
@@ -50,4 +51,20 @@ public class DefaultUIOutputAuthorizationServiceImpl implements UIOutputAuthoriz
         }
         return true;
     }
+
+    @Override
+    public boolean authorizeSubscription(String[] eventValues, Map<Integer, String> filterProps,
+                                         String username, int tenantId) throws UIAdaptorException {
+        for (Map.Entry<Integer, String> aFilter : filterProps.entrySet()) {
+            int filterIndex = aFilter.getKey();
+            if (filterIndex < 0 || filterIndex >= eventValues.length) {
+                throw new UIAdaptorException("Unable validate the stream filter properties for event : "
+                        + Arrays.toString(eventValues) + ", no value at index " + filterIndex);
+            }
+            if (!eventValues[filterIndex].equalsIgnoreCase(aFilter.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ *
+ *  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.event.output.adapter.ui.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.output.adapter.core.EventAdapterUtil;
+import org.wso2.carbon.event.output.adapter.ui.SessionHolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded asynchronous send queue of a single dashboard session. Messages are drained by at most one task of the
+ * shared executor at a time, so a slow client only delays its own messages. Messages having the same conflation
+ * key replace each other while waiting in the queue, so a client that falls behind receives the latest values,
+ * and when the queue is full the oldest message is dropped.
+ */
+public class UISessionSender implements Runnable {
+
+    private static final Log log = LogFactory.getLog(UISessionSender.class);
+
+    private final SessionHolder session;
+    private final String adapterName;
+    private final int tenantId;
+    private final int maxQueueSize;
+    private final int drainBatchSize;
+    private final Executor executor;
+
+    /* keyed by the conflation key, or by a sequence number for the messages which are not conflated */
+    private final LinkedHashMap<Object, PendingMessage> pendingMessages = new LinkedHashMap<Object, PendingMessage>();
+    private long sequence;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong conflatedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile long lastLagMillis;
+    private volatile long maxLagMillis;
+
+    public UISessionSender(SessionHolder session, String adapterName, int tenantId, int maxQueueSize,
+                           int drainBatchSize, Executor executor) {
+        this.session = session;
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+        this.maxQueueSize = maxQueueSize;
+        this.drainBatchSize = drainBatchSize;
+        this.executor = executor;
+    }
+
+    public SessionHolder getSession() {
+        return session;
+    }
+
+    /**
+     * Queues a message to be sent to the session.
+     *
+     * @param message       - The serialized event.
+     * @param conflationKey - Key of the message for conflation, or null if the message must not be conflated.
+     * @throws RejectedExecutionException if the message is queued, but a task to send it could not be scheduled.
+     */
+    public void offer(String message, String conflationKey) {
+        if (closed) {
+            return;
+        }
+        synchronized (pendingMessages) {
+            if (conflationKey != null) {
+                PendingMessage pendingMessage = pendingMessages.get(conflationKey);
+                if (pendingMessage != null) {
+                    /* the latest value wins, and takes over the place of the pending one in the queue */
+                    pendingMessage.message = message;
+                    conflatedCount.incrementAndGet();
+                    return;
+                }
+            }
+            if (pendingMessages.size() >= maxQueueSize) {
+                Iterator<PendingMessage> iterator = pendingMessages.values().iterator();
+                iterator.next();
+                iterator.remove();
+                droppedCount.incrementAndGet();
+            }
+            Object key = conflationKey != null ? conflationKey : Long.valueOf(sequence++);
+            pendingMessages.put(key, new PendingMessage(message, System.currentTimeMillis()));
+        }
+        schedule();
+    }
+
+    /**
+     * Discards the pending messages, and stops accepting new ones.
+     */
+    public void close() {
+        closed = true;
+        synchronized (pendingMessages) {
+            pendingMessages.clear();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<PendingMessage> batch = new ArrayList<PendingMessage>(drainBatchSize);
+            synchronized (pendingMessages) {
+                Iterator<PendingMessage> iterator = pendingMessages.values().iterator();
+                while (iterator.hasNext() && batch.size() < drainBatchSize) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+            for (PendingMessage pendingMessage : batch) {
+                if (closed) {
+                    break;
+                }
+                send(pendingMessage);
+            }
+        } finally {
+            /* a failed drain must not keep the session from being scheduled again */
+            scheduled.set(false);
+        }
+        boolean hasPendingMessages;
+        synchronized (pendingMessages) {
+            hasPendingMessages = !pendingMessages.isEmpty();
+        }
+        if (hasPendingMessages && !closed) {
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                /* the pending messages are sent with the next scheduled drain of this session */
+                if (log.isDebugEnabled()) {
+                    log.debug("Cannot reschedule the sender of session " + session.getId() + ", " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void send(PendingMessage pendingMessage) {
+        try {
+            /* a session does not allow concurrent sends, and it is shared by the senders of all its streams */
+            synchronized (session) {
+                session.sendText(pendingMessage.message);
+            }
+            sentCount.incrementAndGet();
+            long lag = System.currentTimeMillis() - pendingMessage.queuedTime;
+            lastLagMillis = lag;
+            if (lag > maxLagMillis) {
+                maxLagMillis = lag;
+            }
+        } catch (IOException | RuntimeException e) {
+            failedCount.incrementAndGet();
+            EventAdapterUtil.logAndDrop(adapterName, pendingMessage.message, "Cannot send to endpoint", e, log,
+                    tenantId);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pendingMessages) {
+            return pendingMessages.size();
+        }
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getConflatedCount() {
+        return conflatedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the time the last sent message waited in the queue, in milliseconds.
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * Returns the longest time a sent message waited in the queue, in milliseconds.
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    private static class PendingMessage {
+
+        private String message;
+        private final long queuedTime;
+
+        private PendingMessage(String message, long queuedTime) {
+            this.message = message;
+            this.queuedTime = queuedTime;
+        }
+    }
+}
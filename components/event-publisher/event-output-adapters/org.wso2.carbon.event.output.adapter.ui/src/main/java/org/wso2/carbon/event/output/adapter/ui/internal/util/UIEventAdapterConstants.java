@@ -48,6 +48,14 @@ public class UIEventAdapterConstants {
     public static final String ADAPTER_EVENT_QUEUE_SIZE_NAME = "eventQueueSize";
     public static final int EVENTS_QUEUE_SIZE = 30;
 
+    public static final String ADAPTER_SESSION_QUEUE_SIZE_NAME = "sessionQueueSize";
+    public static final int SESSION_QUEUE_SIZE = 1000;
+    public static final String ADAPTER_SESSION_DRAIN_BATCH_SIZE_NAME = "sessionDrainBatchSize";
+    public static final int SESSION_DRAIN_BATCH_SIZE = 100;
+
+    public static final String ADAPTER_CONFLATION_KEY_INDEX = "ui.conflation.key.index";
+    public static final String ADAPTER_CONFLATION_KEY_INDEX_HINT = "ui.conflation.key.index.hint";
+
     public static final String CARBON_CONFIG_PORT_OFFSET_NODE = "Ports.Offset";
     public static final int DEFAULT_HTTP_PORT = 9763;
     public static final int DEFAULT_HTTPS_PORT = 9443;
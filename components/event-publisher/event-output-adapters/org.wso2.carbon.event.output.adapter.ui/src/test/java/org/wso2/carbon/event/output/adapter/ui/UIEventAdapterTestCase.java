@@ -0,0 +1,187 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.output.adapter.ui;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.output.adapter.core.OutputEventAdapterConfiguration;
+import org.wso2.carbon.event.output.adapter.ui.internal.UISessionSender;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+public class UIEventAdapterTestCase {
+
+    private UIEventAdapter adapter;
+
+    @Before
+    public void setUp() {
+        OutputEventAdapterConfiguration configuration = new OutputEventAdapterConfiguration();
+        configuration.setName("test");
+        /* the sessions are drained on the publishing thread, so the sent messages can be checked right away */
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        adapter = new UIEventAdapter(configuration, new TestAuthorizationService(), executor, 10, 10);
+    }
+
+    @Test
+    public void testFanOut() {
+        TestSession first = new TestSession("1", "admin");
+        TestSession second = new TestSession("2", "admin");
+        TestSession unauthorized = new TestSession("3", "guest");
+        List<SessionHolder> sessions = sessions(first, second, unauthorized);
+        send(sessions, "a");
+        send(sessions, "b");
+        Assert.assertEquals(Arrays.asList("[a]", "[b]"), first.messages);
+        Assert.assertEquals(Arrays.asList("[a]", "[b]"), second.messages);
+        Assert.assertTrue(unauthorized.messages.isEmpty());
+        Assert.assertEquals(2, adapter.getSessionSenders().size());
+    }
+
+    @Test
+    public void testReconnectedSession() {
+        TestSession session = new TestSession("1", "admin");
+        send(sessions(session), "a");
+        UISessionSender sender = adapter.getSessionSenders().iterator().next();
+
+        /* the session reconnects with the same id, the events go to the new connection only */
+        TestSession reconnected = new TestSession("1", "admin");
+        send(sessions(reconnected), "b");
+        Assert.assertEquals(Collections.singletonList("[a]"), session.messages);
+        Assert.assertEquals(Collections.singletonList("[b]"), reconnected.messages);
+        Assert.assertEquals(1, adapter.getSessionSenders().size());
+        Assert.assertNotSame(sender, adapter.getSessionSenders().iterator().next());
+        Assert.assertSame(reconnected, adapter.getSessionSenders().iterator().next().getSession());
+    }
+
+    @Test
+    public void testUnsubscribedSessions() {
+        TestSession first = new TestSession("1", "admin");
+        TestSession second = new TestSession("2", "admin");
+        send(sessions(first, second), "a");
+        Assert.assertEquals(2, adapter.getSessionSenders().size());
+
+        send(sessions(second), "b");
+        Assert.assertEquals(1, adapter.getSessionSenders().size());
+        Assert.assertSame(second, adapter.getSessionSenders().iterator().next().getSession());
+
+        send(null, "c");
+        Assert.assertTrue(adapter.getSessionSenders().isEmpty());
+        Assert.assertEquals(Collections.singletonList("[a]"), first.messages);
+        Assert.assertEquals(Arrays.asList("[a]", "[b]"), second.messages);
+    }
+
+    @Test
+    public void testFailedSend() {
+        TestSession session = new TestSession("1", "admin");
+        session.failures = 2;
+        List<SessionHolder> sessions = sessions(session);
+        send(sessions, "a");
+        send(sessions, "b");
+        /* the failed sends are dropped, and the session keeps receiving the following events */
+        send(sessions, "c");
+        Assert.assertEquals(Collections.singletonList("[c]"), session.messages);
+        UISessionSender sender = adapter.getSessionSenders().iterator().next();
+        Assert.assertEquals(2, sender.getFailedCount());
+        Assert.assertEquals(1, sender.getSentCount());
+        Assert.assertEquals(0, sender.getPendingCount());
+    }
+
+    private void send(List<SessionHolder> sessions, String value) {
+        adapter.sendToSessions(sessions, "[" + value + "]", new String[]{value});
+    }
+
+    private static List<SessionHolder> sessions(SessionHolder... sessions) {
+        return new CopyOnWriteArrayList<SessionHolder>(sessions);
+    }
+
+    /**
+     * Session which records the sent messages, and whose sends can fail with a runtime exception, as the
+     * websocket implementations do when the connection is in an invalid state.
+     */
+    private static class TestSession implements SessionHolder {
+
+        private final String id;
+        private final String username;
+        private final List<String> messages = new ArrayList<String>();
+        private int failures;
+
+        private TestSession(String id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        @Override
+        public int getTenantId() {
+            return -1234;
+        }
+
+        @Override
+        public Map<Integer, String> getFilterProps() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void sendText(String message) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("The remote endpoint was in state [TEXT_PARTIAL_WRITING]");
+            }
+            messages.add(message);
+        }
+    }
+
+    /**
+     * Authorizes the subscriptions of the admin user only.
+     */
+    private static class TestAuthorizationService implements UIOutputAuthorizationService {
+
+        @Override
+        public String getAuthorizationServiceName() {
+            return "test";
+        }
+
+        @Override
+        public boolean authorizeSubscription(JSONArray eventJson, Map<Integer, String> filterProps, String username,
+                                             int tenantId) {
+            return "admin".equals(username);
+        }
+    }
+}
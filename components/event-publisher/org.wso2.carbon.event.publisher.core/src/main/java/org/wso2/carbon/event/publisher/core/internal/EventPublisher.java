@@ -40,6 +40,8 @@ import org.wso2.carbon.event.publisher.core.internal.ds.EventPublisherServiceVal
 import org.wso2.carbon.event.publisher.core.internal.util.EventPublisherUtil;
 import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
 import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
+import org.wso2.carbon.event.stream.core.latency.EventLatencyTracker;
+import org.wso2.carbon.event.stream.core.latency.LatencyHistogram;
 import org.wso2.carbon.metrics.manager.Counter;
 import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.MetricManager;
@@ -59,6 +61,8 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
     private final boolean processingEnabled;
     private List<String> dynamicMessagePropertyList = new ArrayList<String>();
     private Counter eventCounter;
+    private LatencyHistogram mappingLatency;
+    private LatencyHistogram publishLatency;
     private Logger trace = Logger.getLogger(EventPublisherConstants.EVENT_TRACE_LOGGER);
     private EventPublisherConfiguration eventPublisherConfiguration = null;
     private int tenantId;
@@ -79,10 +83,6 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
     private int inputStreamSize = 0;
 
 
-//    private volatile AtomicLong totalLatency = new AtomicLong();
-//    private volatile AtomicLong totalEvents = new AtomicLong();
-//    private double elapseCount = 10000;
-//    private long tempstartTime = System.currentTimeMillis();
 
     public EventPublisher(EventPublisherConfiguration eventPublisherConfiguration)
             throws EventPublisherConfigurationException {
@@ -147,6 +147,11 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
 
         if (statisticsEnabled) {
             this.eventCounter = MetricManager.counter(metricId, Level.INFO, Level.INFO);
+            String eventPublisherName = eventPublisherConfiguration.getEventPublisherName();
+            this.mappingLatency = EventLatencyTracker.register(tenantId, EventLatencyTracker.CATEGORY_EVENT_PUBLISHER,
+                    eventPublisherName, EventLatencyTracker.STAGE_PUBLISHER_MAPPING);
+            this.publishLatency = EventLatencyTracker.register(tenantId, EventLatencyTracker.CATEGORY_EVENT_PUBLISHER,
+                    eventPublisherName, EventLatencyTracker.STAGE_ADAPTER_PUBLISH);
         }
         if (traceEnabled) {
             this.beforeTracerPrefix = "TenantId : " + tenantId + ", " + EventPublisherConstants.EVENT_PUBLISHER +
@@ -362,6 +367,13 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
         }
         EventPublisherServiceValueHolder.getOutputEventAdapterService()
                 .destroy(eventPublisherConfiguration.getEventPublisherName());
+        if (mappingLatency != null) {
+            String eventPublisherName = eventPublisherConfiguration.getEventPublisherName();
+            EventLatencyTracker.unregister(tenantId, EventLatencyTracker.CATEGORY_EVENT_PUBLISHER, eventPublisherName,
+                    EventLatencyTracker.STAGE_PUBLISHER_MAPPING);
+            EventLatencyTracker.unregister(tenantId, EventLatencyTracker.CATEGORY_EVENT_PUBLISHER, eventPublisherName,
+                    EventLatencyTracker.STAGE_ADAPTER_PUBLISH);
+        }
     }
 
     @Override
@@ -382,6 +394,8 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
 
         }
 
+        boolean sampled = mappingLatency != null && EventLatencyTracker.sample();
+        long startTime = sampled ? System.nanoTime() : 0;
         org.wso2.siddhi.core.event.Event siddhiEvent = EventPublisherUtil.convertToSiddhiEvent(event, inputStreamSize);
 
         try {
@@ -394,6 +408,9 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
             log.error("Cannot send " + event + " from " + eventPublisherConfiguration.getEventPublisherName(), e);
             return;
         }
+        if (sampled) {
+            mappingLatency.record(System.nanoTime() - startTime);
+        }
 
         if (traceEnabled) {
             trace.info(afterTracerPrefix + outObject);
@@ -404,25 +421,13 @@ public class EventPublisher implements WSO2EventConsumer, EventSync {
         }
 
         OutputEventAdapterService eventAdapterService = EventPublisherServiceValueHolder.getOutputEventAdapterService();
-//
-//        long timestamp = event.getTimeStamp();
-//        long currentTimestamp = System.currentTimeMillis();
-//        event.setTimeStamp(currentTimestamp);
-//        long eventLatency = currentTimestamp - timestamp;
-//        totalLatency.addAndGet(eventLatency);
-//        totalEvents.incrementAndGet();
-//        if (totalEvents.get() % elapseCount == 0) {
-//            double avgLatency = (totalLatency.get() * 1.0) / elapseCount;
-//            double throughput = ((elapseCount * 1.0) / (currentTimestamp - tempstartTime + 0.0)) * 1000;
-//
-//            log.info("Published " + elapseCount + " events with a throughput of " + throughput +
-//                    " events per second || and latency: " + avgLatency);
-//            tempstartTime = currentTimestamp;
-//            totalLatency.set(0);
-//        }
-
-
+        if (sampled) {
+            startTime = System.nanoTime();
+        }
         eventAdapterService.publish(eventPublisherConfiguration.getEventPublisherName(), dynamicProperties, outObject);
+        if (sampled) {
+            publishLatency.record(System.nanoTime() - startTime);
+        }
     }
 
     @Override
@@ -15,7 +15,6 @@
  */
 package org.wso2.carbon.event.input.adapter.filetail;
 
-import org.apache.commons.io.input.Tailer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.input.adapter.core.EventAdapterConstants;
@@ -25,10 +24,16 @@ import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
 import org.wso2.carbon.event.input.adapter.core.exception.InputEventAdapterException;
 import org.wso2.carbon.event.input.adapter.core.exception.TestConnectionNotSupportedException;
 import org.wso2.carbon.event.input.adapter.filetail.internal.listener.FileTailerListener;
+import org.wso2.carbon.event.input.adapter.filetail.internal.util.FileTailCheckpointStore;
 import org.wso2.carbon.event.input.adapter.filetail.internal.util.FileTailEventAdapterConstants;
+import org.wso2.carbon.event.input.adapter.filetail.internal.util.FileTailer;
 import org.wso2.carbon.event.input.adapter.filetail.internal.util.FileTailerManager;
+import org.wso2.carbon.utils.CarbonUtils;
 
 import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -78,6 +83,7 @@ public class FileTailEventAdapter implements InputEventAdapter {
 
     @Override
     public void destroy() {
+        singleThreadedExecutor.shutdown();
     }
 
     @Override
@@ -116,12 +122,57 @@ public class FileTailEventAdapter implements InputEventAdapter {
         String filePath = eventAdapterConfiguration.getProperties().get(
                 FileTailEventAdapterConstants.EVENT_ADAPTER_CONF_FILEPATH);
 
+        long checkpointInterval;
+        if (globalProperties.get(FileTailEventAdapterConstants.ADAPTER_CHECKPOINT_INTERVAL_IN_MILLIS) != null) {
+            checkpointInterval = Long.parseLong(globalProperties.get(
+                    FileTailEventAdapterConstants.ADAPTER_CHECKPOINT_INTERVAL_IN_MILLIS).trim());
+        } else {
+            checkpointInterval = FileTailEventAdapterConstants.DEFAULT_CHECKPOINT_INTERVAL_IN_MILLIS;
+        }
+
+        int readBufferSize;
+        if (globalProperties.get(FileTailEventAdapterConstants.ADAPTER_READ_BUFFER_SIZE) != null) {
+            readBufferSize = Integer.parseInt(globalProperties.get(
+                    FileTailEventAdapterConstants.ADAPTER_READ_BUFFER_SIZE).trim());
+        } else {
+            readBufferSize = FileTailEventAdapterConstants.DEFAULT_READ_BUFFER_SIZE;
+        }
+
+        int maxLineLength;
+        if (globalProperties.get(FileTailEventAdapterConstants.ADAPTER_MAX_LINE_LENGTH) != null) {
+            maxLineLength = Integer.parseInt(globalProperties.get(
+                    FileTailEventAdapterConstants.ADAPTER_MAX_LINE_LENGTH).trim());
+        } else {
+            maxLineLength = FileTailEventAdapterConstants.DEFAULT_MAX_LINE_LENGTH;
+        }
+
         FileTailerListener listener = new FileTailerListener(new File(filePath).getName(), eventAdapterListener);
-        Tailer tailer = new Tailer(new File(filePath), listener, delayInMillis, startFromEnd);
+        FileTailCheckpointStore checkpointStore = null;
+        if (checkpointInterval > 0) {
+            checkpointStore = new FileTailCheckpointStore(getCheckpointFile(listener.getTenantId()));
+        }
+        // Tailers of the adapter run one after the other on the single threaded executor, so that a
+        // reconnected tailer reads the checkpoint written by the previous tailer when it stopped.
+        FileTailer tailer = new FileTailer(filePath, listener, delayInMillis, startFromEnd, checkpointStore,
+                checkpointInterval, readBufferSize, maxLineLength);
         fileTailerManager = new FileTailerManager(tailer, listener);
         singleThreadedExecutor.execute(tailer);
     }
 
+    private Path getCheckpointFile(int tenantId) {
+        String checkpointDirectory = globalProperties.get(
+                FileTailEventAdapterConstants.ADAPTER_CHECKPOINT_DIRECTORY);
+        Path directory;
+        if (checkpointDirectory != null && !checkpointDirectory.trim().isEmpty()) {
+            directory = Paths.get(checkpointDirectory.trim());
+        } else {
+            directory = Paths.get(CarbonUtils.getCarbonHome(),
+                    FileTailEventAdapterConstants.DEFAULT_CHECKPOINT_DIRECTORY);
+        }
+        return directory.resolve(String.valueOf(tenantId)).resolve(eventAdapterConfiguration.getName() +
+                FileTailEventAdapterConstants.CHECKPOINT_FILE_EXTENSION);
+    }
+
     @Override
     public boolean isEventDuplicatedInCluster() {
         return Boolean.parseBoolean(globalProperties.get(EventAdapterConstants.EVENTS_DUPLICATED_IN_CLUSTER));
@@ -141,6 +192,20 @@ public class FileTailEventAdapter implements InputEventAdapter {
         } catch (NumberFormatException e){
             throw new InputEventAdapterException("Invalid value set for property Delay: " + delayInMillisProperty, e);
         }
+        String filePath = eventAdapterConfiguration.getProperties().get(
+                FileTailEventAdapterConstants.EVENT_ADAPTER_CONF_FILEPATH);
+        if (filePath == null) {
+            return;
+        }
+        try {
+            Path parent = Paths.get(filePath).toAbsolutePath().getParent();
+            if (parent != null && FileTailer.isGlobPattern(parent.toString())) {
+                throw new InputEventAdapterException("Invalid value set for property File path: " + filePath +
+                        ", only the file name can be a pattern");
+            }
+        } catch (InvalidPathException e) {
+            throw new InputEventAdapterException("Invalid value set for property File path: " + filePath, e);
+        }
     }
 
 }
@@ -16,17 +16,14 @@
 
 package org.wso2.carbon.event.input.adapter.filetail.internal.listener;
 
-import org.apache.commons.io.input.Tailer;
-import org.apache.commons.io.input.TailerListenerAdapter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
-public class FileTailerListener extends TailerListenerAdapter {
+public class FileTailerListener {
 
     private String fileName;
 
@@ -40,31 +37,28 @@ public class FileTailerListener extends TailerListenerAdapter {
         this.inputEventAdapterListener = inputEventAdapterListener;
     }
 
-
-    @Override
-    public void init(Tailer tailer) {
-        super.init(tailer);
-    }
-
-    @Override
-    public void handle(String line) {
-        super.handle(line);
-        if (line == null || line.isEmpty()) {
+    /**
+     * Handles the lines read from a file in one read, each terminated by a new line.
+     */
+    public void handle(List<String> lines) {
+        if (lines.isEmpty()) {
             return;
         }
         isFileFound = true;
 
         if (log.isDebugEnabled()) {
-            log.debug("Event received in File Event Adapter - " + line);
+            log.debug("Events received in File Event Adapter - " + lines);
         }
 
         PrivilegedCarbonContext.startTenantFlow();
-        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
-        inputEventAdapterListener.onEvent(line + "\n");
-        PrivilegedCarbonContext.endTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+            inputEventAdapterListener.onEvent(lines);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
     }
 
-    @Override
     public void fileNotFound() {
         if (isFileFound) {
             isFileFound = false;
@@ -73,13 +67,10 @@ public class FileTailerListener extends TailerListenerAdapter {
         if (log.isDebugEnabled()) {
             log.debug("File  " + fileName + " not found");
         }
-        super.fileNotFound();
     }
 
-    @Override
     public void handle(Exception ex) {
         log.error("Exception occurred : ", ex);
-        super.handle(ex);
     }
 
     public int getTenantId() {
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.input.adapter.filetail.internal.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persists the read offsets of the tailed files of an adapter, so that a restarted adapter resumes
+ * reading exactly where it stopped. Offsets are keyed by the file key of the file (i.e. the device
+ * and inode on POSIX file systems) so that a file renamed by log rotation is still recognized, or
+ * by the path of the file on file systems without file keys.
+ */
+public class FileTailCheckpointStore {
+
+    private static final Log log = LogFactory.getLog(FileTailCheckpointStore.class);
+
+    private final Path checkpointFile;
+
+    public FileTailCheckpointStore(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * @return the persisted offsets, or null if no checkpoint has been written yet
+     */
+    public Map<String, Long> load() {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(checkpointFile)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            log.warn("Error reading file tail checkpoint " + checkpointFile + ", ignoring the checkpoint", e);
+            return null;
+        }
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        for (String fileId : properties.stringPropertyNames()) {
+            try {
+                offsets.put(fileId, Long.parseLong(properties.getProperty(fileId)));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid offset in file tail checkpoint " + checkpointFile + " for " + fileId);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Replaces the persisted offsets. The checkpoint is written to a temporary file which is then
+     * moved over the previous checkpoint, so that a crash never leaves a partially written checkpoint.
+     */
+    public void save(Map<String, Long> offsets) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        Files.createDirectories(checkpointFile.getParent());
+        Path tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+            properties.store(outputStream, null);
+        }
+        try {
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.wso2.carbon.event.input.adapter.filetail.internal.util;
 
+import java.io.File;
 
 public final class FileTailEventAdapterConstants {
 
@@ -31,4 +32,15 @@ public final class FileTailEventAdapterConstants {
     public static final String EVENT_ADAPTER_START_FROM_END_HINT = "startFromEnd.hint";
     public static final int DEFAULT_DELAY_MILLIS = 1000;
 
+    public static final String ADAPTER_CHECKPOINT_DIRECTORY = "checkpointDirectory";
+    public static final String ADAPTER_CHECKPOINT_INTERVAL_IN_MILLIS = "checkpointIntervalInMillis";
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_IN_MILLIS = 5000;
+    public static final String ADAPTER_READ_BUFFER_SIZE = "readBufferSize";
+    public static final int DEFAULT_READ_BUFFER_SIZE = 65536;
+    public static final String ADAPTER_MAX_LINE_LENGTH = "maxLineLength";
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1048576;
+    public static final String DEFAULT_CHECKPOINT_DIRECTORY = "repository" + File.separator + "data" +
+            File.separator + "file-tail";
+    public static final String CHECKPOINT_FILE_EXTENSION = ".checkpoint";
+
 }
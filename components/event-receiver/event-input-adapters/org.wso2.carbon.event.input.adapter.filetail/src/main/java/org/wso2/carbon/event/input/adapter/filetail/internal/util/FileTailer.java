@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.input.adapter.filetail.internal.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.input.adapter.filetail.internal.listener.FileTailerListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails a file, all the files of a directory, or the files matching a glob pattern in a directory
+ * (e.g. /var/log/app/*.log).
+ * <p>
+ * Files are read in large chunks through a {@link FileChannel} and split into lines on the new
+ * line bytes in place, so that the only allocation per line is the event string itself. The lines
+ * of a chunk are handed to the listener as a single batch. The directory is watched with a
+ * {@link WatchService} so that appended content is read as soon as it is written, and is also
+ * rescanned every delay, as watch services of some file systems (e.g. NFS) do not report changes.
+ * <p>
+ * Files are tracked by their file key, so a file renamed by log rotation is read to the end before
+ * it is released, and the new file is read from the beginning. A file which shrinks is considered
+ * truncated and is read again from the beginning. The offset of the first line not yet handed to
+ * the listener is checkpointed periodically and when the tailer stops, and a restarted tailer
+ * resumes from the checkpointed offsets.
+ */
+public class FileTailer implements Runnable {
+
+    private static final Log log = LogFactory.getLog(FileTailer.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String PATH_FILE_ID_PREFIX = "path:";
+
+    private final Path directory;
+    private final String fileName;
+    private final PathMatcher fileNameMatcher;
+    private final FileTailerListener listener;
+    private final long delayInMillis;
+    private final boolean startFromEnd;
+    private final FileTailCheckpointStore checkpointStore;
+    private final long checkpointInterval;
+    private final int maxLineLength;
+    private final Map<Object, TailedFile> tailedFiles = new LinkedHashMap<Object, TailedFile>();
+    private ByteBuffer buffer;
+    private Map<String, Long> checkpoint;
+    private boolean initialScan = true;
+    private boolean checkpointChanged;
+    private long nextCheckpointTime;
+    private WatchService watchService;
+    private WatchKey watchKey;
+    private volatile boolean running = true;
+
+    /**
+     * @param filePath           path of the file or directory to tail, the file name may be a glob pattern
+     * @param listener           listener handed the lines read
+     * @param delayInMillis      the maximum delay between checks for new content
+     * @param startFromEnd       whether files found when the tailer starts without a checkpoint are
+     *                           read from their end
+     * @param checkpointStore    the store of the read offsets, or null if offsets are not persisted
+     * @param checkpointInterval the interval between checkpoints in milliseconds
+     * @param bufferSize         size of the read buffer in bytes
+     * @param maxLineLength      length in bytes after which a line without a new line is split
+     */
+    public FileTailer(String filePath, FileTailerListener listener, long delayInMillis, boolean startFromEnd,
+                      FileTailCheckpointStore checkpointStore, long checkpointInterval, int bufferSize,
+                      int maxLineLength) {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        if (isGlobPattern(path.getFileName().toString())) {
+            this.directory = path.getParent();
+            this.fileName = null;
+            this.fileNameMatcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+        } else if (Files.isDirectory(path)) {
+            this.directory = path;
+            this.fileName = null;
+            this.fileNameMatcher = null;
+        } else {
+            this.directory = path.getParent();
+            this.fileName = path.getFileName().toString();
+            this.fileNameMatcher = null;
+        }
+        this.listener = listener;
+        this.delayInMillis = delayInMillis;
+        this.startFromEnd = startFromEnd;
+        this.checkpointStore = checkpointStore;
+        this.checkpointInterval = checkpointInterval;
+        this.buffer = ByteBuffer.allocate(Math.min(bufferSize, maxLineLength));
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * @return whether the name has glob characters, only the file name of a tailed path may be a pattern
+     */
+    public static boolean isGlobPattern(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(name.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the tailer, the tailer returns within the delay after checkpointing the read offsets.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        if (checkpointStore != null) {
+            checkpoint = checkpointStore.load();
+            nextCheckpointTime = System.currentTimeMillis() + checkpointInterval;
+        }
+        try {
+            while (running) {
+                try {
+                    scan();
+                } catch (RuntimeException e) {
+                    listener.handle(e);
+                }
+                if (checkpointStore != null && System.currentTimeMillis() >= nextCheckpointTime) {
+                    saveCheckpoint();
+                    nextCheckpointTime = System.currentTimeMillis() + checkpointInterval;
+                }
+                awaitChanges();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (checkpointStore != null) {
+                saveCheckpoint();
+            }
+            close();
+        }
+    }
+
+    /**
+     * Reads the new content of the tailed files, and releases the files which no longer match.
+     */
+    private void scan() {
+        if (!Files.isDirectory(directory)) {
+            listener.fileNotFound();
+            releaseFiles(new HashSet<Object>());
+            return;
+        }
+        registerWatch();
+        Set<Object> matchedFiles = new HashSet<Object>();
+        List<TailedFile> files = new ArrayList<TailedFile>();
+        List<Long> sizes = new ArrayList<Long>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (!matches(path.getFileName())) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : path;
+                TailedFile file = tailedFiles.get(fileKey);
+                if (file == null) {
+                    file = new TailedFile(path, fileKey, getStartOffset(path, fileKey, attributes.size()));
+                    // Opened right away, so that content written before a rotation is read even if the file
+                    // is renamed before it grows past the start offset.
+                    try {
+                        file.open();
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    } catch (IOException e) {
+                        listener.handle(e);
+                        continue;
+                    }
+                    checkpointChanged = true;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Tailing file " + path + " from offset " + file.offset);
+                    }
+                } else {
+                    file.path = path;
+                }
+                matchedFiles.add(fileKey);
+                files.add(file);
+                sizes.add(attributes.size());
+            }
+        } catch (IOException e) {
+            listener.handle(e);
+            return;
+        }
+        if (fileName != null && matchedFiles.isEmpty()) {
+            listener.fileNotFound();
+        }
+        initialScan = false;
+        checkpoint = null;
+        // Rotated files are read to their end before the files which replaced them.
+        releaseFiles(matchedFiles);
+        for (int i = 0; i < files.size() && running; i++) {
+            TailedFile file = files.get(i);
+            tailedFiles.put(file.fileKey, file);
+            read(file, sizes.get(i), false);
+        }
+    }
+
+    /**
+     * Reads the files which no longer match, i.e. which were rotated out or deleted, to their end
+     * through their open channel, and stops tailing them.
+     */
+    private void releaseFiles(Set<Object> matchedFiles) {
+        for (Iterator<TailedFile> iterator = tailedFiles.values().iterator(); iterator.hasNext(); ) {
+            TailedFile file = iterator.next();
+            if (matchedFiles.contains(file.fileKey)) {
+                continue;
+            }
+            if (file.channel != null && running) {
+                try {
+                    read(file, file.channel.size(), true);
+                } catch (IOException e) {
+                    listener.handle(e);
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Stopped tailing file " + file.path);
+            }
+            file.close();
+            iterator.remove();
+            checkpointChanged = true;
+        }
+    }
+
+    private boolean matches(Path name) {
+        if (fileNameMatcher != null) {
+            return fileNameMatcher.matches(name);
+        }
+        return fileName == null || fileName.equals(name.toString());
+    }
+
+    private long getStartOffset(Path path, Object fileKey, long size) {
+        if (checkpoint != null) {
+            Long offset = checkpoint.get(getFileId(path, fileKey));
+            if (offset != null && offset <= size) {
+                return offset;
+            }
+            // Created after the checkpoint, e.g. by a rotation while the tailer was stopped.
+            return 0;
+        }
+        return initialScan && startFromEnd ? size : 0;
+    }
+
+    private static String getFileId(Path path, Object fileKey) {
+        return fileKey instanceof Path ? PATH_FILE_ID_PREFIX + path : fileKey.toString();
+    }
+
+    /**
+     * Reads the complete lines appended to the file since the last read.
+     *
+     * @param size  the current size of the file
+     * @param drain whether the file is complete, so that a last line without a new line is also read
+     */
+    private void read(TailedFile file, long size, boolean drain) {
+        if (size < file.offset) {
+            log.info("File " + file.path + " was truncated, reading it from the beginning");
+            file.close();
+            file.offset = 0;
+            checkpointChanged = true;
+        }
+        if (size == file.offset) {
+            return;
+        }
+        try {
+            FileChannel channel = file.open();
+            buffer.clear();
+            int scanned = 0;
+            while (running) {
+                int count = channel.read(buffer, file.offset + buffer.position());
+                if (count <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                int length = buffer.position();
+                int lineStart = 0;
+                List<String> lines = new ArrayList<String>();
+                for (int i = scanned; i < length; i++) {
+                    if (bytes[i] == '\n') {
+                        addLine(lines, bytes, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0 && length == buffer.capacity()) {
+                    if (buffer.capacity() < maxLineLength) {
+                        growBuffer();
+                        scanned = length;
+                        continue;
+                    }
+                    log.warn("Line longer than " + maxLineLength + " bytes in file " + file.path +
+                            ", splitting it into multiple events");
+                    lineStart = getCharacterBoundary(bytes, length);
+                    lines.add(new String(bytes, 0, lineStart, UTF_8) + "\n");
+                }
+                listener.handle(lines);
+                file.offset += lineStart;
+                checkpointChanged = checkpointChanged || lineStart > 0;
+                System.arraycopy(bytes, lineStart, bytes, 0, length - lineStart);
+                buffer.position(length - lineStart);
+                scanned = length - lineStart;
+            }
+            if (drain && running && buffer.position() > 0) {
+                List<String> lines = new ArrayList<String>(1);
+                addLine(lines, buffer.array(), 0, buffer.position());
+                listener.handle(lines);
+                file.offset += buffer.position();
+                checkpointChanged = true;
+            }
+        } catch (IOException e) {
+            file.close();
+            listener.handle(e);
+        }
+    }
+
+    /**
+     * Adds the line ending at the new line byte at the given index, or at the end of the file, as a
+     * new line terminated event. Empty lines are skipped.
+     */
+    private static void addLine(List<String> lines, byte[] bytes, int start, int newLineIndex) {
+        int end = newLineIndex;
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+        // The new line byte is decoded with the line, so that the event string is the only allocation.
+        if (end == bytes.length) {
+            lines.add(new String(bytes, start, end - start, UTF_8) + "\n");
+        } else {
+            bytes[end] = '\n';
+            lines.add(new String(bytes, start, end + 1 - start, UTF_8));
+        }
+    }
+
+    /**
+     * Returns the end of the last UTF-8 character which is complete within the given bytes, so that a split line
+     * does not break a multi byte character into two events.
+     */
+    private static int getCharacterBoundary(byte[] bytes, int length) {
+        int lead = length - 1;
+        while (lead > 0 && (bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        int characterLength;
+        if ((bytes[lead] & 0x80) == 0) {
+            characterLength = 1;
+        } else if ((bytes[lead] & 0xE0) == 0xC0) {
+            characterLength = 2;
+        } else if ((bytes[lead] & 0xF0) == 0xE0) {
+            characterLength = 3;
+        } else if ((bytes[lead] & 0xF8) == 0xF0) {
+            characterLength = 4;
+        } else {
+            // Not UTF-8, there is no character to keep together.
+            return length;
+        }
+        if (lead + characterLength <= length || lead == 0) {
+            return length;
+        }
+        return lead;
+    }
+
+    private void growBuffer() {
+        ByteBuffer newBuffer = ByteBuffer.allocate((int) Math.min((long) buffer.capacity() * 2, maxLineLength));
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    private void registerWatch() {
+        if (watchKey != null && watchKey.isValid()) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = directory.getFileSystem().newWatchService();
+            }
+            watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("Cannot watch directory " + directory + " for changes, polling it every " + delayInMillis +
+                    " ms", e);
+        } catch (UnsupportedOperationException e) {
+            log.warn("File system of " + directory + " cannot be watched for changes, polling it every " +
+                    delayInMillis + " ms");
+        }
+    }
+
+    /**
+     * Waits for a change in the watched directory, or at most the delay.
+     */
+    private void awaitChanges() throws InterruptedException {
+        if (watchKey == null || !watchKey.isValid()) {
+            Thread.sleep(delayInMillis);
+            return;
+        }
+        WatchKey key = watchService.poll(delayInMillis, TimeUnit.MILLISECONDS);
+        while (key != null) {
+            key.pollEvents();
+            key.reset();
+            key = watchService.poll();
+        }
+    }
+
+    private void saveCheckpoint() {
+        if (!checkpointChanged) {
+            return;
+        }
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        for (TailedFile file : tailedFiles.values()) {
+            offsets.put(getFileId(file.path, file.fileKey), file.offset);
+        }
+        try {
+            checkpointStore.save(offsets);
+            checkpointChanged = false;
+        } catch (IOException e) {
+            log.error("Error writing file tail checkpoint " + checkpointStore.getCheckpointFile(), e);
+        }
+    }
+
+    private void close() {
+        for (TailedFile file : tailedFiles.values()) {
+            file.close();
+        }
+        tailedFiles.clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Error closing watch service of directory " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * A file being tailed. The channel is opened when the file is first found and kept open, so that
+     * a rotated file can be read to its end even after it has been renamed out of the pattern or
+     * deleted.
+     */
+    private static final class TailedFile {
+        private final Object fileKey;
+        private Path path;
+        private long offset;
+        private FileChannel channel;
+
+        private TailedFile(Path path, Object fileKey, long offset) {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.offset = offset;
+        }
+
+        private FileChannel open() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Error closing file " + path, e);
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -15,22 +15,21 @@
  */
 package org.wso2.carbon.event.input.adapter.filetail.internal.util;
 
-import org.apache.commons.io.input.Tailer;
 import org.wso2.carbon.event.input.adapter.filetail.internal.listener.FileTailerListener;
 
 public class FileTailerManager {
 
-    private Tailer tailer;
+    private FileTailer tailer;
     private FileTailerListener listener;
 
 
-    public FileTailerManager(Tailer tailer, FileTailerListener listener) {
+    public FileTailerManager(FileTailer tailer, FileTailerListener listener) {
         super();
         this.tailer = tailer;
         this.listener = listener;
     }
 
-    public Tailer getTailer() {
+    public FileTailer getTailer() {
         return tailer;
     }
 
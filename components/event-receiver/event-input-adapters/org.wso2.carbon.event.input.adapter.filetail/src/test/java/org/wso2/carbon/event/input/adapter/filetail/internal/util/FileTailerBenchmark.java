@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.input.adapter.filetail.internal.util;
+
+import org.apache.commons.io.input.Tailer;
+import org.apache.commons.io.input.TailerListenerAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.event.input.adapter.filetail.internal.listener.FileTailerListener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark of the file tailer, against the commons-io Tailer it replaced. Each invocation reads a whole
+ * log file of the given number of lines from its beginning, so the file size divided by the time per invocation is
+ * the read rate. It is not run with the unit tests, run the main method with the test classpath to measure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTailerBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DELAY = 1;
+
+    @Param({"1000000"})
+    private int lineCount;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("filetail-benchmark", ".log");
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, UTF_8))) {
+            for (int i = 0; i < lineCount; i++) {
+                writer.write("2017-06-01 10:15:30,123 [http-nio-9763-exec-" + (i % 100) +
+                        "] INFO {org.wso2.carbon.event.receiver} - Event " + i + " received\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int fileTailer() {
+        final FileTailer[] tailer = new FileTailer[1];
+        final int[] count = new int[1];
+        FileTailerListener listener = new FileTailerListener(file.toString(), null) {
+            @Override
+            public void handle(List<String> lines) {
+                count[0] += lines.size();
+                if (count[0] >= lineCount) {
+                    tailer[0].stop();
+                }
+            }
+        };
+        tailer[0] = new FileTailer(file.toString(), listener, DELAY, false, null, Long.MAX_VALUE,
+                FileTailEventAdapterConstants.DEFAULT_READ_BUFFER_SIZE,
+                FileTailEventAdapterConstants.DEFAULT_MAX_LINE_LENGTH);
+        tailer[0].run();
+        return count[0];
+    }
+
+    @Benchmark
+    public int commonsIoTailer() {
+        final Tailer[] tailer = new Tailer[1];
+        final int[] count = new int[1];
+        tailer[0] = new Tailer(file.toFile(), new TailerListenerAdapter() {
+            @Override
+            public void handle(String line) {
+                if (++count[0] >= lineCount) {
+                    tailer[0].stop();
+                }
+            }
+        }, DELAY, false);
+        tailer[0].run();
+        return count[0];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FileTailerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
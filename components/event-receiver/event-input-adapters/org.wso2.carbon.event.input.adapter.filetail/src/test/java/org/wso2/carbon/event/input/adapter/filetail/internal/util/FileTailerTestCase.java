@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.input.adapter.filetail.internal.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.input.adapter.filetail.internal.listener.FileTailerListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FileTailerTestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DELAY = 50;
+    private static final long TIMEOUT = 10000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Path directory;
+    private Path checkpointFile;
+    private TestListener listener;
+    private FileTailer tailer;
+    private Thread tailerThread;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("filetail");
+        checkpointFile = Files.createTempDirectory("filetail-checkpoint").resolve("test.checkpoint");
+        listener = new TestListener();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stopTailer();
+        delete(directory);
+        delete(checkpointFile.getParent());
+    }
+
+    @Test
+    public void testAppendedLines() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "a\r\nb\n\nc");
+        startTailer(file.toString(), false, null, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(2);
+
+        // the last line is read once it is complete, empty lines are skipped
+        append(file, "\nd\n");
+        listener.await(4);
+        Assert.assertEquals(Arrays.asList("a\n", "b\n", "c\n", "d\n"), listener.getLines());
+    }
+
+    @Test
+    public void testStartFromEnd() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "old\n");
+        startTailer(file.toString(), true, new FileTailCheckpointStore(checkpointFile), BUFFER_SIZE, BUFFER_SIZE);
+        awaitCheckpoint();
+        append(file, "new\n");
+        listener.await(1);
+        Assert.assertEquals(Collections.singletonList("new\n"), listener.getLines());
+    }
+
+    @Test
+    public void testRotatedFileIsReadToItsEnd() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "a\n");
+        startTailer(file.toString(), false, null, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(1);
+
+        // the lines written just before the rotation are read from the renamed file, before the new file
+        append(file, "b\nc\n");
+        Files.move(file, directory.resolve("app.log.1"));
+        write(file, "d\n");
+        listener.await(4);
+        Assert.assertEquals(Arrays.asList("a\n", "b\n", "c\n", "d\n"), listener.getLines());
+    }
+
+    @Test
+    public void testFileRotatedBeforeItIsRead() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "old\n");
+        startTailer(file.toString(), true, new FileTailCheckpointStore(checkpointFile), BUFFER_SIZE, BUFFER_SIZE);
+        // the first checkpoint is written after the file is found, from its end
+        awaitCheckpoint();
+
+        // the file has not grown since it was found, and is renamed before the tailer reads it again
+        try (OutputStream outputStream = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            outputStream.write("a\n".getBytes(UTF_8));
+            Files.move(file, directory.resolve("app.log.1"));
+        }
+        write(file, "b\n");
+        listener.await(2);
+        Assert.assertEquals(Arrays.asList("a\n", "b\n"), listener.getLines());
+    }
+
+    @Test
+    public void testTruncatedFileIsReadFromTheBeginning() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "first\nsecond\n");
+        startTailer(file.toString(), false, null, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(2);
+
+        Files.write(file, "c\n".getBytes(UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        listener.await(3);
+        Assert.assertEquals(Arrays.asList("first\n", "second\n", "c\n"), listener.getLines());
+    }
+
+    @Test
+    public void testCheckpointResume() throws Exception {
+        Path file = directory.resolve("app.log");
+        write(file, "a\nb\n");
+        FileTailCheckpointStore checkpointStore = new FileTailCheckpointStore(checkpointFile);
+        startTailer(file.toString(), false, checkpointStore, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(2);
+        stopTailer();
+        Assert.assertEquals(Collections.singletonMap(
+                Files.readAttributes(file, BasicFileAttributes.class).fileKey().toString(), 4L),
+                checkpointStore.load());
+
+        // the restarted tailer resumes from the checkpoint, not from the end of the file, and skips the
+        // incomplete line the previous tailer did not hand over
+        append(file, "c\nd");
+        listener = new TestListener();
+        startTailer(file.toString(), true, checkpointStore, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(1);
+        append(file, "\n");
+        listener.await(2);
+        Assert.assertEquals(Arrays.asList("c\n", "d\n"), listener.getLines());
+    }
+
+    @Test
+    public void testLongLineIsSplitAtCharacterBoundary() throws Exception {
+        // the 8th and 9th bytes encode an e acute, which is not broken across the split
+        Path file = directory.resolve("app.log");
+        write(file, "abcdefg\u00e9\nshort\n");
+        startTailer(file.toString(), false, null, 4, 8);
+        listener.await(3);
+        Assert.assertEquals(Arrays.asList("abcdefg\n", "\u00e9\n", "short\n"), listener.getLines());
+    }
+
+    @Test
+    public void testGlobPattern() throws Exception {
+        write(directory.resolve("a.log"), "a1\na2\n");
+        write(directory.resolve("b.log"), "b1\n");
+        write(directory.resolve("c.txt"), "c1\n");
+        startTailer(directory.resolve("*.log").toString(), false, null, BUFFER_SIZE, BUFFER_SIZE);
+        listener.await(3);
+
+        write(directory.resolve("d.log"), "d1\n");
+        listener.await(4);
+        List<String> lines = listener.getLines();
+        Collections.sort(lines);
+        Assert.assertEquals(Arrays.asList("a1\n", "a2\n", "b1\n", "d1\n"), lines);
+        Assert.assertTrue(FileTailer.isGlobPattern("*.log"));
+        Assert.assertFalse(FileTailer.isGlobPattern("app.log"));
+    }
+
+    private void startTailer(String filePath, boolean startFromEnd, FileTailCheckpointStore checkpointStore,
+                             int bufferSize, int maxLineLength) {
+        tailer = new FileTailer(filePath, listener, DELAY, startFromEnd, checkpointStore, 0, bufferSize,
+                maxLineLength);
+        tailerThread = new Thread(tailer, "FileTailerTestCase");
+        tailerThread.start();
+    }
+
+    private void stopTailer() throws InterruptedException {
+        if (tailer != null) {
+            tailer.stop();
+            tailerThread.join(TIMEOUT);
+            Assert.assertFalse(tailerThread.isAlive());
+            tailer = null;
+        }
+        Assert.assertTrue(listener.errors.isEmpty());
+    }
+
+    private void awaitCheckpoint() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!Files.exists(checkpointFile)) {
+            Assert.assertTrue("No checkpoint was written", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(UTF_8));
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static void delete(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Collects the lines handed over by the tailer, in order.
+     */
+    private static class TestListener extends FileTailerListener {
+
+        private final List<String> lines = new ArrayList<String>();
+        private final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+        private TestListener() {
+            super("app.log", null);
+        }
+
+        @Override
+        public synchronized void handle(List<String> lines) {
+            this.lines.addAll(lines);
+            notifyAll();
+        }
+
+        @Override
+        public void handle(Exception e) {
+            errors.add(e);
+        }
+
+        @Override
+        public void fileNotFound() {
+        }
+
+        private synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (lines.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                Assert.assertTrue("Expected " + count + " lines but got " + lines, remaining > 0);
+                wait(remaining);
+            }
+        }
+
+        private synchronized List<String> getLines() {
+            return new ArrayList<String>(lines);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.event.input.adapter.http;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the credentials successfully verified against the user store, so that stateless
+ * clients sending basic auth headers are not authenticated against the user store on every request.
+ * Only a salted digest of the credentials is kept, keyed by the tenant qualified user name, and an
+ * entry is trusted only until its time to live expires. Failed authentications are never cached.
+ */
+public class HTTPCredentialCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final int maxSize;
+    private final long timeToLive;
+    private final byte[] salt = new byte[16];
+    private final Map<String, CachedCredential> credentials;
+
+    /**
+     * @param maxSize    the maximum number of cached users, the least recently used user is evicted first
+     * @param timeToLive time in milliseconds for which a verified credential is trusted
+     */
+    public HTTPCredentialCache(final int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        new SecureRandom().nextBytes(salt);
+        this.credentials = new LinkedHashMap<String, CachedCredential>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCredential> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && timeToLive > 0;
+    }
+
+    /**
+     * @return the tenant id of the user if the credentials were verified within the time to live, or -1
+     */
+    public int getTenantId(String username, String password) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        byte[] digest = digest(username, password);
+        CachedCredential credential;
+        synchronized (credentials) {
+            credential = credentials.get(username);
+            if (credential == null) {
+                return -1;
+            }
+            if (credential.expiryTime <= System.currentTimeMillis()) {
+                credentials.remove(username);
+                return -1;
+            }
+        }
+        return MessageDigest.isEqual(credential.digest, digest) ? credential.tenantId : -1;
+    }
+
+    public void put(String username, String password, int tenantId) {
+        if (!isEnabled()) {
+            return;
+        }
+        CachedCredential credential = new CachedCredential(digest(username, password), tenantId,
+                System.currentTimeMillis() + timeToLive);
+        synchronized (credentials) {
+            credentials.put(username, credential);
+        }
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            messageDigest.update(salt);
+            messageDigest.update(username.getBytes(UTF_8));
+            messageDigest.update((byte) 0);
+            return messageDigest.digest(password.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not supported by the JVM", e);
+        }
+    }
+
+    private static final class CachedCredential {
+        private final byte[] digest;
+        private final int tenantId;
+        private final long expiryTime;
+
+        private CachedCredential(byte[] digest, int tenantId, long expiryTime) {
+            this.digest = digest;
+            this.tenantId = tenantId;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -43,6 +43,7 @@ public final class HTTPEventAdapter implements InputEventAdapter {
     private InputEventAdapterListener eventAdaptorListener;
     private final String id = UUID.randomUUID().toString();
     public static ExecutorService executorService;
+    public static HTTPCredentialCache credentialCache;
     private static final Log log = LogFactory.getLog(HTTPEventAdapter.class);
     private boolean isConnected = false;
 
@@ -108,6 +109,28 @@ public final class HTTPEventAdapter implements InputEventAdapter {
                     new LinkedBlockingQueue<Runnable>(jobQueueSize), rejectedExecutionHandler);
 
         }
+
+        //HTTPCredentialCache will be assigned if it is null
+        if (credentialCache == null) {
+            int cacheSize;
+            long cacheTimeout;
+
+            if (globalProperties.get(HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_SIZE_NAME) != null) {
+                cacheSize = Integer
+                        .parseInt(globalProperties.get(HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_SIZE_NAME));
+            } else {
+                cacheSize = HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_SIZE;
+            }
+
+            if (globalProperties.get(HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_TIMEOUT_NAME) != null) {
+                cacheTimeout = Long
+                        .parseLong(globalProperties.get(HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_TIMEOUT_NAME));
+            } else {
+                cacheTimeout = HTTPEventAdapterConstants.ADAPTER_CREDENTIAL_CACHE_TIMEOUT_IN_MILLIS;
+            }
+
+            credentialCache = new HTTPCredentialCache(cacheSize, cacheTimeout);
+        }
     }
 
     @Override
@@ -186,9 +209,11 @@ public final class HTTPEventAdapter implements InputEventAdapter {
                 throw new InputEventAdapterRuntimeException(
                         "HttpService not available, Error in registering endpoint " + endpoint);
             }
+            boolean isSplitEventsEnabled = Boolean.parseBoolean(
+                    eventAdapterConfiguration.getProperties().get(HTTPEventAdapterConstants.SPLIT_EVENTS));
             httpService.registerServlet(endpoint, new HTTPMessageServlet(eventAdaptorListener, tenantId,
                     eventAdapterConfiguration.getProperties().get(HTTPEventAdapterConstants.EXPOSED_TRANSPORTS),
-                    isBasicAuthEnabled), new Hashtable(), httpService.createDefaultHttpContext());
+                    isBasicAuthEnabled, isSplitEventsEnabled), new Hashtable(), httpService.createDefaultHttpContext());
         } catch (ServletException | NamespaceException e) {
             throw new InputEventAdapterRuntimeException("Error in registering endpoint " + endpoint, e);
         }
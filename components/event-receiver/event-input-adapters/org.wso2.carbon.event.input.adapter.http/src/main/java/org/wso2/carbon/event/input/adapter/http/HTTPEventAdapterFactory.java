@@ -73,8 +73,18 @@ public class HTTPEventAdapterFactory extends InputEventAdapterFactory {
         basicAuthEnabledProperty.setDisplayName(
                 resourceBundle.getString(HTTPEventAdapterConstants.BASIC_AUTH_ENABLED));
 
+        // Split multiple events of a request
+        Property splitEventsProperty = new Property(HTTPEventAdapterConstants.SPLIT_EVENTS);
+        splitEventsProperty.setRequired(false);
+        splitEventsProperty.setOptions(new String[]{"true", "false"});
+        splitEventsProperty.setDefaultValue("false");
+        splitEventsProperty.setDisplayName(
+                resourceBundle.getString(HTTPEventAdapterConstants.SPLIT_EVENTS));
+        splitEventsProperty.setHint(resourceBundle.getString(HTTPEventAdapterConstants.SPLIT_EVENTS_HINT));
+
         propertyList.add(exposedTransportsProperty);
         propertyList.add(basicAuthEnabledProperty);
+        propertyList.add(splitEventsProperty);
 
         return propertyList;
     }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.wso2.carbon.event.input.adapter.http;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Splits a request body holding multiple events into the individual events while reading it, so
+ * that the whole payload is never held as a single string.
+ * <ul>
+ * <li>A JSON array is split into its elements.</li>
+ * <li>An XML document is split into the children of its root element, each wrapped in the root
+ * element, so that the parent selector of the XML input mapping still applies.</li>
+ * <li>Any other body is a single event.</li>
+ * </ul>
+ */
+public abstract class HTTPEventSplitter {
+
+    /**
+     * @return the next event of the body, or null if there are no more events
+     * @throws IOException if the body cannot be read or is malformed
+     */
+    public abstract String nextEvent() throws IOException;
+
+    public static HTTPEventSplitter create(Reader reader) throws IOException {
+        PushbackReader pushbackReader = new PushbackReader(reader);
+        int c;
+        do {
+            c = pushbackReader.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c == -1) {
+            return new SingleEventSplitter(pushbackReader, -1);
+        } else if (c == '[') {
+            return new JSONArraySplitter(pushbackReader);
+        } else if (c == '<') {
+            pushbackReader.unread(c);
+            return new XMLSplitter(pushbackReader);
+        }
+        return new SingleEventSplitter(pushbackReader, c);
+    }
+
+    private static final class SingleEventSplitter extends HTTPEventSplitter {
+
+        private final Reader reader;
+        private final int firstChar;
+        private boolean done;
+
+        private SingleEventSplitter(Reader reader, int firstChar) {
+            this.reader = reader;
+            this.firstChar = firstChar;
+        }
+
+        @Override
+        public String nextEvent() throws IOException {
+            if (done || firstChar == -1) {
+                return null;
+            }
+            done = true;
+            StringBuilder event = new StringBuilder();
+            event.append((char) firstChar);
+            char[] buffer = new char[8192];
+            int length;
+            while ((length = reader.read(buffer)) != -1) {
+                event.append(buffer, 0, length);
+            }
+            return event.toString();
+        }
+    }
+
+    private static final class JSONArraySplitter extends HTTPEventSplitter {
+
+        private final Reader reader;
+        private boolean done;
+
+        private JSONArraySplitter(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String nextEvent() throws IOException {
+            if (done) {
+                return null;
+            }
+            StringBuilder event = null;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                char ch = (char) c;
+                if (event == null) {
+                    if (Character.isWhitespace(ch) || ch == ',') {
+                        continue;
+                    } else if (ch == ']') {
+                        done = true;
+                        return null;
+                    }
+                    event = new StringBuilder();
+                }
+                if (inString) {
+                    event.append(ch);
+                    if (escaped) {
+                        escaped = false;
+                    } else if (ch == '\\') {
+                        escaped = true;
+                    } else if (ch == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                if (depth == 0 && (ch == ',' || ch == ']')) {
+                    done = ch == ']';
+                    return event.toString().trim();
+                }
+                event.append(ch);
+                if (ch == '"') {
+                    inString = true;
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    depth--;
+                }
+            }
+            done = true;
+            throw new IOException("Unterminated JSON array in request body");
+        }
+    }
+
+    private static final class XMLSplitter extends HTTPEventSplitter {
+
+        private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+        private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+        private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+        private final XMLEventReader eventReader;
+        private StartElement root;
+        private boolean done;
+
+        private XMLSplitter(Reader reader) throws IOException {
+            try {
+                this.eventReader = INPUT_FACTORY.createXMLEventReader(reader);
+            } catch (XMLStreamException e) {
+                throw new IOException("Error reading XML request body", e);
+            }
+        }
+
+        private static XMLInputFactory createInputFactory() {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            return inputFactory;
+        }
+
+        @Override
+        public String nextEvent() throws IOException {
+            if (done) {
+                return null;
+            }
+            try {
+                while (eventReader.hasNext()) {
+                    XMLEvent xmlEvent = eventReader.nextEvent();
+                    if (xmlEvent.isStartElement()) {
+                        if (root == null) {
+                            root = xmlEvent.asStartElement();
+                        } else {
+                            return readElement(xmlEvent);
+                        }
+                    } else if (xmlEvent.isEndElement() || xmlEvent.isEndDocument()) {
+                        done = true;
+                        return null;
+                    }
+                }
+                done = true;
+                return null;
+            } catch (XMLStreamException e) {
+                done = true;
+                throw new IOException("Error reading XML request body", e);
+            }
+        }
+
+        private String readElement(XMLEvent startElement) throws XMLStreamException {
+            StringWriter event = new StringWriter();
+            XMLEventWriter eventWriter = OUTPUT_FACTORY.createXMLEventWriter(event);
+            eventWriter.add(root);
+            eventWriter.add(startElement);
+            int depth = 1;
+            while (depth > 0) {
+                XMLEvent xmlEvent = eventReader.nextEvent();
+                if (xmlEvent.isStartElement()) {
+                    depth++;
+                } else if (xmlEvent.isEndElement()) {
+                    depth--;
+                }
+                eventWriter.add(xmlEvent);
+            }
+            eventWriter.add(EVENT_FACTORY.createEndElement(root.getName(), null));
+            eventWriter.close();
+            return event.toString();
+        }
+    }
+}
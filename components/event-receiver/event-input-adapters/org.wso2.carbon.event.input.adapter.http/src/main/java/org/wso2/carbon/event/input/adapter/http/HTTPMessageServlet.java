@@ -29,9 +29,13 @@ import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HTTPMessageServlet extends HttpServlet {
 
@@ -41,18 +45,23 @@ public class HTTPMessageServlet extends HttpServlet {
 
     private static final String AUTH_FAILURE_RESPONSE = "_AUTH_FAILURE_";
 
+    private static final String ACCEPTED_EVENTS_RESPONSE = "_MALFORMED_BODY_ACCEPTED_EVENTS_:";
+
     private static Log log = LogFactory.getLog(HTTPMessageServlet.class);
 
     private InputEventAdapterListener eventAdaptorListener;
     private int tenantId;
     private String exposedTransports;
     private boolean isBasicAuthEnabled;
+    private boolean isSplitEventsEnabled;
 
-    public HTTPMessageServlet(InputEventAdapterListener eventAdaptorListener, int tenantId, String exposedTransports, boolean isBasicAuthEnabled) {
+    public HTTPMessageServlet(InputEventAdapterListener eventAdaptorListener, int tenantId, String exposedTransports,
+                              boolean isBasicAuthEnabled, boolean isSplitEventsEnabled) {
         this.eventAdaptorListener = eventAdaptorListener;
         this.tenantId = tenantId;
         this.exposedTransports = exposedTransports;
         this.isBasicAuthEnabled = isBasicAuthEnabled;
+        this.isSplitEventsEnabled = isSplitEventsEnabled;
     }
 
     private String[] getUserPassword(HttpServletRequest req) {
@@ -71,9 +80,13 @@ public class HTTPMessageServlet extends HttpServlet {
     }
 
     private int checkAuthentication(HttpServletRequest req) {
-        Object tidObj = req.getSession().getAttribute(AUTH_MESSAGE_STORE_TENANT_ID);
-        if (tidObj != null) {
-            return (Integer) tidObj;
+        // Stateless clients do not keep a session, hence a session is not created just for the lookup.
+        HttpSession session = req.getSession(false);
+        if (session != null) {
+            Object tidObj = session.getAttribute(AUTH_MESSAGE_STORE_TENANT_ID);
+            if (tidObj != null) {
+                return (Integer) tidObj;
+            }
         }
         String[] userPassword = this.getUserPassword(req);
         if (userPassword == null) {
@@ -85,6 +98,13 @@ public class HTTPMessageServlet extends HttpServlet {
         String tenantDomain = MultitenantUtils.getTenantDomain(username);
         String tenantAwareUserName = MultitenantUtils.getTenantAwareUsername(username);
         username = (tenantAwareUserName + "@" + tenantDomain).toLowerCase();
+        HTTPCredentialCache credentialCache = HTTPEventAdapter.credentialCache;
+        if (credentialCache != null) {
+            int cachedTenantId = credentialCache.getTenantId(username, password);
+            if (cachedTenantId != -1) {
+                return cachedTenantId;
+            }
+        }
         RealmService realmService = HTTPEventAdapterServiceValueHolder.getRealmService();
         int tenantId;
         try {
@@ -95,7 +115,12 @@ public class HTTPMessageServlet extends HttpServlet {
             UserStoreManager usm = realmService.getTenantUserRealm(tenantId).getUserStoreManager();
             boolean success = usm.authenticate(tenantAwareUserName, password);
             if (success) {
-                req.getSession().setAttribute(AUTH_MESSAGE_STORE_TENANT_ID, tenantId);
+                if (credentialCache != null) {
+                    credentialCache.put(username, password, tenantId);
+                }
+                if (session != null) {
+                    session.setAttribute(AUTH_MESSAGE_STORE_TENANT_ID, tenantId);
+                }
                 return tenantId;
             } else {
                 return -1;
@@ -109,27 +134,61 @@ public class HTTPMessageServlet extends HttpServlet {
     }
 
 
-    private String inputStreamToString(InputStream in) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buff = new byte[1024];
+    private Reader getReader(HttpServletRequest req) throws IOException {
+        String charset = req.getCharacterEncoding();
+        if (charset == null) {
+            charset = HTTPEventAdapterConstants.DEFAULT_CHARSET;
+        }
+        return new BufferedReader(new InputStreamReader(req.getInputStream(), charset));
+    }
+
+    private String readerToString(Reader in, int contentLength) throws IOException {
+        StringBuilder out = new StringBuilder(contentLength > 0 ? Math.min(contentLength, 1 << 20) : 1024);
+        char[] buff = new char[8192];
         int i;
-        while ((i = in.read(buff)) > 0) {
-            out.write(buff, 0, i);
+        while ((i = in.read(buff)) != -1) {
+            out.append(buff, 0, i);
         }
-        out.close();
         return out.toString();
     }
 
+    /**
+     * Split the events of the request body while reading it, and hand them over for processing in
+     * batches. Batches are handed over before the rest of the body is read, so when the body turns out
+     * to be malformed the response tells the client how many of its events were accepted.
+     */
+    private void processSplitEvents(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        HTTPEventSplitter splitter = HTTPEventSplitter.create(getReader(req));
+        List<String> events = new ArrayList<String>(HTTPEventAdapterConstants.SPLIT_EVENTS_BATCH_SIZE);
+        int acceptedEvents = 0;
+        try {
+            String event;
+            while ((event = splitter.nextEvent()) != null) {
+                events.add(event);
+                acceptedEvents++;
+                if (events.size() == HTTPEventAdapterConstants.SPLIT_EVENTS_BATCH_SIZE) {
+                    HTTPEventAdapter.executorService.submit(new HTTPRequestProcessor(eventAdaptorListener, events,
+                            tenantId));
+                    events = new ArrayList<String>(HTTPEventAdapterConstants.SPLIT_EVENTS_BATCH_SIZE);
+                }
+            }
+        } catch (IOException e) {
+            res.setStatus(400);
+            res.getOutputStream().write((ACCEPTED_EVENTS_RESPONSE + acceptedEvents).getBytes());
+            log.error("Error while splitting the events of the request, dropping the rest of the request after "
+                    + acceptedEvents + " accepted events: " + e.getMessage(), e);
+        } finally {
+            if (!events.isEmpty()) {
+                HTTPEventAdapter.executorService.submit(new HTTPRequestProcessor(eventAdaptorListener, events,
+                        tenantId));
+            }
+        }
+    }
+
     @Override
     protected void doPost(HttpServletRequest req,
                           HttpServletResponse res) throws IOException {
 
-        String data = this.inputStreamToString(req.getInputStream());
-        if (data == null) {
-            log.warn("Event Object is empty/null");
-            return;
-        }
-
         if(exposedTransports.equalsIgnoreCase(HTTPEventAdapterConstants.HTTPS)){
             if(! req.isSecure()){
                 res.setStatus(403);
@@ -177,6 +236,12 @@ public class HTTPMessageServlet extends HttpServlet {
 
         }
 
+        if (isSplitEventsEnabled) {
+            processSplitEvents(req, res);
+            return;
+        }
+
+        String data = this.readerToString(getReader(req), req.getContentLength());
         if (log.isDebugEnabled()) {
             log.debug("Message : " + data);
         }
@@ -193,11 +258,14 @@ public class HTTPMessageServlet extends HttpServlet {
     public class HTTPRequestProcessor implements Runnable {
 
         private InputEventAdapterListener inputEventAdapterListener;
-        private String payload;
+        private Object payload;
         private int tenantId;
 
+        /**
+         * @param payload the request body, or the list of events split from the request body
+         */
         public HTTPRequestProcessor(InputEventAdapterListener inputEventAdapterListener,
-                                    String payload, int tenantId) {
+                                    Object payload, int tenantId) {
             this.inputEventAdapterListener = inputEventAdapterListener;
             this.payload = payload;
             this.tenantId = tenantId;
@@ -212,7 +280,7 @@ public class HTTPMessageServlet extends HttpServlet {
                     log.debug("Event received in HTTP Event Adapter - " + payload);
                 }
 
-                if (payload.trim() != null) {
+                if (!(payload instanceof String) || !((String) payload).trim().isEmpty()) {
                     inputEventAdapterListener.onEvent(payload);
                 } else {
                     log.warn("Dropping the empty/null event received through http adapter");
@@ -39,6 +39,14 @@ public final class HTTPEventAdapterConstants {
     public static final String ADAPTER_EXECUTOR_JOB_QUEUE_SIZE_NAME = "jobQueueSize";
     public static final String EXPOSED_TRANSPORTS = "transports";
     public static final String BASIC_AUTH_ENABLED = "basicAuthEnabled";
+    public static final String SPLIT_EVENTS = "splitEvents";
+    public static final String SPLIT_EVENTS_HINT = "splitEvents.hint";
+    public static final int SPLIT_EVENTS_BATCH_SIZE = 100;
+    public static final String ADAPTER_CREDENTIAL_CACHE_SIZE_NAME = "credentialCacheSize";
+    public static final String ADAPTER_CREDENTIAL_CACHE_TIMEOUT_NAME = "credentialCacheTimeoutInMillis";
+    public static final int ADAPTER_CREDENTIAL_CACHE_SIZE = 1000;
+    public static final long ADAPTER_CREDENTIAL_CACHE_TIMEOUT_IN_MILLIS = 300000;
+    public static final String DEFAULT_CHARSET = "UTF-8";
     public static final String HTTPS = "https";
     public static final String HTTP = "http";
     public static final String LOCAL = "local";
@@ -0,0 +1,117 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.input.adapter.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class HTTPEventSplitterTestCase {
+
+    @Test
+    public void testJSONArray() throws IOException {
+        Assert.assertEquals(Arrays.asList("{\"a\":1}", "{\"a\":2}", "3"),
+                split("[{\"a\":1},{\"a\":2},3]"));
+        Assert.assertEquals(Collections.<String>emptyList(), split("[]"));
+        Assert.assertEquals(Collections.<String>emptyList(), split(" [ \n ] "));
+    }
+
+    @Test
+    public void testWhitespaceBetweenElements() throws IOException {
+        Assert.assertEquals(Arrays.asList("{\"a\":1}", "{\"a\" : 2}", "\"b\""),
+                split("\n [ {\"a\":1} ,\n\t{\"a\" : 2}\r\n,  \"b\"  ]\n"));
+    }
+
+    @Test
+    public void testEscapedQuotes() throws IOException {
+        Assert.assertEquals(Arrays.asList("{\"a\":\"x\\\"],{\"}", "{\"b\":\"\\\\\"}", "\"\\\"\""),
+                split("[{\"a\":\"x\\\"],{\"},{\"b\":\"\\\\\"},\"\\\"\"]"));
+    }
+
+    @Test
+    public void testNestedArraysAndObjects() throws IOException {
+        Assert.assertEquals(Arrays.asList("{\"a\":[1,[2,3]],\"b\":{\"c\":{\"d\":[]}}}", "[4,{\"e\":5}]", "[]"),
+                split("[{\"a\":[1,[2,3]],\"b\":{\"c\":{\"d\":[]}}},[4,{\"e\":5}],[]]"));
+    }
+
+    @Test
+    public void testUnterminatedJSONArray() throws IOException {
+        HTTPEventSplitter splitter = HTTPEventSplitter.create(new StringReader("[{\"a\":1},{\"a\":\"2]}"));
+        Assert.assertEquals("{\"a\":1}", splitter.nextEvent());
+        try {
+            splitter.nextEvent();
+            Assert.fail("An unterminated array must not be split");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertNull(splitter.nextEvent());
+
+        splitter = HTTPEventSplitter.create(new StringReader("[{\"a\":1}"));
+        try {
+            splitter.nextEvent();
+            Assert.fail("An unterminated array must not be split");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testXML() throws IOException {
+        List<String> events = split("<?xml version=\"1.0\"?>\n<events>\n  <event><a>1</a></event>\n" +
+                "  <event><a>2</a><b/></event>\n</events>");
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("<events><event><a>1</a></event></events>", events.get(0));
+        Assert.assertEquals("<events><event><a>2</a><b></b></event></events>", events.get(1));
+    }
+
+    @Test
+    public void testXMLWithNamespacedRoot() throws IOException {
+        List<String> events = split("<ns:events xmlns:ns=\"http://wso2.org/events\">" +
+                "<ns:event><ns:a>1</ns:a></ns:event><ns:event><ns:a>2</ns:a></ns:event></ns:events>");
+        Assert.assertEquals(2, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            String event = events.get(i);
+            Assert.assertTrue(event, event.startsWith("<ns:events xmlns:ns=\"http://wso2.org/events\">"));
+            Assert.assertTrue(event, event.contains("<ns:event><ns:a>" + (i + 1) + "</ns:a></ns:event>"));
+            Assert.assertTrue(event, event.endsWith("</ns:events>"));
+        }
+    }
+
+    @Test
+    public void testSingleEvent() throws IOException {
+        Assert.assertEquals(Collections.singletonList("{\"a\":[1,2]}\n"), split("  {\"a\":[1,2]}\n"));
+        Assert.assertEquals(Collections.singletonList("a,b,c"), split("a,b,c"));
+        Assert.assertEquals(Collections.<String>emptyList(), split(" \n "));
+    }
+
+    private static List<String> split(String body) throws IOException {
+        HTTPEventSplitter splitter = HTTPEventSplitter.create(new StringReader(body));
+        List<String> events = new ArrayList<String>();
+        String event;
+        while ((event = splitter.nextEvent()) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -15,61 +15,317 @@
  */
 package org.wso2.carbon.event.input.adapter.kafka;
 
-import kafka.consumer.ConsumerConfig;
-import kafka.consumer.KafkaStream;
-import kafka.javaapi.consumer.ConsumerConnector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
+import org.wso2.carbon.event.input.adapter.core.exception.InputEventAdapterRuntimeException;
+import org.wso2.carbon.event.input.adapter.kafka.internal.util.KafkaEventAdapterConstants;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Consumes a Kafka topic with the poll based consumer. A single thread polls the broker and splits the records of
+ * each poll by partition over a fixed set of single threaded workers, so that the records of a partition are always
+ * dispatched in order and by the same thread. The offsets of a poll are committed only after all its records have
+ * been dispatched to the event receiver, and the partitions whose dispatch failed are paused for a growing backoff
+ * and then consumed again, so that every event is delivered at least once. Records which still fail after the
+ * maximum number of retries are logged and skipped, so that a single bad batch does not stop its partition. Errors
+ * of the Kafka client, such as a commit failing because the group rebalanced, are logged and the consumer keeps
+ * polling until it is shut down.
+ */
 public class ConsumerKafkaAdaptor {
-    private final ConsumerConnector consumer;
+
+    private static final Log log = LogFactory.getLog(ConsumerKafkaAdaptor.class);
+
+    private final Consumer<byte[], byte[]> consumer;
     private final String topic;
-    private ExecutorService executor;
-    private Log log = LogFactory.getLog(ConsumerKafkaAdaptor.class);
-    private int tenantId;
+    private final long pollTimeout;
+    private final int tenantId;
+    private final KafkaConsumerStats stats;
+    private final long retryBackoffTime;
+    private final int maxDispatchRetries;
+    // the number of times in a row the dispatch of each partition failed, and when its paused partitions resume
+    private final Map<TopicPartition, Integer> dispatchFailures = new HashMap<TopicPartition, Integer>();
+    private final Map<TopicPartition, Long> resumeTimes = new HashMap<TopicPartition, Long>();
+    private InputEventAdapterListener brokerListener;
+    private ExecutorService pollExecutor;
+    private ExecutorService[] workers;
+    private volatile boolean running;
+    private long nextLagUpdateTime;
 
-    public ConsumerKafkaAdaptor(String inTopic, int tenantId,
-                                ConsumerConfig conf) {
-        consumer = kafka.consumer.Consumer.createJavaConsumerConnector(conf);
+    public ConsumerKafkaAdaptor(String adapterName, String inTopic, int tenantId, Properties consumerProperties,
+                                long pollTimeout) {
+        this(adapterName, inTopic, tenantId, createConsumer(consumerProperties), pollTimeout,
+                KafkaEventAdapterConstants.RETRY_BACKOFF_TIME, KafkaEventAdapterConstants.MAX_DISPATCH_RETRIES);
+    }
+
+    ConsumerKafkaAdaptor(String adapterName, String inTopic, int tenantId, Consumer<byte[], byte[]> consumer,
+                         long pollTimeout, long retryBackoffTime, int maxDispatchRetries) {
+        this.consumer = consumer;
         this.topic = inTopic;
         this.tenantId = tenantId;
+        this.pollTimeout = pollTimeout;
+        this.retryBackoffTime = retryBackoffTime;
+        this.maxDispatchRetries = maxDispatchRetries;
+        this.stats = new KafkaConsumerStats(adapterName, tenantId);
+    }
+
+    public void run(int numThreads, InputEventAdapterListener brokerListener) {
+        this.brokerListener = brokerListener;
+        workers = new ExecutorService[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = Executors.newSingleThreadExecutor();
+        }
+        stats.register();
+        running = true;
+        pollExecutor = Executors.newSingleThreadExecutor();
+        pollExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        });
     }
 
     public void shutdown() {
-        if (consumer != null) {
-            consumer.shutdown();
+        running = false;
+        consumer.wakeup();
+        if (pollExecutor != null) {
+            pollExecutor.shutdown();
+            try {
+                if (!pollExecutor.awaitTermination(pollTimeout + KafkaEventAdapterConstants.SHUTDOWN_WAIT_TIME,
+                        TimeUnit.MILLISECONDS)) {
+                    log.warn("Kafka consumer of topic '" + topic + "' did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
-        if (executor != null) {
-            executor.shutdown();
+        if (workers != null) {
+            for (ExecutorService worker : workers) {
+                worker.shutdown();
+            }
         }
+        stats.unregister();
     }
 
-    public void run(int numThreads, InputEventAdapterListener brokerListener) {
+    private void consume() {
         try {
-            Map<String, Integer> topicCountMap = new HashMap<String, Integer>();
-            topicCountMap.put(topic, numThreads);
-            Map<String, List<KafkaStream<byte[], byte[]>>> consumerMap = consumer.createMessageStreams(topicCountMap);
-            List<KafkaStream<byte[], byte[]>> streams = consumerMap.get(topic);
+            consumer.subscribe(Collections.singletonList(topic));
+            while (running) {
+                try {
+                    poll();
+                } catch (CommitFailedException e) {
+                    // The group rebalanced while the records were dispatched, the new owners of the partitions
+                    // resume from the last committed offsets.
+                    log.warn("Could not commit the offsets of Kafka topic '" + topic + "' as the consumer group "
+                            + "rebalanced, the uncommitted events will be consumed again", e);
+                } catch (WakeupException e) {
+                    throw e;
+                } catch (KafkaException e) {
+                    log.error("Error while consuming events from Kafka topic '" + topic + "', retrying in "
+                            + KafkaEventAdapterConstants.RETRY_BACKOFF_TIME + " ms", e);
+                    Thread.sleep(KafkaEventAdapterConstants.RETRY_BACKOFF_TIME);
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                log.error("Kafka consumer of topic '" + topic + "' was woken up unexpectedly", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            log.error("Error while consuming events from Kafka topic '" + topic + "', the adapter stopped "
+                    + "consuming", t);
+        } finally {
+            try {
+                consumer.close();
+            } catch (Throwable t) {
+                log.warn("Error while closing the Kafka consumer of topic '" + topic + "'", t);
+            }
+        }
+    }
 
-            // now launch all the threads
-            //
-            executor = Executors.newFixedThreadPool(numThreads);
+    private void poll() throws InterruptedException {
+        resumePartitions();
+        long pollStartTime = System.nanoTime();
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(pollTimeout);
+        long dispatchStartTime = System.nanoTime();
+        stats.recordPoll(dispatchStartTime - pollStartTime, records.count());
+        if (!records.isEmpty()) {
+            Map<TopicPartition, OffsetAndMetadata> offsets = dispatch(records);
+            if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
+            }
+            stats.recordDispatch(System.nanoTime() - dispatchStartTime);
+        }
+        updateConsumerLag();
+    }
 
-            // now create an object to consume the messages
-            //
-            for (final KafkaStream stream : streams) {
+    /**
+     * Hands the records of each partition to the worker of the partition and waits for all of them to be
+     * dispatched. The partitions of a worker that failed are left out of the commit, rewound to their last
+     * committed offset and paused for the backoff, so that their records are consumed again once it has passed.
+     * After the maximum number of retries the records are skipped, and committed like the dispatched ones.
+     *
+     * @return the offsets to commit for the dispatched records.
+     */
+    private Map<TopicPartition, OffsetAndMetadata> dispatch(ConsumerRecords<byte[], byte[]> records)
+            throws InterruptedException {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+        List<List<ConsumerRecord<byte[], byte[]>>> batches = new ArrayList<List<ConsumerRecord<byte[], byte[]>>>();
+        List<List<TopicPartition>> batchPartitions = new ArrayList<List<TopicPartition>>();
+        for (int i = 0; i < workers.length; i++) {
+            batches.add(null);
+            batchPartitions.add(null);
+        }
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(partition);
+            int workerIndex = partition.partition() % workers.length;
+            List<ConsumerRecord<byte[], byte[]>> batch = batches.get(workerIndex);
+            if (batch == null) {
+                batch = new ArrayList<ConsumerRecord<byte[], byte[]>>(partitionRecords.size());
+                batches.set(workerIndex, batch);
+                batchPartitions.set(workerIndex, new ArrayList<TopicPartition>());
+            }
+            batch.addAll(partitionRecords);
+            batchPartitions.get(workerIndex).add(partition);
+            long lastOffset = partitionRecords.get(partitionRecords.size() - 1).offset();
+            offsets.put(partition, new OffsetAndMetadata(lastOffset + 1));
+        }
 
-                executor.submit(new KafkaConsumer(stream, brokerListener, tenantId));
+        Map<Integer, Future<?>> futures = new HashMap<Integer, Future<?>>();
+        for (int i = 0; i < workers.length; i++) {
+            List<ConsumerRecord<byte[], byte[]>> batch = batches.get(i);
+            if (batch != null) {
+                futures.put(i, workers[i].submit(new KafkaPartitionWorker(batch, brokerListener, tenantId)));
             }
-        } catch (Throwable t) {
-            log.error("Error while creating KafkaConsumer ", t);
+        }
+        for (Map.Entry<Integer, Future<?>> entry : futures.entrySet()) {
+            List<TopicPartition> partitions = batchPartitions.get(entry.getKey());
+            try {
+                entry.getValue().get();
+                for (TopicPartition partition : partitions) {
+                    dispatchFailures.remove(partition);
+                }
+            } catch (ExecutionException e) {
+                for (TopicPartition partition : partitions) {
+                    List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(partition);
+                    long firstOffset = partitionRecords.get(0).offset();
+                    long lastOffset = partitionRecords.get(partitionRecords.size() - 1).offset();
+                    Integer failures = dispatchFailures.get(partition);
+                    int retries = failures == null ? 0 : failures;
+                    if (retries >= maxDispatchRetries) {
+                        dispatchFailures.remove(partition);
+                        stats.recordSkipped(partitionRecords.size());
+                        log.error("Error while dispatching the events of Kafka topic '" + topic + "' partition "
+                                + partition.partition() + ", skipping the events at offsets " + firstOffset + " to "
+                                + lastOffset + " after " + (retries + 1) + " attempts", e.getCause());
+                        continue;
+                    }
+                    long backoff = retryBackoffTime << retries;
+                    dispatchFailures.put(partition, retries + 1);
+                    log.error("Error while dispatching the events of Kafka topic '" + topic + "' partition "
+                            + partition.partition() + " at offsets " + firstOffset + " to " + lastOffset
+                            + ", the events will be consumed again in " + backoff + " ms", e.getCause());
+                    offsets.remove(partition);
+                    rewind(partition, firstOffset);
+                    consumer.pause(Collections.singletonList(partition));
+                    resumeTimes.put(partition, System.currentTimeMillis() + backoff);
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Resumes the paused partitions whose backoff has passed. A rebalance drops the pause of the partitions it
+     * revokes, so only the partitions still assigned to the consumer are resumed.
+     */
+    private void resumePartitions() {
+        if (resumeTimes.isEmpty()) {
+            return;
+        }
+        Set<TopicPartition> assignment = consumer.assignment();
+        dispatchFailures.keySet().retainAll(assignment);
+        long currentTime = System.currentTimeMillis();
+        List<TopicPartition> resumed = new ArrayList<TopicPartition>();
+        for (Iterator<Map.Entry<TopicPartition, Long>> iterator = resumeTimes.entrySet().iterator();
+             iterator.hasNext(); ) {
+            Map.Entry<TopicPartition, Long> entry = iterator.next();
+            if (!assignment.contains(entry.getKey())) {
+                iterator.remove();
+            } else if (entry.getValue() <= currentTime) {
+                resumed.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        if (!resumed.isEmpty()) {
+            consumer.resume(resumed);
+        }
+    }
+
+    /**
+     * Moves the position of the partition back to its last committed offset, or to the first offset of the
+     * failed records if the group has not committed an offset for the partition yet.
+     */
+    private void rewind(TopicPartition partition, long firstFailedOffset) {
+        OffsetAndMetadata committed = consumer.committed(partition);
+        consumer.seek(partition, committed != null ? committed.offset() : firstFailedOffset);
+    }
+
+    private void updateConsumerLag() {
+        long currentTime = System.currentTimeMillis();
+        if (currentTime < nextLagUpdateTime) {
+            return;
+        }
+        nextLagUpdateTime = currentTime + KafkaEventAdapterConstants.CONSUMER_LAG_UPDATE_INTERVAL;
+        Set<TopicPartition> assignment = consumer.assignment();
+        if (assignment.isEmpty()) {
+            stats.setConsumerLag(0);
+            return;
+        }
+        long lag = 0;
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(assignment);
+        for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+            lag += Math.max(0, entry.getValue() - consumer.position(entry.getKey()));
+        }
+        stats.setConsumerLag(lag);
+    }
+
+    private static Consumer<byte[], byte[]> createConsumer(Properties consumerProperties) {
+        // The Kafka client loads its pluggable classes through the context class loader.
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(KafkaConsumer.class.getClassLoader());
+            return new KafkaConsumer<byte[], byte[]>(consumerProperties, new ByteArrayDeserializer(),
+                    new ByteArrayDeserializer());
+        } catch (NoClassDefFoundError e) {
+            throw new InputEventAdapterRuntimeException("Cannot access kafka context due to missing jars", e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
         }
     }
-}
\ No newline at end of file
+}
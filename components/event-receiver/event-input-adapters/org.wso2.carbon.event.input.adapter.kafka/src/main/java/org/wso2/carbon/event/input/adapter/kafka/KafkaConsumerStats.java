@@ -0,0 +1,176 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.input.adapter.kafka;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer lag and poll latency of a Kafka input adapter, registered as an MBean while the adapter is connected.
+ * The values are only written by the polling thread of the adapter.
+ */
+public class KafkaConsumerStats implements KafkaConsumerStatsMBean {
+
+    private static final Log log = LogFactory.getLog(KafkaConsumerStats.class);
+
+    private final String adapterName;
+    private final int tenantId;
+
+    private volatile long consumerLag;
+    private volatile long pollCount;
+    private volatile long polledRecordCount;
+    private volatile long lastPollNanos;
+    private volatile long maxPollNanos;
+    private volatile long totalPollNanos;
+    private volatile long dispatchCount;
+    private volatile long lastDispatchNanos;
+    private volatile long totalDispatchNanos;
+    private volatile long skippedRecordCount;
+
+    public KafkaConsumerStats(String adapterName, int tenantId) {
+        this.adapterName = adapterName;
+        this.tenantId = tenantId;
+    }
+
+    void recordPoll(long nanos, int recordCount) {
+        pollCount++;
+        polledRecordCount += recordCount;
+        lastPollNanos = nanos;
+        totalPollNanos += nanos;
+        if (nanos > maxPollNanos) {
+            maxPollNanos = nanos;
+        }
+    }
+
+    void recordDispatch(long nanos) {
+        dispatchCount++;
+        lastDispatchNanos = nanos;
+        totalDispatchNanos += nanos;
+    }
+
+    void recordSkipped(int recordCount) {
+        skippedRecordCount += recordCount;
+    }
+
+    void setConsumerLag(long consumerLag) {
+        this.consumerLag = consumerLag;
+    }
+
+    @Override
+    public long getConsumerLag() {
+        return consumerLag;
+    }
+
+    @Override
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    @Override
+    public long getPolledRecordCount() {
+        return polledRecordCount;
+    }
+
+    @Override
+    public long getLastPollLatency() {
+        return toMicros(lastPollNanos);
+    }
+
+    @Override
+    public long getMaxPollLatency() {
+        return toMicros(maxPollNanos);
+    }
+
+    @Override
+    public long getMeanPollLatency() {
+        long count = pollCount;
+        return count == 0 ? 0 : toMicros(totalPollNanos / count);
+    }
+
+    @Override
+    public long getLastDispatchLatency() {
+        return toMicros(lastDispatchNanos);
+    }
+
+    @Override
+    public long getMeanDispatchLatency() {
+        long count = dispatchCount;
+        return count == 0 ? 0 : toMicros(totalDispatchNanos / count);
+    }
+
+    @Override
+    public long getSkippedRecordCount() {
+        return skippedRecordCount;
+    }
+
+    @Override
+    public void reset() {
+        pollCount = 0;
+        polledRecordCount = 0;
+        lastPollNanos = 0;
+        maxPollNanos = 0;
+        totalPollNanos = 0;
+        dispatchCount = 0;
+        lastDispatchNanos = 0;
+        totalDispatchNanos = 0;
+        skippedRecordCount = 0;
+    }
+
+    void register() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(this, name);
+        } catch (Exception e) {
+            log.warn("Error registering the statistics MBean of Kafka input adapter '" + adapterName + "'", e);
+        }
+    }
+
+    void unregister() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Error un-registering the statistics MBean of Kafka input adapter '" + adapterName + "'", e);
+        }
+    }
+
+    private ObjectName getObjectName() throws Exception {
+        String jmxAgentName = System.getProperty("jmx.agent.name");
+        if (jmxAgentName == null || "".equals(jmxAgentName)) {
+            jmxAgentName = "org.wso2.carbon.event";
+        }
+        return new ObjectName(jmxAgentName + ":Type=KafkaInputAdapter,Tenant=" + tenantId + ",Name=" +
+                ObjectName.quote(adapterName));
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.input.adapter.kafka;
+
+/**
+ * JMX view of a Kafka input adapter consumer. Latencies are in microseconds.
+ */
+public interface KafkaConsumerStatsMBean {
+
+    public long getConsumerLag();
+
+    public long getPollCount();
+
+    public long getPolledRecordCount();
+
+    public long getLastPollLatency();
+
+    public long getMaxPollLatency();
+
+    public long getMeanPollLatency();
+
+    public long getLastDispatchLatency();
+
+    public long getMeanDispatchLatency();
+
+    /**
+     * The number of records skipped because their dispatch still failed after the maximum number of retries.
+     */
+    public long getSkippedRecordCount();
+
+    public void reset();
+}
@@ -15,7 +15,6 @@
 
 package org.wso2.carbon.event.input.adapter.kafka;
 
-import kafka.consumer.ConsumerConfig;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
@@ -24,7 +23,6 @@ import org.wso2.carbon.event.input.adapter.core.InputEventAdapter;
 import org.wso2.carbon.event.input.adapter.core.InputEventAdapterConfiguration;
 import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
 import org.wso2.carbon.event.input.adapter.core.exception.InputEventAdapterException;
-import org.wso2.carbon.event.input.adapter.core.exception.InputEventAdapterRuntimeException;
 import org.wso2.carbon.event.input.adapter.core.exception.TestConnectionNotSupportedException;
 import org.wso2.carbon.event.input.adapter.kafka.internal.util.KafkaEventAdapterConstants;
 
@@ -88,31 +86,29 @@ public final class KafkaEventAdapter implements InputEventAdapter {
         return id.hashCode();
     }
 
-    private static ConsumerConfig createConsumerConfig(String zookeeper, String groupId,
-                                                       String optionalConfigs) {
-        try {
-            Properties props = new Properties();
-            props.put(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT, zookeeper);
-            props.put(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_GROUP_ID, groupId);
-
-            if (optionalConfigs != null) {
-                String[] optionalProperties = optionalConfigs.split(",");
-
-                if (optionalProperties != null) {
-                    for (String header : optionalProperties) {
-                        String[] configPropertyWithValue = header.split(":", 2);
-                        if (configPropertyWithValue.length == 2) {
-                            props.put(configPropertyWithValue[0], configPropertyWithValue[1]);
-                        } else {
-                            log.warn("Optional configuration property not defined in the correct format.\nRequired - property_name1:property_value1,property_name2:property_value2\nFound - " + optionalConfigs);
-                        }
+    private static Properties createConsumerConfig(String bootstrapServers, String groupId,
+                                                   String optionalConfigs) {
+        Properties props = new Properties();
+        props.put(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS, bootstrapServers);
+        props.put(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_GROUP_ID, groupId);
+
+        if (optionalConfigs != null) {
+            String[] optionalProperties = optionalConfigs.split(",");
+
+            if (optionalProperties != null) {
+                for (String header : optionalProperties) {
+                    String[] configPropertyWithValue = header.split(":", 2);
+                    if (configPropertyWithValue.length == 2) {
+                        props.put(configPropertyWithValue[0], configPropertyWithValue[1]);
+                    } else {
+                        log.warn("Optional configuration property not defined in the correct format.\nRequired - property_name1:property_value1,property_name2:property_value2\nFound - " + optionalConfigs);
                     }
                 }
             }
-            return new ConsumerConfig(props);
-        } catch (NoClassDefFoundError e) {
-            throw new InputEventAdapterRuntimeException("Cannot access kafka context due to missing jars", e);
         }
+        // Offsets are committed by the adapter once the events of a poll are dispatched.
+        props.put(KafkaEventAdapterConstants.ADAPTOR_CONSUMER_ENABLE_AUTO_COMMIT, "false");
+        return props;
     }
 
     private void createKafkaAdaptorListener(
@@ -121,16 +117,17 @@ public final class KafkaEventAdapter implements InputEventAdapter {
 
         Map<String, String> brokerProperties = new HashMap<String, String>();
         brokerProperties.putAll(inputEventAdapterConfiguration.getProperties());
-        String zkConnect = brokerProperties.get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT);
+        String bootstrapServers = brokerProperties.get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS);
         String groupID = brokerProperties.get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_GROUP_ID);
         String threadsStr = brokerProperties.get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_THREADS);
         String optionalConfiguration = brokerProperties.get(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES);
         int threads = Integer.parseInt(threadsStr);
+        long pollTimeout = getPollTimeout();
 
         String topic = inputEventAdapterConfiguration.getProperties().get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_TOPIC);
 
-        consumerKafkaAdaptor = new ConsumerKafkaAdaptor(topic, tenantId,
-                KafkaEventAdapter.createConsumerConfig(zkConnect, groupID, optionalConfiguration));
+        consumerKafkaAdaptor = new ConsumerKafkaAdaptor(inputEventAdapterConfiguration.getName(), topic, tenantId,
+                KafkaEventAdapter.createConsumerConfig(bootstrapServers, groupID, optionalConfiguration), pollTimeout);
         consumerKafkaAdaptor.run(threads, inputEventAdapterListener);
     }
 
@@ -146,11 +143,32 @@ public final class KafkaEventAdapter implements InputEventAdapter {
 
     private void validateInputEventAdapterConfigurations() throws InputEventAdapterException {
         String threadsProperty = eventAdapterConfiguration.getProperties().get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_THREADS);
+        int threads;
         try{
-            Integer.parseInt(threadsProperty);
+            threads = Integer.parseInt(threadsProperty);
         } catch (NumberFormatException e){
             throw new InputEventAdapterException("Invalid value set for property 'Threads': " + threadsProperty, e);
         }
+        if (threads < 1) {
+            throw new InputEventAdapterException("Invalid value set for property 'Threads': " + threadsProperty
+                    + ", at least one thread is required");
+        }
+        String pollTimeoutProperty = eventAdapterConfiguration.getProperties().get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_POLL_TIMEOUT);
+        if (pollTimeoutProperty != null && !pollTimeoutProperty.trim().isEmpty()) {
+            try {
+                Long.parseLong(pollTimeoutProperty.trim());
+            } catch (NumberFormatException e) {
+                throw new InputEventAdapterException("Invalid value set for property 'Poll Timeout': " + pollTimeoutProperty, e);
+            }
+        }
+    }
+
+    private long getPollTimeout() {
+        String pollTimeoutProperty = eventAdapterConfiguration.getProperties().get(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_POLL_TIMEOUT);
+        if (pollTimeoutProperty == null || pollTimeoutProperty.trim().isEmpty()) {
+            return KafkaEventAdapterConstants.DEFAULT_POLL_TIMEOUT;
+        }
+        return Long.parseLong(pollTimeoutProperty.trim());
     }
 
 }
\ No newline at end of file
@@ -45,12 +45,12 @@ public class KafkaEventAdapterFactory extends InputEventAdapterFactory {
 
         List<Property> propertyList = new ArrayList<Property>();
 
-        //set Zk Connect of broker
-        Property webZKConnect = new Property(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT);
-        webZKConnect.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT));
-        webZKConnect.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT_HINT));
-        webZKConnect.setRequired(true);
-        propertyList.add(webZKConnect);
+        //set bootstrap servers of the cluster
+        Property webBootstrapServers = new Property(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS);
+        webBootstrapServers.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS));
+        webBootstrapServers.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS_HINT));
+        webBootstrapServers.setRequired(true);
+        propertyList.add(webBootstrapServers);
 
         //set GroupID of broker
         Property webGroupID = new Property(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_GROUP_ID);
@@ -66,6 +66,14 @@ public class KafkaEventAdapterFactory extends InputEventAdapterFactory {
         webThreads.setRequired(true);
         propertyList.add(webThreads);
 
+        //set poll timeout
+        Property webPollTimeout = new Property(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_POLL_TIMEOUT);
+        webPollTimeout.setDisplayName(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_POLL_TIMEOUT));
+        webPollTimeout.setHint(resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_SUSCRIBER_POLL_TIMEOUT_HINT));
+        webPollTimeout.setRequired(false);
+        webPollTimeout.setDefaultValue(String.valueOf(KafkaEventAdapterConstants.DEFAULT_POLL_TIMEOUT));
+        propertyList.add(webPollTimeout);
+
         Property optionConfigProperties = new Property(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES);
         optionConfigProperties.setDisplayName(
                 resourceBundle.getString(KafkaEventAdapterConstants.ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES));
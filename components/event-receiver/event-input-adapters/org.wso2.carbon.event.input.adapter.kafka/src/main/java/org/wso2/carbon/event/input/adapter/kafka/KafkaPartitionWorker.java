@@ -0,0 +1,76 @@
+/*
+*  Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.event.input.adapter.kafka;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches the records a worker received from a single poll, in the order of their partitions, as one list of
+ * events. A failure of the receiver is rethrown, so that the consumer does not commit the records of the worker.
+ */
+public class KafkaPartitionWorker implements Runnable {
+
+    private static final Log log = LogFactory.getLog(KafkaPartitionWorker.class);
+
+    private final List<ConsumerRecord<byte[], byte[]>> records;
+    private final InputEventAdapterListener brokerListener;
+    private final int tenantId;
+
+    public KafkaPartitionWorker(List<ConsumerRecord<byte[], byte[]>> records,
+                                InputEventAdapterListener brokerListener, int tenantId) {
+        this.records = records;
+        this.brokerListener = brokerListener;
+        this.tenantId = tenantId;
+    }
+
+    @Override
+    public void run() {
+        List<String> events = new ArrayList<String>(records.size());
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            if (record.value() != null) {
+                events.add(new String(record.value(), StandardCharsets.UTF_8));
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Events received in Kafka Event Adaptor - " + events);
+        }
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+            brokerListener.onEvent(events);
+        } catch (RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while transforming the events : " + events, e);
+            }
+            throw e;
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+}
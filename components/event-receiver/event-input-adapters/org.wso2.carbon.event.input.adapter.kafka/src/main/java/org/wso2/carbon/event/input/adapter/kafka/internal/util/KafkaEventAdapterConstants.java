@@ -31,13 +31,21 @@ public final class KafkaEventAdapterConstants {
     public final static String ADAPTOR_SUSCRIBER_TOPIC = "topic";
     public final static String ADAPTOR_SUSCRIBER_GROUP_ID = "group.id";
     public final static String ADAPTOR_SUSCRIBER_GROUP_ID_hint = "group.id.hint";
-    public final static String ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT = "zookeeper.connect";
-    public final static String ADAPTOR_SUSCRIBER_ZOOKEEPER_CONNECT_HINT = "zookeeper.id.hint";
+    public final static String ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS = "bootstrap.servers";
+    public final static String ADAPTOR_SUSCRIBER_BOOTSTRAP_SERVERS_HINT = "bootstrap.servers.hint";
     public final static String ADAPTOR_SUSCRIBER_THREADS = "threads";
     public final static String ADAPTOR_SUSCRIBER_THREADS_HINT = "threads.hint";
+    public final static String ADAPTOR_SUSCRIBER_POLL_TIMEOUT = "poll.timeout";
+    public final static String ADAPTOR_SUSCRIBER_POLL_TIMEOUT_HINT = "poll.timeout.hint";
+    public final static String ADAPTOR_CONSUMER_ENABLE_AUTO_COMMIT = "enable.auto.commit";
     public final static String ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES="optional.configuration";
     public final static String ADAPTOR_OPTIONAL_CONFIGURATION_PROPERTIES_HINT="optional.configuration.hint";
     public static final int AXIS_TIME_INTERVAL_IN_MILLISECONDS = 10000;
+    public static final long DEFAULT_POLL_TIMEOUT = 1000;
+    public static final long CONSUMER_LAG_UPDATE_INTERVAL = 10000;
+    public static final long SHUTDOWN_WAIT_TIME = 5000;
+    public static final long RETRY_BACKOFF_TIME = 1000;
+    public static final int MAX_DISPATCH_RETRIES = 3;
 
 
 }
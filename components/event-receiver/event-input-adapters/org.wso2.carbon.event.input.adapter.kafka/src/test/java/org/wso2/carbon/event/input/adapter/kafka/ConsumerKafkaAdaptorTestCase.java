@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.input.adapter.kafka;
+
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.input.adapter.core.InputEventAdapterListener;
+import org.wso2.carbon.event.input.adapter.core.exception.ConnectionUnavailableException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConsumerKafkaAdaptorTestCase {
+
+    private static final String TOPIC = "events";
+    private static final int TENANT_ID = -1234;
+    private static final long TIMEOUT = 10000;
+    private static final long RETRY_BACKOFF_TIME = 100;
+    private static final int MAX_DISPATCH_RETRIES = 2;
+
+    private final TopicPartition partition0 = new TopicPartition(TOPIC, 0);
+    private final TopicPartition partition1 = new TopicPartition(TOPIC, 1);
+
+    private TestConsumer consumer;
+    private ConsumerKafkaAdaptor adaptor;
+    private TestListener listener;
+
+    @Before
+    public void setUp() {
+        consumer = new TestConsumer();
+        adaptor = new ConsumerKafkaAdaptor("test", TOPIC, TENANT_ID, consumer, 10, RETRY_BACKOFF_TIME,
+                MAX_DISPATCH_RETRIES);
+        listener = new TestListener();
+        adaptor.run(2, listener);
+    }
+
+    @After
+    public void tearDown() {
+        adaptor.shutdown();
+    }
+
+    @Test
+    public void testCommitAfterSuccessfulDispatch() throws InterruptedException {
+        assign(partition0, partition1);
+        addRecords(partition0, 0, "a", "b", "c");
+        addRecords(partition1, 0, "d", "e");
+
+        awaitCommitted(partition0, 3);
+        awaitCommitted(partition1, 2);
+        Assert.assertEquals(5, listener.events.size());
+        Assert.assertTrue(listener.events.containsAll(Arrays.asList("a", "b", "c", "d", "e")));
+    }
+
+    @Test
+    public void testFailedDispatchIsNotCommitted() throws InterruptedException {
+        listener.failOnce.set(true);
+        assign(partition0, partition1);
+        addRecords(partition0, 0, "a", TestListener.FAIL);
+        addRecords(partition1, 0, "b");
+
+        awaitCommitted(partition1, 1);
+        synchronized (consumer) {
+            Assert.assertNull("The failed partition must not be committed", consumer.committed(partition0));
+            Assert.assertEquals("The failed partition must be rewound", 0, consumer.position(partition0));
+            Assert.assertTrue("The failed partition must be paused", consumer.paused().contains(partition0));
+        }
+
+        // the rewound records are polled again once the backoff has passed
+        awaitCommitted(partition0, 2);
+        Assert.assertEquals("The failed events must be delivered again", 2,
+                Collections.frequency(listener.events, "a"));
+    }
+
+    @Test
+    public void testPoisonBatchIsSkipped() throws InterruptedException {
+        listener.failAlways.set(true);
+        assign(partition0, partition1);
+        addRecords(partition0, 0, "a", TestListener.FAIL, "b");
+        addRecords(partition1, 0, "c");
+
+        // the other partitions keep being consumed while the failed one backs off
+        awaitCommitted(partition1, 1);
+        awaitCommitted(partition0, 3);
+        Assert.assertEquals("The failed events must be retried the maximum number of times",
+                MAX_DISPATCH_RETRIES + 1, Collections.frequency(listener.events, "a"));
+        Assert.assertFalse(listener.events.contains("b"));
+        synchronized (consumer) {
+            Assert.assertTrue(consumer.paused().isEmpty());
+        }
+
+        // the backoff doubles with every retry
+        List<Long> attempts = listener.failureTimes;
+        Assert.assertEquals(MAX_DISPATCH_RETRIES + 1, attempts.size());
+        Assert.assertTrue(attempts.get(1) - attempts.get(0) >= RETRY_BACKOFF_TIME);
+        Assert.assertTrue(attempts.get(2) - attempts.get(1) >= 2 * RETRY_BACKOFF_TIME);
+
+        // the partition is consumed after the skipped events
+        listener.failAlways.set(false);
+        addRecords(partition0, 3, "d");
+        awaitCommitted(partition0, 4);
+        Assert.assertTrue(listener.events.contains("d"));
+    }
+
+    @Test
+    public void testRebalance() throws InterruptedException {
+        assign(partition0);
+        addRecords(partition0, 0, "a", "b");
+        awaitCommitted(partition0, 2);
+
+        // the group rebalances while the next records are dispatched, so that their commit fails
+        consumer.failNextCommit.set(true);
+        addRecords(partition0, 2, "c");
+        awaitCondition(new Condition() {
+            @Override
+            public boolean isMet() {
+                return !consumer.failNextCommit.get();
+            }
+        });
+
+        // the consumer keeps polling and consumes the partition assigned to it by the rebalance
+        assign(partition1);
+        addRecords(partition1, 0, "d", "e");
+        awaitCommitted(partition1, 2);
+        Assert.assertTrue(listener.events.containsAll(Arrays.asList("a", "b", "c", "d", "e")));
+    }
+
+    private void assign(final TopicPartition... partitions) {
+        consumer.schedulePollTask(new Runnable() {
+            @Override
+            public void run() {
+                consumer.rebalance(Arrays.asList(partitions));
+                Map<TopicPartition, Long> offsets = new HashMap<TopicPartition, Long>();
+                for (TopicPartition partition : partitions) {
+                    offsets.put(partition, 0L);
+                }
+                consumer.updateBeginningOffsets(offsets);
+                consumer.updateEndOffsets(offsets);
+            }
+        });
+    }
+
+    private void addRecords(final TopicPartition partition, final long firstOffset, final String... values) {
+        consumer.schedulePollTask(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < values.length; i++) {
+                    consumer.addRecord(new ConsumerRecord<byte[], byte[]>(TOPIC, partition.partition(),
+                            firstOffset + i, null, values[i].getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+        });
+    }
+
+    private void awaitCommitted(final TopicPartition partition, final long offset) throws InterruptedException {
+        awaitCondition(new Condition() {
+            @Override
+            public boolean isMet() {
+                synchronized (consumer) {
+                    if (!consumer.assignment().contains(partition)) {
+                        return false;
+                    }
+                    OffsetAndMetadata committed = consumer.committed(partition);
+                    return committed != null && committed.offset() == offset;
+                }
+            }
+        });
+    }
+
+    private void awaitCondition(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out, received events " + listener.events);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Consumer which keeps the records added to it like a broker does, so that a partition resumed after a rewind
+     * returns its records again.
+     */
+    private static class TestConsumer extends MockConsumer<byte[], byte[]> {
+
+        private final AtomicBoolean failNextCommit = new AtomicBoolean();
+        private final Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> log =
+                new HashMap<TopicPartition, List<ConsumerRecord<byte[], byte[]>>>();
+
+        private TestConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void addRecord(ConsumerRecord<byte[], byte[]> record) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            List<ConsumerRecord<byte[], byte[]>> records = log.get(partition);
+            if (records == null) {
+                records = new ArrayList<ConsumerRecord<byte[], byte[]>>();
+                log.put(partition, records);
+            }
+            records.add(record);
+            super.addRecord(record);
+        }
+
+        @Override
+        public synchronized void resume(Collection<TopicPartition> partitions) {
+            super.resume(partitions);
+            for (TopicPartition partition : partitions) {
+                List<ConsumerRecord<byte[], byte[]>> records = log.get(partition);
+                if (records == null) {
+                    continue;
+                }
+                long position = position(partition);
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    if (record.offset() >= position) {
+                        super.addRecord(record);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            if (failNextCommit.compareAndSet(true, false)) {
+                throw new CommitFailedException();
+            }
+            super.commitSync(offsets);
+        }
+    }
+
+    private static class TestListener implements InputEventAdapterListener {
+
+        private static final String FAIL = "fail";
+
+        private final List<String> events = new CopyOnWriteArrayList<String>();
+        private final List<Long> failureTimes = new CopyOnWriteArrayList<Long>();
+        private final AtomicBoolean failOnce = new AtomicBoolean();
+        private final AtomicBoolean failAlways = new AtomicBoolean();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onEvent(Object object) {
+            List<String> received = (List<String>) object;
+            if (received.contains(FAIL) && (failAlways.get() || failOnce.compareAndSet(true, false))) {
+                failureTimes.add(System.currentTimeMillis());
+                events.addAll(received.subList(0, received.indexOf(FAIL)));
+                throw new IllegalStateException("Failed to process " + received);
+            }
+            events.addAll(received);
+        }
+
+        @Override
+        public void connectionUnavailable(ConnectionUnavailableException connectionUnavailableException) {
+        }
+    }
+}
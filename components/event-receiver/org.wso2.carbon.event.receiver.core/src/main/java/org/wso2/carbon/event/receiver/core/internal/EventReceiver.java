@@ -43,12 +43,13 @@ import org.wso2.carbon.event.receiver.core.internal.util.EventReceiverUtil;
 import org.wso2.carbon.event.receiver.core.internal.util.helper.EventReceiverConfigurationHelper;
 import org.wso2.carbon.event.stream.core.EventProducer;
 import org.wso2.carbon.event.stream.core.EventProducerCallback;
+import org.wso2.carbon.event.stream.core.latency.EventLatencyTracker;
+import org.wso2.carbon.event.stream.core.latency.LatencyHistogram;
 import org.wso2.carbon.metrics.manager.Counter;
 import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.MetricManager;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 public class EventReceiver implements EventProducer {
@@ -58,6 +59,10 @@ public class EventReceiver implements EventProducer {
     private boolean traceEnabled = false;
     private boolean statisticsEnabled = false;
     private Counter eventCounter;
+    private int tenantId;
+    // mapping and dispatch of an event, from the adapter handing it over until it is sent to the stream junction
+    private LatencyHistogram processLatency;
+    private LatencyHistogram mappingLatency;
     private boolean customMappingEnabled = false;
     private boolean isWorkerNode = false;
     private boolean sufficientToSend = false;
@@ -70,16 +75,11 @@ public class EventReceiver implements EventProducer {
     private AbstractInputEventDispatcher inputEventDispatcher;
     private Mode mode;
 
-//    private volatile AtomicLong totalLatency = new AtomicLong();
-//    private volatile AtomicLong totalEvents = new AtomicLong();
-//    private double elapseCount = 10000;
-//    private long tempstartTime = System.currentTimeMillis();
-
     public EventReceiver(EventReceiverConfiguration eventReceiverConfiguration,
                          StreamDefinition exportedStreamDefinition, Mode mode)
             throws EventReceiverConfigurationException {
         this.eventReceiverConfiguration = eventReceiverConfiguration;
-        int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
 
         if (this.eventReceiverConfiguration != null) {
             this.traceEnabled = eventReceiverConfiguration.isTraceEnabled();
@@ -110,6 +110,13 @@ public class EventReceiver implements EventProducer {
             // Initialize tracer and statistics.
             if (statisticsEnabled) {
                 this.eventCounter = MetricManager.counter(metricId, Level.INFO, Level.INFO);
+                String eventReceiverName = eventReceiverConfiguration.getEventReceiverName();
+                this.processLatency = EventLatencyTracker.register(tenantId,
+                        EventLatencyTracker.CATEGORY_EVENT_RECEIVER, eventReceiverName,
+                        EventLatencyTracker.STAGE_RECEIVER_PROCESS);
+                this.mappingLatency = EventLatencyTracker.register(tenantId,
+                        EventLatencyTracker.CATEGORY_EVENT_RECEIVER, eventReceiverName,
+                        EventLatencyTracker.STAGE_RECEIVER_MAPPING);
             }
             if (traceEnabled) {
                 this.beforeTracerPrefix = "TenantId : " + tenantId + ", " + EventReceiverConstants.EVENT_RECEIVER +
@@ -209,7 +216,12 @@ public class EventReceiver implements EventProducer {
             }
         } else {
             try {
+                boolean sampled = processLatency != null && EventLatencyTracker.sample();
+                long startTime = sampled ? System.nanoTime() : 0;
                 Object convertedEvent = this.inputMapper.convertToMappedInputEvent(object);
+                if (sampled) {
+                    mappingLatency.record(System.nanoTime() - startTime);
+                }
                 if (convertedEvent != null) {
                     if (convertedEvent instanceof Event[]) {
                         Event[] arrayOfEvents = (Event[]) convertedEvent;
@@ -221,6 +233,9 @@ public class EventReceiver implements EventProducer {
                     } else {
                         sendEvent((Event) convertedEvent);
                     }
+                    if (sampled) {
+                        processLatency.record(System.nanoTime() - startTime);
+                    }
                 } else {
                     log.warn("Dropping the empty/null event, Event does not match with mapping");
                 }
@@ -247,7 +262,12 @@ public class EventReceiver implements EventProducer {
             }
         } else {
             try {
+                boolean sampled = processLatency != null && EventLatencyTracker.sample();
+                long startTime = sampled ? System.nanoTime() : 0;
                 Object convertedEvent = this.inputMapper.convertToTypedInputEvent(obj);
+                if (sampled) {
+                    mappingLatency.record(System.nanoTime() - startTime);
+                }
                 if (convertedEvent != null) {
                     if (convertedEvent instanceof Event[]) {
                         Event[] arrayOfEvents = (Event[]) convertedEvent;
@@ -259,6 +279,9 @@ public class EventReceiver implements EventProducer {
                     } else {
                         sendEvent((Event) convertedEvent);
                     }
+                    if (sampled) {
+                        processLatency.record(System.nanoTime() - startTime);
+                    }
                 }
             } catch (EventReceiverProcessingException e) {
                 log.error("Dropping event. Error processing event: " + e.getMessage(), e);
@@ -273,23 +296,6 @@ public class EventReceiver implements EventProducer {
         if (statisticsEnabled) {
             eventCounter.inc();
         }
-//
-//        long timestamp = event.getTimeStamp();
-//        long currentTimestamp = System.currentTimeMillis();
-//        event.setTimeStamp(currentTimestamp);
-//        long eventLatency = currentTimestamp - timestamp;
-//        totalLatency.addAndGet(eventLatency);
-//        totalEvents.incrementAndGet();
-//        if (totalEvents.get() % elapseCount == 0) {
-//            double avgLatency = (totalLatency.get() * 1.0) / elapseCount;
-//            double throughput = ((elapseCount * 1.0) / (currentTimestamp - tempstartTime + 0.0)) * 1000;
-//
-//            log.info("Received " + elapseCount + " events with a throughput of " + throughput +
-//                    " events per second || and latency: " + avgLatency);
-//            tempstartTime = currentTimestamp;
-//            totalLatency.set(0);
-//        }
-
 
         // In distributed mode if events are duplicated in cluster, send event only if the node is receiver coordinator.
         // Also do not send if this is a manager node.
@@ -339,6 +345,13 @@ public class EventReceiver implements EventProducer {
     public void destroy() {
         EventReceiverServiceValueHolder.getInputEventAdapterService()
                 .destroy(eventReceiverConfiguration.getFromAdapterConfiguration().getName());
+        if (processLatency != null) {
+            String eventReceiverName = eventReceiverConfiguration.getEventReceiverName();
+            EventLatencyTracker.unregister(tenantId, EventLatencyTracker.CATEGORY_EVENT_RECEIVER, eventReceiverName,
+                    EventLatencyTracker.STAGE_RECEIVER_PROCESS);
+            EventLatencyTracker.unregister(tenantId, EventLatencyTracker.CATEGORY_EVENT_RECEIVER, eventReceiverName,
+                    EventLatencyTracker.STAGE_RECEIVER_MAPPING);
+        }
         if (mode == Mode.HA && inputEventDispatcher instanceof EventSync) {
             EventReceiverServiceValueHolder.getEventManagementService().unregisterEventSync(
                     ((EventSync) inputEventDispatcher).getStreamDefinition().getStreamId(), Manager.ManagerType.Receiver);
@@ -24,6 +24,8 @@ import org.wso2.carbon.event.stream.core.SiddhiEventConsumer;
 import org.wso2.carbon.event.stream.core.WSO2EventConsumer;
 import org.wso2.carbon.event.stream.core.WSO2EventListConsumer;
 import org.wso2.carbon.event.stream.core.internal.util.EventConverter;
+import org.wso2.carbon.event.stream.core.latency.EventLatencyTracker;
+import org.wso2.carbon.event.stream.core.latency.LatencyHistogram;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -45,6 +47,9 @@ public class EventJunction implements EventProducerCallback {
     private boolean payloadFlag = false;
     private int attributesCount;
 
+    private int tenantId;
+    private LatencyHistogram dispatchLatency;
+
 
     /*
      holding the producers this junction is subscribed to.
@@ -60,13 +65,26 @@ public class EventJunction implements EventProducerCallback {
     private CopyOnWriteArrayList<WSO2EventConsumer> wso2EventConsumers;
     private CopyOnWriteArrayList<WSO2EventListConsumer> wso2EventListConsumers;
 
-    public EventJunction(StreamDefinition streamDefinition) {
+    public EventJunction(StreamDefinition streamDefinition, int tenantId) {
         this.streamDefinition = streamDefinition;
+        this.tenantId = tenantId;
         this.producers = new CopyOnWriteArrayList<EventProducer>();
         this.siddhiEventConsumers = new CopyOnWriteArrayList<SiddhiEventConsumer>();
         this.wso2EventConsumers = new CopyOnWriteArrayList<WSO2EventConsumer>();
         this.wso2EventListConsumers = new CopyOnWriteArrayList<WSO2EventListConsumer>();
         populateEventTemplate(streamDefinition);
+        this.dispatchLatency = EventLatencyTracker.register(tenantId, EventLatencyTracker.CATEGORY_EVENT_STREAM,
+                streamDefinition.getStreamId(), EventLatencyTracker.STAGE_JUNCTION_DISPATCH);
+    }
+
+    /**
+     * Releases the resources held for the stream, when the junction is discarded.
+     */
+    public void destroy() {
+        if (dispatchLatency != null) {
+            EventLatencyTracker.unregister(tenantId, EventLatencyTracker.CATEGORY_EVENT_STREAM,
+                    streamDefinition.getStreamId(), EventLatencyTracker.STAGE_JUNCTION_DISPATCH);
+        }
     }
 
     public void addConsumer(SiddhiEventConsumer consumer) {
@@ -138,6 +156,8 @@ public class EventJunction implements EventProducerCallback {
 
     @Override
     public void sendEvent(Event event) {
+        boolean sampled = dispatchLatency != null && EventLatencyTracker.sample();
+        long startTime = sampled ? System.nanoTime() : 0;
 
         if (!siddhiEventConsumers.isEmpty()) {
             org.wso2.siddhi.core.event.Event convertedEvent = EventConverter.convertToEvent(event, metaFlag, correlationFlag, payloadFlag, attributesCount);
@@ -171,10 +191,15 @@ public class EventJunction implements EventProducerCallback {
             }
         }
 
+        if (sampled) {
+            dispatchLatency.record(System.nanoTime() - startTime);
+        }
     }
 
     @Override
     public void sendEvents(List<Event> events) {
+        boolean sampled = dispatchLatency != null && EventLatencyTracker.sample();
+        long startTime = sampled ? System.nanoTime() : 0;
         for (Event event : events) {
             if (!siddhiEventConsumers.isEmpty()) {
                 org.wso2.siddhi.core.event.Event convertedEvent = EventConverter.convertToEvent(event, metaFlag, correlationFlag, payloadFlag, attributesCount);
@@ -209,6 +234,10 @@ public class EventJunction implements EventProducerCallback {
                 }
             }
         }
+
+        if (sampled) {
+            dispatchLatency.record(System.nanoTime() - startTime);
+        }
     }
 
     private void populateEventTemplate(StreamDefinition definition) {
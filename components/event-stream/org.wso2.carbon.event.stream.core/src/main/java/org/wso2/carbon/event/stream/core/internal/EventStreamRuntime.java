@@ -46,7 +46,10 @@ public class EventStreamRuntime {
         if (streamDefinition == null) {
             Map<String, EventJunction> eventJunctionMap = tenantSpecificEventJunctions.get(tenantId);
             if (eventJunctionMap != null) {
-                eventJunctionMap.remove(streamId);
+                EventJunction eventJunction = eventJunctionMap.remove(streamId);
+                if (eventJunction != null) {
+                    eventJunction.destroy();
+                }
             }
         }
 
@@ -70,7 +73,7 @@ public class EventStreamRuntime {
             if (streamDefinition == null) {
                 throw new EventStreamConfigurationException("Stream " + streamId + " is not configured to tenant " + tenantId);
             }
-            eventJunction = new EventJunction(streamDefinition);
+            eventJunction = new EventJunction(streamDefinition, tenantId);
             eventJunctionMap.put(streamDefinition.getStreamId(), eventJunction);
         }
         return eventJunction;
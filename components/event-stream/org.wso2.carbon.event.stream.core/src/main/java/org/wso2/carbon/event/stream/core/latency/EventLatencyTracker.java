@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.latency;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entry point of the opt-in latency instrumentation of the event flow. Latency histograms are registered per stage
+ * and per artifact (event receiver, stream junction or event publisher) as MBeans, under the same JMX domain as the
+ * event statistics MBeans. The instrumentation is disabled unless the "org.wso2.carbon.event.latency.enabled"
+ * system property is set to true, and only one in "org.wso2.carbon.event.latency.sampleInterval" events (64 by
+ * default, rounded up to a power of two) is timed at each stage, to keep the overhead off the event path.
+ */
+public final class EventLatencyTracker {
+
+    public static final String LATENCY_ENABLED_PROPERTY = "org.wso2.carbon.event.latency.enabled";
+    public static final String SAMPLE_INTERVAL_PROPERTY = "org.wso2.carbon.event.latency.sampleInterval";
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    public static final String CATEGORY_EVENT_RECEIVER = "EventReceiver";
+    public static final String CATEGORY_EVENT_STREAM = "EventStream";
+    public static final String CATEGORY_EVENT_PUBLISHER = "EventPublisher";
+
+    public static final String STAGE_RECEIVER_PROCESS = "ReceiverProcess";
+    public static final String STAGE_RECEIVER_MAPPING = "ReceiverMapping";
+    public static final String STAGE_JUNCTION_DISPATCH = "JunctionDispatch";
+    public static final String STAGE_PUBLISHER_MAPPING = "PublisherMapping";
+    public static final String STAGE_ADAPTER_PUBLISH = "AdapterPublish";
+
+    private static final Log log = LogFactory.getLog(EventLatencyTracker.class);
+
+    private static final boolean enabled = Boolean.getBoolean(LATENCY_ENABLED_PROPERTY);
+    private static final int sampleMask = computeSampleMask(Integer.getInteger(SAMPLE_INTERVAL_PROPERTY,
+            DEFAULT_SAMPLE_INTERVAL));
+
+    private EventLatencyTracker() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides whether the current event is timed, to be called only when a histogram has been registered.
+     */
+    public static boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    /**
+     * Creates and registers the histogram of a stage of an artifact.
+     *
+     * @return the histogram, or null if the latency instrumentation is disabled.
+     */
+    public static LatencyHistogram register(int tenantId, String category, String artifactName, String stage) {
+        if (!enabled) {
+            return null;
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(tenantId, category, artifactName, stage);
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(histogram, name);
+        } catch (Exception e) {
+            log.warn("Error registering the latency MBean of stage '" + stage + "' of " + category + " '" +
+                    artifactName + "'", e);
+        }
+        return histogram;
+    }
+
+    public static void unregister(int tenantId, String category, String artifactName, String stage) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName(tenantId, category, artifactName, stage);
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Error un-registering the latency MBean of stage '" + stage + "' of " + category + " '" +
+                    artifactName + "'", e);
+        }
+    }
+
+    private static ObjectName getObjectName(int tenantId, String category, String artifactName, String stage)
+            throws Exception {
+        String jmxAgentName = System.getProperty("jmx.agent.name");
+        if (jmxAgentName == null || "".equals(jmxAgentName)) {
+            jmxAgentName = "org.wso2.carbon.event";
+        }
+        return new ObjectName(jmxAgentName + ":Type=Latency,Category=" + category + ",Stage=" + stage +
+                ",Tenant=" + tenantId + ",Name=" + ObjectName.quote(artifactName));
+    }
+
+    private static int computeSampleMask(int sampleInterval) {
+        if (sampleInterval <= 1) {
+            return 0;
+        }
+        int powerOfTwo = Integer.highestOneBit(sampleInterval - 1) << 1;
+        return powerOfTwo - 1;
+    }
+}
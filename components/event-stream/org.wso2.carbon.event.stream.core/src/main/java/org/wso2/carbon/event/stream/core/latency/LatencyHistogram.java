@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.latency;
+
+import org.wso2.carbon.databridge.commons.utils.LogLinearHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of the latencies of a processing stage, recorded in nanoseconds and exposed over JMX in microseconds.
+ * Latencies longer than 2^40 nanoseconds (about 18 minutes) are counted in the last bucket, see
+ * {@link LogLinearHistogram}.
+ */
+public class LatencyHistogram extends LogLinearHistogram implements LatencyHistogramMBean {
+
+    @Override
+    public double getMean() {
+        return Math.round(getMeanValue()) / 1000.0;
+    }
+
+    @Override
+    public long getMax() {
+        return toMicros(getMaxValue());
+    }
+
+    @Override
+    public long get50thPercentile() {
+        return toMicros(getValueAtPercentile(50));
+    }
+
+    @Override
+    public long get75thPercentile() {
+        return toMicros(getValueAtPercentile(75));
+    }
+
+    @Override
+    public long get95thPercentile() {
+        return toMicros(getValueAtPercentile(95));
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return toMicros(getValueAtPercentile(99));
+    }
+
+    @Override
+    public long get999thPercentile() {
+        return toMicros(getValueAtPercentile(99.9));
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.latency;
+
+/**
+ * JMX view of the latencies recorded for a processing stage, in microseconds.
+ */
+public interface LatencyHistogramMBean {
+
+    public long getSampleCount();
+
+    public double getMean();
+
+    public long getMax();
+
+    public long get50thPercentile();
+
+    public long get75thPercentile();
+
+    public long get95thPercentile();
+
+    public long get99thPercentile();
+
+    public long get999thPercentile();
+
+    public void reset();
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.wso2.carbon.event.stream.core.latency;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTestCase {
+
+    @Test
+    public void testMicros() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(2, histogram.getSampleCount());
+        Assert.assertEquals(Long.MAX_VALUE / 1000, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(0, histogram.get99thPercentile());
+
+        for (int nanos = 1; nanos <= 100; nanos++) {
+            histogram.record(nanos);
+        }
+        histogram.record(-1);
+        Assert.assertEquals(100, histogram.getSampleCount());
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+        Assert.assertEquals(50, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(99, histogram.getValueAtPercentile(99));
+        // the percentile is capped by the largest recorded value
+        Assert.assertEquals(100, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        assertWithin(500, histogram.get50thPercentile());
+        assertWithin(750, histogram.get75thPercentile());
+        assertWithin(950, histogram.get95thPercentile());
+        assertWithin(990, histogram.get99thPercentile());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue("Expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 32);
+    }
+}
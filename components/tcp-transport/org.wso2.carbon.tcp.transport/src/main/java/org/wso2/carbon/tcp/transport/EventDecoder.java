@@ -20,27 +20,56 @@ package org.wso2.carbon.tcp.transport;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
-import org.wso2.carbon.tcp.transport.dto.StreamTypeHolder;
+import org.apache.log4j.Logger;
+import org.wso2.carbon.tcp.transport.util.BinaryMessageConstants;
 import org.wso2.carbon.tcp.transport.util.SiddhiEventConverter;
 
 import java.util.List;
 
-
+/**
+ * Decodes the publish messages of a connection into lists of {@link SiddhiEventComposite}. A message is decoded only
+ * once it is fully received, directly from the receive buffer, so that its bytes are never copied.
+ */
 public class EventDecoder extends ByteToMessageDecoder {
+    private static final Logger log = Logger.getLogger(EventDecoder.class);
+
+    private final int tenantId;
+    private final int maxFrameSize;
+
+    public EventDecoder(int tenantId, int maxFrameSize) {
+        this.tenantId = tenantId;
+        this.maxFrameSize = maxFrameSize;
+    }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-        if (in.readableBytes() < 5){
+        if (in.readableBytes() < BinaryMessageConstants.MESSAGE_HEADER_SIZE) {
+            return;
+        }
+        int messageStart = in.readerIndex();
+        byte protocol = in.getByte(messageStart);
+        int messageSize = in.getInt(messageStart + 1);
+        if (protocol != BinaryMessageConstants.PUBLISH_MESSAGE || messageSize < 0 || messageSize > maxFrameSize) {
+            log.error("Closing connection from " + ctx.channel().remoteAddress() + " as it sent a message of type "
+                    + protocol + " and " + messageSize + " bytes, only publish messages of up to " + maxFrameSize
+                    + " bytes are accepted");
+            in.skipBytes(in.readableBytes());
+            ctx.close();
             return;
         }
-        int protocol = in.readByte();
-        int messageSize = in.readInt();
-        if(protocol != 2 || messageSize > in.readableBytes()) {
-            in.resetReaderIndex();
+        if (in.readableBytes() < BinaryMessageConstants.MESSAGE_HEADER_SIZE + messageSize) {
             return;
         }
-        StreamTypeHolder streamTypeHolder = TransportStreamManager.getInstance().getStreamTypeHolder(-1234);
-        List<SiddhiEventComposite> testList = SiddhiEventConverter.getConverter().toEventList(in, streamTypeHolder);
-        out.add(testList);
+        int bodyStart = messageStart + BinaryMessageConstants.MESSAGE_HEADER_SIZE;
+        in.readerIndex(bodyStart + messageSize);
+        try {
+            out.add(SiddhiEventConverter.getConverter().toEventList(in.slice(bodyStart, messageSize),
+                    TransportStreamManager.getInstance().getStreamTypeHolder(tenantId)));
+        } catch (RuntimeException e) {
+            log.error("Closing connection from " + ctx.channel().remoteAddress() + " as it sent a malformed message, "
+                    + e.getMessage(), e);
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+        }
     }
 }
@@ -24,12 +24,19 @@ import org.wso2.carbon.tcp.transport.util.BinaryEventConverter;
 
 import java.util.List;
 
-
+/**
+ * Encodes a batch of events as a single publish message, into a buffer of the channel allocator.
+ */
 public class EventEncoder extends MessageToByteEncoder<List<SiddhiEventComposite>> {
 
+    private final String sessionId;
+
+    public EventEncoder(String sessionId) {
+        this.sessionId = sessionId;
+    }
 
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext, List<SiddhiEventComposite> eventList, ByteBuf byteBuf) throws Exception {
-        BinaryEventConverter.convertToBinaryMessage(eventList, "test", byteBuf);
+        BinaryEventConverter.convertToBinaryMessage(eventList, sessionId, byteBuf);
     }
 }
@@ -18,18 +18,24 @@
 
 package org.wso2.carbon.tcp.transport;
 
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
 import org.wso2.carbon.tcp.transport.handlers.ServerChannelInboundHandler;
 
-public class ServerChannelInitializer extends ChannelInitializer {
+public class ServerChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private final TcpServerConfig serverConfig;
+
+    public ServerChannelInitializer(TcpServerConfig serverConfig) {
+        this.serverConfig = serverConfig;
+    }
 
     @Override
-    protected void initChannel(Channel channel) throws Exception {
+    protected void initChannel(SocketChannel channel) throws Exception {
         ChannelPipeline p = channel.pipeline();
         p.addLast(
-                new EventDecoder(),
-                new ServerChannelInboundHandler());
+                new EventDecoder(serverConfig.getTenantId(), serverConfig.getMaxFrameSize()),
+                new ServerChannelInboundHandler(serverConfig.getTenantId()));
     }
 }
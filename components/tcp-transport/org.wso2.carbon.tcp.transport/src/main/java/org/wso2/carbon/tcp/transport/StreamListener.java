@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+/**
+ * Receives the events of a stream arriving at a {@link TcpNettyServer}. The events of a connection are delivered in
+ * order from the I/O thread of the connection, hence implementations must be thread safe and should not block.
+ */
+public interface StreamListener {
+
+    StreamDefinition getStreamDefinition();
+
+    void onEvent(Event event);
+
+    /**
+     * Receives consecutive events of the stream which arrived in the same batch.
+     */
+    void onEvents(Event[] events);
+}
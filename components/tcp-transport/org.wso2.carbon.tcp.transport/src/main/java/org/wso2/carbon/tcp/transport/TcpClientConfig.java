@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+/**
+ * Configuration of a {@link TcpNettyClient}.
+ */
+public class TcpClientConfig {
+
+    private String host = "localhost";
+    private int port = 9892;
+    private String sessionId = "";
+    private int connectionCount = 1;
+    private int workerThreads = 0;
+    private int batchSize = 200;
+    private long maxBatchDelayInMillis = 10;
+    private int writeBufferHighWaterMark = 1024 * 1024;
+    private int writeBufferLowWaterMark = 512 * 1024;
+    private long writeTimeoutInMillis = 10000;
+    private long connectTimeoutInMillis = 10000;
+    private long reconnectIntervalInMillis = 1000;
+
+    public TcpClientConfig() {
+    }
+
+    public TcpClientConfig(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * @param connectionCount the number of connections opened to the server, the events of a publishing thread are
+     *                        always sent over the same connection
+     */
+    public void setConnectionCount(int connectionCount) {
+        this.connectionCount = connectionCount;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @param workerThreads the number of I/O threads writing to the connections, 0 uses one thread per connection up
+     *                      to twice the number of processors
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the number of events written to a connection as a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getMaxBatchDelayInMillis() {
+        return maxBatchDelayInMillis;
+    }
+
+    /**
+     * @param maxBatchDelayInMillis the maximum time an event waits for its batch to fill up before it is sent
+     */
+    public void setMaxBatchDelayInMillis(long maxBatchDelayInMillis) {
+        this.maxBatchDelayInMillis = maxBatchDelayInMillis;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    /**
+     * @param writeBufferHighWaterMark the number of bytes pending to be written to a connection above which the
+     *                                 publishing threads are blocked
+     */
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    /**
+     * @param writeBufferLowWaterMark the number of bytes pending to be written to a connection below which the
+     *                                blocked publishing threads are released
+     */
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    public long getWriteTimeoutInMillis() {
+        return writeTimeoutInMillis;
+    }
+
+    /**
+     * @param writeTimeoutInMillis the maximum time a publishing thread is blocked waiting for a congested connection
+     */
+    public void setWriteTimeoutInMillis(long writeTimeoutInMillis) {
+        this.writeTimeoutInMillis = writeTimeoutInMillis;
+    }
+
+    public long getConnectTimeoutInMillis() {
+        return connectTimeoutInMillis;
+    }
+
+    public void setConnectTimeoutInMillis(long connectTimeoutInMillis) {
+        this.connectTimeoutInMillis = connectTimeoutInMillis;
+    }
+
+    public long getReconnectIntervalInMillis() {
+        return reconnectIntervalInMillis;
+    }
+
+    /**
+     * @param reconnectIntervalInMillis the minimum time between attempts to re-establish a lost connection, events
+     *                                  sent over the connection in between are rejected
+     */
+    public void setReconnectIntervalInMillis(long reconnectIntervalInMillis) {
+        this.reconnectIntervalInMillis = reconnectIntervalInMillis;
+    }
+}
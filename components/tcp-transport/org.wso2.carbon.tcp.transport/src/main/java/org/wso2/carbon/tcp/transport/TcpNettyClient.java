@@ -18,77 +18,368 @@
 package org.wso2.carbon.tcp.transport;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.tcp.transport.exception.ConnectionUnavailableException;
 import org.wso2.siddhi.core.event.Event;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sends events to a {@link TcpNettyServer} over a pool of connections.
+ * <p>
+ * The events of a publishing thread are always sent over the same connection, so that they are received in order.
+ * Events are collected into batches per connection and a batch is written as a single message once it is full, or
+ * once the oldest event waited for the configured maximum batch delay. The batches written to a connection from any
+ * number of threads are flushed together by a single task of its I/O thread, so that the socket is written once per
+ * round of batches rather than once per batch.
+ * <p>
+ * A publishing thread is blocked while its connection holds more than the configured high water mark of unsent
+ * bytes, up to the write timeout. A lost connection is re-established when events are next sent over it.
+ */
 public class TcpNettyClient {
     private static final Logger log = Logger.getLogger(TcpNettyClient.class);
 
+    private final TcpClientConfig clientConfig;
+    private final String serverUrl;
+    private final Object writabilityLock = new Object();
+    private EventLoopGroup group;
+    private Bootstrap bootstrap;
+    private Connection[] connections;
+    private ScheduledExecutorService lingerExecutor;
+    private volatile boolean started;
+
+    public TcpNettyClient(TcpClientConfig clientConfig) {
+        this.clientConfig = clientConfig;
+        this.serverUrl = clientConfig.getHost() + ":" + clientConfig.getPort();
+    }
+
     /**
-     * @param args
+     * Opens the connections to the server. Connections which cannot be opened are retried when events are sent.
      */
-    public static void main(String[] args) {
-
-        EventLoopGroup group = new NioEventLoopGroup();
-        try {
-            Bootstrap b = new Bootstrap();
-            b.group(group)
-                    .channel(NioSocketChannel.class)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            ChannelPipeline p = ch.pipeline();
-                            p.addLast(
-                                    new EventEncoder()
-                            );
-                        }
-                    });
-
-
-            // Start the connection attempt.
-            Channel ch = b.connect("localhost", 8080).sync().channel();
-            List<SiddhiEventComposite> eventList = new ArrayList<SiddhiEventComposite>();
-            ChannelFuture cf;
-            for (int i = 0; i < 1; i++) {
-                for (int j=0; j<5; j++) {
-                    Event event = new Event(System.currentTimeMillis(), new Object[]{"WSO2", i, 10});
-                    eventList.add(new SiddhiEventComposite(event, "StockStream"));
-                    Event event1 = new Event(System.currentTimeMillis(), new Object[]{"IBM", i, 10});
-                    eventList.add(new SiddhiEventComposite(event1, "StockStream"));
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        int workerThreads = clientConfig.getWorkerThreads() > 0 ? clientConfig.getWorkerThreads()
+                : Math.min(clientConfig.getConnectionCount(), Runtime.getRuntime().availableProcessors() * 2);
+        group = new NioEventLoopGroup(workerThreads);
+        final ClientChannelHandler clientChannelHandler = new ClientChannelHandler();
+        bootstrap = new Bootstrap();
+        bootstrap.group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) clientConfig.getConnectTimeoutInMillis())
+                .option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, clientConfig.getWriteBufferHighWaterMark())
+                .option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, clientConfig.getWriteBufferLowWaterMark())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ChannelPipeline p = ch.pipeline();
+                        p.addLast(
+                                new EventEncoder(clientConfig.getSessionId()),
+                                clientChannelHandler
+                        );
+                    }
+                });
+
+        connections = new Connection[clientConfig.getConnectionCount()];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection();
+            try {
+                connections[i].connect();
+            } catch (ConnectionUnavailableException e) {
+                log.warn(e.getMessage() + ", retrying when events are sent");
+            }
+        }
+
+        lingerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TcpNettyClient-BatchLinger-" + serverUrl);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        lingerExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (Connection connection : connections) {
+                    try {
+                        connection.writeBatch(false);
+                    } catch (RuntimeException e) {
+                        log.error("Error writing pending events to " + serverUrl + ", " + e.getMessage(), e);
+                    }
                 }
-                cf = ch.write(eventList);
-                    ch.flush();
-                    cf.await();
-                eventList =  new ArrayList<SiddhiEventComposite>();
+            }
+        }, clientConfig.getMaxBatchDelayInMillis(), clientConfig.getMaxBatchDelayInMillis(), TimeUnit.MILLISECONDS);
+        started = true;
+    }
+
+    /**
+     * @throws ConnectionUnavailableException if the connection cannot be re-established or stays congested, the
+     *                                        events of the pending batch of the connection are dropped
+     */
+    public void send(String streamId, Event event) {
+        selectConnection().add(streamId, event);
+    }
+
+    /**
+     * @throws ConnectionUnavailableException if the connection cannot be re-established or stays congested, the
+     *                                        events of the pending batch of the connection are dropped
+     */
+    public void send(String streamId, Event[] events) {
+        selectConnection().add(streamId, events);
+    }
+
+    /**
+     * Writes the pending batches of all the connections without waiting for them to fill up.
+     */
+    public void flush() {
+        if (!started) {
+            throw new ConnectionUnavailableException("TCP transport client to " + serverUrl + " is not started");
+        }
+        for (Connection connection : connections) {
+            connection.writeBatch(true);
+        }
+    }
+
+    /**
+     * Writes the pending batches and closes the connections once the written events are sent.
+     */
+    public synchronized void shutdown() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        lingerExecutor.shutdownNow();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        group.shutdownGracefully().awaitUninterruptibly();
+    }
+
+    private Connection selectConnection() {
+        if (!started) {
+            throw new ConnectionUnavailableException("TCP transport client to " + serverUrl + " is not started");
+        }
+        return connections[(int) (Thread.currentThread().getId() % connections.length)];
+    }
+
+    private final class Connection {
+
+        private final Queue<List<SiddhiEventComposite>> pendingBatches =
+                new ConcurrentLinkedQueue<List<SiddhiEventComposite>>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+        private volatile Channel channel;
+        private List<SiddhiEventComposite> batch = new ArrayList<SiddhiEventComposite>(clientConfig.getBatchSize());
+        private long lastConnectFailureTime;
+
+        synchronized void add(String streamId, Event event) {
+            batch.add(new SiddhiEventComposite(event, streamId));
+            if (batch.size() >= clientConfig.getBatchSize()) {
+                writeBatch(true);
+            }
+        }
 
+        synchronized void add(String streamId, Event[] events) {
+            for (Event event : events) {
+                batch.add(new SiddhiEventComposite(event, streamId));
+                if (batch.size() >= clientConfig.getBatchSize()) {
+                    writeBatch(true);
+                }
+            }
+        }
 
-                if (i*10 % 10000 == 0) {
-                    log.info("Done Sending " + i*10 + " events..");
+        /**
+         * Hands the pending batch over to the I/O thread of the connection. When not blocking, the batch is kept if
+         * the connection is down or congested.
+         */
+        synchronized void writeBatch(boolean blocking) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Channel ch;
+            if (blocking) {
+                try {
+                    ch = getWritableChannel();
+                } catch (ConnectionUnavailableException e) {
+                    int droppedEvents = batch.size();
+                    batch.clear();
+                    throw new ConnectionUnavailableException(e.getMessage() + ", dropped " + droppedEvents
+                            + " events", e.getCause());
+                }
+            } else {
+                ch = channel;
+                if (ch == null || !ch.isActive() || !ch.isWritable()) {
+                    return;
                 }
             }
+            pendingBatches.offer(batch);
+            batch = new ArrayList<SiddhiEventComposite>(clientConfig.getBatchSize());
+            scheduleDrain(ch);
+        }
+
+        /**
+         * Schedules a drain of the pending batches on the I/O thread of the given channel, unless one is already
+         * scheduled. The drain writes to the channel it was scheduled on, as a reconnect may replace the channel of
+         * the connection before the drain runs.
+         */
+        private void scheduleDrain(final Channel ch) {
+            if (drainScheduled.compareAndSet(false, true)) {
+                ch.eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        drain(ch);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Writes all the batches handed over so far to the channel and flushes them at once. Runs on the I/O thread
+         * of the channel.
+         */
+        private void drain(Channel ch) {
+            drainScheduled.set(false);
+            List<SiddhiEventComposite> events;
+            while ((events = pendingBatches.poll()) != null) {
+                final int batchSize = events.size();
+                ch.write(events).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            log.error("Dropped " + batchSize + " events as they could not be sent to " + serverUrl
+                                    + ", " + future.cause().getMessage(), future.cause());
+                        }
+                    }
+                });
+            }
+            ch.flush();
+        }
 
-            ch.close().sync();
-        } catch (InterruptedException e) {
-            log.error("Error sending messages " + e.getMessage(), e);
-        } finally {
-            group.shutdownGracefully();
+        private Channel getWritableChannel() {
+            Channel ch = channel;
+            if (ch == null || !ch.isActive()) {
+                ch = connect();
+            }
+            if (!ch.isWritable()) {
+                awaitWritable(ch);
+            }
+            return ch;
         }
 
+        synchronized Channel connect() {
+            long currentTime = System.currentTimeMillis();
+            if (currentTime - lastConnectFailureTime < clientConfig.getReconnectIntervalInMillis()) {
+                throw new ConnectionUnavailableException("Connection to " + serverUrl + " is down");
+            }
+            ChannelFuture connectFuture = bootstrap.connect(clientConfig.getHost(), clientConfig.getPort())
+                    .awaitUninterruptibly();
+            if (!connectFuture.isSuccess()) {
+                lastConnectFailureTime = currentTime;
+                throw new ConnectionUnavailableException("Cannot connect to " + serverUrl, connectFuture.cause());
+            }
+            channel = connectFuture.channel();
+            if (log.isDebugEnabled()) {
+                log.debug("Connected to " + serverUrl + " from " + channel.localAddress());
+            }
+            return channel;
+        }
+
+        private void awaitWritable(Channel ch) {
+            long deadline = System.currentTimeMillis() + clientConfig.getWriteTimeoutInMillis();
+            synchronized (writabilityLock) {
+                while (ch.isActive() && !ch.isWritable()) {
+                    long remainingTime = deadline - System.currentTimeMillis();
+                    if (remainingTime <= 0) {
+                        throw new ConnectionUnavailableException("Connection to " + serverUrl
+                                + " remained congested for " + clientConfig.getWriteTimeoutInMillis() + " ms");
+                    }
+                    try {
+                        writabilityLock.wait(remainingTime);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ConnectionUnavailableException("Interrupted while waiting for the congested "
+                                + "connection to " + serverUrl, e);
+                    }
+                }
+            }
+            if (!ch.isActive()) {
+                throw new ConnectionUnavailableException("Connection to " + serverUrl + " was closed");
+            }
+        }
+
+        synchronized void close() {
+            Channel ch = channel;
+            if (ch == null || !ch.isActive()) {
+                if (!batch.isEmpty()) {
+                    log.warn("Dropped " + batch.size() + " events as the connection to " + serverUrl
+                            + " was down when shutting down");
+                    batch.clear();
+                }
+                return;
+            }
+            if (!batch.isEmpty()) {
+                pendingBatches.offer(batch);
+                batch = new ArrayList<SiddhiEventComposite>();
+                scheduleDrain(ch);
+            }
+            // Completes once all the previously written events are sent
+            ch.writeAndFlush(Unpooled.EMPTY_BUFFER).awaitUninterruptibly(clientConfig.getWriteTimeoutInMillis());
+            ch.close().awaitUninterruptibly();
+        }
     }
 
+    @ChannelHandler.Sharable
+    private final class ClientChannelHandler extends ChannelInboundHandlerAdapter {
 
-}
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            signalWritabilityChange();
+            ctx.fireChannelWritabilityChanged();
+        }
 
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            signalWritabilityChange();
+            ctx.fireChannelInactive();
+        }
 
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.error("Closing connection to " + serverUrl + ", " + cause.getMessage(), cause);
+            ctx.close();
+        }
 
+        private void signalWritabilityChange() {
+            synchronized (writabilityLock) {
+                writabilityLock.notifyAll();
+            }
+        }
+    }
+}
@@ -18,66 +18,103 @@
 package org.wso2.carbon.tcp.transport;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.log4j.Logger;
-import org.wso2.siddhi.query.api.definition.Attribute;
-import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 
+/**
+ * Receives events over TCP and delivers them to the {@link StreamListener}s registered for the tenant of the server
+ * in the {@link TransportStreamManager}. Received messages are read into pooled buffers and decoded directly into
+ * Siddhi events.
+ */
 public class TcpNettyServer {
     private static final Logger log = Logger.getLogger(TcpNettyServer.class);
-    private PrintWriter writer = null;
 
-    public static void main(String[] args) {
-        StreamDefinition stockStream = StreamDefinition.id("StockStream").attribute("symbol", Attribute.Type.STRING)
-                .attribute("price", Attribute.Type.INT).attribute("volume", Attribute.Type.INT);
-        TransportStreamManager.getInstance().addStreamDefinition(-1234, stockStream);
-        new TcpNettyServer().bootServer();
-    }
+    private final TcpServerConfig serverConfig;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel serverChannel;
 
-    public static void slog(Object msg) {
-        log.info("[Server]:" + msg);
+    public TcpNettyServer(TcpServerConfig serverConfig) {
+        this.serverConfig = serverConfig;
     }
 
-    public void bootServer() {
-        EventLoopGroup bossGroup = new NioEventLoopGroup(5);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+    /**
+     * Binds the server and returns once it accepts connections.
+     *
+     * @throws IllegalStateException if the server cannot be bound to the configured address
+     */
+    public synchronized void start() throws InterruptedException {
+        if (serverChannel != null) {
+            return;
+        }
+        bossGroup = new NioEventLoopGroup(serverConfig.getBossThreads());
+        workerGroup = new NioEventLoopGroup(serverConfig.getWorkerThreads());
+        boolean started = false;
         try {
-            // More terse code to setup the server
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
                     .channel(NioServerSocketChannel.class)
-                    .childHandler(new ServerChannelInitializer());
+                    .option(ChannelOption.SO_BACKLOG, 128)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childHandler(new ServerChannelInitializer(serverConfig));
+            if (serverConfig.getReceiveBufferSize() > 0) {
+                b.childOption(ChannelOption.SO_RCVBUF, serverConfig.getReceiveBufferSize());
+            }
 
             // Bind and start to accept incoming connections.
-            ChannelFuture f = b.bind(8080).sync();
-            f.channel().closeFuture().sync();
-        } catch (InterruptedException e) {
-            log.error("Error when booting up binary server " + e.getMessage(), e);
+            ChannelFuture bindFuture = b.bind(serverConfig.getHost(), serverConfig.getPort()).await();
+            if (!bindFuture.isSuccess()) {
+                throw new IllegalStateException("Cannot bind TCP transport server to " + serverConfig.getHost() + ":"
+                        + serverConfig.getPort(), bindFuture.cause());
+            }
+            serverChannel = bindFuture.channel();
+            started = true;
+            log.info("TCP transport server started on " + serverChannel.localAddress() + " for tenant "
+                    + serverConfig.getTenantId());
         } finally {
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            if (!started) {
+                shutdown();
+            }
         }
     }
 
-    public void writeResult(String data) {
-        try {
-            if (writer == null) {
-                writer = new PrintWriter("results.csv");
-            }
-        } catch (FileNotFoundException ex) {
-            log.error("File not found......");
+    /**
+     * @return the port the server is bound to, or -1 if the server is not started
+     */
+    public synchronized int getPort() {
+        if (serverChannel == null) {
+            return -1;
         }
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
 
-        writer.println(data);
-        writer.flush();
+    /**
+     * Stops accepting connections, closes the open connections and releases the I/O threads.
+     */
+    public synchronized void shutdown() {
+        if (serverChannel != null) {
+            serverChannel.close().awaitUninterruptibly();
+            serverChannel = null;
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully().awaitUninterruptibly();
+            workerGroup = null;
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully().awaitUninterruptibly();
+            bossGroup = null;
+        }
+        log.info("TCP transport server stopped for tenant " + serverConfig.getTenantId());
     }
 }
-
-
-
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+/**
+ * Configuration of a {@link TcpNettyServer}. All the events received by a server belong to the tenant it is
+ * configured with.
+ */
+public class TcpServerConfig {
+
+    private String host = "0.0.0.0";
+    private int port = 9892;
+    private int tenantId = -1234;
+    private int bossThreads = 1;
+    private int workerThreads = 0;
+    private int maxFrameSize = 16 * 1024 * 1024;
+    private int receiveBufferSize = 0;
+
+    public TcpServerConfig() {
+    }
+
+    public TcpServerConfig(String host, int port, int tenantId) {
+        this.host = host;
+        this.port = port;
+        this.tenantId = tenantId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @param port the port to listen on, 0 binds an ephemeral port which is returned by
+     *             {@link TcpNettyServer#getPort()} once the server is started
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(int tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public int getBossThreads() {
+        return bossThreads;
+    }
+
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @param workerThreads the number of I/O threads decoding the events, 0 uses twice the number of processors
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * @param maxFrameSize the maximum size in bytes of an event batch, the connection of a client sending a larger
+     *                     batch is closed
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * @param receiveBufferSize the socket receive buffer size in bytes, 0 keeps the operating system default
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+}
@@ -21,37 +21,67 @@ package org.wso2.carbon.tcp.transport;
 import org.wso2.carbon.tcp.transport.dto.StreamTypeHolder;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Class to hold information related to transport streams temporally
+ * Registry of the streams accepted by the transport, per tenant. The decoders of all the server connections read the
+ * registry concurrently while streams are added and removed, so a stream can be deployed without restarting the
+ * servers.
  */
 public class TransportStreamManager {
 
     private static final TransportStreamManager instance = new TransportStreamManager();
-    private Map<Integer, StreamTypeHolder> tenantStreamAttributeMap;
+    private final ConcurrentMap<Integer, StreamTypeHolder> tenantStreamAttributeMap;
 
     private TransportStreamManager() {
-        tenantStreamAttributeMap = new HashMap<Integer, StreamTypeHolder>();
+        tenantStreamAttributeMap = new ConcurrentHashMap<Integer, StreamTypeHolder>();
     }
 
     public static TransportStreamManager getInstance() {
         return instance;
     }
 
+    /**
+     * @return the streams of the tenant, or null if the tenant has no streams
+     */
     public StreamTypeHolder getStreamTypeHolder(int tenantID) {
         return tenantStreamAttributeMap.get(tenantID);
     }
 
-    public void addStreamDefinition(int tenantId, StreamDefinition streamDefinition){
+    /**
+     * Adds a stream whose events are decoded but not consumed by any listener.
+     */
+    public void addStreamDefinition(int tenantId, StreamDefinition streamDefinition) {
+        getOrCreateStreamTypeHolder(tenantId).putStreamDefinition(streamDefinition);
+    }
+
+    /**
+     * Adds the stream of the listener, replacing any previous definition or listener of the stream.
+     */
+    public void addStreamListener(int tenantId, StreamListener streamListener) {
+        getOrCreateStreamTypeHolder(tenantId).putStreamListener(streamListener);
+    }
+
+    /**
+     * Removes the stream. Events of the stream arriving afterwards are dropped.
+     */
+    public void removeStreamDefinition(int tenantId, String streamId) {
+        StreamTypeHolder streamTypeHolder = tenantStreamAttributeMap.get(tenantId);
+        if (streamTypeHolder != null) {
+            streamTypeHolder.removeStream(streamId);
+        }
+    }
+
+    private StreamTypeHolder getOrCreateStreamTypeHolder(int tenantId) {
         StreamTypeHolder streamTypeHolder = tenantStreamAttributeMap.get(tenantId);
-        if (streamTypeHolder == null){
+        if (streamTypeHolder == null) {
             streamTypeHolder = new StreamTypeHolder(tenantId);
-            streamTypeHolder.putStreamDefinition(streamDefinition);
-            tenantStreamAttributeMap.put(tenantId, streamTypeHolder);
-        } else {
-            streamTypeHolder.putStreamDefinition(streamDefinition);
+            StreamTypeHolder existingHolder = tenantStreamAttributeMap.putIfAbsent(tenantId, streamTypeHolder);
+            if (existingHolder != null) {
+                streamTypeHolder = existingHolder;
+            }
         }
+        return streamTypeHolder;
     }
 }
@@ -17,21 +17,29 @@
  */
 package org.wso2.carbon.tcp.transport.dto;
 
+import org.wso2.carbon.tcp.transport.StreamListener;
 import org.wso2.carbon.tcp.transport.util.EventDefinitionConverterUtils;
 import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
 /**
- * Class to hold attribute type order array and size of attributes.
+ * Class to hold attribute type order array and size of attributes, and the listener receiving the events of the
+ * stream.
  */
 
 public class StreamAttributeComposite {
     private Attribute.Type[] attributeTypes;
     private StreamDefinition streamDefinition;
     private int attributeSize;
+    private final StreamListener streamListener;
 
     public StreamAttributeComposite(StreamDefinition streamDefinition) {
+        this(streamDefinition, null);
+    }
+
+    public StreamAttributeComposite(StreamDefinition streamDefinition, StreamListener streamListener) {
         this.streamDefinition = streamDefinition;
+        this.streamListener = streamListener;
         this.attributeTypes = EventDefinitionConverterUtils.generateAttributeTypeArray(streamDefinition.getAttributeList());
         this.attributeSize = getSize(attributeTypes);
 
@@ -64,4 +72,11 @@ public class StreamAttributeComposite {
     public StreamDefinition getStreamDefinition() {
         return streamDefinition;
     }
+
+    /**
+     * @return the listener of the stream, or null if the events of the stream are not consumed
+     */
+    public StreamListener getStreamListener() {
+        return streamListener;
+    }
 }
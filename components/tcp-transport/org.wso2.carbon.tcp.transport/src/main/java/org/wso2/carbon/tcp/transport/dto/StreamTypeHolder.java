@@ -19,6 +19,7 @@ package org.wso2.carbon.tcp.transport.dto;
 
 
 
+import org.wso2.carbon.tcp.transport.StreamListener;
 import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
@@ -65,4 +66,14 @@ public class StreamTypeHolder {
         this.attributeCompositeMap.put(streamDefinition.getId(), new StreamAttributeComposite(streamDefinition));
     }
 
+    public void putStreamListener(StreamListener streamListener) {
+        StreamDefinition streamDefinition = streamListener.getStreamDefinition();
+        this.attributeCompositeMap.put(streamDefinition.getId(),
+                new StreamAttributeComposite(streamDefinition, streamListener));
+    }
+
+    public void removeStream(String streamId) {
+        this.attributeCompositeMap.remove(streamId);
+    }
+
 }
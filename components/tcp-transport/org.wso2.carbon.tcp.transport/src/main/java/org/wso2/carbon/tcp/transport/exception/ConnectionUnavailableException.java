@@ -16,10 +16,18 @@
  *  under the License.
  */
 
-package org.wso2.carbon.tcp.transport;
-
-public class EventPublisher {
+package org.wso2.carbon.tcp.transport.exception;
 
+/**
+ * Thrown when events cannot be sent because the connection to the server is down or remains congested.
+ */
+public class ConnectionUnavailableException extends RuntimeException {
 
+    public ConnectionUnavailableException(String message) {
+        super(message);
+    }
 
+    public ConnectionUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
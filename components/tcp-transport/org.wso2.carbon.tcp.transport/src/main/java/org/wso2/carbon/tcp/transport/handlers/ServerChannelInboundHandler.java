@@ -22,80 +22,64 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.apache.log4j.Logger;
 import org.wso2.carbon.tcp.transport.SiddhiEventComposite;
+import org.wso2.carbon.tcp.transport.StreamListener;
+import org.wso2.carbon.tcp.transport.TransportStreamManager;
+import org.wso2.carbon.tcp.transport.dto.StreamAttributeComposite;
+import org.wso2.carbon.tcp.transport.dto.StreamTypeHolder;
+import org.wso2.siddhi.core.event.Event;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.text.DecimalFormat;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 
-public class ServerChannelInboundHandler extends SimpleChannelInboundHandler {
+/**
+ * Delivers the decoded events to the listeners of their streams. Consecutive events of a stream in a batch are
+ * delivered together.
+ */
+public class ServerChannelInboundHandler extends SimpleChannelInboundHandler<List<SiddhiEventComposite>> {
     private static final Logger log = Logger.getLogger(ServerChannelInboundHandler.class);
-    private AtomicLong totalDelay = new AtomicLong(0);
-    private AtomicLong lastIndex = new AtomicLong(0);
-    private AtomicLong lastCounter = new AtomicLong(0);
-    private AtomicLong lastTime = new AtomicLong(System.currentTimeMillis());
-    private AtomicLong maxLatency = new AtomicLong(0);
-    private AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
-    private AtomicLong counter = new AtomicLong(0);
-    private AtomicBoolean calcInProgress = new AtomicBoolean(false);
-    private DecimalFormat decimalFormat = new DecimalFormat("#.#####");
-    private int elapsedCount = 100000;
-    private PrintWriter writer  = null;
-
-    private String streamID ="foo";
-
-    @Override
-    protected void channelRead0(ChannelHandlerContext channelHandlerContext, Object msg) throws Exception {
-        List<SiddhiEventComposite> event = (List<SiddhiEventComposite>) msg;
-        for (SiddhiEventComposite eventComposite : event) {
-            log.info(eventComposite.getSiddhiEvent().toString());
-            try {
-                long currentBatchTotalDelay = 0;
-                long currentTime = System.currentTimeMillis();
-                long currentEventLatency = currentTime - eventComposite.getSiddhiEvent().getTimestamp();
-
-                long currentMaxLatency = maxLatency.get();
-                if (currentEventLatency > currentMaxLatency) {
-                    maxLatency.compareAndSet(currentMaxLatency, currentEventLatency);
-                }
-                long currentMinLatency = minLatency.get();
-                if (currentEventLatency < currentMinLatency) {
-                    minLatency.compareAndSet(currentMinLatency, currentEventLatency);
-                }
-                currentBatchTotalDelay = currentBatchTotalDelay + currentEventLatency;
-
-                long localCounter = counter.incrementAndGet();
-                long localTotalDelay = totalDelay.addAndGet(currentBatchTotalDelay);
-
-                long index = localCounter / elapsedCount;
 
-                if (lastIndex.get() != index) {
-                    if (calcInProgress.compareAndSet(false, true)) {
-                        lastIndex.set(index);
-                        long currentWindowEventsReceived = localCounter - lastCounter.getAndSet(localCounter);
-                        long elapsedTime = currentTime - lastTime.getAndSet(currentTime);
-                        log.info("Received " + currentWindowEventsReceived + " events in " + elapsedTime + " ms; Throughput - Avg : "
-                                + decimalFormat.format((currentWindowEventsReceived * 1000.0) / elapsedTime) + " ; Latency - Avg: "
-                                + decimalFormat.format(localTotalDelay / (double) currentWindowEventsReceived)
-                                + ", Min: " + minLatency.get() + ", Max: " + maxLatency.get());
+    private final int tenantId;
 
-                        writeResult(localCounter + ","
-                                + decimalFormat.format(localTotalDelay / (double) currentWindowEventsReceived) + ","
-                                + decimalFormat.format((currentWindowEventsReceived * 1000.0) / elapsedTime));
+    public ServerChannelInboundHandler(int tenantId) {
+        this.tenantId = tenantId;
+    }
 
-                        maxLatency.set(0);
-                        minLatency.set(Long.MAX_VALUE);
-                        totalDelay.addAndGet(-localTotalDelay);
-                        calcInProgress.set(false);
+    @Override
+    protected void channelRead0(ChannelHandlerContext channelHandlerContext, List<SiddhiEventComposite> events) throws Exception {
+        StreamTypeHolder streamTypeHolder = TransportStreamManager.getInstance().getStreamTypeHolder(tenantId);
+        if (streamTypeHolder == null) {
+            return;
+        }
+        int size = events.size();
+        int runStart = 0;
+        while (runStart < size) {
+            String streamId = events.get(runStart).getStreamID();
+            int runEnd = runStart + 1;
+            while (runEnd < size && streamId.equals(events.get(runEnd).getStreamID())) {
+                runEnd++;
+            }
+            StreamAttributeComposite streamAttributeComposite = streamTypeHolder.getAttributeComposite(streamId);
+            StreamListener streamListener = streamAttributeComposite != null
+                    ? streamAttributeComposite.getStreamListener() : null;
+            if (streamListener != null) {
+                try {
+                    if (runEnd - runStart == 1) {
+                        streamListener.onEvent(events.get(runStart).getSiddhiEvent());
+                    } else {
+                        Event[] streamEvents = new Event[runEnd - runStart];
+                        for (int i = runStart; i < runEnd; i++) {
+                            streamEvents[i - runStart] = events.get(i).getSiddhiEvent();
+                        }
+                        streamListener.onEvents(streamEvents);
                     }
+                } catch (Exception e) {
+                    log.error("Error while consuming events of " + streamId + " for tenant " + tenantId + ", "
+                            + e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                log.info("Error while consuming event on " + streamID + ", " + e.getMessage());
-            } finally {
-                //channelHandlerContext.close();
+            } else if (log.isDebugEnabled()) {
+                log.debug("Dropped " + (runEnd - runStart) + " events of " + streamId + " for tenant " + tenantId
+                        + " as the stream has no listener");
             }
+            runStart = runEnd;
         }
     }
 
@@ -105,17 +89,4 @@ public class ServerChannelInboundHandler extends SimpleChannelInboundHandler {
         log.error(cause.getMessage(), cause);
         ctx.close();
     }
-
-    public void writeResult(String data){
-        try {
-            if (writer == null) {
-                writer = new PrintWriter("results.csv");
-            }
-        }catch (FileNotFoundException ex){
-            log.error("File not found......");
-        }
-
-        writer.println(data);
-        writer.flush();
-    }
 }
@@ -29,11 +29,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
 
-import static io.netty.buffer.Unpooled.buffer;
-
 
 /**
  * This is a Util class which does the Binary message transformation for publish, login, logout operations.
@@ -65,62 +62,34 @@ public class BinaryEventConverter {
         outputStream.flush();
     }
 
+    /**
+     * Writes the events as a single publish message directly into the buffer. The message and event sizes are
+     * written as place holders and filled in once the content is written, so that the events are serialized only
+     * once and without intermediate buffers.
+     */
     public static void convertToBinaryMessage(List<SiddhiEventComposite> events, String sessionId, ByteBuf messageBuffer) throws IOException {
-        int messageSize = 8 + sessionId.length();
-        List<ByteBuf> eventBuffers = new ArrayList<ByteBuf>();
+        int messageStart = messageBuffer.writerIndex();
+        messageBuffer.writeByte(BinaryMessageConstants.PUBLISH_MESSAGE);  //1
+        messageBuffer.writeInt(0); //4, message size
+        BinaryMessageConverterUtil.writeString(sessionId, messageBuffer);
+        messageBuffer.writeInt(events.size()); //4
 
         for (SiddhiEventComposite event : events) {
-
-            int eventSize = getEventSize(event);
-            messageSize += eventSize + 4;
+            int eventStart = messageBuffer.writerIndex();
+            messageBuffer.writeInt(0); //4, event size
             Event siddhiEvent = event.getSiddhiEvent();
-            ByteBuf eventDataBuffer = buffer(4 + eventSize);
-            //ByteBuffer eventDataBuffer = ByteBuffer.allocate(4 + eventSize);
-            eventDataBuffer.writeInt(eventSize);
-
-            eventDataBuffer.writeLong(siddhiEvent.getTimestamp());
-            eventDataBuffer.writeInt(event.getStreamID().length());
-            eventDataBuffer.writeBytes(event.getStreamID().getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
+            messageBuffer.writeLong(siddhiEvent.getTimestamp());
+            BinaryMessageConverterUtil.writeString(event.getStreamID(), messageBuffer);
 
             if (siddhiEvent.getData() != null && siddhiEvent.getData().length != 0) {
                 for (Object aData : siddhiEvent.getData()) {
-                    BinaryMessageConverterUtil.assignData(aData, eventDataBuffer);
+                    BinaryMessageConverterUtil.assignData(aData, messageBuffer);
                 }
             }
-/*            if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
-                for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                    assignData(aArbitraryData.getKey(), eventDataBuffer);
-                    assignData(aArbitraryData.getValue(), eventDataBuffer);
-                }
-            }*/
-            eventBuffers.add(eventDataBuffer);
-        }
-
-        messageBuffer.writeByte((byte) 2);  //1
-        messageBuffer.writeInt(messageSize); //4
-        messageBuffer.writeInt(sessionId.length()); //4
-        messageBuffer.writeBytes(sessionId.getBytes(BinaryMessageConstants.DEFAULT_CHARSET));
-        messageBuffer.writeInt(events.size()); //4
-
-        for (ByteBuf byteBuf : eventBuffers) {
-            messageBuffer.writeBytes(byteBuf);
-        }
-    }
-
-    private static int getEventSize(SiddhiEventComposite event) {
-        int eventSize = 4 + event.getStreamID().length() + 8;
-        Object[] data = event.getSiddhiEvent().getData();
-        if (data != null) {
-            for (Object aData : data) {
-                eventSize += BinaryMessageConverterUtil.getSize(aData);
-            }
+            messageBuffer.setInt(eventStart, messageBuffer.writerIndex() - eventStart - 4);
         }
-        /*if (event.getArbitraryDataMap() != null && event.getArbitraryDataMap().size() != 0) {
-            for (Map.Entry<String, String> aArbitraryData : event.getArbitraryDataMap().entrySet()) {
-                eventSize += 8 + aArbitraryData.getKey().length() + aArbitraryData.getValue().length();
-            }
-        }*/
-        return eventSize;
+        messageBuffer.setInt(messageStart + 1,
+                messageBuffer.writerIndex() - messageStart - BinaryMessageConstants.MESSAGE_HEADER_SIZE);
     }
 
     public static String processResponse(Socket socket) throws Exception {
@@ -17,7 +17,18 @@
  */
 package org.wso2.carbon.tcp.transport.util;
 
+import java.nio.charset.Charset;
+
 public class BinaryMessageConstants {
     public static final String DEFAULT_CHARSET = "UTF-8";
+    public static final Charset CHARSET = Charset.forName(DEFAULT_CHARSET);
+
+    public static final byte PUBLISH_MESSAGE = 2;
+    public static final int MESSAGE_HEADER_SIZE = 5;
+    /**
+     * Size of an event carrying only a timestamp and an empty stream id, i.e. the event size, timestamp and stream
+     * id size fields
+     */
+    public static final int MIN_EVENT_SIZE = 16;
 
 }
@@ -46,38 +46,22 @@ public class BinaryMessageConverterUtil {
 
         byte[] bytes = new byte[size];
         byteBuffer.get(bytes);
-        return new String(bytes);
+        return new String(bytes, BinaryMessageConstants.CHARSET);
     }
 
+    /**
+     * Decodes the string directly from the buffer, without copying its bytes to an intermediate array when the
+     * buffer is backed by an array.
+     */
     public static String getString(ByteBuf byteBuffer, int size) {
-        byte[] bytes = new byte[size];
-        byteBuffer.readBytes(bytes);
-        return new String(bytes);
+        String value = byteBuffer.toString(byteBuffer.readerIndex(), size, BinaryMessageConstants.CHARSET);
+        byteBuffer.skipBytes(size);
+        return value;
     }
 
-    public static int getSize(Object data) {
-        if (data instanceof String) {
-            return 4 + ((String) data).length();
-        } else if (data instanceof Integer) {
-            return 4;
-        } else if (data instanceof Long) {
-            return 8;
-        } else if (data instanceof Float) {
-            return 4;
-        } else if (data instanceof Double) {
-            return 8;
-        } else if (data instanceof Boolean) {
-            return 1;
-        } else {
-            return 4;
-        }
-    }
-
-
     public static void assignData(Object data, ByteBuf eventDataBuffer) throws IOException {
         if (data instanceof String) {
-            eventDataBuffer.writeInt(((String) data).length());
-            eventDataBuffer.writeBytes((((String) data).getBytes(BinaryMessageConstants.DEFAULT_CHARSET)));
+            writeString((String) data, eventDataBuffer);
         } else if (data instanceof Integer) {
             eventDataBuffer.writeInt((Integer) data);
         } else if (data instanceof Long) {
@@ -91,6 +75,14 @@ public class BinaryMessageConverterUtil {
         } else {
             eventDataBuffer.writeInt(0);
         }
+    }
 
+    /**
+     * Writes the UTF-8 byte length of the string followed by its bytes.
+     */
+    public static void writeString(String value, ByteBuf buffer) {
+        byte[] bytes = value.getBytes(BinaryMessageConstants.CHARSET);
+        buffer.writeInt(bytes.length);
+        buffer.writeBytes(bytes);
     }
 }
@@ -19,6 +19,7 @@ package org.wso2.carbon.tcp.transport.util;
 
 
 import io.netty.buffer.ByteBuf;
+import org.apache.log4j.Logger;
 import org.wso2.carbon.tcp.transport.EventConverter;
 import org.wso2.carbon.tcp.transport.SiddhiEventComposite;
 import org.wso2.carbon.tcp.transport.dto.StreamTypeHolder;
@@ -34,71 +35,73 @@ import java.util.Map;
 
 /**
  * This class is a implementation EventConverter to create the event from the Binary message.
- * This is used within data bridge to create the event from the row message received.
+ * The events are decoded directly from the (pooled) buffer holding the message received by the transport.
  */
 public class SiddhiEventConverter implements EventConverter {
+    private static final Logger log = Logger.getLogger(SiddhiEventConverter.class);
     private static SiddhiEventConverter instance = new SiddhiEventConverter();
 
     private SiddhiEventConverter() {
     }
 
+    /**
+     * @param eventBundle      a {@link ByteBuf} holding exactly the body of a publish message, i.e. the message
+     *                         without its protocol and size header
+     * @param streamTypeHolder the streams of the tenant, events of streams not in it are dropped
+     */
     @Override
     public List<SiddhiEventComposite> toEventList(Object eventBundle, StreamTypeHolder streamTypeHolder) {
 
         ByteBuf byteBuffer = (ByteBuf) eventBundle;
         int sessionIdSize = byteBuffer.readInt();
-        byteBuffer.readBytes(new byte[sessionIdSize]);
+        byteBuffer.skipBytes(sessionIdSize);
         int events = byteBuffer.readInt();
+        if (events < 0 || (long) events * BinaryMessageConstants.MIN_EVENT_SIZE > byteBuffer.readableBytes()) {
+            throw new MalformedEventException("Message of " + byteBuffer.readableBytes() + " bytes cannot hold "
+                    + events + " events");
+        }
 
-        List<SiddhiEventComposite> eventList = new ArrayList<SiddhiEventComposite>();
+        List<SiddhiEventComposite> eventList = new ArrayList<SiddhiEventComposite>(events);
+        int droppedEvents = 0;
+        String droppedStreamId = null;
         for (int i = 0; i < events; i++) {
             int eventSize = byteBuffer.readInt();
-            byte[] bytes= new byte[eventSize];
-            byteBuffer.readBytes(bytes);
-            ByteBuffer eventByteBuffer = ByteBuffer.wrap(bytes);
-            eventList.add(getEvent(eventByteBuffer, streamTypeHolder));
+            if (eventSize < 0 || eventSize > byteBuffer.readableBytes()) {
+                throw new MalformedEventException("Event of " + eventSize + " bytes exceeds the message, only "
+                        + byteBuffer.readableBytes() + " bytes remain");
+            }
+            int eventEnd = byteBuffer.readerIndex() + eventSize;
+            long timeStamp = byteBuffer.readLong();
+            String streamId = BinaryMessageConverterUtil.getString(byteBuffer, byteBuffer.readInt());
+            Attribute.Type[] attributeTypeOrder = streamTypeHolder != null
+                    ? streamTypeHolder.getDataType(streamId) : null;
+            if (attributeTypeOrder == null) {
+                droppedEvents++;
+                droppedStreamId = streamId;
+            } else {
+                eventList.add(new SiddhiEventComposite(new Event(timeStamp,
+                        toObjectArray(byteBuffer, attributeTypeOrder)), streamId));
+            }
+            // Skips any arbitrary data following the attributes
+            byteBuffer.readerIndex(eventEnd);
+        }
+        if (droppedEvents > 0) {
+            log.warn("Dropped " + droppedEvents + " events of undefined streams, such as " + droppedStreamId
+                    + ", for tenant " + (streamTypeHolder != null ? streamTypeHolder.getTenantId() : "unknown"));
         }
-        byteBuffer.markReaderIndex();
         return eventList;
     }
 
     @Override
     public int getSize(Object eventBundle) {
-        return ((byte[])eventBundle).length;
+        return ((ByteBuf) eventBundle).readableBytes();
     }
 
     @Override
     public int getNumberOfEvents(Object eventBundle) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap((byte[]) eventBundle);
-        int sessionIdSize = byteBuffer.getInt();
-        byteBuffer.get(new byte[sessionIdSize]);
-        return byteBuffer.getInt();
-    }
-
-    public SiddhiEventComposite getEvent(ByteBuffer byteBuffer, StreamTypeHolder streamTypeHolder) throws MalformedEventException {
-        long timeStamp = byteBuffer.getLong();
-        int streamIdSize = byteBuffer.getInt();
-        String streamId = BinaryMessageConverterUtil.getString(byteBuffer, streamIdSize);
-
-        Event event = new Event();
-        event.setTimestamp(timeStamp);
-
-        Attribute.Type[] attributeTypeOrder = streamTypeHolder.getDataType(streamId);
-        /*if (attributeTypeOrder == null) {
-            PrivilegedCarbonContext privilegedCarbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
-            if (privilegedCarbonContext.getTenantDomain() == null) {
-                privilegedCarbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
-                privilegedCarbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
-            }
-            streamTypeHolder.reloadStreamTypeHolder();
-            attributeTypeOrder = streamTypeHolder.getDataType(event.getStreamId());
-            if (attributeTypeOrder == null) {
-                throw new EventConversionException("No StreamDefinition for streamId " + event.getStreamId()
-                        + " present in cache ");
-            }
-        }*/
-        event.setData(toObjectArray(byteBuffer, attributeTypeOrder));
-        return new SiddhiEventComposite(event, streamId);
+        ByteBuf byteBuffer = (ByteBuf) eventBundle;
+        int sessionIdSize = byteBuffer.getInt(byteBuffer.readerIndex());
+        return byteBuffer.getInt(byteBuffer.readerIndex() + 4 + sessionIdSize);
     }
 
     public Object[] toObjectArray(ByteBuffer byteBuffer,
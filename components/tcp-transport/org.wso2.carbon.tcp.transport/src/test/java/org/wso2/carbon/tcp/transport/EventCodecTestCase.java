@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import junit.framework.TestCase;
+import org.wso2.carbon.tcp.transport.util.BinaryMessageConstants;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes batches of events with {@link EventEncoder} and decodes them with {@link EventDecoder}, the way they pass
+ * between a {@link TcpNettyClient} and a {@link TcpNettyServer}.
+ */
+public class EventCodecTestCase extends TestCase {
+    private static final int TENANT_ID = 1001;
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    private static final String STOCK_STREAM = "StockStream";
+    private static final String UNDEFINED_STREAM = "UndefinedStream";
+
+    @Override
+    protected void setUp() {
+        TransportStreamManager.getInstance().addStreamDefinition(TENANT_ID, StreamDefinition.id(STOCK_STREAM)
+                .attribute("symbol", Attribute.Type.STRING)
+                .attribute("price", Attribute.Type.DOUBLE)
+                .attribute("volume", Attribute.Type.LONG)
+                .attribute("count", Attribute.Type.INT)
+                .attribute("ratio", Attribute.Type.FLOAT)
+                .attribute("active", Attribute.Type.BOOL));
+    }
+
+    @Override
+    protected void tearDown() {
+        TransportStreamManager.getInstance().removeStreamDefinition(TENANT_ID, STOCK_STREAM);
+    }
+
+    public void testRoundTrip() {
+        List<SiddhiEventComposite> events = Arrays.asList(
+                stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true),
+                stockEvent(2L, "IBM", 75.1, 200L, 2, 1.5f, false));
+
+        List<SiddhiEventComposite> decoded = decode(encode(events));
+        assertEvents(events, decoded);
+    }
+
+    public void testMultibyteStrings() {
+        // the string lengths are written in UTF-8 bytes, not in characters
+        List<SiddhiEventComposite> events = Arrays.asList(
+                stockEvent(1L, "\u00e9\u00e8\u20ac\u6f22\u5b57", 55.6, 100L, 1, 0.5f, true),
+                stockEvent(2L, "WSO2", 75.1, 200L, 2, 1.5f, false));
+
+        List<SiddhiEventComposite> decoded = decode(encode(events));
+        assertEvents(events, decoded);
+    }
+
+    public void testNullString() {
+        List<SiddhiEventComposite> events = Arrays.asList(stockEvent(1L, null, 55.6, 100L, 1, 0.5f, true));
+
+        List<SiddhiEventComposite> decoded = decode(encode(events));
+        assertEvents(events, decoded);
+    }
+
+    public void testPartialFrames() {
+        List<SiddhiEventComposite> events = Arrays.asList(
+                stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true),
+                stockEvent(2L, "IBM", 75.1, 200L, 2, 1.5f, false));
+        byte[] message = encode(events);
+        // two messages in one read, the second split in the middle of its header and again in its body
+        byte[] firstRead = new byte[message.length + 3];
+        System.arraycopy(message, 0, firstRead, 0, message.length);
+        System.arraycopy(message, 0, firstRead, message.length, 3);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID, MAX_FRAME_SIZE));
+        channel.writeInbound(Unpooled.wrappedBuffer(firstRead));
+        assertEvents(events, readEvents(channel));
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(Unpooled.wrappedBuffer(message, 3, 10));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.wrappedBuffer(message, 13, message.length - 13));
+        assertEvents(events, readEvents(channel));
+        assertTrue(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    public void testUndefinedStreamsAreSkipped() {
+        SiddhiEventComposite undefinedEvent = new SiddhiEventComposite(new Event(2L,
+                new Object[]{"a", 1, 2L, "\u20ac"}), UNDEFINED_STREAM);
+        List<SiddhiEventComposite> events = Arrays.asList(
+                stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true),
+                undefinedEvent,
+                stockEvent(3L, "IBM", 75.1, 200L, 2, 1.5f, false));
+
+        List<SiddhiEventComposite> decoded = decode(encode(events));
+        assertEvents(Arrays.asList(events.get(0), events.get(2)), decoded);
+    }
+
+    public void testOversizedMessageClosesConnection() {
+        byte[] message = encode(Arrays.asList(stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true)));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID,
+                message.length - BinaryMessageConstants.MESSAGE_HEADER_SIZE - 1));
+        channel.writeInbound(Unpooled.wrappedBuffer(message));
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+    }
+
+    public void testUnknownMessageTypeClosesConnection() {
+        byte[] message = encode(Arrays.asList(stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true)));
+        message[0] = 7;
+
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID, MAX_FRAME_SIZE));
+        channel.writeInbound(Unpooled.wrappedBuffer(message));
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+    }
+
+    public void testMalformedMessageClosesConnection() {
+        byte[] message = encode(Arrays.asList(stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true)));
+        // the event count follows the header and the empty session id, and claims more events than fit
+        ByteBuf buffer = Unpooled.wrappedBuffer(message);
+        buffer.setInt(BinaryMessageConstants.MESSAGE_HEADER_SIZE + 4, 1000);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID, MAX_FRAME_SIZE));
+        channel.writeInbound(buffer);
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+    }
+
+    public void testTruncatedEventClosesConnection() {
+        byte[] message = encode(Arrays.asList(stockEvent(1L, "WSO2", 55.6, 100L, 1, 0.5f, true)));
+        // the size of the first event, which follows the event count, exceeds the message
+        ByteBuf buffer = Unpooled.wrappedBuffer(message);
+        buffer.setInt(BinaryMessageConstants.MESSAGE_HEADER_SIZE + 8, message.length);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID, MAX_FRAME_SIZE));
+        channel.writeInbound(buffer);
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+    }
+
+    private static SiddhiEventComposite stockEvent(long timestamp, String symbol, double price, long volume,
+                                                   int count, float ratio, boolean active) {
+        return new SiddhiEventComposite(new Event(timestamp, new Object[]{symbol, price, volume, count, ratio,
+                active}), STOCK_STREAM);
+    }
+
+    private static byte[] encode(List<SiddhiEventComposite> events) {
+        EmbeddedChannel channel = new EmbeddedChannel(new EventEncoder(""));
+        assertTrue(channel.writeOutbound(events));
+        ByteBuf buffer = (ByteBuf) channel.readOutbound();
+        byte[] message = new byte[buffer.readableBytes()];
+        buffer.readBytes(message);
+        buffer.release();
+        assertFalse(channel.finish());
+        return message;
+    }
+
+    private static List<SiddhiEventComposite> decode(byte[] message) {
+        EmbeddedChannel channel = new EmbeddedChannel(new EventDecoder(TENANT_ID, MAX_FRAME_SIZE));
+        channel.writeInbound(Unpooled.wrappedBuffer(message));
+        List<SiddhiEventComposite> events = readEvents(channel);
+        assertNull(channel.readInbound());
+        assertTrue(channel.isOpen());
+        return events;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<SiddhiEventComposite> readEvents(EmbeddedChannel channel) {
+        List<SiddhiEventComposite> events = (List<SiddhiEventComposite>) channel.readInbound();
+        assertNotNull("No message was decoded", events);
+        return events;
+    }
+
+    private static void assertEvents(List<SiddhiEventComposite> expected, List<SiddhiEventComposite> actual) {
+        List<String> expectedEvents = new ArrayList<String>();
+        for (SiddhiEventComposite event : expected) {
+            expectedEvents.add(toString(event));
+        }
+        List<String> actualEvents = new ArrayList<String>();
+        for (SiddhiEventComposite event : actual) {
+            actualEvents.add(toString(event));
+        }
+        assertEquals(expectedEvents, actualEvents);
+    }
+
+    private static String toString(SiddhiEventComposite event) {
+        return event.getStreamID() + ":" + event.getSiddhiEvent().getTimestamp() + ":"
+                + Arrays.toString(event.getSiddhiEvent().getData());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.tcp.transport.exception.ConnectionUnavailableException;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sends events through a {@link TcpNettyClient} to a {@link TcpNettyServer} on the loopback interface.
+ */
+public class TcpNettyClientTestCase extends TestCase {
+    private static final int TENANT_ID = 1002;
+    private static final String STREAM_ID = "StockStream";
+    private static final long TIMEOUT = 10000;
+    private static final long QUIET_PERIOD = 300;
+
+    private TestStreamListener streamListener;
+    private TcpNettyServer server;
+    private TcpNettyClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        streamListener = new TestStreamListener();
+        TransportStreamManager.getInstance().addStreamListener(TENANT_ID, streamListener);
+        server = new TcpNettyServer(new TcpServerConfig("localhost", 0, TENANT_ID));
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        server.shutdown();
+        TransportStreamManager.getInstance().removeStreamDefinition(TENANT_ID, STREAM_ID);
+    }
+
+    public void testFullBatchIsSentAsOneMessage() throws Exception {
+        startClient(3, TIMEOUT * 6);
+        send(0, 3);
+        streamListener.await(3);
+        // the events of a batch are delivered together
+        assertEquals(Arrays.asList(3), streamListener.getBatchSizes());
+
+        send(3, 2);
+        Thread.sleep(QUIET_PERIOD);
+        assertEquals(3, streamListener.getTimestamps().size());
+        client.flush();
+        streamListener.await(5);
+        assertEquals(Arrays.asList(3, 2), streamListener.getBatchSizes());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), streamListener.getTimestamps());
+    }
+
+    public void testPartialBatchIsSentAfterMaxBatchDelay() throws Exception {
+        startClient(100, 50);
+        send(0, 2);
+        streamListener.await(2);
+        assertEquals(Arrays.asList(2), streamListener.getBatchSizes());
+    }
+
+    public void testEventArraysAreSplitIntoBatches() throws Exception {
+        startClient(4, TIMEOUT * 6);
+        Event[] events = new Event[10];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new Event(i, new Object[]{"WSO2", 55.6, (long) i});
+        }
+        client.send(STREAM_ID, events);
+        streamListener.await(8);
+        client.flush();
+        streamListener.await(10);
+        assertEquals(Arrays.asList(4, 4, 2), streamListener.getBatchSizes());
+    }
+
+    public void testEventsOfAThreadArriveInOrder() throws Exception {
+        TcpClientConfig clientConfig = new TcpClientConfig("localhost", server.getPort());
+        clientConfig.setConnectionCount(4);
+        clientConfig.setBatchSize(7);
+        client = new TcpNettyClient(clientConfig);
+        client.start();
+
+        send(0, 1000);
+        client.flush();
+        streamListener.await(1000);
+        List<Long> expected = new ArrayList<Long>();
+        for (long i = 0; i < 1000; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, streamListener.getTimestamps());
+    }
+
+    public void testShutdownSendsPendingEvents() throws Exception {
+        startClient(100, TIMEOUT * 6);
+        send(0, 5);
+        client.shutdown();
+        client = null;
+        streamListener.await(5);
+        assertEquals(Arrays.asList(5), streamListener.getBatchSizes());
+    }
+
+    public void testSendBeforeStartFails() {
+        client = new TcpNettyClient(new TcpClientConfig("localhost", server.getPort()));
+        try {
+            client.send(STREAM_ID, new Event(0, new Object[]{"WSO2", 55.6, 0L}));
+            fail("Sending before the client is started must fail");
+        } catch (ConnectionUnavailableException e) {
+            // expected
+        }
+        client = null;
+    }
+
+    private void startClient(int batchSize, long maxBatchDelayInMillis) {
+        TcpClientConfig clientConfig = new TcpClientConfig("localhost", server.getPort());
+        clientConfig.setBatchSize(batchSize);
+        clientConfig.setMaxBatchDelayInMillis(maxBatchDelayInMillis);
+        client = new TcpNettyClient(clientConfig);
+        client.start();
+    }
+
+    private void send(int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            client.send(STREAM_ID, new Event(i, new Object[]{"WSO2", 55.6, (long) i}));
+        }
+    }
+
+    /**
+     * Records the timestamps of the received events, and the size of each delivery.
+     */
+    private static class TestStreamListener implements StreamListener {
+        private final StreamDefinition streamDefinition = StreamDefinition.id(STREAM_ID)
+                .attribute("symbol", Attribute.Type.STRING)
+                .attribute("price", Attribute.Type.DOUBLE)
+                .attribute("volume", Attribute.Type.LONG);
+        private final List<Long> timestamps = new ArrayList<Long>();
+        private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        @Override
+        public StreamDefinition getStreamDefinition() {
+            return streamDefinition;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            onEvents(new Event[]{event});
+        }
+
+        @Override
+        public synchronized void onEvents(Event[] events) {
+            for (Event event : events) {
+                timestamps.add(event.getTimestamp());
+            }
+            batchSizes.add(events.length);
+            notifyAll();
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (timestamps.size() < count) {
+                long remainingTime = deadline - System.currentTimeMillis();
+                assertTrue("Received " + timestamps.size() + " of " + count + " events", remainingTime > 0);
+                wait(remainingTime);
+            }
+        }
+
+        synchronized List<Long> getTimestamps() {
+            return new ArrayList<Long>(timestamps);
+        }
+
+        synchronized List<Integer> getBatchSizes() {
+            return new ArrayList<Integer>(batchSizes);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.tcp.transport;
+
+import org.apache.log4j.Logger;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback throughput benchmark of the transport. Publisher threads send events through a {@link TcpNettyClient} to
+ * a {@link TcpNettyServer} on the same host, and the throughput and latency of the events received by the stream
+ * listener are reported. It is not run with the unit tests, run the main method with the test classpath to measure,
+ * optionally passing the events per thread, publisher threads, connections and batch size.
+ */
+public class TcpTransportBenchmark {
+    private static final Logger log = Logger.getLogger(TcpTransportBenchmark.class);
+    private static final int TENANT_ID = -1234;
+    private static final String STREAM_ID = "StockStream";
+
+    public static void main(String[] args) throws Exception {
+        final int eventsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int publisherThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        final StreamDefinition stockStream = StreamDefinition.id(STREAM_ID)
+                .attribute("symbol", Attribute.Type.STRING)
+                .attribute("price", Attribute.Type.DOUBLE)
+                .attribute("volume", Attribute.Type.LONG);
+        final long totalEvents = (long) eventsPerThread * publisherThreads;
+        final AtomicLong receivedEvents = new AtomicLong();
+        final AtomicLong totalLatency = new AtomicLong();
+        final CountDownLatch completed = new CountDownLatch(1);
+        TransportStreamManager.getInstance().addStreamListener(TENANT_ID, new StreamListener() {
+            @Override
+            public StreamDefinition getStreamDefinition() {
+                return stockStream;
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                onEvents(new Event[]{event});
+            }
+
+            @Override
+            public void onEvents(Event[] events) {
+                long currentTime = System.currentTimeMillis();
+                long latency = 0;
+                for (Event event : events) {
+                    latency += currentTime - event.getTimestamp();
+                }
+                totalLatency.addAndGet(latency);
+                if (receivedEvents.addAndGet(events.length) == totalEvents) {
+                    completed.countDown();
+                }
+            }
+        });
+
+        TcpServerConfig serverConfig = new TcpServerConfig("localhost", 0, TENANT_ID);
+        TcpNettyServer server = new TcpNettyServer(serverConfig);
+        server.start();
+
+        TcpClientConfig clientConfig = new TcpClientConfig("localhost", server.getPort());
+        clientConfig.setConnectionCount(connections);
+        clientConfig.setBatchSize(batchSize);
+        final TcpNettyClient client = new TcpNettyClient(clientConfig);
+        client.start();
+
+        log.info("Sending " + totalEvents + " events from " + publisherThreads + " threads over " + connections
+                + " connections in batches of " + batchSize);
+        long startTime = System.nanoTime();
+        Thread[] publishers = new Thread[publisherThreads];
+        for (int i = 0; i < publisherThreads; i++) {
+            publishers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        client.send(STREAM_ID, new Event(System.currentTimeMillis(),
+                                new Object[]{"WSO2", 55.6 + (j % 100), (long) j}));
+                    }
+                }
+            }, "TcpTransportBenchmark-Publisher-" + i);
+            publishers[i].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        client.flush();
+        boolean allReceived = completed.await(60, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        DecimalFormat decimalFormat = new DecimalFormat("#.##");
+        long received = receivedEvents.get();
+        log.info((allReceived ? "Received all " : "Timed out after receiving ") + received + " events in "
+                + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms; Throughput: "
+                + decimalFormat.format(received * 1e9 / elapsedNanos) + " events/s; Average latency: "
+                + decimalFormat.format(received > 0 ? totalLatency.get() / (double) received : 0) + " ms");
+
+        client.shutdown();
+        server.shutdown();
+        TransportStreamManager.getInstance().removeStreamDefinition(TENANT_ID, STREAM_ID);
+    }
+}